@@ -0,0 +1,137 @@
+package com.sample.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.sample.autoscaling.job.AutoScalingGroupPageIterator;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.replay.SnapshotRecorder;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.rules.AutoScalingGroupActivityRule;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.AutoScalingGroupInstancesCountRule;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.RuleChain;
+import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.rules.RuleOutcomeCache;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.simulator.SimulatedAutoScalingClient;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import com.sample.autoscaling.termination.AvailabilityZoneBalancedInstanceSelector;
+import com.sample.autoscaling.termination.InstanceSelector;
+import com.sample.autoscaling.termination.TerminationEngine;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Builds the components under benchmark the same way the application context does, wired to the simulators.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * AutoScaling simulator serving a fleet of groups with two instances each, all of them passing the activity rule.
+     *
+     * @param latencyMillis - Latency of every AutoScaling call
+     * @param executorService - Executor running asynchronous AutoScaling calls
+     */
+    public static SimulatedAutoScalingClient autoScalingSimulator(int groupCount, long latencyMillis,
+                                                                  ExecutorService executorService) {
+        SimulatedAutoScalingClient autoScalingSimulator = new SimulatedAutoScalingClient(executorService);
+        autoScalingSimulator.addFleet(groupCount, 2, 0, 0, new Random(42));
+        autoScalingSimulator.setLatencyMillis(latencyMillis);
+        return autoScalingSimulator;
+    }
+
+    public static List<AutoScalingGroupSnapshot> autoScalingGroups(AmazonAutoScalingAsync autoScalingClient) {
+        List<AutoScalingGroupSnapshot> autoScalingGroups = new ArrayList<AutoScalingGroupSnapshot>();
+        AutoScalingGroupPageIterator pages = new AutoScalingGroupPageIterator(autoScalingClient, 100);
+        while (pages.hasNext()) {
+            for (AutoScalingGroup autoScalingGroup : pages.next()) {
+                autoScalingGroups.add(AutoScalingGroupSnapshot.of(autoScalingGroup));
+            }
+        }
+        return autoScalingGroups;
+    }
+
+    public static MetricsRegistry metricsRegistry() {
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        metricsRegistry.initialize();
+        return metricsRegistry;
+    }
+
+    /**
+     * Rule outcome cache never reusing an outcome, so every auto scaling group is evaluated in full.
+     */
+    public static RuleOutcomeCache disabledRuleOutcomeCache() {
+        return new RuleOutcomeCache(1, 0, Ticker.systemTicker());
+    }
+
+    /**
+     * Build a rule handler applying the configured rules in the given order.
+     *
+     * @param autoScalingClient - Client used by activity rule
+     * @param cacheTimeToLiveSeconds - Time to live of cached scaling activities, 0 to disable cache
+     */
+    public static RuleHandler ruleHandler(AmazonAutoScalingAsync autoScalingClient, long cacheTimeToLiveSeconds,
+                                          RuleOrder ruleOrder, JobResultWriter jobResultWriter,
+                                          TerminationEngine terminationEngine, MetricsRegistry metricsRegistry) {
+        AutoScalingGroupInstancesCountRule countRule = new AutoScalingGroupInstancesCountRule();
+        ReflectionTestUtils.setField(countRule, "minThresholdForInstanceTermination", 1);
+
+        AutoScalingGroupActivityRule activityRule = new AutoScalingGroupActivityRule();
+        ReflectionTestUtils.setField(activityRule, "minThresholdForLastScalingActivity", 30);
+        ReflectionTestUtils.setField(activityRule, "autoScalingTargets",
+            AutoScalingTargets.of(AutoScalingTarget.defaultTarget(autoScalingClient)));
+        ScalingActivityCache scalingActivityCache = new ScalingActivityCache(100000, cacheTimeToLiveSeconds,
+            cacheTimeToLiveSeconds);
+        ReflectionTestUtils.setField(activityRule, "scalingActivityCache", scalingActivityCache);
+        ScalingActivityIndex scalingActivityIndex = new ScalingActivityIndex(false, 1, 1, Ticker.systemTicker());
+        ReflectionTestUtils.setField(activityRule, "scalingActivityIndex", scalingActivityIndex);
+        ReflectionTestUtils.setField(activityRule, "snapshotRecorder", new SnapshotRecorder());
+
+        RuleHandler ruleHandler = new RuleHandler();
+        ReflectionTestUtils.setField(ruleHandler, "instanceSelectionRules",
+            new ArrayList<AutoScalingGroupInstanceSelectionRule>(Arrays.asList(activityRule, countRule)));
+        ReflectionTestUtils.setField(ruleHandler, "jobResultWriter", jobResultWriter);
+        ReflectionTestUtils.setField(ruleHandler, "metricsRegistry", metricsRegistry);
+        ReflectionTestUtils.setField(ruleHandler, "terminationEngine", terminationEngine);
+        ReflectionTestUtils.setField(ruleHandler, "ruleOutcomeCache", disabledRuleOutcomeCache());
+        ReflectionTestUtils.setField(ruleHandler, "scalingActivityCache", scalingActivityCache);
+        ReflectionTestUtils.setField(ruleHandler, "scalingActivityIndex", scalingActivityIndex);
+        ruleHandler.afterPropertiesSet();
+        if (ruleOrder == RuleOrder.REVERSED) {
+            //Bypass the local first constraint of the compiled chain.
+            ReflectionTestUtils.setField(ruleHandler, "ruleChain",
+                new RuleChain(Lists.reverse(ruleHandler.getRuleChain().getRules())));
+        }
+        return ruleHandler;
+    }
+
+    /**
+     * Termination stage with the default caps, selecting instances in a balanced way across Availability Zones. Auto
+     * scaling groups can be terminated again right away, so every invocation terminates the same groups.
+     */
+    public static TerminationEngine terminationEngine() {
+        TerminationEngine terminationEngine = new TerminationEngine();
+        ReflectionTestUtils.setField(terminationEngine, "instanceSelectors",
+            Collections.<InstanceSelector>singletonList(new AvailabilityZoneBalancedInstanceSelector()));
+        ReflectionTestUtils.setField(terminationEngine, "instanceSelectorName", "az-balanced");
+        ReflectionTestUtils.setField(terminationEngine, "maxInFlight", 10);
+        ReflectionTestUtils.setField(terminationEngine, "maxInFlightPerAvailabilityZone", 3);
+        ReflectionTestUtils.setField(terminationEngine, "minThresholdForLastScalingActivity", 0);
+        terminationEngine.initialize();
+        return terminationEngine;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sample.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.sample.autoscaling.job.JobRun;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of applying the rule chain to a single auto scaling group, for each rule ordering, with and without cached
+ * scaling activities. Rules run on the calling thread, AWS calls on the simulator's executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RuleHandlerBenchmark {
+
+    @Param({"DECLARED", "REVERSED"})
+    private RuleOrder ruleOrder;
+
+    @Param({"0", "1"})
+    private long awsLatencyMillis;
+
+    @Param({"0", "60"})
+    private long cacheTimeToLiveSeconds;
+
+    private ExecutorService awsExecutor;
+
+    private MetricsRegistry metricsRegistry;
+
+    private RuleHandler ruleHandler;
+
+    private List<AutoScalingGroupSnapshot> autoScalingGroups;
+
+    private int nextGroup;
+
+    private AutoScalingTarget target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        awsExecutor = Executors.newFixedThreadPool(4);
+        AmazonAutoScalingAsync autoScalingClient =
+            BenchmarkFixtures.autoScalingSimulator(1000, awsLatencyMillis, awsExecutor).getClient();
+        autoScalingGroups = BenchmarkFixtures.autoScalingGroups(autoScalingClient);
+        target = AutoScalingTarget.defaultTarget(autoScalingClient);
+        metricsRegistry = BenchmarkFixtures.metricsRegistry();
+        ruleHandler = BenchmarkFixtures.ruleHandler(autoScalingClient, cacheTimeToLiveSeconds, ruleOrder,
+            new StubJobResultWriter(0), new StubTerminationEngine(), metricsRegistry);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        awsExecutor.shutdownNow();
+        metricsRegistry.destroy();
+    }
+
+    @Benchmark
+    public boolean applyRules() throws InterruptedException {
+        AutoScalingGroupSnapshot autoScalingGroup = autoScalingGroups.get(nextGroup++ % autoScalingGroups.size());
+        JobRun jobRun = new JobRun(target, 1L, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1));
+        jobRun.register(autoScalingGroup.getAutoScalingGroupName());
+        jobRun.dispatchFinished();
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+        return jobRun.awaitCompletion();
+    }
+}
@@ -0,0 +1,17 @@
+package com.sample.benchmark;
+
+/**
+ * Orderings of the rule chain benchmarked.
+ */
+public enum RuleOrder {
+
+    /**
+     * Order declared by @Order, local instance count check first.
+     */
+    DECLARED,
+
+    /**
+     * Remote activity check first.
+     */
+    REVERSED
+}
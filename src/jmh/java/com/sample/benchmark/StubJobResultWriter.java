@@ -0,0 +1,47 @@
+package com.sample.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sample.autoscaling.result.JobResultWriter;
+
+/**
+ * In-process stand-in for the Redis writes of job results. Results are only counted, each flush waits for the
+ * configured fake Redis latency.
+ */
+public class StubJobResultWriter extends JobResultWriter {
+
+    private final AtomicInteger recordedCount = new AtomicInteger();
+
+    private final long flushLatencyNanos;
+
+    public StubJobResultWriter(long flushLatencyMicros) {
+        this.flushLatencyNanos = TimeUnit.MICROSECONDS.toNanos(flushLatencyMicros);
+    }
+
+    @Override
+    public void record(String autoScalingGroupName, Long jobSequenceNumber, String outcome) {
+        recordedCount.incrementAndGet();
+    }
+
+    @Override
+    public void recordRunStart(Long jobSequenceNumber, long startTimeMillis) {
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (flushLatencyNanos > 0) {
+            LockSupport.parkNanos(flushLatencyNanos);
+        }
+    }
+
+    @Override
+    public int getPendingCount() {
+        return 0;
+    }
+
+    public int getRecordedCount() {
+        return recordedCount.get();
+    }
+}
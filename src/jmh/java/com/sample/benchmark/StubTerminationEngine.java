@@ -0,0 +1,19 @@
+package com.sample.benchmark;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sample.autoscaling.job.JobRun;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.termination.TerminationEngine;
+
+/**
+ * Termination stage completing right away without terminating anything, so the fleet stays the same across
+ * benchmark invocations.
+ */
+public class StubTerminationEngine extends TerminationEngine {
+
+    @Override
+    public ListenableFuture<String> submit(JobRun jobRun, AutoScalingGroupSnapshot autoScalingGroup) {
+        return Futures.immediateFuture(autoScalingGroup.getInstanceId(0));
+    }
+}
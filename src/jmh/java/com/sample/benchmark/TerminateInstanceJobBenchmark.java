@@ -0,0 +1,153 @@
+package com.sample.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.sample.autoscaling.cluster.ClusterMembership;
+import com.sample.autoscaling.job.AutoScalingGroupSelector;
+import com.sample.autoscaling.job.JobRunCoordinator;
+import com.sample.autoscaling.job.JobSequenceAllocator;
+import com.sample.autoscaling.job.JobWorkExecutor;
+import com.sample.autoscaling.job.TerminateInstanceJob;
+import com.sample.autoscaling.job.WorkPriority;
+import com.sample.autoscaling.metrics.JobMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.replay.SnapshotRecorder;
+import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.simulator.InMemoryRedis;
+import com.sample.autoscaling.simulator.InMemoryRedisConnectionFactory;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * End to end cost of one Instance Termination job run over a fleet of the given size: paging through auto scaling
+ * groups, fanning out rule evaluation on the rule executor, terminating instances and recording results. AWS and
+ * Redis are replaced by the simulators, results are only counted, everything else is the production code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TerminateInstanceJobBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    private int groupCount;
+
+    @Param({"20"})
+    private int asyncPoolSize;
+
+    @Param({"100", "10000"})
+    private int asyncQueueCapacity;
+
+    @Param({"MOST_INSTANCES", "FIFO"})
+    private WorkPriority workPriority;
+
+    @Param({"20"})
+    private int awsPoolSize;
+
+    @Param({"0", "1"})
+    private long awsLatencyMillis;
+
+    @Param({"DECLARED", "REVERSED"})
+    private RuleOrder ruleOrder;
+
+    private ExecutorService awsExecutor;
+
+    private JobWorkExecutor asyncExecutor;
+
+    private ThreadPoolTaskExecutor dispatchExecutor;
+
+    private MetricsRegistry metricsRegistry;
+
+    private TerminateInstanceJob terminateInstanceJob;
+
+    /**
+     * Fleet is rebuilt for each run, as a run terminates an instance in most auto scaling groups.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        awsExecutor = Executors.newFixedThreadPool(awsPoolSize);
+        AmazonAutoScalingAsync autoScalingClient =
+            BenchmarkFixtures.autoScalingSimulator(groupCount, awsLatencyMillis, awsExecutor).getClient();
+        metricsRegistry = BenchmarkFixtures.metricsRegistry();
+        StubJobResultWriter jobResultWriter = new StubJobResultWriter(0);
+
+        asyncExecutor = new JobWorkExecutor(workPriority);
+        asyncExecutor.setCorePoolSize(asyncPoolSize);
+        asyncExecutor.setMaxPoolSize(asyncPoolSize);
+        asyncExecutor.setQueueCapacity(asyncQueueCapacity);
+        asyncExecutor.initialize();
+
+        dispatchExecutor = new ThreadPoolTaskExecutor();
+        dispatchExecutor.setCorePoolSize(1);
+        dispatchExecutor.initialize();
+
+        RuleHandler ruleHandler = BenchmarkFixtures.ruleHandler(autoScalingClient, 0, ruleOrder, jobResultWriter,
+            BenchmarkFixtures.terminationEngine(), metricsRegistry);
+        ReflectionTestUtils.setField(ruleHandler, "ruleExecutor", asyncExecutor);
+
+        BoundValueOperations<String, String> jobSequenceValueOps =
+            new StringRedisTemplate(new InMemoryRedisConnectionFactory(new InMemoryRedis()))
+                .boundValueOps("terminate_instance_job_sequence");
+        JobSequenceAllocator jobSequenceAllocator = new JobSequenceAllocator();
+        ReflectionTestUtils.setField(jobSequenceAllocator, "jobSequenceValueOps", jobSequenceValueOps);
+        ReflectionTestUtils.setField(jobSequenceAllocator, "metricsRegistry", metricsRegistry);
+        ReflectionTestUtils.setField(jobSequenceAllocator, "backgroundTaskScheduler", mock(TaskScheduler.class));
+        ReflectionTestUtils.setField(jobSequenceAllocator, "blockSize", 1);
+        ClusterMembership clusterMembership = mock(ClusterMembership.class);
+        when(clusterMembership.isOwned(anyString())).thenReturn(true);
+
+        JobRunCoordinator jobRunCoordinator = new JobRunCoordinator();
+        ReflectionTestUtils.setField(jobRunCoordinator, "runTimeBudgetMillis", TimeUnit.MINUTES.toMillis(10));
+
+        terminateInstanceJob = new TerminateInstanceJob();
+        ReflectionTestUtils.setField(terminateInstanceJob, "autoScalingTargets",
+            AutoScalingTargets.of(AutoScalingTarget.defaultTarget(autoScalingClient)));
+        ReflectionTestUtils.setField(terminateInstanceJob, "dispatchExecutor", dispatchExecutor);
+        ReflectionTestUtils.setField(terminateInstanceJob, "ruleHandler", ruleHandler);
+        ReflectionTestUtils.setField(terminateInstanceJob, "ruleOutcomeCache",
+            BenchmarkFixtures.disabledRuleOutcomeCache());
+        ReflectionTestUtils.setField(terminateInstanceJob, "jobResultWriter", jobResultWriter);
+        ReflectionTestUtils.setField(terminateInstanceJob, "jobRunCoordinator", jobRunCoordinator);
+        ReflectionTestUtils.setField(terminateInstanceJob, "autoScalingGroupSelector",
+            new AutoScalingGroupSelector("", "", "", "", ""));
+        ReflectionTestUtils.setField(terminateInstanceJob, "clusterMembership", clusterMembership);
+        ReflectionTestUtils.setField(terminateInstanceJob, "jobMetrics", mock(JobMetrics.class));
+        ReflectionTestUtils.setField(terminateInstanceJob, "jobSequenceAllocator", jobSequenceAllocator);
+        ReflectionTestUtils.setField(terminateInstanceJob, "snapshotRecorder", new SnapshotRecorder());
+        ReflectionTestUtils.setField(terminateInstanceJob, "autoScalingGroupPageSize", 50);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        asyncExecutor.shutdown();
+        dispatchExecutor.shutdown();
+        awsExecutor.shutdownNow();
+        metricsRegistry.destroy();
+    }
+
+    @Benchmark
+    public void run() throws InterruptedException {
+        terminateInstanceJob.run();
+    }
+}
@@ -1,22 +1,109 @@
 package com.sample.autoscaling;
 
-import com.sample.autoscaling.config.Config;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.autoscaling.config.DaemonConfig;
+import com.sample.autoscaling.config.OneShotContext;
+import com.sample.autoscaling.job.JobRunSummary;
+import com.sample.autoscaling.job.TerminateInstanceJob;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 /**
- * Main class to run the application
+ * Main class to run the application. Without arguments, the job is scheduled by its cron expression and the
+ * application runs until stopped. With argument "once", the job is run once and the application exits; the exit code
+ * tells how the run went (see EXIT_* constants) and a JSON summary of the run is printed as the last line of standard
+ * output.
  */
 public class App {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(App.class);
+
     private static final Object LOCK = new Object();
 
+    private static final String ONCE = "once";
+
+    /**
+     * Auto scaling groups of every target were retrieved, every auto scaling group was processed within the time budget
+     * and no termination failed.
+     */
+    public static final int EXIT_COMPLETE = 0;
+
+    /**
+     * Run finished, but auto scaling groups of some targets could not be retrieved, some auto scaling groups timed out
+     * or some terminations failed.
+     */
+    public static final int EXIT_INCOMPLETE = 1;
+
+    /**
+     * Run could not be started or failed, e.g. Redis or AWS could not be reached.
+     */
+    public static final int EXIT_FAILED = 2;
+
     public static void main(String... args) throws InterruptedException {
+        if (args.length > 0 && ONCE.equals(args[0])) {
+            System.exit(runOnce());
+        }
 
         //Initialize Application Context
-        new AnnotationConfigApplicationContext(Config.class);
+        new AnnotationConfigApplicationContext(DaemonConfig.class);
 
         synchronized (LOCK) {
             LOCK.wait();
         }
     }
+
+    /**
+     * Run the job once in a {@link OneShotContext} and print the summary of the run.
+     *
+     * @return Exit code.
+     */
+    private static int runOnce() throws InterruptedException {
+        long startMillis = System.currentTimeMillis();
+        Map<String, Object> summary = new LinkedHashMap<String, Object>();
+        int exitCode;
+        AnnotationConfigApplicationContext context = OneShotContext.create();
+        try {
+            context.refresh();
+            TerminateInstanceJob terminateInstanceJob = context.getBean(TerminateInstanceJob.class);
+            LOGGER.info("Started in {} ms", System.currentTimeMillis() - startMillis);
+            JobRunSummary runSummary = terminateInstanceJob.runOnce();
+            exitCode = runSummary == null ? EXIT_FAILED : runSummary.isComplete() ? EXIT_COMPLETE : EXIT_INCOMPLETE;
+            summary.put("status", exitCode == EXIT_COMPLETE ? "COMPLETE" : exitCode == EXIT_INCOMPLETE ?
+                "INCOMPLETE" : "SKIPPED");
+            if (runSummary != null) {
+                summary.put("jobSequenceNumber", runSummary.getJobSequenceNumber());
+                summary.put("startTime", new DateTime(runSummary.getStartTimeMillis()).toString());
+                summary.put("durationMillis", runSummary.getDurationMillis());
+                summary.put("autoScalingGroups", runSummary.getAutoScalingGroupCount());
+                summary.put("timedOutGroups", runSummary.getTimedOutGroupCount());
+                summary.put("failedTargets", runSummary.getFailedTargetCount());
+                summary.put("terminatedInstances", runSummary.getTerminatedInstanceCount());
+                summary.put("failedTerminations", runSummary.getFailedTerminationCount());
+            }
+        }
+        catch (RuntimeException ex) {
+            LOGGER.error("Instance Termination job failed", ex);
+            exitCode = EXIT_FAILED;
+            summary.put("status", "FAILED");
+            summary.put("error", String.valueOf(ex.getMessage()));
+        }
+        finally {
+            //Buffered job results are written to Redis when the context is closed.
+            context.close();
+        }
+        summary.put("totalMillis", System.currentTimeMillis() - startMillis);
+        try {
+            System.out.println(new ObjectMapper().writeValueAsString(summary));
+        }
+        catch (IOException ioe) {
+            LOGGER.error("Could not write summary of the run", ioe);
+        }
+        return exitCode;
+    }
 }
@@ -0,0 +1,74 @@
+package com.sample.autoscaling.aws;
+
+/**
+ * Limits the number of concurrent calls, adapting the limit with AIMD (additive increase, multiplicative decrease):
+ * every successful call grows the limit by 1/limit, so the limit grows by about one per limit calls, and every
+ * throttled call halves it. Concurrency converges to the highest level the remote service accepts.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private int inFlight;
+
+    /**
+     * @param initialLimit - Concurrency limit to start with
+     * @param minLimit - Limit never decreases below this value
+     * @param maxLimit - Limit never increases above this value
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Wait until a call can be started without exceeding the limit.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Release a permit after a successful call and increase the limit.
+     */
+    public synchronized void onSuccess() {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+        release();
+    }
+
+    /**
+     * Release a permit after a throttled call and decrease the limit.
+     */
+    public synchronized void onThrottled() {
+        limit = Math.max(minLimit, limit / 2);
+        release();
+    }
+
+    /**
+     * Release a permit after a call failed for a reason unrelated to load, limit is kept as is.
+     */
+    public synchronized void onIgnored() {
+        release();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+}
@@ -0,0 +1,381 @@
+package com.sample.autoscaling.aws;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.autoscaling.AmazonAutoScaling;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rate limiting layer around the AutoScaling client, shared by every caller of the client bean. Each API call goes
+ * through:
+ * <ol>
+ * <li>a token bucket per API operation, so one operation can not use the request budget of the others,</li>
+ * <li>an {@link AdaptiveConcurrencyLimiter} shared by all operations, which shrinks when AWS throttles us and grows
+ * back while calls succeed,</li>
+ * <li>retries of throttled calls and of server errors with exponential back off and full jitter.</li>
+ * </ol>
+ * Asynchronous operations are executed on the given executor by calling the rate limited synchronous operation, so
+ * they are limited and retried the same way, their retries being scheduled rather than slept through. Latency of
+ * every attempt is recorded per operation.
+ */
+public class RateLimitedAutoScalingClient implements InvocationHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitedAutoScalingClient.class);
+
+    private static final String ASYNC_SUFFIX = "Async";
+
+    /**
+     * Returned by an attempt which failed and is to be retried.
+     */
+    private static final Object RETRY = new Object();
+
+    /**
+     * Error codes returned by AWS when request rate is too high.
+     */
+    private static final Set<String> THROTTLING_ERROR_CODES = Collections.unmodifiableSet(new HashSet<String>(
+        Arrays.asList("Throttling", "ThrottlingException", "RequestLimitExceeded", "RequestThrottled")));
+
+    /**
+     * Client methods which are not API operations.
+     */
+    private static final Set<String> NON_OPERATIONS = Collections.unmodifiableSet(new HashSet<String>(
+        Arrays.asList("setEndpoint", "setRegion", "shutdown", "getCachedResponseMetadata")));
+
+    private final AmazonAutoScaling delegate;
+
+    private final ExecutorService executorService;
+
+    /**
+     * Scheduler of the retries of asynchronous operations, which are executed on the executor once backed off.
+     */
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("AutoScaling-Retry-%d").build());
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final ConcurrentMap<String, RateLimiter> operationRateLimiters =
+        new ConcurrentHashMap<String, RateLimiter>();
+
+    private final Random random = new Random();
+
+    private final AtomicLong throttledCallCount = new AtomicLong();
+
+    private final AtomicLong retriedCallCount = new AtomicLong();
+
+    private double defaultRequestsPerSecond = 10;
+
+    private Map<String, Double> operationRequestsPerSecond = Collections.emptyMap();
+
+    private int maxRetries = 5;
+
+    private long baseBackoffMillis = 100;
+
+    private long maxBackoffMillis = 10000;
+
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * @param delegate - Client performing the API calls
+     * @param executorService - Executor running asynchronous operations
+     * @param concurrencyLimiter - Limiter of concurrent API calls
+     */
+    public RateLimitedAutoScalingClient(AmazonAutoScaling delegate, ExecutorService executorService,
+                                        AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.delegate = delegate;
+        this.executorService = executorService;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Create the rate limited client.
+     */
+    public AmazonAutoScalingAsync getClient() {
+        return (AmazonAutoScalingAsync) Proxy.newProxyInstance(AmazonAutoScalingAsync.class.getClassLoader(),
+            new Class<?>[]{AmazonAutoScalingAsync.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        if (method.getDeclaringClass() == AmazonAutoScalingAsync.class) {
+            return invokeAsync(method, args);
+        }
+        if (NON_OPERATIONS.contains(method.getName())) {
+            if ("shutdown".equals(method.getName())) {
+                executorService.shutdown();
+                retryScheduler.shutdown();
+            }
+            return invokeDelegate(method, args);
+        }
+        return invokeRateLimited(method, args);
+    }
+
+    /**
+     * Invoke a synchronous operation within the rate and concurrency limits, retrying it on the calling thread while
+     * it fails with a retryable error.
+     */
+    private Object invokeRateLimited(Method method, Object[] args) throws Throwable {
+        for (int attempt = 0; ; attempt++) {
+            Object result = attempt(method, args, attempt);
+            if (result != RETRY) {
+                return result;
+            }
+            Thread.sleep(backoffMillis(method, attempt));
+        }
+    }
+
+    /**
+     * Make one attempt of an operation within the rate and concurrency limits.
+     *
+     * @return Result of the operation, or {@link #RETRY} when the attempt failed with a retryable error and retries
+     * are left.
+     */
+    private Object attempt(Method method, Object[] args, int attempt) throws Throwable {
+        getRateLimiter(method.getName()).acquire();
+        concurrencyLimiter.acquire();
+        long startNanos = System.nanoTime();
+        try {
+            Object result = invokeDelegate(method, args);
+            concurrencyLimiter.onSuccess();
+            recordLatency(method.getName(), startNanos, false);
+            return result;
+        }
+        catch (AmazonServiceException ase) {
+            recordLatency(method.getName(), startNanos, true);
+            if (isThrottled(ase)) {
+                concurrencyLimiter.onThrottled();
+                throttledCallCount.incrementAndGet();
+            }
+            else {
+                concurrencyLimiter.onIgnored();
+                if (!isServerError(ase)) {
+                    throw ase;
+                }
+            }
+            if (attempt >= maxRetries) {
+                LOGGER.error("{} still fails after {} retries", method.getName(), maxRetries);
+                throw ase;
+            }
+            retriedCallCount.incrementAndGet();
+            return RETRY;
+        }
+        catch (Throwable throwable) {
+            recordLatency(method.getName(), startNanos, true);
+            concurrencyLimiter.onIgnored();
+            throw throwable;
+        }
+    }
+
+    /**
+     * Execute an asynchronous operation on the executor by attempting its rate limited synchronous counterpart.
+     * Retries are scheduled after their back off and executed on the executor again, so a thread of the executor never
+     * sleeps through a back off.
+     */
+    @SuppressWarnings("unchecked")
+    private Object invokeAsync(Method method, Object[] args) throws NoSuchMethodException {
+        String operation = method.getName().substring(0, method.getName().length() - ASYNC_SUFFIX.length());
+        Method syncMethod = AmazonAutoScaling.class.getMethod(operation, method.getParameterTypes()[0]);
+        AmazonWebServiceRequest request = (AmazonWebServiceRequest) args[0];
+        AsyncHandler<AmazonWebServiceRequest, Object> asyncHandler =
+            args.length > 1 ? (AsyncHandler<AmazonWebServiceRequest, Object>) args[1] : null;
+        SettableFuture<Object> future = SettableFuture.create();
+        executorService.execute(new AsyncAttempt(syncMethod, request, asyncHandler, future, 0));
+        return future;
+    }
+
+    private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        }
+        catch (InvocationTargetException ite) {
+            throw ite.getCause();
+        }
+    }
+
+    private void recordLatency(String operation, long startNanos, boolean failed) {
+        if (metricsRegistry != null) {
+            metricsRegistry.getLatencyMetrics(MetricsRegistry.AWS, operation).record(System.nanoTime() - startNanos,
+                failed);
+        }
+    }
+
+    private RateLimiter getRateLimiter(String operation) {
+        RateLimiter rateLimiter = operationRateLimiters.get(operation);
+        if (rateLimiter == null) {
+            Double requestsPerSecond = operationRequestsPerSecond.get(operation);
+            rateLimiter = RateLimiter.create(requestsPerSecond != null ? requestsPerSecond : defaultRequestsPerSecond);
+            RateLimiter existingRateLimiter = operationRateLimiters.putIfAbsent(operation, rateLimiter);
+            if (existingRateLimiter != null) {
+                rateLimiter = existingRateLimiter;
+            }
+        }
+        return rateLimiter;
+    }
+
+    /**
+     * Exponential back off with full jitter: random delay between 0 and base * 2^attempt, capped.
+     */
+    private long backoffMillis(Method method, int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 30));
+        long backoffMillis = (long) (random.nextDouble() * ceiling);
+        LOGGER.debug("{} failed, retrying in {} ms (concurrency limit {})", method.getName(), backoffMillis,
+            concurrencyLimiter.getLimit());
+        return backoffMillis;
+    }
+
+    private boolean isThrottled(AmazonServiceException ase) {
+        return THROTTLING_ERROR_CODES.contains(ase.getErrorCode()) || ase.getStatusCode() == 429;
+    }
+
+    /**
+     * Server errors are retried like throttling, the AWS SDK retries of the wrapped client being disabled.
+     */
+    private boolean isServerError(AmazonServiceException ase) {
+        return ase.getStatusCode() >= 500;
+    }
+
+    /**
+     * Set the requests per second allowed for operations without a specific rate.
+     */
+    public void setDefaultRequestsPerSecond(double defaultRequestsPerSecond) {
+        this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+    }
+
+    /**
+     * Set the requests per second allowed per operation, keyed by client method name (e.g.
+     * describeScalingActivities).
+     */
+    public void setOperationRequestsPerSecond(Map<String, Double> operationRequestsPerSecond) {
+        this.operationRequestsPerSecond = operationRequestsPerSecond;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setBaseBackoffMillis(long baseBackoffMillis) {
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Set the registry where latencies of AWS operations are recorded.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public long getThrottledCallCount() {
+        return throttledCallCount.get();
+    }
+
+    public long getRetriedCallCount() {
+        return retriedCallCount.get();
+    }
+
+    /**
+     * One attempt of an asynchronous operation, completing the future and notifying the handler unless the attempt is
+     * to be retried.
+     */
+    private final class AsyncAttempt implements Runnable {
+
+        private final Method method;
+
+        private final AmazonWebServiceRequest request;
+
+        private final AsyncHandler<AmazonWebServiceRequest, Object> asyncHandler;
+
+        private final SettableFuture<Object> future;
+
+        private final int attempt;
+
+        private AsyncAttempt(Method method, AmazonWebServiceRequest request,
+                             AsyncHandler<AmazonWebServiceRequest, Object> asyncHandler, SettableFuture<Object> future,
+                             int attempt) {
+            this.method = method;
+            this.request = request;
+            this.asyncHandler = asyncHandler;
+            this.future = future;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            Object result;
+            try {
+                result = attempt(method, new Object[]{request}, attempt);
+                if (result == RETRY) {
+                    retryScheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            retry();
+                        }
+                    }, backoffMillis(method, attempt), TimeUnit.MILLISECONDS);
+                    return;
+                }
+            }
+            catch (Throwable throwable) {
+                fail(throwable);
+                return;
+            }
+            if (asyncHandler != null) {
+                asyncHandler.onSuccess(request, result);
+            }
+            future.set(result);
+        }
+
+        private void retry() {
+            try {
+                executorService.execute(new AsyncAttempt(method, request, asyncHandler, future, attempt + 1));
+            }
+            catch (RejectedExecutionException ree) {
+                fail(ree);
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            Exception ex = throwable instanceof Exception ? (Exception) throwable :
+                new AmazonClientException(throwable.getMessage(), throwable);
+            if (asyncHandler != null) {
+                asyncHandler.onError(ex);
+            }
+            future.setException(ex);
+        }
+    }
+}
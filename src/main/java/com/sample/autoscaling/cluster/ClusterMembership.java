@@ -0,0 +1,139 @@
+package com.sample.autoscaling.cluster;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Coordinates the terminator nodes sharing the same Redis, so auto scaling groups are split between them. Each node
+ * heartbeats into a Redis sorted set (node id scored by heartbeat time), a node whose last heartbeat is older than the
+ * lease is considered gone. At the start of every run, live nodes are read and auto scaling groups are assigned to
+ * them by consistent hashing, so a node joining or leaving is accounted for within one run.
+ * <p/>
+ * Clocks of the nodes should be in sync within a fraction of the lease.
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterMembership.class);
+
+    @Resource(name = "redisTemplate")
+    private StringRedisTemplate redisTemplate;
+
+    @Resource(name = "backgroundTaskScheduler")
+    private TaskScheduler backgroundTaskScheduler;
+
+    @Value("${cluster.node.id}")
+    private String nodeId;
+
+    @Value("${cluster.nodes.key}")
+    private String clusterNodesKey;
+
+    @Value("${cluster.heartbeat.interval.millis}")
+    private long heartbeatIntervalMillis;
+
+    @Value("${cluster.lease.millis}")
+    private long leaseMillis;
+
+    @Value("${cluster.virtual.nodes}")
+    private int virtualNodes;
+
+    private volatile ConsistentHashRing ring;
+
+    @PostConstruct
+    public void join() {
+        if (!StringUtils.hasText(nodeId)) {
+            //Name of the runtime is pid@hostname, unique per JVM on a host.
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        ring = new ConsistentHashRing(Collections.singleton(nodeId), virtualNodes);
+        backgroundTaskScheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                heartbeat();
+            }
+        }, heartbeatIntervalMillis);
+        LOGGER.info("Terminator node {} joined the cluster", nodeId);
+    }
+
+    /**
+     * Renew the lease of this node.
+     */
+    public void heartbeat() {
+        try {
+            redisTemplate.opsForZSet().add(clusterNodesKey, nodeId, System.currentTimeMillis());
+        }
+        catch (DataAccessException dae) {
+            LOGGER.error("Could not renew lease of node {}. Error Message: {}", nodeId, dae.getMessage());
+        }
+    }
+
+    /**
+     * Read the live nodes and rebuild the consistent hash ring if membership has changed. Called at the start of each
+     * run, so all the auto scaling groups of a run are assigned using the same ring. If Redis can not be reached,
+     * previous ring is kept.
+     */
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        Set<String> liveNodes = new HashSet<String>();
+        try {
+            redisTemplate.opsForZSet().removeRangeByScore(clusterNodesKey, Double.NEGATIVE_INFINITY, now - leaseMillis);
+            liveNodes.addAll(redisTemplate.opsForZSet().rangeByScore(clusterNodesKey, now - leaseMillis,
+                Double.POSITIVE_INFINITY));
+        }
+        catch (DataAccessException dae) {
+            LOGGER.error("Could not read cluster membership, keeping nodes {}. Error Message: {}", ring.getNodes(),
+                dae.getMessage());
+            return;
+        }
+        //This node is always a member, even before its first heartbeat is visible.
+        liveNodes.add(nodeId);
+        if (!liveNodes.equals(ring.getNodes())) {
+            LOGGER.info("Cluster membership changed from {} to {}", ring.getNodes(), liveNodes);
+            ring = new ConsistentHashRing(liveNodes, virtualNodes);
+        }
+    }
+
+    /**
+     * Check if an auto scaling group is assigned to this node.
+     */
+    public boolean isOwned(String autoScalingGroupName) {
+        return nodeId.equals(ring.getNode(autoScalingGroupName));
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Leave the cluster, so other nodes take over the auto scaling groups of this node on their next run instead of
+     * waiting for the lease to expire.
+     */
+    @PreDestroy
+    public void leave() {
+        try {
+            redisTemplate.opsForZSet().remove(clusterNodesKey, nodeId);
+        }
+        catch (DataAccessException dae) {
+            LOGGER.error("Could not remove node {} from cluster. Error Message: {}", nodeId, dae.getMessage());
+        }
+    }
+}
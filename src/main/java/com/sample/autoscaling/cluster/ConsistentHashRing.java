@@ -0,0 +1,59 @@
+package com.sample.autoscaling.cluster;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Immutable consistent hash ring assigning keys (auto scaling group names) to nodes. Each node is placed on the ring
+ * many times (virtual nodes) so keys are spread evenly, and adding or removing a node only moves the keys of that node.
+ */
+public class ConsistentHashRing {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final TreeMap<Long, String> ring = new TreeMap<Long, String>();
+
+    private final SortedSet<String> nodes;
+
+    /**
+     * @param nodes - Ids of the nodes on the ring, at least one
+     * @param virtualNodes - Number of times each node is placed on the ring
+     */
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Consistent hash ring needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableSortedSet(new TreeSet<String>(nodes));
+        for (String node : this.nodes) {
+            for (int index = 0; index < virtualNodes; index++) {
+                ring.put(hash(node + "#" + index), node);
+            }
+        }
+    }
+
+    /**
+     * Get the node owning a key, which is the first node clockwise from the hash of the key.
+     */
+    public String getNode(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public SortedSet<String> getNodes() {
+        return nodes;
+    }
+
+    private static long hash(String value) {
+        return HASH_FUNCTION.hashString(value, UTF_8).asLong();
+    }
+}
@@ -0,0 +1,122 @@
+package com.sample.autoscaling.config;
+
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.ClasspathPropertiesFileCredentialsProvider;
+import com.amazonaws.auth.STSAssumeRoleSessionCredentialsProvider;
+import com.amazonaws.regions.Region;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsyncClient;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.sample.autoscaling.events.InMemoryScalingEventQueue;
+import com.sample.autoscaling.events.ScalingEventQueue;
+import com.sample.autoscaling.events.SqsScalingEventQueue;
+import com.sample.autoscaling.simulator.SimulatorConfig;
+import com.sample.autoscaling.target.AutoScalingClientFactory;
+import com.sample.autoscaling.target.TargetDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.util.StringUtils;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Spring Context Configuration of the AWS and Redis clients {@link Config} builds on. Active unless the simulator
+ * profile is, {@link SimulatorConfig} defines the same beans against the simulators then.
+ */
+@Configuration
+@Profile("!" + SimulatorConfig.PROFILE)
+public class AwsConfig {
+
+    @Value("${scaling.activity.events.queue.url}")
+    private String scalingEventQueueUrl;
+
+    @Value("${redis.host}")
+    private String redisHost;
+
+    @Value("${redis.password}")
+    private String redisPassword;
+
+    @Value("${redis.port}")
+    private int redisPort;
+
+    @Value("${redis.max.in.flight}")
+    private int redisMaxInFlight;
+
+    @Value("${redis.max.wait.millis}")
+    private long redisMaxWaitMillis;
+
+    @Bean
+    public AWSCredentialsProvider awsCredentialsProvider() {
+        return new ClasspathPropertiesFileCredentialsProvider();
+    }
+
+    /**
+     * AutoScaling clients of the targets: the default target uses the terminator credentials, other targets assume
+     * their role when they have one. SDK retries are disabled, the rate limiting layer wrapping the clients retries
+     * with its own back off (see {@link com.sample.autoscaling.aws.RateLimitedAutoScalingClient}).
+     */
+    @Bean
+    public AutoScalingClientFactory autoScalingClientFactory() {
+        return new AutoScalingClientFactory() {
+            @Override
+            public AmazonAutoScalingAsync create(TargetDefinition definition, ExecutorService executor) {
+                if (definition == null) {
+                    return new AmazonAutoScalingAsyncClient(awsCredentialsProvider(), autoScalingClientConfiguration(),
+                        executor);
+                }
+                AWSCredentialsProvider credentialsProvider = definition.getRoleArn() == null ?
+                    awsCredentialsProvider() : new STSAssumeRoleSessionCredentialsProvider(awsCredentialsProvider(),
+                    definition.getRoleArn(), "asgroup-instance-terminator");
+                AmazonAutoScalingAsync autoScalingClient = new AmazonAutoScalingAsyncClient(credentialsProvider,
+                    autoScalingClientConfiguration(), executor);
+                autoScalingClient.setRegion(Region.getRegion(Regions.fromName(definition.getRegion())));
+                return autoScalingClient;
+            }
+        };
+    }
+
+    private ClientConfiguration autoScalingClientConfiguration() {
+        return new ClientConfiguration().withMaxErrorRetry(0);
+    }
+
+    /**
+     * Queue AutoScaling notifications are received from when scaling activities are tracked from notifications: an SQS
+     * queue when its URL is configured, otherwise an in-memory queue.
+     */
+    @Bean
+    public ScalingEventQueue scalingEventQueue() {
+        if (!StringUtils.hasText(scalingEventQueueUrl)) {
+            return new InMemoryScalingEventQueue();
+        }
+        AmazonSQSClient sqsClient = new AmazonSQSClient(awsCredentialsProvider());
+        URI queueUri = URI.create(scalingEventQueueUrl);
+        sqsClient.setEndpoint(queueUri.getScheme() + "://" + queueUri.getHost());
+        return new SqsScalingEventQueue(sqsClient, scalingEventQueueUrl);
+    }
+
+    /**
+     * Redis Connection Factory Bean. Connections are pooled, the pool is sized to the maximum number of Redis calls in
+     * flight, so a call allowed by the Redis template always finds a connection.
+     */
+    @Bean(destroyMethod = "destroy")
+    public RedisConnectionFactory redisConnectionFactory() {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxActive(redisMaxInFlight);
+        poolConfig.setMaxIdle(redisMaxInFlight);
+        poolConfig.setMaxWait(redisMaxWaitMillis);
+        JedisConnectionFactory redisConnectionFactory = new JedisConnectionFactory(poolConfig);
+        redisConnectionFactory.setUsePool(true);
+        redisConnectionFactory.setHostName(redisHost);
+        redisConnectionFactory.setPassword(redisPassword);
+        redisConnectionFactory.setPort(redisPort);
+        return redisConnectionFactory;
+    }
+}
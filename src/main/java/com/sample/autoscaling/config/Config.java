@@ -1,62 +1,116 @@
 package com.sample.autoscaling.config;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import com.amazonaws.auth.AWSCredentialsProvider;
-import com.amazonaws.auth.ClasspathPropertiesFileCredentialsProvider;
 import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
-import com.amazonaws.services.autoscaling.AmazonAutoScalingAsyncClient;
+import com.google.common.base.Splitter;
+import com.sample.autoscaling.aws.AdaptiveConcurrencyLimiter;
+import com.sample.autoscaling.aws.RateLimitedAutoScalingClient;
+import com.sample.autoscaling.job.ExecutorMode;
+import com.sample.autoscaling.job.JobWorkExecutor;
+import com.sample.autoscaling.job.WorkPriority;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.redis.BoundedRedisConnectionFactory;
+import com.sample.autoscaling.target.AutoScalingClientFactory;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import com.sample.autoscaling.target.TargetDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jmx.support.RegistrationPolicy;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.annotation.AsyncConfigurer;
-import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
 /**
- * Spring Context Configuration file
+ * Spring Context Configuration file. Beans of the components are defined by {@link DaemonConfig} or
+ * {@link OneShotContext}, depending on how the job is run. AWS and Redis clients this configuration builds on are
+ * defined by {@link AwsConfig}, or by the simulator configuration when load testing.
  */
 @Configuration
-@ComponentScan("com.sample.autoscaling")
 @PropertySource("classpath:sample-application.properties")
-@EnableScheduling
-@EnableAsync
-public class Config implements AsyncConfigurer, SchedulingConfigurer {
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
+public class Config implements SchedulingConfigurer {
 
     @Value("${scheduler.thread.pool.size}")
     private int schedulerPoolSize;
 
+    @Value("${background.thread.pool.size}")
+    private int backgroundPoolSize;
+
+    @Value("${executor.mode}")
+    private ExecutorMode executorMode;
+
     @Value("${executor.thread.pool.size}")
     private int executorPoolSize;
 
     @Value("${executor.max.pool.size}")
     private int executorMaxPoolSize;
 
+    @Value("${executor.max.in.flight}")
+    private int executorMaxInFlight;
+
     @Value("${executor.queue.capacity}")
     private int executorQueueCapacity;
 
-    @Value("${redis.host}")
-    private String redisHost;
+    @Value("${executor.queue.priority}")
+    private WorkPriority executorQueuePriority;
+
+    @Value("${dispatch.thread.pool.size}")
+    private int dispatchPoolSize;
+
+    @Value("${auto.scaling.targets}")
+    private String autoScalingTargets;
+
+    @Value("${aws.client.thread.pool.size}")
+    private int awsClientPoolSize;
+
+    @Value("${aws.rate.limit.requests.per.second}")
+    private double awsRequestsPerSecond;
+
+    @Value("${aws.rate.limit.operations}")
+    private String awsOperationRequestsPerSecond;
+
+    @Value("${aws.concurrency.limit.initial}")
+    private int awsInitialConcurrencyLimit;
+
+    @Value("${aws.concurrency.limit.min}")
+    private int awsMinConcurrencyLimit;
 
-    @Value("${redis.password}")
-    private String redisPassword;
+    @Value("${aws.concurrency.limit.max}")
+    private int awsMaxConcurrencyLimit;
+
+    @Value("${aws.throttle.max.retries}")
+    private int awsThrottleMaxRetries;
+
+    @Value("${aws.throttle.backoff.base.millis}")
+    private long awsThrottleBaseBackoffMillis;
+
+    @Value("${aws.throttle.backoff.max.millis}")
+    private long awsThrottleMaxBackoffMillis;
+
+    @Value("${redis.max.in.flight}")
+    private int redisMaxInFlight;
+
+    @Value("${redis.max.wait.millis}")
+    private long redisMaxWaitMillis;
 
-    @Value("${redis.port}")
-    private int redisPort;
 
     /**
      * Bean to configure property placeholder.
@@ -66,17 +120,59 @@ public class Config implements AsyncConfigurer, SchedulingConfigurer {
         return new PropertySourcesPlaceholderConfigurer();
     }
 
-    @Bean
-    public AWSCredentialsProvider awsCredentialsProvider() {
-        return new ClasspathPropertiesFileCredentialsProvider();
+    /**
+     * Accounts and regions processed by the job. Each target has its own client and rate limiting layer, so its own
+     * throttle budget. Without configured targets, the account and region of the terminator credentials are processed.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public AutoScalingTargets autoScalingTargets(AutoScalingClientFactory autoScalingClientFactory,
+                                                 MetricsRegistry metricsRegistry) {
+        List<AutoScalingTarget> targets = new ArrayList<AutoScalingTarget>();
+        List<TargetDefinition> definitions = TargetDefinition.parse(autoScalingTargets);
+        if (definitions.isEmpty()) {
+            targets.add(new AutoScalingTarget(null,
+                rateLimitedAutoScalingClient(null, autoScalingClientFactory, metricsRegistry)));
+        }
+        for (TargetDefinition definition : definitions) {
+            targets.add(new AutoScalingTarget(definition,
+                rateLimitedAutoScalingClient(definition, autoScalingClientFactory, metricsRegistry)));
+        }
+        return new AutoScalingTargets(targets);
     }
 
     /**
-     * Client Bean to interact with AutoScaling API (Async Version).
+     * Rate limiting layer shared by all the calls made to a target. Asynchronous calls are executed by a bounded thread
+     * pool, so number of AWS calls in flight does not depend on number of auto scaling groups being processed. Unless
+     * configured, the pool has as many threads as the maximum concurrency limit, so the adaptive concurrency limit and
+     * not the pool size bounds the calls in flight.
+     *
+     * @param definition - Account and region of the target, null for the default target
      */
-    @Bean
-    public AmazonAutoScalingAsync autoScalingAsyncClient() {
-        return new AmazonAutoScalingAsyncClient(awsCredentialsProvider());
+    private RateLimitedAutoScalingClient rateLimitedAutoScalingClient(TargetDefinition definition,
+                                                                      AutoScalingClientFactory autoScalingClientFactory,
+                                                                      MetricsRegistry metricsRegistry) {
+        ExecutorService awsClientExecutor = Executors.newFixedThreadPool(awsClientPoolSize > 0 ? awsClientPoolSize :
+            awsMaxConcurrencyLimit);
+        AmazonAutoScalingAsync autoScalingClient = autoScalingClientFactory.create(definition, awsClientExecutor);
+        RateLimitedAutoScalingClient rateLimitedClient = new RateLimitedAutoScalingClient(autoScalingClient,
+            awsClientExecutor, new AdaptiveConcurrencyLimiter(awsInitialConcurrencyLimit, awsMinConcurrencyLimit,
+                awsMaxConcurrencyLimit));
+        rateLimitedClient.setDefaultRequestsPerSecond(awsRequestsPerSecond);
+        rateLimitedClient.setOperationRequestsPerSecond(parseOperationRequestsPerSecond(awsOperationRequestsPerSecond));
+        rateLimitedClient.setMaxRetries(awsThrottleMaxRetries);
+        rateLimitedClient.setBaseBackoffMillis(awsThrottleBaseBackoffMillis);
+        rateLimitedClient.setMaxBackoffMillis(awsThrottleMaxBackoffMillis);
+        rateLimitedClient.setMetricsRegistry(metricsRegistry);
+        return rateLimitedClient;
+    }
+
+    /**
+     * Client Bean to interact with AutoScaling API (Async Version) of the first target. All the calls are rate limited
+     * and throttled calls are retried. Client is shut down with the targets.
+     */
+    @Bean(destroyMethod = "")
+    public AmazonAutoScalingAsync autoScalingAsyncClient(AutoScalingTargets autoScalingTargets) {
+        return autoScalingTargets.getTargets().get(0).getClient();
     }
 
     /**
@@ -91,6 +187,19 @@ public class Config implements AsyncConfigurer, SchedulingConfigurer {
         return taskScheduler;
     }
 
+    /**
+     * Task Scheduler thread pool for housekeeping tasks (e.g. flushing job results to Redis), kept apart from the
+     * scheduler thread pool so housekeeping never delays the job.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public TaskScheduler backgroundTaskScheduler() {
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(backgroundPoolSize);
+        taskScheduler.setThreadGroupName("Background Thread Pool");
+        taskScheduler.setThreadNamePrefix("Background-");
+        return taskScheduler;
+    }
+
     /**
      * Set Task Scheduler for Scheduling jobs
      */
@@ -100,42 +209,53 @@ public class Config implements AsyncConfigurer, SchedulingConfigurer {
     }
 
     /**
-     * Set Async Executor for all the methods annotated with @Async annotation.
+     * Thread pool applying the rules to auto scaling groups, sized as per the executor mode (see {@link ExecutorMode}).
+     * Auto scaling groups wait in a bounded queue taking them in priority order, dispatch waits for room in the queue
+     * once it is full.
      */
-    @Override
     @Bean(destroyMethod = "shutdown")
-    public Executor getAsyncExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(executorPoolSize);
-        executor.setMaxPoolSize(executorMaxPoolSize);
+    public JobWorkExecutor ruleExecutor() {
+        JobWorkExecutor executor = new JobWorkExecutor(executorQueuePriority);
+        if (executorMode == ExecutorMode.THREAD_PER_GROUP) {
+            //Threads beyond the core size are only started once the queue is full, so all of them are core threads.
+            executor.setCorePoolSize(executorMaxInFlight);
+            executor.setMaxPoolSize(executorMaxInFlight);
+            executor.setAllowCoreThreadTimeOut(true);
+        }
+        else {
+            executor.setCorePoolSize(executorPoolSize);
+            executor.setMaxPoolSize(executorMaxPoolSize);
+        }
         executor.setQueueCapacity(executorQueueCapacity);
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         executor.setThreadGroupName("Core Executor Thread Pool");
         executor.setThreadNamePrefix("Executor-");
         return executor;
     }
 
     /**
-     * Redis Connection Factory Bean
+     * Thread pool retrieving auto scaling groups of the targets in parallel. Targets beyond the pool size wait for
+     * their turn, one page at a time.
      */
-    @Bean(destroyMethod = "destroy")
-    public RedisConnectionFactory redisConnectionFactory() {
-        JedisConnectionFactory redisConnectionFactory = new JedisConnectionFactory();
-        redisConnectionFactory.setHostName(redisHost);
-        redisConnectionFactory.setPassword(redisPassword);
-        redisConnectionFactory.setPort(redisPort);
-        return redisConnectionFactory;
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor dispatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(dispatchPoolSize);
+        executor.setMaxPoolSize(dispatchPoolSize);
+        executor.setThreadGroupName("Dispatch Thread Pool");
+        executor.setThreadNamePrefix("Dispatch-");
+        return executor;
     }
 
     /**
      * RedisTemplate that provides a high level abstraction for performing various Redis operations. It can be injected
      * like @Autowired private RedisTemplate<String, String> template; or can also be injected as ListOperations,
      * ValueOperations, SetOperations, ZSetOperations, and HashOperations (Property Editors are used to inject template
-     * as Operations)
+     * as Operations). Redis calls in flight are bounded across all the users of the template.
      */
     @Bean
-    public RedisTemplate redisTemplate() {
-        return new StringRedisTemplate(redisConnectionFactory());
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        return new StringRedisTemplate(new BoundedRedisConnectionFactory(redisConnectionFactory, redisMaxInFlight,
+            redisMaxWaitMillis));
     }
 
     /**
@@ -144,7 +264,19 @@ public class Config implements AsyncConfigurer, SchedulingConfigurer {
     @Bean
     public BoundValueOperations<String, Long> jobSequenceValueOps(
         @Value("${redis.job.sequence.key}")
-        String jobSequenceKey) {
-        return redisTemplate().boundValueOps(jobSequenceKey);
+        String jobSequenceKey, RedisConnectionFactory redisConnectionFactory) {
+        return redisTemplate(redisConnectionFactory).boundValueOps(jobSequenceKey);
+    }
+
+    /**
+     * Parse per operation request rates configured as operation:rate pairs separated by commas.
+     */
+    private static Map<String, Double> parseOperationRequestsPerSecond(String operationRequestsPerSecond) {
+        Map<String, Double> requestsPerSecond = new HashMap<String, Double>();
+        for (Map.Entry<String, String> operationRate : Splitter.on(',').omitEmptyStrings().trimResults()
+            .withKeyValueSeparator(':').split(operationRequestsPerSecond).entrySet()) {
+            requestsPerSecond.put(operationRate.getKey().trim(), Double.valueOf(operationRate.getValue().trim()));
+        }
+        return requestsPerSecond;
     }
 }
@@ -0,0 +1,17 @@
+package com.sample.autoscaling.config;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Spring Context Configuration of the long running terminator: components are found by classpath scanning (which
+ * picks up {@link Config}) and the job is scheduled by its cron expression. See {@link OneShotContext} to run the job
+ * once instead.
+ */
+@Configuration
+@ComponentScan("com.sample.autoscaling")
+@EnableScheduling
+public class DaemonConfig {
+
+}
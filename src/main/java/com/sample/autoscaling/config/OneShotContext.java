@@ -0,0 +1,99 @@
+package com.sample.autoscaling.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.sample.autoscaling.cluster.ClusterMembership;
+import com.sample.autoscaling.events.ScalingEventConsumer;
+import com.sample.autoscaling.job.AutoScalingGroupSelector;
+import com.sample.autoscaling.job.JobRunCoordinator;
+import com.sample.autoscaling.job.JobSequenceAllocator;
+import com.sample.autoscaling.job.TerminateInstanceJob;
+import com.sample.autoscaling.metrics.JobMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.replay.SnapshotRecorder;
+import com.sample.autoscaling.result.JobHistoryCompactor;
+import com.sample.autoscaling.result.JobHistoryQuery;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.result.OutcomeCodec;
+import com.sample.autoscaling.rules.AutoScalingGroupActivityRule;
+import com.sample.autoscaling.rules.AutoScalingGroupInstancesCountRule;
+import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.rules.RuleOutcomeCache;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.simulator.SimulatorConfig;
+import com.sample.autoscaling.termination.AvailabilityZoneBalancedInstanceSelector;
+import com.sample.autoscaling.termination.OldestInstanceSelector;
+import com.sample.autoscaling.termination.RandomInstanceSelector;
+import com.sample.autoscaling.termination.TerminationEngine;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Spring Context running the job once, e.g. from a Kubernetes CronJob, where context startup is a large part of the
+ * run. Components are registered from a fixed list instead of classpath scanning, the job is not scheduled and every
+ * bean is initialized lazily: only the beans a run depends on are created, when the job is first looked up, so AWS,
+ * SQS and Redis clients not used by the run (e.g. by job history compaction or AutoScaling notifications) are never
+ * created.
+ */
+public final class OneShotContext {
+
+    /**
+     * Profile active in the one-shot context.
+     */
+    public static final String PROFILE = "one-shot";
+
+    /**
+     * Components of the application, the ones found by classpath scanning in {@link DaemonConfig}.
+     */
+    private static final List<Class<?>> COMPONENTS = Collections.unmodifiableList(Arrays.<Class<?>>asList(
+        Config.class, AwsConfig.class, SimulatorConfig.class, ClusterMembership.class, ScalingEventConsumer.class,
+        AutoScalingGroupSelector.class, JobRunCoordinator.class, JobSequenceAllocator.class,
+        TerminateInstanceJob.class, JobMetrics.class, MetricsRegistry.class, JobHistoryCompactor.class,
+        JobHistoryQuery.class, JobResultWriter.class, OutcomeCodec.class, SnapshotRecorder.class,
+        AutoScalingGroupActivityRule.class, AutoScalingGroupInstancesCountRule.class, RuleHandler.class,
+        RuleOutcomeCache.class, ScalingActivityCache.class, ScalingActivityIndex.class,
+        AvailabilityZoneBalancedInstanceSelector.class, OldestInstanceSelector.class, RandomInstanceSelector.class,
+        TerminationEngine.class));
+
+    private OneShotContext() {
+    }
+
+    /**
+     * Create the context, not refreshed yet so property sources can still be added.
+     *
+     * @param activeProfiles - Profiles active in addition to the one-shot profile, e.g. "simulator". They have to be
+     *                       known here, as components are filtered by profile when registered.
+     */
+    public static AnnotationConfigApplicationContext create(String... activeProfiles) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().addActiveProfile(PROFILE);
+        for (String activeProfile : activeProfiles) {
+            context.getEnvironment().addActiveProfile(activeProfile);
+        }
+        context.register(COMPONENTS.toArray(new Class<?>[COMPONENTS.size()]));
+        context.addBeanFactoryPostProcessor(new LazyInitialization());
+        return context;
+    }
+
+    public static List<Class<?>> getComponents() {
+        return COMPONENTS;
+    }
+
+    /**
+     * Mark every bean lazy, so beans are created when first needed rather than when the context is refreshed.
+     */
+    private static class LazyInitialization implements BeanFactoryPostProcessor {
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                beanFactory.getBeanDefinition(beanName).setLazyInit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.sample.autoscaling.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for the notification queue, events are published directly by the AutoScaling simulator or by
+ * tests.
+ */
+public class InMemoryScalingEventQueue implements ScalingEventQueue {
+
+    private final BlockingQueue<ScalingEvent> events = new LinkedBlockingQueue<ScalingEvent>();
+
+    public void publish(ScalingEvent event) {
+        events.add(event);
+    }
+
+    @Override
+    public List<ScalingEvent> receive(int maxEvents, long waitMillis) throws InterruptedException {
+        ScalingEvent first = events.poll(waitMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<ScalingEvent> received = new ArrayList<ScalingEvent>(maxEvents);
+        received.add(first);
+        events.drainTo(received, maxEvents - 1);
+        return received;
+    }
+
+    public int size() {
+        return events.size();
+    }
+}
@@ -0,0 +1,49 @@
+package com.sample.autoscaling.events;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+
+/**
+ * Notification that something happened in an auto scaling group: a scaling activity started, progressed or completed,
+ * or an instance entered a lifecycle hook. Lifecycle notifications carry no activity, they only tell that latest
+ * scaling activity of the auto scaling group is about to change.
+ */
+public final class ScalingEvent {
+
+    private final String autoScalingGroupName;
+
+    private final String autoScalingGroupARN;
+
+    private final Activity activity;
+
+    /**
+     * @param autoScalingGroupARN - ARN of the auto scaling group, used to find its target, may be null with a single
+     * target
+     * @param activity - Scaling activity the notification is about, null for lifecycle notifications
+     */
+    public ScalingEvent(String autoScalingGroupName, String autoScalingGroupARN, Activity activity) {
+        this.autoScalingGroupName = autoScalingGroupName;
+        this.autoScalingGroupARN = autoScalingGroupARN;
+        this.activity = activity;
+    }
+
+    public String getAutoScalingGroupName() {
+        return autoScalingGroupName;
+    }
+
+    public String getAutoScalingGroupARN() {
+        return autoScalingGroupARN;
+    }
+
+    /**
+     * @return Scaling activity, null if this is a lifecycle notification.
+     */
+    public Activity getActivity() {
+        return activity;
+    }
+
+    @Override
+    public String toString() {
+        return autoScalingGroupName + (activity == null ? " lifecycle" : " " + activity.getActivityId() + " " +
+            activity.getStatusCode());
+    }
+}
@@ -0,0 +1,155 @@
+package com.sample.autoscaling.events;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.AmazonClientException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sample.autoscaling.config.OneShotContext;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@link ScalingActivityIndex} up to date from the AutoScaling notifications of the notification queue, when
+ * event-driven activity tracking is enabled. Notifications are received on a thread of their own, independently of
+ * job runs. Not part of a one-shot run, which ends before notifications could make up for the polled activities.
+ */
+@Component
+@Profile("!" + OneShotContext.PROFILE)
+public class ScalingEventConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScalingEventConsumer.class);
+
+    /**
+     * Pause after the queue could not be read, so an unreachable queue is not retried in a tight loop.
+     */
+    private static final long ERROR_BACKOFF_MILLIS = 5000;
+
+    @Autowired
+    private ScalingEventQueue scalingEventQueue;
+
+    @Autowired
+    private ScalingActivityIndex scalingActivityIndex;
+
+    @Autowired
+    private AutoScalingTargets autoScalingTargets;
+
+    @Value("${scaling.activity.events.batch.size}")
+    private int batchSize;
+
+    @Value("${scaling.activity.events.wait.millis}")
+    private long waitMillis;
+
+    private ExecutorService executor;
+
+    private volatile boolean running;
+
+    private final AtomicLong eventCount = new AtomicLong();
+
+    private final AtomicLong ignoredEventCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (!scalingActivityIndex.isEnabled()) {
+            return;
+        }
+        running = true;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("ScalingEvents-%d").build());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    consume();
+                }
+            }
+        });
+        LOGGER.info("Scaling activities are tracked from AutoScaling notifications");
+    }
+
+    /**
+     * Receive a batch of notifications and apply them to the index.
+     */
+    public void consume() {
+        List<ScalingEvent> events;
+        try {
+            events = scalingEventQueue.receive(batchSize, waitMillis);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return;
+        }
+        catch (AmazonClientException ace) {
+            LOGGER.error("Could not receive AutoScaling notifications. Error Message: {}", ace.getMessage());
+            pause();
+            return;
+        }
+        for (ScalingEvent event : events) {
+            apply(event);
+        }
+    }
+
+    /**
+     * Apply a notification to the index. Lifecycle notifications drop the auto scaling group from the index, its
+     * activities are polled next time they are needed.
+     */
+    public void apply(ScalingEvent event) {
+        eventCount.incrementAndGet();
+        String key;
+        try {
+            key = autoScalingTargets.getTarget(event.getAutoScalingGroupName(), event.getAutoScalingGroupARN())
+                .key(event.getAutoScalingGroupName());
+        }
+        catch (IllegalArgumentException iae) {
+            //Notification of an account or region this terminator does not process.
+            LOGGER.debug("Ignoring notification {}. Error Message: {}", event, iae.getMessage());
+            ignoredEventCount.incrementAndGet();
+            return;
+        }
+        if (event.getActivity() == null) {
+            scalingActivityIndex.invalidate(key);
+        }
+        else if (!scalingActivityIndex.update(key, event.getActivity())) {
+            //Duplicate or out of order notification.
+            ignoredEventCount.incrementAndGet();
+        }
+    }
+
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    public long getIgnoredEventCount() {
+        return ignoredEventCount.get();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(ERROR_BACKOFF_MILLIS);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.sample.autoscaling.events;
+
+import java.util.List;
+
+/**
+ * Queue AutoScaling notifications are delivered to. Like most notification channels, implementations may deliver an
+ * event more than once, out of order or not at all, so events are only trusted when newer than what is already known
+ * and scaling activities are still polled from time to time to reconcile.
+ */
+public interface ScalingEventQueue {
+
+    /**
+     * Receive the next events, waiting for some to arrive when the queue is empty. Received events are removed from the
+     * queue.
+     *
+     * @param maxEvents - Maximum number of events returned
+     * @param waitMillis - Maximum time to wait for an event
+     *
+     * @return Events received, empty if none arrived in time.
+     */
+    List<ScalingEvent> receive(int maxEvents, long waitMillis) throws InterruptedException;
+}
@@ -0,0 +1,143 @@
+package com.sample.autoscaling.events;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notification queue backed by an SQS queue subscribed to the AutoScaling notifications of the auto scaling groups,
+ * either through an SNS topic or an EventBridge rule. Messages are deleted as soon as they are received: an event lost
+ * on the way is caught up by reconciliation polling anyway.
+ */
+public class SqsScalingEventQueue implements ScalingEventQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqsScalingEventQueue.class);
+
+    /**
+     * Limits of a single ReceiveMessage call.
+     */
+    private static final int MAX_MESSAGES = 10;
+
+    private static final long MAX_WAIT_MILLIS = 20000;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AmazonSQS sqsClient;
+
+    private final String queueUrl;
+
+    /**
+     * @param sqsClient - Client of the region of the queue
+     * @param queueUrl - URL of the queue
+     */
+    public SqsScalingEventQueue(AmazonSQS sqsClient, String queueUrl) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+    }
+
+    @Override
+    public List<ScalingEvent> receive(int maxEvents, long waitMillis) {
+        List<Message> messages = sqsClient.receiveMessage(new ReceiveMessageRequest(queueUrl)
+            .withMaxNumberOfMessages(Math.max(1, Math.min(maxEvents, MAX_MESSAGES)))
+            .withWaitTimeSeconds((int) (Math.min(waitMillis, MAX_WAIT_MILLIS) / 1000))).getMessages();
+        List<ScalingEvent> events = new ArrayList<ScalingEvent>(messages.size());
+        List<DeleteMessageBatchRequestEntry> receipts = new ArrayList<DeleteMessageBatchRequestEntry>(messages.size());
+        for (Message message : messages) {
+            receipts.add(new DeleteMessageBatchRequestEntry(message.getMessageId(), message.getReceiptHandle()));
+            ScalingEvent event = parse(message.getBody());
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (!receipts.isEmpty()) {
+            try {
+                sqsClient.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, receipts));
+            }
+            catch (AmazonClientException ace) {
+                //Messages will be received again, applying an event twice is harmless.
+                LOGGER.warn("Could not delete {} notifications. Error Message: {}", receipts.size(), ace.getMessage());
+            }
+        }
+        return events;
+    }
+
+    public void shutdown() {
+        sqsClient.shutdown();
+    }
+
+    /**
+     * Parse an AutoScaling notification, as delivered by SNS (notification wrapped in an SNS envelope, or raw) or by
+     * EventBridge (notification in the detail of the event).
+     *
+     * @return Event, or null if message is not a notification about an auto scaling group, e.g. a test notification.
+     */
+    public static ScalingEvent parse(String body) {
+        try {
+            JsonNode message = OBJECT_MAPPER.readTree(body);
+            if ("Notification".equals(message.path("Type").asText()) && message.has("Message")) {
+                message = OBJECT_MAPPER.readTree(message.get("Message").asText());
+            }
+            String autoScalingGroupARN = text(message, "AutoScalingGroupARN");
+            if (message.has("detail")) {
+                JsonNode resources = message.path("resources");
+                autoScalingGroupARN = resources.size() > 0 ? resources.get(0).asText() : null;
+                message = message.get("detail");
+            }
+            String autoScalingGroupName = text(message, "AutoScalingGroupName");
+            if (autoScalingGroupName == null) {
+                return null;
+            }
+            if (message.has("LifecycleTransition")) {
+                return new ScalingEvent(autoScalingGroupName, autoScalingGroupARN, null);
+            }
+            String activityId = text(message, "ActivityId");
+            if (activityId == null) {
+                return null;
+            }
+            Activity activity = new Activity().withActivityId(activityId)
+                .withAutoScalingGroupName(autoScalingGroupName).withDescription(text(message, "Description"))
+                .withCause(text(message, "Cause")).withStatusCode(text(message, "StatusCode"))
+                .withStartTime(date(message, "StartTime")).withEndTime(date(message, "EndTime"));
+            if (message.hasNonNull("Progress")) {
+                activity.setProgress(message.get("Progress").asInt());
+            }
+            else {
+                //EventBridge events are only sent once an activity has completed.
+                activity.setProgress(activity.getEndTime() != null ? 100 : 0);
+            }
+            return new ScalingEvent(autoScalingGroupName, autoScalingGroupARN, activity);
+        }
+        catch (IOException ioe) {
+            LOGGER.warn("Could not parse notification {}. Error Message: {}", body, ioe.getMessage());
+            return null;
+        }
+        catch (IllegalArgumentException iae) {
+            LOGGER.warn("Could not parse notification {}. Error Message: {}", body, iae.getMessage());
+            return null;
+        }
+    }
+
+    private static String text(JsonNode message, String field) {
+        JsonNode value = message.get(field);
+        return value == null || value.isNull() || value.asText().isEmpty() ? null : value.asText();
+    }
+
+    private static Date date(JsonNode message, String field) {
+        String value = text(message, field);
+        return value == null ? null : new DateTime(value).toDate();
+    }
+}
@@ -0,0 +1,111 @@
+package com.sample.autoscaling.job;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterator over the pages of auto scaling groups in account. Each call to next() fetches exactly one page from the
+ * AutoScaling API, following the NextToken of the previous page, so callers can start working on a page while the
+ * remaining pages are still to be fetched. Only one page is held in memory at a time.
+ * <p/>
+ * Throttled and failed requests are already retried by the client, so a request failing here ends the iteration:
+ * callers must check {@link #isFailed()} to tell a failed retrieval from the last page.
+ */
+public class AutoScalingGroupPageIterator implements Iterator<List<AutoScalingGroup>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutoScalingGroupPageIterator.class);
+
+    private final AmazonAutoScalingAsync autoScalingClient;
+
+    private final int pageSize;
+
+    /**
+     * Token of the next page, null when the next page is the first page or there are no more pages.
+     */
+    private String nextToken;
+
+    private boolean firstPage = true;
+
+    /**
+     * Error which stopped the iteration, null unless a request failed.
+     */
+    private AmazonClientException failure;
+
+    /**
+     * @param autoScalingClient - Client used to describe auto scaling groups
+     * @param pageSize - Maximum number of auto scaling groups requested per page
+     */
+    public AutoScalingGroupPageIterator(AmazonAutoScalingAsync autoScalingClient, int pageSize) {
+        this.autoScalingClient = autoScalingClient;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return firstPage || nextToken != null;
+    }
+
+    /**
+     * Fetch the next page of auto scaling groups. If the request fails, error is logged and kept (see
+     * {@link #getFailure()}), an empty page is returned and iteration stops.
+     *
+     * @return Auto scaling groups of the next page.
+     */
+    @Override
+    public List<AutoScalingGroup> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        DescribeAutoScalingGroupsRequest request =
+            new DescribeAutoScalingGroupsRequest().withMaxRecords(pageSize).withNextToken(nextToken);
+        firstPage = false;
+        nextToken = null;
+        try {
+            //This is a blocking call because next page can only be requested once token of this page is known.
+            DescribeAutoScalingGroupsResult result = autoScalingClient.describeAutoScalingGroups(request);
+            nextToken = result.getNextToken();
+            return result.getAutoScalingGroups();
+        }
+        catch (AmazonServiceException ase) {
+            LOGGER.error("Request was rejected with an error response. Error Message:{}, HTTP Status Code:{}, " +
+                "AWS Error Code:{}, Error Type:{}, Request ID:{}", ase.getMessage(), ase.getStatusCode(),
+                ase.getErrorCode(), ase.getErrorType(), ase.getRequestId());
+            failure = ase;
+        }
+        catch (AmazonClientException ace) {
+            LOGGER.error("Error Message: {}", ace.getMessage());
+            failure = ace;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return True if a request failed, auto scaling groups of the remaining pages have not been retrieved.
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * @return Error of the request which failed, null if none did.
+     */
+    public AmazonClientException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Auto scaling group pages are read only");
+    }
+}
@@ -0,0 +1,200 @@
+package com.sample.autoscaling.job;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.TagDescription;
+import com.google.common.base.Splitter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the auto scaling groups the job may touch, as soon as they are retrieved and before any rule is applied, so
+ * auto scaling groups filtered out cost no AWS call, no executor thread and no job result.
+ * <p/>
+ * Selection is configured with name patterns (* matches any characters, ? a single one) and tag selectors (key=value,
+ * or key alone for any value). An auto scaling group is selected unless its name matches an excluded pattern, or does
+ * not match any included pattern when some are configured, or it has an opt-out tag set to anything but false, or it
+ * has an excluded tag, or it has none of the included tags when some are configured. Patterns of a list are compiled
+ * into a single regular expression and tag selectors into a lookup by tag key, so selecting a group costs one match
+ * per name list and one lookup per tag.
+ */
+@Component
+public class AutoScalingGroupSelector {
+
+    private final Pattern includedNames;
+
+    private final Pattern excludedNames;
+
+    private final Map<String, Set<String>> includedTags;
+
+    private final Map<String, Set<String>> excludedTags;
+
+    private final Set<String> optOutTags;
+
+    private final boolean filtering;
+
+    private final AtomicLong nameFilteredCount = new AtomicLong();
+
+    private final AtomicLong tagFilteredCount = new AtomicLong();
+
+    private final AtomicLong optedOutCount = new AtomicLong();
+
+    /**
+     * All arguments are comma separated lists, empty when not configured.
+     *
+     * @param includeNames - Name patterns of the auto scaling groups to select, empty to select any name
+     * @param excludeNames - Name patterns of the auto scaling groups never to select
+     * @param includeTags - Tag selectors of the auto scaling groups to select, empty to select any tags
+     * @param excludeTags - Tag selectors of the auto scaling groups never to select
+     * @param optOutTags - Tag keys auto scaling groups set to opt out of the job
+     *
+     * @throws IllegalArgumentException if a tag selector has no key
+     */
+    @Autowired
+    public AutoScalingGroupSelector(
+        @Value("${selection.include.names}")
+        String includeNames,
+        @Value("${selection.exclude.names}")
+        String excludeNames,
+        @Value("${selection.include.tags}")
+        String includeTags,
+        @Value("${selection.exclude.tags}")
+        String excludeTags,
+        @Value("${selection.opt.out.tags}")
+        String optOutTags) {
+        this.includedNames = compileNamePatterns(includeNames);
+        this.excludedNames = compileNamePatterns(excludeNames);
+        this.includedTags = compileTagSelectors(includeTags);
+        this.excludedTags = compileTagSelectors(excludeTags);
+        this.optOutTags = new HashSet<String>(split(optOutTags));
+        this.filtering = includedNames != null || excludedNames != null || !this.includedTags.isEmpty() ||
+            !this.excludedTags.isEmpty() || !this.optOutTags.isEmpty();
+    }
+
+    /**
+     * Check if the job may touch an auto scaling group. Auto scaling groups filtered out are counted by reason.
+     */
+    public boolean isSelected(AutoScalingGroup autoScalingGroup) {
+        if (!filtering) {
+            return true;
+        }
+        String autoScalingGroupName = autoScalingGroup.getAutoScalingGroupName();
+        if ((excludedNames != null && excludedNames.matcher(autoScalingGroupName).matches()) ||
+            (includedNames != null && !includedNames.matcher(autoScalingGroupName).matches())) {
+            nameFilteredCount.incrementAndGet();
+            return false;
+        }
+        if (optOutTags.isEmpty() && includedTags.isEmpty() && excludedTags.isEmpty()) {
+            return true;
+        }
+        boolean included = includedTags.isEmpty();
+        List<TagDescription> tags = autoScalingGroup.getTags();
+        for (TagDescription tag : tags != null ? tags : Collections.<TagDescription>emptyList()) {
+            if (optOutTags.contains(tag.getKey()) && !"false".equalsIgnoreCase(tag.getValue())) {
+                optedOutCount.incrementAndGet();
+                return false;
+            }
+            if (matches(excludedTags, tag)) {
+                tagFilteredCount.incrementAndGet();
+                return false;
+            }
+            included = included || matches(includedTags, tag);
+        }
+        if (!included) {
+            tagFilteredCount.incrementAndGet();
+        }
+        return included;
+    }
+
+    /**
+     * Get the number of auto scaling groups filtered out by name.
+     */
+    public long getNameFilteredCount() {
+        return nameFilteredCount.get();
+    }
+
+    /**
+     * Get the number of auto scaling groups filtered out by an excluded tag, or for lack of an included tag.
+     */
+    public long getTagFilteredCount() {
+        return tagFilteredCount.get();
+    }
+
+    /**
+     * Get the number of auto scaling groups filtered out by an opt-out tag.
+     */
+    public long getOptedOutCount() {
+        return optedOutCount.get();
+    }
+
+    private static boolean matches(Map<String, Set<String>> tagSelectors, TagDescription tag) {
+        Set<String> values = tagSelectors.get(tag.getKey());
+        return values != null && (values.isEmpty() || values.contains(tag.getValue()));
+    }
+
+    /**
+     * @return Pattern matching any of the name patterns, null if there is none.
+     */
+    private static Pattern compileNamePatterns(String namePatterns) {
+        StringBuilder regex = new StringBuilder();
+        for (String namePattern : split(namePatterns)) {
+            regex.append(regex.length() > 0 ? "|" : "");
+            int literalStart = 0;
+            for (int index = 0; index <= namePattern.length(); index++) {
+                char character = index < namePattern.length() ? namePattern.charAt(index) : '*';
+                if (character == '*' || character == '?') {
+                    if (index > literalStart) {
+                        regex.append(Pattern.quote(namePattern.substring(literalStart, index)));
+                    }
+                    if (index < namePattern.length()) {
+                        regex.append(character == '*' ? ".*" : ".");
+                    }
+                    literalStart = index + 1;
+                }
+            }
+        }
+        return regex.length() > 0 ? Pattern.compile(regex.toString()) : null;
+    }
+
+    /**
+     * @return Values selected by tag key, an empty set selects any value.
+     */
+    private static Map<String, Set<String>> compileTagSelectors(String tagSelectors) {
+        Map<String, Set<String>> compiled = new HashMap<String, Set<String>>();
+        for (String tagSelector : split(tagSelectors)) {
+            List<String> parts = Splitter.on('=').limit(2).trimResults().splitToList(tagSelector);
+            if (parts.get(0).isEmpty()) {
+                throw new IllegalArgumentException("Invalid tag selector " + tagSelector + ", expected key[=value]");
+            }
+            Set<String> values = compiled.get(parts.get(0));
+            if (values == null) {
+                values = new HashSet<String>();
+                compiled.put(parts.get(0), values);
+            }
+            else if (values.isEmpty()) {
+                //Key already selects any value.
+                continue;
+            }
+            if (parts.size() > 1) {
+                values.add(parts.get(1));
+            }
+            else {
+                values.clear();
+            }
+        }
+        return compiled;
+    }
+
+    private static List<String> split(String list) {
+        return Splitter.on(',').omitEmptyStrings().trimResults().splitToList(list);
+    }
+}
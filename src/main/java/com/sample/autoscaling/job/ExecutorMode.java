@@ -0,0 +1,20 @@
+package com.sample.autoscaling.job;
+
+/**
+ * How the rule executor ({@link JobWorkExecutor}) is sized.
+ */
+public enum ExecutorMode {
+
+    /**
+     * Fixed pool of a few threads. Evaluations in flight are bounded by the pool size.
+     */
+    POOLED,
+
+    /**
+     * A thread per auto scaling group being evaluated, up to the maximum number of evaluations in flight. Threads are
+     * started on demand and stop once idle, so AWS and Redis calls in flight are bounded by their own limits (the AWS
+     * concurrency limiter and the Redis connection bound) rather than by the pool size. Threads are platform threads,
+     * so the maximum number of evaluations in flight should stay close to the AWS concurrency limit.
+     */
+    THREAD_PER_GROUP
+}
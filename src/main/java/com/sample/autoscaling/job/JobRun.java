@@ -0,0 +1,155 @@
+package com.sample.autoscaling.job;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.sample.autoscaling.target.AutoScalingTarget;
+
+/**
+ * State of a single run of the job for a target. Keeps track of the auto scaling groups dispatched for processing
+ * and not completed yet, so the job can wait for them with a deadline. Once a run has expired, remaining auto scaling
+ * groups are cancelled: rule handler stops processing them and their late results are discarded.
+ */
+public class JobRun {
+
+    private final AutoScalingTarget target;
+
+    private final Long jobSequenceNumber;
+
+    private final long deadlineMillis;
+
+    /**
+     * Auto scaling groups not completed yet, mapped to true while pending and to false once claimed for completion.
+     */
+    private final ConcurrentMap<String, Boolean> pendingGroups = new ConcurrentHashMap<String, Boolean>();
+
+    private volatile boolean dispatchFinished;
+
+    private volatile boolean expired;
+
+    /**
+     * @param target - Account and region whose auto scaling groups are processed
+     * @param jobSequenceNumber - Job Sequence Number of this run
+     * @param deadlineMillis - Time (epoch millis) by which all the auto scaling groups should be processed
+     */
+    public JobRun(AutoScalingTarget target, Long jobSequenceNumber, long deadlineMillis) {
+        this.target = target;
+        this.jobSequenceNumber = jobSequenceNumber;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public AutoScalingTarget getTarget() {
+        return target;
+    }
+
+    public Long getJobSequenceNumber() {
+        return jobSequenceNumber;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Register an auto scaling group before dispatching it for processing.
+     *
+     * @return False if run has expired, auto scaling group should not be dispatched then.
+     */
+    public boolean register(String autoScalingGroupName) {
+        pendingGroups.put(autoScalingGroupName, Boolean.TRUE);
+        if (expired) {
+            //Whether or not it was cancelled along with the other pending groups, it is not processed.
+            pendingGroups.remove(autoScalingGroupName, Boolean.TRUE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mark that all the auto scaling groups of this run have been registered.
+     */
+    public void dispatchFinished() {
+        dispatchFinished = true;
+        signalIfDone();
+    }
+
+    /**
+     * Check if an auto scaling group still needs to be processed in this run.
+     *
+     * @return False if auto scaling group has been completed or cancelled.
+     */
+    public boolean isPending(String autoScalingGroupName) {
+        return !expired && Boolean.TRUE.equals(pendingGroups.get(autoScalingGroupName));
+    }
+
+    /**
+     * Claim a pending auto scaling group for completion. Run keeps waiting for the auto scaling group until
+     * {@link #complete(String)} is called, so its result can be recorded before the run is done.
+     *
+     * @return True if auto scaling group was pending, false if it was already claimed or has been cancelled because
+     * run expired. Result of the auto scaling group should only be recorded when true is returned.
+     */
+    public boolean claim(String autoScalingGroupName) {
+        return pendingGroups.replace(autoScalingGroupName, Boolean.TRUE, Boolean.FALSE);
+    }
+
+    /**
+     * Mark a claimed auto scaling group as processed, once its result has been recorded.
+     */
+    public void complete(String autoScalingGroupName) {
+        if (pendingGroups.remove(autoScalingGroupName, Boolean.FALSE)) {
+            signalIfDone();
+        }
+    }
+
+    /**
+     * Wait for all the auto scaling groups to be processed or for the deadline, whichever happens first.
+     *
+     * @return True if all the auto scaling groups were processed before the deadline.
+     */
+    public synchronized boolean awaitCompletion() throws InterruptedException {
+        long remainingMillis;
+        while (!isDone() && (remainingMillis = deadlineMillis - System.currentTimeMillis()) > 0) {
+            wait(remainingMillis);
+        }
+        return isDone();
+    }
+
+    /**
+     * Check if the deadline of this run has passed.
+     */
+    public boolean isPastDeadline() {
+        return System.currentTimeMillis() >= deadlineMillis;
+    }
+
+    /**
+     * Cancel all the auto scaling groups not claimed yet. Claimed auto scaling groups still record their result.
+     *
+     * @return Names of the cancelled auto scaling groups.
+     */
+    public List<String> expire() {
+        expired = true;
+        List<String> cancelledGroups = new ArrayList<String>();
+        for (String autoScalingGroupName : pendingGroups.keySet()) {
+            if (pendingGroups.remove(autoScalingGroupName, Boolean.TRUE)) {
+                cancelledGroups.add(autoScalingGroupName);
+            }
+        }
+        return cancelledGroups;
+    }
+
+    private boolean isDone() {
+        return dispatchFinished && pendingGroups.isEmpty();
+    }
+
+    private void signalIfDone() {
+        if (isDone()) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
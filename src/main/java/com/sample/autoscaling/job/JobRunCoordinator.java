@@ -0,0 +1,103 @@
+package com.sample.autoscaling.job;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sample.autoscaling.target.AutoScalingTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes sure only one run of the job is active at a time. A cron tick firing while a run is still active is skipped
+ * instead of waiting for the active run, so runs never overlap and never queue up behind a slow run. Each run gets a
+ * time budget, after which its remaining auto scaling groups are cancelled.
+ */
+@Component
+public class JobRunCoordinator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobRunCoordinator.class);
+
+    @Value("${job.run.time.budget.millis}")
+    private long runTimeBudgetMillis;
+
+    private final AtomicBoolean runActive = new AtomicBoolean();
+
+    private final AtomicLong skippedTickCount = new AtomicLong();
+
+    private final AtomicLong timedOutGroupCount = new AtomicLong();
+
+    private final AtomicLong completedRunCount = new AtomicLong();
+
+    private volatile long lastRunDurationMillis;
+
+    /**
+     * Try to start a new run.
+     *
+     * @return True if run can be started, false if another run is still active and this tick must be skipped.
+     */
+    public boolean tryStart() {
+        if (runActive.compareAndSet(false, true)) {
+            return true;
+        }
+        long skippedTicks = skippedTickCount.incrementAndGet();
+        LOGGER.warn("Previous Instance Termination job is still running, skipping this run ({} runs skipped so far)",
+            skippedTicks);
+        return false;
+    }
+
+    /**
+     * Create the state of a run started now, one per target. All the targets share the time budget of the run.
+     *
+     * @param jobSequenceNumber - Job Sequence Number of the run
+     * @param targets - Accounts and regions processed by the run
+     */
+    public List<JobRun> newRuns(Long jobSequenceNumber, List<AutoScalingTarget> targets) {
+        long deadlineMillis = System.currentTimeMillis() + runTimeBudgetMillis;
+        List<JobRun> jobRuns = new ArrayList<JobRun>(targets.size());
+        for (AutoScalingTarget target : targets) {
+            jobRuns.add(new JobRun(target, jobSequenceNumber, deadlineMillis));
+        }
+        return jobRuns;
+    }
+
+    /**
+     * Mark the active run as finished, so next tick can start a new run.
+     *
+     * @param durationMillis - Duration of the finished run
+     * @param timedOutGroups - Number of auto scaling groups cancelled because run exceeded its time budget
+     */
+    public void finish(long durationMillis, int timedOutGroups) {
+        lastRunDurationMillis = durationMillis;
+        timedOutGroupCount.addAndGet(timedOutGroups);
+        completedRunCount.incrementAndGet();
+        runActive.set(false);
+    }
+
+    public boolean isRunActive() {
+        return runActive.get();
+    }
+
+    public long getSkippedTickCount() {
+        return skippedTickCount.get();
+    }
+
+    public long getTimedOutGroupCount() {
+        return timedOutGroupCount.get();
+    }
+
+    public long getCompletedRunCount() {
+        return completedRunCount.get();
+    }
+
+    public long getLastRunDurationMillis() {
+        return lastRunDurationMillis;
+    }
+
+    public long getRunTimeBudgetMillis() {
+        return runTimeBudgetMillis;
+    }
+}
@@ -0,0 +1,86 @@
+package com.sample.autoscaling.job;
+
+/**
+ * Outcome of a run of the Instance Termination job, as counts. Terminations are counted once they complete, which is
+ * always within the run.
+ */
+public class JobRunSummary {
+
+    private final long jobSequenceNumber;
+
+    private final long startTimeMillis;
+
+    private final long durationMillis;
+
+    private final int autoScalingGroupCount;
+
+    private final int timedOutGroupCount;
+
+    private final int failedTargetCount;
+
+    private final long terminatedInstanceCount;
+
+    private final long failedTerminationCount;
+
+    public JobRunSummary(long jobSequenceNumber, long startTimeMillis, long durationMillis, int autoScalingGroupCount,
+                         int timedOutGroupCount, int failedTargetCount, long terminatedInstanceCount,
+                         long failedTerminationCount) {
+        this.jobSequenceNumber = jobSequenceNumber;
+        this.startTimeMillis = startTimeMillis;
+        this.durationMillis = durationMillis;
+        this.autoScalingGroupCount = autoScalingGroupCount;
+        this.timedOutGroupCount = timedOutGroupCount;
+        this.failedTargetCount = failedTargetCount;
+        this.terminatedInstanceCount = terminatedInstanceCount;
+        this.failedTerminationCount = failedTerminationCount;
+    }
+
+    public long getJobSequenceNumber() {
+        return jobSequenceNumber;
+    }
+
+    /**
+     * @return Start time of the run, in epoch millis.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return Number of auto scaling groups dispatched by this node, after filtering.
+     */
+    public int getAutoScalingGroupCount() {
+        return autoScalingGroupCount;
+    }
+
+    public int getTimedOutGroupCount() {
+        return timedOutGroupCount;
+    }
+
+    /**
+     * @return Number of targets (account and region) whose auto scaling groups could not all be retrieved.
+     */
+    public int getFailedTargetCount() {
+        return failedTargetCount;
+    }
+
+    public long getTerminatedInstanceCount() {
+        return terminatedInstanceCount;
+    }
+
+    public long getFailedTerminationCount() {
+        return failedTerminationCount;
+    }
+
+    /**
+     * @return True if auto scaling groups of every target were retrieved, every auto scaling group was processed within
+     * the time budget and no termination failed.
+     */
+    public boolean isComplete() {
+        return failedTargetCount == 0 && timedOutGroupCount == 0 && failedTerminationCount == 0;
+    }
+}
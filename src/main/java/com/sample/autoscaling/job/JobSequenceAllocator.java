@@ -0,0 +1,121 @@
+package com.sample.autoscaling.job;
+
+import java.util.Date;
+
+import javax.annotation.Resource;
+
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Allocates job sequence numbers from blocks leased from the Redis sequence, so starting a run does not wait for Redis.
+ * A block is leased with a single INCRBY and its numbers are then handed out locally. Next block is leased in
+ * background once half of the current block has been used, so a Redis outage shorter than half a block of runs goes
+ * unnoticed. Numbers left in a block when the node stops are never used.
+ * <p/>
+ * Sequence numbers are unique and increasing on each node. When several nodes share Redis, numbers of different nodes
+ * follow the order in which blocks were leased, so runs of the same time can be up to one block apart.
+ */
+@Component
+public class JobSequenceAllocator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobSequenceAllocator.class);
+
+    @Autowired
+    private BoundValueOperations<String, Long> jobSequenceValueOps;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Resource(name = "backgroundTaskScheduler")
+    private TaskScheduler backgroundTaskScheduler;
+
+    @Value("${job.sequence.block.size}")
+    private int blockSize;
+
+    /**
+     * Next number to hand out, and last number of the current block. Current block is exhausted when next is beyond
+     * last.
+     */
+    private long next = 1;
+
+    private long last;
+
+    /**
+     * Last number of the block leased ahead of time, 0 if none.
+     */
+    private long reservedLast;
+
+    private boolean leaseInProgress;
+
+    private final Runnable leaseTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                long leasedLast = lease();
+                synchronized (JobSequenceAllocator.this) {
+                    reservedLast = leasedLast;
+                }
+            }
+            catch (DataAccessException dae) {
+                LOGGER.warn("Could not lease job sequence numbers ahead of time, will retry. Error Message: {}",
+                    dae.getMessage());
+            }
+            finally {
+                synchronized (JobSequenceAllocator.this) {
+                    leaseInProgress = false;
+                }
+            }
+        }
+    };
+
+    /**
+     * Get the next job sequence number. Only waits for Redis when no leased number is left.
+     *
+     * @throws DataAccessException if a block had to be leased and Redis could not be reached
+     */
+    public synchronized long next() {
+        if (next > last) {
+            if (reservedLast == 0) {
+                reservedLast = lease();
+            }
+            next = reservedLast - blockSize + 1;
+            last = reservedLast;
+            reservedLast = 0;
+        }
+        long jobSequenceNumber = next++;
+        if (reservedLast == 0 && !leaseInProgress && last - jobSequenceNumber < blockSize / 2) {
+            leaseInProgress = true;
+            backgroundTaskScheduler.schedule(leaseTask, new Date());
+        }
+        return jobSequenceNumber;
+    }
+
+    /**
+     * Lease a block of job sequence numbers.
+     *
+     * @return Last number of the block.
+     */
+    private long lease() {
+        LatencyMetrics sequenceLatency = metricsRegistry.getLatencyMetrics(MetricsRegistry.REDIS, "jobSequence");
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            long leasedLast = jobSequenceValueOps.increment(blockSize);
+            failed = false;
+            LOGGER.debug("Leased job sequence numbers #{} to #{}", leasedLast - blockSize + 1, leasedLast);
+            return leasedLast;
+        }
+        finally {
+            sequenceLatency.record(System.nanoTime() - startNanos, failed);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.sample.autoscaling.job;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Work on an auto scaling group queued on {@link JobWorkExecutor}, with what its priority is decided from (see
+ * {@link WorkPriority}).
+ */
+public abstract class JobWork implements Runnable {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long sequence = SEQUENCE.incrementAndGet();
+
+    private final long lastEvaluatedMillis;
+
+    private final int instanceCount;
+
+    private final long deadlineMillis;
+
+    /**
+     * Work without deadline.
+     *
+     * @param lastEvaluatedMillis - Time rules were last applied to the auto scaling group, 0 if they never were
+     * @param instanceCount - Number of instances of the auto scaling group
+     */
+    protected JobWork(long lastEvaluatedMillis, int instanceCount) {
+        this(lastEvaluatedMillis, instanceCount, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param lastEvaluatedMillis - Time rules were last applied to the auto scaling group, 0 if they never were
+     * @param instanceCount - Number of instances of the auto scaling group
+     * @param deadlineMillis - Time (epoch millis) past which work is not worth queuing anymore, see
+     *                       {@link JobRun#getDeadlineMillis()}
+     */
+    protected JobWork(long lastEvaluatedMillis, int instanceCount, long deadlineMillis) {
+        this.lastEvaluatedMillis = lastEvaluatedMillis;
+        this.instanceCount = instanceCount;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * @return Order work was created in.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getLastEvaluatedMillis() {
+        return lastEvaluatedMillis;
+    }
+
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+}
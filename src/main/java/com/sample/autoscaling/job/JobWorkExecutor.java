@@ -0,0 +1,99 @@
+package com.sample.autoscaling.job;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pool working on auto scaling groups, whose queue is a bounded {@link JobWorkQueue} taking work by priority.
+ * Once the queue is full and every thread is busy, submitting waits for room in the queue: the thread retrieving auto
+ * scaling groups pauses until work catches up, instead of running the work itself (as CallerRunsPolicy would) and
+ * holding up retrieval for as long as the work takes. Submitting waits at most until the deadline of the work, and is
+ * rejected with a RejectedExecutionException if there is still no room by then or if the executor is shut down.
+ */
+public class JobWorkExecutor extends ThreadPoolTaskExecutor {
+
+    private static final long serialVersionUID = 1L;
+
+    private final WorkPriority priority;
+
+    private final AtomicLong backpressureCount = new AtomicLong();
+
+    private final AtomicLong backpressureNanos = new AtomicLong();
+
+    public JobWorkExecutor(WorkPriority priority) {
+        this.priority = priority;
+        setRejectedExecutionHandler(new WaitForRoom());
+    }
+
+    @Override
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        return new JobWorkQueue(queueCapacity, priority);
+    }
+
+    public WorkPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return Number of tasks waiting for a thread.
+     */
+    public int getQueueSize() {
+        return getThreadPoolExecutor().getQueue().size();
+    }
+
+    /**
+     * @return Number of times submitting had to wait for room in the queue.
+     */
+    public long getBackpressureCount() {
+        return backpressureCount.get();
+    }
+
+    /**
+     * @return Total time spent waiting for room in the queue.
+     */
+    public long getBackpressureMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(backpressureNanos.get());
+    }
+
+    /**
+     * Wait for room in the queue rather than rejecting the task, until the deadline of the task if it is a
+     * {@link JobWork}. A task queued while the executor was shutting down would never run, it is taken back and
+     * rejected.
+     */
+    private class WaitForRoom implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            backpressureCount.incrementAndGet();
+            long startNanos = System.nanoTime();
+            try {
+                if (!(task instanceof JobWork)) {
+                    executor.getQueue().put(task);
+                }
+                else if (!executor.getQueue().offer(task, Math.max(0,
+                    ((JobWork) task).getDeadlineMillis() - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    throw new RejectedExecutionException("No room in the queue before the deadline of the work");
+                }
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for room in the queue", ie);
+            }
+            finally {
+                backpressureNanos.addAndGet(System.nanoTime() - startNanos);
+            }
+            if (executor.isShutdown() && executor.getQueue().remove(task)) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.sample.autoscaling.job;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded blocking queue taking {@link JobWork} in {@link WorkPriority} order. Unlike PriorityBlockingQueue it has a
+ * capacity: offer fails and put waits while the queue is full. Tasks which are not JobWork are taken after all the
+ * work.
+ */
+public class JobWorkQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final int capacity;
+
+    private final PriorityQueue<Runnable> queue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Condition notFull = lock.newCondition();
+
+    public JobWorkQueue(int capacity, final WorkPriority priority) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.queue = new PriorityQueue<Runnable>(Math.min(capacity, 1024), new Comparator<Runnable>() {
+            @Override
+            public int compare(Runnable task, Runnable otherTask) {
+                if (task instanceof JobWork && otherTask instanceof JobWork) {
+                    return priority.compare((JobWork) task, (JobWork) otherTask);
+                }
+                return task instanceof JobWork ? -1 : otherTask instanceof JobWork ? 1 : 0;
+            }
+        });
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        checkNotNull(task);
+        lock.lock();
+        try {
+            if (queue.size() == capacity) {
+                return false;
+            }
+            enqueue(task);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        checkNotNull(task);
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() == capacity) {
+                notFull.await();
+            }
+            enqueue(task);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(task);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() == capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(task);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return queue.peek();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - queue.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            boolean removed = queue.remove(task);
+            if (removed) {
+                notFull.signal();
+            }
+            return removed;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> tasks) {
+        return drainTo(tasks, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> tasks, int maxTasks) {
+        if (tasks == this) {
+            throw new IllegalArgumentException("Queue cannot be drained to itself");
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxTasks && !queue.isEmpty()) {
+                tasks.add(queue.poll());
+                drained++;
+            }
+            if (drained > 0) {
+                notFull.signalAll();
+            }
+            return drained;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Iterator over a copy of the queue, in no particular order. Removing a task removes it from the queue.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final List<Runnable> tasks;
+        lock.lock();
+        try {
+            tasks = new ArrayList<Runnable>(queue);
+        }
+        finally {
+            lock.unlock();
+        }
+        return new Iterator<Runnable>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < tasks.size();
+            }
+
+            @Override
+            public Runnable next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return tasks.get(next++);
+            }
+
+            @Override
+            public void remove() {
+                if (next == 0) {
+                    throw new IllegalStateException();
+                }
+                JobWorkQueue.this.remove(tasks.get(next - 1));
+            }
+        };
+    }
+
+    private void enqueue(Runnable task) {
+        queue.add(task);
+        notEmpty.signal();
+    }
+
+    private Runnable dequeue() {
+        Runnable task = queue.poll();
+        if (task != null) {
+            notFull.signal();
+        }
+        return task;
+    }
+
+    private static void checkNotNull(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -1,96 +1,326 @@
 package com.sample.autoscaling.job;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
 
-import com.amazonaws.AmazonClientException;
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
 import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
-import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsResult;
+import com.sample.autoscaling.cluster.ClusterMembership;
+import com.sample.autoscaling.metrics.JobMetrics;
+import com.sample.autoscaling.replay.SnapshotRecorder;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
 import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.rules.RuleOutcomeCache;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 /**
  * This class represents Terminate Instance job, run() method of this class is scheduled to be called at regular
- * intervals. This job will retrieve all the auto scaling groups in account and apply defined rules to decide if an
- * instance can be terminated in the auto scaling group or not. If instance can be terminated in an auto scaling group,
- * this job will terminate the instance as well.
+ * intervals. This job will retrieve all the auto scaling groups of every target (account and region) and apply defined
+ * rules to decide if an instance can be terminated in the auto scaling group or not. If instance can be terminated in
+ * an auto scaling group, this job will terminate the instance as well.
  */
 @Component
 public class TerminateInstanceJob {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TerminateInstanceJob.class);
 
+    /**
+     * Outcome recorded for auto scaling groups not processed within the time budget of a run.
+     */
+    public static final String TIMED_OUT_OUTCOME = "TIMED_OUT";
+
     @Autowired
-    private AmazonAutoScalingAsync autoScalingClient;
+    private AutoScalingTargets autoScalingTargets;
+
+    /**
+     * Retrieves auto scaling groups of the targets, in parallel.
+     */
+    @Resource(name = "dispatchExecutor")
+    private TaskExecutor dispatchExecutor;
 
     @Autowired
     private RuleHandler ruleHandler;
 
+    @Autowired
+    private RuleOutcomeCache ruleOutcomeCache;
+
+    @Autowired
+    private JobResultWriter jobResultWriter;
+
+    @Autowired
+    private JobRunCoordinator jobRunCoordinator;
+
+    @Autowired
+    private AutoScalingGroupSelector autoScalingGroupSelector;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private JobMetrics jobMetrics;
+
     /**
-     * Used to retrieve the sequence number.
+     * Hands out job sequence numbers leased from Redis in blocks.
      */
     @Autowired
-    private BoundValueOperations<String, Long> jobSequenceValueOps;
+    private JobSequenceAllocator jobSequenceAllocator;
+
+    @Autowired
+    private SnapshotRecorder snapshotRecorder;
+
+    @Value("${auto.scaling.group.page.size}")
+    private int autoScalingGroupPageSize;
 
     /**
      * This method will be called as per the timing configured by cron expression and will initiate the complete job.
+     * Auto scaling groups of all the targets are retrieved page by page and each page is handed over to rule handler as
+     * soon as it is retrieved, so rules are applied while remaining pages are still being retrieved. If previous run is
+     * still active, this run is skipped. Auto scaling groups not processed within the time budget of the run are
+     * recorded as timed out.
      */
     @Scheduled(cron = "${cron.job.schedule}")
     public void run() throws InterruptedException {
-        Long jobSequenceNumber = jobSequenceValueOps.increment(1);
-        LOGGER.info("Starting Instance Termination #{} job at {}", jobSequenceNumber, DateTime.now());
-
-        List<AutoScalingGroup> allAutoScalingGroups = getAllAutoScalingGroups();
-
-        // If Auto Scaling groups are retrieved, run the instance termination rules against auto scaling group in
-        // parallel.
-        if (!CollectionUtils.isEmpty(allAutoScalingGroups)) {
+        runOnce();
+    }
 
-            //Create a count down latch to block the scheduler thread
-            final CountDownLatch countDownLatch = new CountDownLatch(allAutoScalingGroups.size());
+    /**
+     * Run the job once, as {@link #run()} does, and report how the run went.
+     *
+     * @return Summary of the run, or null if previous run is still active and this run is skipped.
+     */
+    public JobRunSummary runOnce() throws InterruptedException {
+        if (!jobRunCoordinator.tryStart()) {
+            return null;
+        }
+        DateTime startTime = DateTime.now();
+        int timedOutGroupCount = 0;
+        int failedTargetCount = 0;
+        int autoScalingGroupCount = 0;
+        long terminatedInstanceCount = jobMetrics.getTerminatedInstanceCount();
+        long failedTerminationCount = jobMetrics.getFailedTerminationCount();
+        try {
+            Long jobSequenceNumber = jobSequenceAllocator.next();
+            LOGGER.info("Starting Instance Termination #{} job at {} on node {} for targets {}", jobSequenceNumber,
+                startTime, clusterMembership.getNodeId(), autoScalingTargets.getTargets());
+            jobResultWriter.recordRunStart(jobSequenceNumber, startTime.getMillis());
+            snapshotRecorder.start(jobSequenceNumber, startTime.getMillis());
 
-            for (final AutoScalingGroup autoScalingGroup : allAutoScalingGroups) {
-                //Each Auto Scaling Group will be handled asynchronously.
-                ruleHandler.applyRules(jobSequenceNumber, autoScalingGroup, countDownLatch);
+            //Auto scaling groups of this run are split between the nodes alive at the start of the run.
+            clusterMembership.refresh();
+            List<JobRun> jobRuns = jobRunCoordinator.newRuns(jobSequenceNumber, autoScalingTargets.getTargets());
+            for (TargetDispatch targetDispatch : dispatch(jobRuns)) {
+                autoScalingGroupCount += targetDispatch.autoScalingGroupCount;
+                if (targetDispatch.retrievalFailed) {
+                    failedTargetCount++;
+                }
             }
+
             // Wait for all the auto scaling groups to be processed. All of the auto scaling groups will be processed
             // asynchronously
-            countDownLatch.await();
+            for (JobRun jobRun : jobRuns) {
+                if (!jobRun.awaitCompletion()) {
+                    List<String> timedOutGroups = jobRun.expire();
+                    for (String autoScalingGroupName : timedOutGroups) {
+                        jobResultWriter.record(jobRun.getTarget().key(autoScalingGroupName), jobSequenceNumber,
+                            TIMED_OUT_OUTCOME);
+                    }
+                    timedOutGroupCount += timedOutGroups.size();
+                    LOGGER.warn("Instance Termination job # {} exceeded its time budget, {} auto scaling groups of " +
+                        "target {} timed out", jobSequenceNumber, timedOutGroups.size(), jobRun.getTarget());
+                }
+            }
+            //Results still buffered are written once all the auto scaling groups of this run are processed.
+            jobResultWriter.flush();
+
+            LOGGER.info("Finished Instance Termination job # {} for {} auto scaling groups at {}", jobSequenceNumber,
+                autoScalingGroupCount, DateTime.now());
+            //Groups are only completed once their termination is, only terminations of timed out groups may still
+            //be in flight.
+            return new JobRunSummary(jobSequenceNumber, startTime.getMillis(),
+                DateTime.now().getMillis() - startTime.getMillis(), autoScalingGroupCount, timedOutGroupCount,
+                failedTargetCount, jobMetrics.getTerminatedInstanceCount() - terminatedInstanceCount,
+                jobMetrics.getFailedTerminationCount() - failedTerminationCount);
         }
+        finally {
+            snapshotRecorder.finish();
+            long durationMillis = DateTime.now().getMillis() - startTime.getMillis();
+            jobMetrics.recordRun(durationMillis, autoScalingGroupCount);
+            jobRunCoordinator.finish(durationMillis, timedOutGroupCount);
+        }
+    }
 
-        LOGGER.info("Finished Instance Termination job # {} at {}", jobSequenceNumber, DateTime.now());
+    /**
+     * Retrieve the auto scaling groups of all the targets in parallel and hand over the ones assigned to this node to
+     * rule handler, once the ones filtered out by {@link AutoScalingGroupSelector} are left out. Targets take turns
+     * on the dispatch threads, one page at a time, so a target with many auto scaling groups never holds up the
+     * others. Rule handler gets a compact snapshot of each auto scaling group rather than the group as retrieved. Auto
+     * scaling groups unchanged since rules last failed reuse that outcome without being handed over. Retrieval and
+     * dispatch stop when the run is past its deadline, which is also as long as the job waits for dispatch, even when a
+     * page is slow to retrieve or dispatch waits for room in the rule executor queue.
+     *
+     * @return Dispatch of each target, finished unless the run is past its deadline.
+     */
+    private List<TargetDispatch> dispatch(List<JobRun> jobRuns) throws InterruptedException {
+        CountDownLatch dispatchedTargets = new CountDownLatch(jobRuns.size());
+        List<TargetDispatch> targetDispatches = new ArrayList<TargetDispatch>(jobRuns.size());
+        for (JobRun jobRun : jobRuns) {
+            TargetDispatch targetDispatch = new TargetDispatch(jobRun, dispatchedTargets);
+            targetDispatches.add(targetDispatch);
+            dispatchExecutor.execute(targetDispatch);
+        }
+        //Runs of a job share the same deadline.
+        long remainingMillis = jobRuns.isEmpty() ? 0 : jobRuns.get(0).getDeadlineMillis() - System.currentTimeMillis();
+        if (!dispatchedTargets.await(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("Instance Termination job # {} exceeded its time budget while dispatching auto scaling groups",
+                jobRuns.get(0).getJobSequenceNumber());
+        }
+        return targetDispatches;
     }
 
+    /**
+     * Dispatch the auto scaling groups of a page, until the run is past its deadline.
+     *
+     * @return Number of auto scaling groups dispatched.
+     */
+    private int dispatch(JobRun jobRun, List<AutoScalingGroup> autoScalingGroups) {
+        int autoScalingGroupCount = 0;
+        AutoScalingTarget target = jobRun.getTarget();
+        for (AutoScalingGroup retrievedGroup : autoScalingGroups) {
+            if (jobRun.isPastDeadline()) {
+                LOGGER.warn("Instance Termination job # {} exceeded its time budget while dispatching auto scaling " +
+                    "groups of target {}, remaining auto scaling groups are skipped", jobRun.getJobSequenceNumber(),
+                    target);
+                break;
+            }
+            if (!autoScalingGroupSelector.isSelected(retrievedGroup)) {
+                //Auto Scaling Group is filtered out by configuration, job never touches it.
+                continue;
+            }
+            if (!clusterMembership.isOwned(target.key(retrievedGroup.getAutoScalingGroupName()))) {
+                //Auto Scaling Group is handled by another node.
+                continue;
+            }
+            autoScalingGroupCount++;
+            //Only the snapshot is kept until the Auto Scaling Group is processed, the page is dropped once dispatched.
+            AutoScalingGroupSnapshot autoScalingGroup = AutoScalingGroupSnapshot.of(retrievedGroup);
+            snapshotRecorder.recordAutoScalingGroup(autoScalingGroup);
+            String reusableOutcome = ruleOutcomeCache.getReusableOutcome(target, autoScalingGroup);
+            if (reusableOutcome != null) {
+                //Auto Scaling Group is unchanged since rules last failed, they would fail the same way.
+                jobResultWriter.record(target.key(autoScalingGroup.getAutoScalingGroupName()),
+                    jobRun.getJobSequenceNumber(), reusableOutcome);
+                continue;
+            }
+            if (!jobRun.register(autoScalingGroup.getAutoScalingGroupName())) {
+                //Run expired meanwhile.
+                break;
+            }
+            //Each Auto Scaling Group will be handled asynchronously, waiting here while the rule executor is saturated.
+            ruleHandler.submit(jobRun, autoScalingGroup);
+        }
+        return autoScalingGroupCount;
+    }
 
     /**
-     * Method to retrieve all the auto scaling groups of account.
+     * Method to retrieve all the auto scaling groups of account. All the pages are retrieved before returning, prefer
+     * {@link AutoScalingGroupPageIterator} when groups can be processed page by page.
      *
      * @return List of auto scaling groups.
+     * @throws com.amazonaws.AmazonClientException if auto scaling groups of a target could not all be retrieved.
      */
     public List<AutoScalingGroup> getAllAutoScalingGroups() {
-        DescribeAutoScalingGroupsResult autoScalingGroupsResult = null;
-        try {
-            //This is a blocking call because this is base to start doing work asynchronously beyond this point .
-            autoScalingGroupsResult = autoScalingClient.describeAutoScalingGroups();
+        List<AutoScalingGroup> allAutoScalingGroups = new ArrayList<AutoScalingGroup>();
+        for (AutoScalingTarget target : autoScalingTargets.getTargets()) {
+            AutoScalingGroupPageIterator pages = new AutoScalingGroupPageIterator(target.getClient(),
+                autoScalingGroupPageSize);
+            while (pages.hasNext()) {
+                allAutoScalingGroups.addAll(pages.next());
+            }
+            if (pages.isFailed()) {
+                throw pages.getFailure();
+            }
         }
-        catch (AmazonServiceException ase) {
-            LOGGER.error("Request was rejected with an error response. Error Message:{}, HTTP Status Code:{}, " +
-                "AWS Error Code:{}, Error Type:{}, Request ID:{}", ase.getMessage(), ase.getStatusCode(),
-                ase.getErrorCode(), ase.getErrorType(), ase.getRequestId());
+        return allAutoScalingGroups;
+    }
+
+    /**
+     * Dispatch of the auto scaling groups of a target, one page per turn. After each page, dispatch of the target goes
+     * back to the end of the dispatch queue, behind the other targets.
+     */
+    private class TargetDispatch implements Runnable {
+
+        private final JobRun jobRun;
+
+        private final CountDownLatch dispatchedTargets;
+
+        private final AutoScalingGroupPageIterator pages;
+
+        /**
+         * Only updated by the thread dispatching a page, read once all the targets are dispatched.
+         */
+        private volatile int autoScalingGroupCount;
+
+        /**
+         * Whether a page could not be retrieved, remaining auto scaling groups of the target are not processed then.
+         */
+        private volatile boolean retrievalFailed;
+
+        TargetDispatch(JobRun jobRun, CountDownLatch dispatchedTargets) {
+            this.jobRun = jobRun;
+            this.dispatchedTargets = dispatchedTargets;
+            this.pages = new AutoScalingGroupPageIterator(jobRun.getTarget().getClient(), autoScalingGroupPageSize);
         }
-        catch (AmazonClientException ace) {
-            LOGGER.error("Error Message: {}", ace.getMessage());
+
+        @Override
+        public void run() {
+            boolean finished = true;
+            try {
+                if (!pages.hasNext()) {
+                    return;
+                }
+                if (jobRun.isPastDeadline()) {
+                    LOGGER.warn("Instance Termination job # {} exceeded its time budget while retrieving auto " +
+                        "scaling groups of target {}, remaining pages are skipped", jobRun.getJobSequenceNumber(),
+                        jobRun.getTarget());
+                    return;
+                }
+                List<AutoScalingGroup> autoScalingGroups = pages.next();
+                if (pages.isFailed()) {
+                    retrievalFailed = true;
+                    LOGGER.warn("Instance Termination job # {} could not retrieve auto scaling groups of target {}, " +
+                        "remaining pages are skipped", jobRun.getJobSequenceNumber(), jobRun.getTarget());
+                }
+                // If Auto Scaling groups are retrieved, run the instance termination rules against auto scaling
+                // group in parallel.
+                if (!CollectionUtils.isEmpty(autoScalingGroups)) {
+                    autoScalingGroupCount += dispatch(jobRun, autoScalingGroups);
+                }
+                if (pages.hasNext()) {
+                    dispatchExecutor.execute(this);
+                    finished = false;
+                }
+            }
+            finally {
+                if (finished) {
+                    jobRun.dispatchFinished();
+                    dispatchedTargets.countDown();
+                }
+            }
         }
-        return autoScalingGroupsResult.getAutoScalingGroups();
     }
 
 }
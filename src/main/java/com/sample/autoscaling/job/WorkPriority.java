@@ -0,0 +1,50 @@
+package com.sample.autoscaling.job;
+
+import java.util.Comparator;
+
+/**
+ * Order work waiting in {@link JobWorkQueue} is taken in. When a run cannot cover the whole fleet within its time
+ * budget, auto scaling groups taken first are the ones processed. Work with the same priority is taken in the order it
+ * was queued.
+ */
+public enum WorkPriority implements Comparator<JobWork> {
+
+    /**
+     * Auto scaling groups whose rules were applied longest ago first, the ones never evaluated (e.g. new, or timed out
+     * in every run so far) before all the others, so every auto scaling group gets its turn across runs.
+     */
+    LONGEST_SINCE_EVALUATED {
+        @Override
+        int comparePriority(JobWork work, JobWork otherWork) {
+            return Long.compare(work.getLastEvaluatedMillis(), otherWork.getLastEvaluatedMillis());
+        }
+    },
+
+    /**
+     * Auto scaling groups with the most instances first, where a termination saves the most.
+     */
+    MOST_INSTANCES {
+        @Override
+        int comparePriority(JobWork work, JobWork otherWork) {
+            return Integer.compare(otherWork.getInstanceCount(), work.getInstanceCount());
+        }
+    },
+
+    /**
+     * Auto scaling groups in the order they were retrieved.
+     */
+    FIFO {
+        @Override
+        int comparePriority(JobWork work, JobWork otherWork) {
+            return 0;
+        }
+    };
+
+    @Override
+    public int compare(JobWork work, JobWork otherWork) {
+        int comparison = comparePriority(work, otherWork);
+        return comparison != 0 ? comparison : Long.compare(work.getSequence(), otherWork.getSequence());
+    }
+
+    abstract int comparePriority(JobWork work, JobWork otherWork);
+}
@@ -0,0 +1,286 @@
+package com.sample.autoscaling.metrics;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+import com.sample.autoscaling.events.ScalingEventConsumer;
+import com.sample.autoscaling.job.AutoScalingGroupSelector;
+import com.sample.autoscaling.job.JobRunCoordinator;
+import com.sample.autoscaling.job.JobWorkExecutor;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.rules.RuleOutcomeCache;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import com.sample.autoscaling.termination.TerminationEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Job level metrics published as MBean: run duration and throughput, overlapping and timed out runs, executor usage,
+ * caches, notifications, AWS throttling, terminations and Redis buffering. Latencies of rules, AWS operations and
+ * Redis calls are published separately through {@link MetricsRegistry}. A summary of all the metrics can also be
+ * logged periodically.
+ */
+@Component
+@ManagedResource(objectName = MetricsRegistry.DOMAIN + ":type=" + MetricsRegistry.JOB + ",name=TerminateInstanceJob",
+    description = "Instance Termination job metrics")
+public class JobMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobMetrics.class);
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private JobRunCoordinator jobRunCoordinator;
+
+    @Autowired
+    private AutoScalingGroupSelector autoScalingGroupSelector;
+
+    @Autowired
+    private ScalingActivityCache scalingActivityCache;
+
+    @Autowired
+    private ScalingActivityIndex scalingActivityIndex;
+
+    //Not present in a one-shot run.
+    @Autowired(required = false)
+    private ScalingEventConsumer scalingEventConsumer;
+
+    @Autowired
+    private RuleOutcomeCache ruleOutcomeCache;
+
+    @Autowired
+    private JobResultWriter jobResultWriter;
+
+    @Autowired
+    private AutoScalingTargets autoScalingTargets;
+
+    @Autowired
+    private TerminationEngine terminationEngine;
+
+    @Resource(name = "ruleExecutor")
+    private JobWorkExecutor ruleExecutor;
+
+    @Resource(name = "backgroundTaskScheduler")
+    private TaskScheduler backgroundTaskScheduler;
+
+    /**
+     * Interval between two metrics summaries in log, 0 to disable.
+     */
+    @Value("${metrics.log.interval.millis}")
+    private long logIntervalMillis;
+
+    private LatencyMetrics runLatency;
+
+    private volatile int lastRunGroupCount;
+
+    private volatile double lastRunGroupsPerSecond;
+
+    @PostConstruct
+    public void initialize() {
+        runLatency = metricsRegistry.getLatencyMetrics(MetricsRegistry.JOB, "run");
+        if (logIntervalMillis > 0) {
+            backgroundTaskScheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logSummary();
+                }
+            }, new Date(System.currentTimeMillis() + logIntervalMillis), logIntervalMillis);
+        }
+    }
+
+    /**
+     * Record a finished run.
+     *
+     * @param durationMillis - Duration of the run
+     * @param groupCount - Number of auto scaling groups processed by the run
+     */
+    public void recordRun(long durationMillis, int groupCount) {
+        runLatency.record(TimeUnit.MILLISECONDS.toNanos(durationMillis), false);
+        lastRunGroupCount = groupCount;
+        lastRunGroupsPerSecond = durationMillis == 0 ? groupCount : groupCount * 1000.0 / durationMillis;
+    }
+
+    @ManagedAttribute(description = "Duration of last run in milliseconds")
+    public long getLastRunDurationMillis() {
+        return jobRunCoordinator.getLastRunDurationMillis();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups processed by last run")
+    public int getLastRunGroupCount() {
+        return lastRunGroupCount;
+    }
+
+    @ManagedAttribute(description = "Auto scaling groups processed per second by last run")
+    public double getLastRunGroupsPerSecond() {
+        return lastRunGroupsPerSecond;
+    }
+
+    @ManagedAttribute(description = "Number of completed runs")
+    public long getCompletedRunCount() {
+        return jobRunCoordinator.getCompletedRunCount();
+    }
+
+    @ManagedAttribute(description = "Number of runs skipped because previous run was still active")
+    public long getSkippedTickCount() {
+        return jobRunCoordinator.getSkippedTickCount();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups not processed within the time budget of a run")
+    public long getTimedOutGroupCount() {
+        return jobRunCoordinator.getTimedOutGroupCount();
+    }
+
+    @ManagedAttribute(description = "Number of executor threads applying rules")
+    public int getExecutorActiveCount() {
+        return ruleExecutor.getActiveCount();
+    }
+
+    @ManagedAttribute(description = "Number of executor threads")
+    public int getExecutorPoolSize() {
+        return ruleExecutor.getPoolSize();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups waiting for an executor thread")
+    public int getExecutorQueueSize() {
+        return ruleExecutor.getQueueSize();
+    }
+
+    @ManagedAttribute(description = "Number of times dispatch waited for room in the executor queue")
+    public long getExecutorBackpressureCount() {
+        return ruleExecutor.getBackpressureCount();
+    }
+
+    @ManagedAttribute(description = "Time dispatch waited for room in the executor queue, in milliseconds")
+    public long getExecutorBackpressureMillis() {
+        return ruleExecutor.getBackpressureMillis();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups filtered out by name")
+    public long getNameFilteredGroupCount() {
+        return autoScalingGroupSelector.getNameFilteredCount();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups filtered out by tag")
+    public long getTagFilteredGroupCount() {
+        return autoScalingGroupSelector.getTagFilteredCount();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups filtered out by an opt-out tag")
+    public long getOptedOutGroupCount() {
+        return autoScalingGroupSelector.getOptedOutCount();
+    }
+
+    @ManagedAttribute(description = "Number of scaling activity lookups served from cache")
+    public long getActivityCacheHitCount() {
+        return scalingActivityCache.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of scaling activity lookups not served from cache")
+    public long getActivityCacheMissCount() {
+        return scalingActivityCache.getMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of scaling activity lookups served from the notification index")
+    public long getActivityIndexHitCount() {
+        return scalingActivityIndex.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of scaling activity lookups polled to reconcile the notification index")
+    public long getActivityIndexMissCount() {
+        return scalingActivityIndex.getMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of AutoScaling notifications received")
+    public long getScalingEventCount() {
+        return scalingEventConsumer == null ? 0 : scalingEventConsumer.getEventCount();
+    }
+
+    @ManagedAttribute(description = "Number of AutoScaling notifications ignored as duplicate, stale or unknown")
+    public long getIgnoredScalingEventCount() {
+        return scalingEventConsumer == null ? 0 : scalingEventConsumer.getIgnoredEventCount();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups reusing the outcome of an unchanged group")
+    public long getRuleOutcomeCacheHitCount() {
+        return ruleOutcomeCache.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups whose rules had to be applied")
+    public long getRuleOutcomeCacheMissCount() {
+        return ruleOutcomeCache.getMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of AWS calls throttled, across targets")
+    public long getAwsThrottledCallCount() {
+        return autoScalingTargets.getThrottledCallCount();
+    }
+
+    @ManagedAttribute(description = "Current limit of concurrent AWS calls, across targets")
+    public int getAwsConcurrencyLimit() {
+        return autoScalingTargets.getConcurrencyLimit();
+    }
+
+    @ManagedAttribute(description = "Number of auto scaling groups waiting for an instance to be terminated")
+    public int getTerminationQueueSize() {
+        return terminationEngine.getQueuedCount();
+    }
+
+    @ManagedAttribute(description = "Number of instance terminations in flight")
+    public int getTerminationsInFlight() {
+        return terminationEngine.getInFlightCount();
+    }
+
+    @ManagedAttribute(description = "Number of instances terminated")
+    public long getTerminatedInstanceCount() {
+        return terminationEngine.getTerminatedCount();
+    }
+
+    @ManagedAttribute(description = "Number of instance terminations failed")
+    public long getFailedTerminationCount() {
+        return terminationEngine.getFailedCount();
+    }
+
+    @ManagedAttribute(description = "Number of job results waiting to be written to Redis")
+    public int getPendingResultCount() {
+        return jobResultWriter.getPendingCount();
+    }
+
+    @ManagedAttribute(description = "Number of job results dropped because the buffer was full")
+    public long getDroppedResultCount() {
+        return jobResultWriter.getDroppedCount();
+    }
+
+    /**
+     * Log a summary of the job metrics and of all the latency metrics.
+     */
+    public void logSummary() {
+        LOGGER.info("Job metrics: runs={} skipped={} timedOutGroups={} lastRun={}ms groups/s={} filtered by name={} " +
+            "tag={} opted out={} executor active={} queued={} backpressure={} waited={}ms cache hits={} misses={} " +
+            "index hits={} misses={} events={} ignored={} outcomes reused={} evaluated={} aws throttled={} " +
+            "limit={} terminations queued={} in flight={} terminated={} failed={} pending results={} dropped={}",
+            getCompletedRunCount(), getSkippedTickCount(), getTimedOutGroupCount(), getLastRunDurationMillis(),
+            String.format("%.1f", getLastRunGroupsPerSecond()), getNameFilteredGroupCount(), getTagFilteredGroupCount(),
+            getOptedOutGroupCount(), getExecutorActiveCount(), getExecutorQueueSize(), getExecutorBackpressureCount(),
+            getExecutorBackpressureMillis(), getActivityCacheHitCount(), getActivityCacheMissCount(),
+            getActivityIndexHitCount(), getActivityIndexMissCount(), getScalingEventCount(),
+            getIgnoredScalingEventCount(), getRuleOutcomeCacheHitCount(), getRuleOutcomeCacheMissCount(),
+            getAwsThrottledCallCount(), getAwsConcurrencyLimit(), getTerminationQueueSize(), getTerminationsInFlight(),
+            getTerminatedInstanceCount(), getFailedTerminationCount(), getPendingResultCount(),
+            getDroppedResultCount());
+        for (LatencyMetrics latencyMetrics : metricsRegistry.getAllLatencyMetrics()) {
+            LOGGER.info("Latency {}", latencyMetrics);
+        }
+    }
+}
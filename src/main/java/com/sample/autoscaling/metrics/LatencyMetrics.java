@@ -0,0 +1,124 @@
+package com.sample.autoscaling.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Latency histogram of an operation (a rule, an AWS operation, a Redis call...). Latencies are counted in buckets
+ * growing by powers of two starting at one microsecond, so recording is lock free and percentiles are accurate within a
+ * factor of two, which is enough to spot slow operations.
+ */
+@ManagedResource
+public class LatencyMetrics {
+
+    private static final int BUCKET_COUNT = 40;
+
+    private final String name;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record the latency of a call.
+     *
+     * @param durationNanos - Duration of the call
+     * @param failed - True if call failed (or the rule rejected the auto scaling group)
+     */
+    public void record(long durationNanos, boolean failed) {
+        long durationMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        int bucket = Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(durationMicros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        if (failed) {
+            failureCount.incrementAndGet();
+        }
+        totalNanos.addAndGet(durationNanos);
+        long max;
+        while (durationNanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, durationNanos)) {
+            //Retry until max is updated or another thread recorded a longer call.
+        }
+    }
+
+    @ManagedAttribute(description = "Name of the measured operation")
+    public String getName() {
+        return name;
+    }
+
+    @ManagedAttribute(description = "Number of calls")
+    public long getCount() {
+        return count.get();
+    }
+
+    @ManagedAttribute(description = "Number of failed calls")
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    @ManagedAttribute(description = "Mean latency in milliseconds")
+    public double getMeanMillis() {
+        long calls = count.get();
+        return calls == 0 ? 0 : totalNanos.get() / (double) calls / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @ManagedAttribute(description = "Maximum latency in milliseconds")
+    public double getMaxMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @ManagedAttribute(description = "Median latency in milliseconds (upper bound of histogram bucket)")
+    public double getP50Millis() {
+        return getPercentileMillis(0.5);
+    }
+
+    @ManagedAttribute(description = "90th percentile latency in milliseconds (upper bound of histogram bucket)")
+    public double getP90Millis() {
+        return getPercentileMillis(0.9);
+    }
+
+    @ManagedAttribute(description = "99th percentile latency in milliseconds (upper bound of histogram bucket)")
+    public double getP99Millis() {
+        return getPercentileMillis(0.99);
+    }
+
+    /**
+     * Get the upper bound of the histogram bucket containing the given percentile.
+     *
+     * @param percentile - Percentile between 0 and 1
+     */
+    public double getPercentileMillis(double percentile) {
+        long calls = count.get();
+        if (calls == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * calls);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return (2L << bucket) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d failures=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms", name,
+            getCount(), getFailureCount(), getMeanMillis(), getP50Millis(), getP99Millis(), getMaxMillis());
+    }
+}
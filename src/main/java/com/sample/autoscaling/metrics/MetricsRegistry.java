@@ -0,0 +1,99 @@
+package com.sample.autoscaling.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.jmx.export.annotation.AnnotationMBeanExporter;
+import org.springframework.jmx.support.RegistrationPolicy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the latency metrics, each one is published as an MBean named
+ * com.sample.autoscaling:type=&lt;type&gt;,name=&lt;name&gt; the first time it is requested. Registry has its own
+ * exporter to the platform MBean server, so components instrumented with it (including the AWS client) do not depend
+ * on the context exporter, which itself depends on every @ManagedResource bean.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    public static final String DOMAIN = "com.sample.autoscaling";
+
+    public static final String RULE = "Rule";
+
+    public static final String AWS = "Aws";
+
+    public static final String REDIS = "Redis";
+
+    public static final String JOB = "Job";
+
+    private final MBeanExporter mbeanExporter = new AnnotationMBeanExporter();
+
+    private final ConcurrentMap<String, LatencyMetrics> latencyMetrics = new ConcurrentHashMap<String, LatencyMetrics>();
+
+    @PostConstruct
+    public void initialize() {
+        mbeanExporter.setServer(ManagementFactory.getPlatformMBeanServer());
+        mbeanExporter.setRegistrationPolicy(RegistrationPolicy.REPLACE_EXISTING);
+    }
+
+    /**
+     * Unregister all the MBeans published by this registry.
+     */
+    @PreDestroy
+    public void destroy() {
+        mbeanExporter.destroy();
+    }
+
+    /**
+     * Get the latency metrics of an operation, creating and publishing them if needed.
+     *
+     * @param type - Type of the operation (e.g. {@link #RULE})
+     * @param name - Name of the operation
+     */
+    public LatencyMetrics getLatencyMetrics(String type, String name) {
+        String key = type + "/" + name;
+        LatencyMetrics metrics = latencyMetrics.get(key);
+        if (metrics == null) {
+            LatencyMetrics newMetrics = new LatencyMetrics(key);
+            metrics = latencyMetrics.putIfAbsent(key, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+                register(metrics, type, name);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Get all the latency metrics created so far.
+     */
+    public List<LatencyMetrics> getAllLatencyMetrics() {
+        return new ArrayList<LatencyMetrics>(latencyMetrics.values());
+    }
+
+    /**
+     * Publish an object annotated with @ManagedResource under the given type and name.
+     */
+    public void register(Object managedResource, String type, String name) {
+        try {
+            mbeanExporter.registerManagedResource(managedResource,
+                new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name)));
+        }
+        catch (MalformedObjectNameException mone) {
+            LOGGER.error("Could not publish metrics {} {}. Error Message: {}", type, name, mone.getMessage());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.sample.autoscaling.redis;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * Redis connection factory bounding the number of Redis calls in flight, whatever the connection factory it wraps.
+ * Each connection holds a permit from getting it to closing it, so a pipeline or a transaction counts as one call.
+ * Callers beyond the bound wait for a permit up to the maximum wait and then fail, like any other Redis failure.
+ */
+public class BoundedRedisConnectionFactory implements RedisConnectionFactory {
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final Semaphore permits;
+
+    private final int maxInFlight;
+
+    private final long maxWaitMillis;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param connectionFactory - Factory of the connections
+     * @param maxInFlight - Maximum number of connections open at once
+     * @param maxWaitMillis - Maximum time to wait for a connection
+     */
+    public BoundedRedisConnectionFactory(RedisConnectionFactory connectionFactory, int maxInFlight,
+                                         long maxWaitMillis) {
+        this.connectionFactory = connectionFactory;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.maxInFlight = maxInFlight;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @throws RedisConnectionFailureException if no permit was released within the maximum wait
+     */
+    @Override
+    public RedisConnection getConnection() {
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                rejectedCount.incrementAndGet();
+                throw new RedisConnectionFailureException("No Redis connection available within " + maxWaitMillis +
+                    " ms, " + maxInFlight + " in use");
+            }
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RedisConnectionFailureException("Interrupted while waiting for a Redis connection", ie);
+        }
+        boolean acquired = false;
+        try {
+            RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(
+                RedisConnection.class.getClassLoader(), new Class<?>[]{RedisConnection.class},
+                new BoundedConnection(connectionFactory.getConnection()));
+            acquired = true;
+            return connection;
+        }
+        finally {
+            if (!acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return connectionFactory.getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return connectionFactory.translateExceptionIfPossible(ex);
+    }
+
+    /**
+     * @return Number of connections open.
+     */
+    public int getInFlightCount() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * @return Number of times no connection was available within the maximum wait.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Connection releasing its permit when closed. Closing it again does not release another permit.
+     */
+    private class BoundedConnection implements InvocationHandler {
+
+        private final RedisConnection connection;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        BoundedConnection(RedisConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close") && method.getParameterTypes().length == 0) {
+                try {
+                    connection.close();
+                }
+                finally {
+                    if (closed.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                }
+                return null;
+            }
+            try {
+                return method.invoke(connection, args);
+            }
+            catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.sample.autoscaling.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+
+/**
+ * Auto scaling groups and scaling activities of a job run, as recorded by {@link SnapshotRecorder}. A recording is a
+ * gzipped file named after the job sequence number of the run. File starts with a header (magic, version, job sequence
+ * number and start time of the run), followed by records, each one its type and its payload:
+ * <ul>
+ * <li>auto scaling group: snapshot of the auto scaling group, as dispatched to the rules</li>
+ * <li>scaling activities: key of an auto scaling group and its latest scaling activity, if any, as the activity rule
+ * got it</li>
+ * </ul>
+ * A recording cut short (e.g. terminator stopped in the middle of a run) is read up to its last complete record.
+ */
+public final class Recording {
+
+    static final String FILE_SUFFIX = ".snapshots.gz";
+
+    private static final int MAGIC = 0x41534752;
+
+    private static final int VERSION = 1;
+
+    private static final byte AUTO_SCALING_GROUP = 1;
+
+    private static final byte SCALING_ACTIVITIES = 2;
+
+    private static final int NONE = -1;
+
+    private final long jobSequenceNumber;
+
+    private final long startTimeMillis;
+
+    private final List<AutoScalingGroupSnapshot> autoScalingGroups;
+
+    private final Map<String, List<Activity>> scalingActivities;
+
+    public Recording(long jobSequenceNumber, long startTimeMillis, List<AutoScalingGroupSnapshot> autoScalingGroups,
+                     Map<String, List<Activity>> scalingActivities) {
+        this.jobSequenceNumber = jobSequenceNumber;
+        this.startTimeMillis = startTimeMillis;
+        this.autoScalingGroups = Collections.unmodifiableList(autoScalingGroups);
+        this.scalingActivities = Collections.unmodifiableMap(scalingActivities);
+    }
+
+    public long getJobSequenceNumber() {
+        return jobSequenceNumber;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return Auto scaling groups dispatched by the run, in the order they were dispatched.
+     */
+    public List<AutoScalingGroupSnapshot> getAutoScalingGroups() {
+        return autoScalingGroups;
+    }
+
+    /**
+     * @return Latest scaling activity (empty if auto scaling group had none) by auto scaling group key, for the auto
+     * scaling groups the activity rule was applied to.
+     */
+    public Map<String, List<Activity>> getScalingActivities() {
+        return scalingActivities;
+    }
+
+    /**
+     * List the recordings of a directory, in the order of the runs.
+     */
+    public static List<File> list(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(FILE_SUFFIX) && getJobSequenceNumber(name) != null;
+            }
+        });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file, File otherFile) {
+                return getJobSequenceNumber(file.getName()).compareTo(getJobSequenceNumber(otherFile.getName()));
+            }
+        });
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Read a recording.
+     *
+     * @throws IOException if file could not be read, or is not a recording
+     */
+    public static Recording read(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+            new FileInputStream(file))));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a recording");
+            }
+            long jobSequenceNumber = input.readLong();
+            long startTimeMillis = input.readLong();
+            List<AutoScalingGroupSnapshot> autoScalingGroups = new ArrayList<AutoScalingGroupSnapshot>();
+            Map<String, List<Activity>> scalingActivities = new HashMap<String, List<Activity>>();
+            try {
+                while (true) {
+                    byte type = input.readByte();
+                    if (type == AUTO_SCALING_GROUP) {
+                        autoScalingGroups.add(readAutoScalingGroup(input));
+                    }
+                    else if (type == SCALING_ACTIVITIES) {
+                        String key = input.readUTF();
+                        scalingActivities.put(key, readScalingActivities(input));
+                    }
+                    else {
+                        throw new IOException("Unknown record type " + type + " in " + file);
+                    }
+                }
+            }
+            catch (EOFException eofe) {
+                //End of recording, or recording cut short: records read so far are complete.
+            }
+            return new Recording(jobSequenceNumber, startTimeMillis, autoScalingGroups, scalingActivities);
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    static String getFileName(long jobSequenceNumber) {
+        return jobSequenceNumber + FILE_SUFFIX;
+    }
+
+    static void writeHeader(DataOutputStream output, long jobSequenceNumber, long startTimeMillis)
+        throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(jobSequenceNumber);
+        output.writeLong(startTimeMillis);
+    }
+
+    static void writeAutoScalingGroup(DataOutputStream output, AutoScalingGroupSnapshot autoScalingGroup)
+        throws IOException {
+        output.writeByte(AUTO_SCALING_GROUP);
+        output.writeUTF(autoScalingGroup.getAutoScalingGroupName());
+        writeNullableUTF(output, autoScalingGroup.getAutoScalingGroupARN());
+        writeNullableUTF(output, autoScalingGroup.getLaunchConfigurationName());
+        output.writeInt(autoScalingGroup.getMinSize());
+        output.writeInt(autoScalingGroup.getMaxSize());
+        output.writeInt(autoScalingGroup.getDesiredCapacity());
+        output.writeInt(autoScalingGroup.getInstanceCount());
+        for (int instance = 0; instance < autoScalingGroup.getInstanceCount(); instance++) {
+            writeNullableUTF(output, autoScalingGroup.getInstanceId(instance));
+            writeNullableUTF(output, autoScalingGroup.getLifecycleState(instance));
+            writeNullableUTF(output, autoScalingGroup.getAvailabilityZone(instance));
+            writeNullableUTF(output, autoScalingGroup.getLaunchConfigurationName(instance));
+        }
+    }
+
+    /**
+     * Write latest scaling activity only, as rules only look at the latest one.
+     */
+    static void writeScalingActivities(DataOutputStream output, String key, List<Activity> scalingActivities)
+        throws IOException {
+        output.writeByte(SCALING_ACTIVITIES);
+        output.writeUTF(key);
+        output.writeBoolean(!scalingActivities.isEmpty());
+        if (!scalingActivities.isEmpty()) {
+            Activity activity = scalingActivities.get(0);
+            writeNullableUTF(output, activity.getActivityId());
+            writeNullableUTF(output, activity.getDescription());
+            writeNullableUTF(output, activity.getStatusCode());
+            output.writeInt(activity.getProgress() != null ? activity.getProgress() : NONE);
+            output.writeLong(activity.getStartTime() != null ? activity.getStartTime().getTime() : NONE);
+            output.writeLong(activity.getEndTime() != null ? activity.getEndTime().getTime() : NONE);
+        }
+    }
+
+    private static AutoScalingGroupSnapshot readAutoScalingGroup(DataInputStream input) throws IOException {
+        AutoScalingGroup autoScalingGroup = new AutoScalingGroup().withAutoScalingGroupName(input.readUTF())
+            .withAutoScalingGroupARN(readNullableUTF(input)).withLaunchConfigurationName(readNullableUTF(input))
+            .withMinSize(readSize(input)).withMaxSize(readSize(input)).withDesiredCapacity(readSize(input));
+        int instanceCount = input.readInt();
+        List<Instance> instances = new ArrayList<Instance>(instanceCount);
+        for (int instance = 0; instance < instanceCount; instance++) {
+            instances.add(new Instance().withInstanceId(readNullableUTF(input))
+                .withLifecycleState(readNullableUTF(input)).withAvailabilityZone(readNullableUTF(input))
+                .withLaunchConfigurationName(readNullableUTF(input)));
+        }
+        return AutoScalingGroupSnapshot.of(autoScalingGroup.withInstances(instances));
+    }
+
+    private static List<Activity> readScalingActivities(DataInputStream input) throws IOException {
+        if (!input.readBoolean()) {
+            return Collections.emptyList();
+        }
+        Activity activity = new Activity().withActivityId(readNullableUTF(input))
+            .withDescription(readNullableUTF(input)).withStatusCode(readNullableUTF(input));
+        int progress = input.readInt();
+        long startTimeMillis = input.readLong();
+        long endTimeMillis = input.readLong();
+        activity.setProgress(progress != NONE ? progress : null);
+        activity.setStartTime(startTimeMillis != NONE ? new Date(startTimeMillis) : null);
+        activity.setEndTime(endTimeMillis != NONE ? new Date(endTimeMillis) : null);
+        return Collections.singletonList(activity);
+    }
+
+    private static Integer readSize(DataInputStream input) throws IOException {
+        int size = input.readInt();
+        return size != AutoScalingGroupSnapshot.UNKNOWN_SIZE ? size : null;
+    }
+
+    private static void writeNullableUTF(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static Long getJobSequenceNumber(String fileName) {
+        try {
+            return Long.valueOf(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()));
+        }
+        catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.sample.autoscaling.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Main class to replay the job runs recorded in a directory (see replay.recording.dir) through the rules, without
+ * calling AWS or Redis, and log which auto scaling groups would have had an instance terminated. Runs are replayed in
+ * order. Properties can be overridden with system properties to see what a configuration change would have done, e.g.
+ * -Dauto.termination.minimum.instance.threshold=3.
+ */
+public class Replay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Replay.class);
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            LOGGER.error("Usage: Replay <recording directory>");
+            return;
+        }
+        List<File> files = Recording.list(new File(args[0]));
+        AnnotationConfigApplicationContext context = ReplayConfig.create(Collections.<String, Object>emptyMap());
+        try {
+            ReplayEngine replayEngine = context.getBean(ReplayEngine.class);
+            LOGGER.info("Replaying {} runs through rules {}", files.size(), replayEngine.getRuleChain());
+            long startMillis = System.currentTimeMillis();
+            long autoScalingGroupCount = 0;
+            long terminatedGroupCount = 0;
+            for (File file : files) {
+                ReplayedRun replayedRun = replayEngine.replay(Recording.read(file));
+                List<String> terminatedGroups = replayedRun.getTerminatedGroups();
+                LOGGER.info("Run #{} at {}: {} auto scaling groups, {} would have an instance terminated, {} could " +
+                    "not be evaluated", replayedRun.getJobSequenceNumber(),
+                    new DateTime(replayedRun.getStartTimeMillis()), replayedRun.getOutcomes().size(),
+                    terminatedGroups.size(), replayedRun.getUnknownCount());
+                LOGGER.info("Run #{} would terminate an instance in {}", replayedRun.getJobSequenceNumber(),
+                    terminatedGroups);
+                autoScalingGroupCount += replayedRun.getOutcomes().size();
+                terminatedGroupCount += terminatedGroups.size();
+            }
+            LOGGER.info("Replayed {} runs, {} auto scaling groups in {} ms, {} instances would be terminated",
+                files.size(), autoScalingGroupCount, System.currentTimeMillis() - startMillis, terminatedGroupCount);
+        }
+        finally {
+            context.close();
+        }
+    }
+}
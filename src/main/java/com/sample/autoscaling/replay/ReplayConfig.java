@@ -0,0 +1,139 @@
+package com.sample.autoscaling.replay;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.RuleChain;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import com.sample.autoscaling.target.TargetDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.MapPropertySource;
+
+/**
+ * Spring Context Configuration replaying recorded job runs, active with the "replay" profile (see {@link #create}).
+ * Only the rules and the components they depend on are part of the context, configured from the application properties
+ * like the job is, so any property can be overridden for the replay (e.g. with system properties). AutoScaling clients
+ * of the targets are stand-ins failing every call, scaling activities are replayed through the scaling activity index.
+ */
+@Configuration
+@Profile(ReplayConfig.PROFILE)
+@PropertySource("classpath:sample-application.properties")
+@ComponentScan(basePackages = "com.sample.autoscaling", useDefaultFilters = false,
+    includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = {
+        AutoScalingGroupInstanceSelectionRule.class, ScalingActivityCache.class, ScalingActivityIndex.class,
+        SnapshotRecorder.class, MetricsRegistry.class}))
+public class ReplayConfig {
+
+    public static final String PROFILE = "replay";
+
+    /**
+     * Properties a replay depends on, whatever the configuration: scaling activities are read from the index, which
+     * holds every auto scaling group for the duration of a replay, and a replay is not recorded.
+     */
+    private static final Map<String, Object> REPLAY_PROPERTIES = new HashMap<String, Object>();
+
+    static {
+        REPLAY_PROPERTIES.put("scaling.activity.events.enabled", "true");
+        REPLAY_PROPERTIES.put("scaling.activity.index.max.size", String.valueOf(Long.MAX_VALUE));
+        REPLAY_PROPERTIES.put("scaling.activity.reconcile.interval.seconds", "86400");
+        REPLAY_PROPERTIES.put("replay.recording.dir", "");
+    }
+
+    @Value("${auto.scaling.targets}")
+    private String autoScalingTargets;
+
+    @Value("${replay.thread.pool.size}")
+    private int replayPoolSize;
+
+    /**
+     * Create and start a replay context.
+     *
+     * @param properties - Properties overriding the configured ones and system properties
+     */
+    public static AnnotationConfigApplicationContext create(Map<String, Object> properties) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles(PROFILE);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("overrides", properties));
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(PROFILE, REPLAY_PROPERTIES));
+        context.register(ReplayConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Bean to configure property placeholder.
+     */
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+        return new PropertySourcesPlaceholderConfigurer();
+    }
+
+    /**
+     * Targets as configured, so auto scaling groups get the same keys as in the recorded runs.
+     */
+    @Bean(destroyMethod = "")
+    public AutoScalingTargets autoScalingTargets() {
+        AmazonAutoScalingAsync offlineClient = offlineClient();
+        List<AutoScalingTarget> targets = new ArrayList<AutoScalingTarget>();
+        List<TargetDefinition> definitions = TargetDefinition.parse(autoScalingTargets);
+        if (definitions.isEmpty()) {
+            targets.add(AutoScalingTarget.defaultTarget(offlineClient));
+        }
+        for (TargetDefinition definition : definitions) {
+            targets.add(AutoScalingTarget.of(definition, offlineClient));
+        }
+        return new AutoScalingTargets(targets);
+    }
+
+    /**
+     * Rules are compiled into a chain the way {@link com.sample.autoscaling.rules.RuleHandler} compiles them.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ReplayEngine replayEngine(List<AutoScalingGroupInstanceSelectionRule> instanceSelectionRules,
+                                     MetricsRegistry metricsRegistry, ScalingActivityIndex scalingActivityIndex) {
+        return new ReplayEngine(RuleChain.compile(instanceSelectionRules, metricsRegistry), autoScalingTargets(),
+            scalingActivityIndex, replayPoolSize > 0 ? replayPoolSize : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * AutoScaling client failing every call, so a replay never reaches AWS.
+     */
+    private static AmazonAutoScalingAsync offlineClient() {
+        return (AmazonAutoScalingAsync) Proxy.newProxyInstance(AmazonAutoScalingAsync.class.getClassLoader(),
+            new Class<?>[]{AmazonAutoScalingAsync.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getDeclaringClass() == Object.class) {
+                        try {
+                            return method.invoke(this, args);
+                        }
+                        catch (InvocationTargetException ite) {
+                            throw ite.getCause();
+                        }
+                    }
+                    throw new UnsupportedOperationException("AutoScaling is not called during replay, " +
+                        method.getName() + " response was not recorded");
+                }
+            });
+    }
+}
@@ -0,0 +1,192 @@
+package com.sample.autoscaling.replay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.CompiledRule;
+import com.sample.autoscaling.rules.RuleChain;
+import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTargets;
+
+/**
+ * Evaluates recorded job runs offline: the rules of the chain are applied to every recorded auto scaling group, in
+ * chain order, the way {@link RuleHandler} applies them, without terminating anything. Auto scaling groups of a run are
+ * evaluated in parallel. Rules are the ones of a {@link ReplayConfig} context, so configuration overrides of that
+ * context apply to the replay.
+ * <p/>
+ * Scaling activities are served to the activity rule from the {@link ScalingActivityIndex} of the context, loaded with
+ * the recorded activities before each run, so AutoScaling is never called. Times of the activities are shifted by the
+ * time elapsed since the recorded run, so the rule sees them as old as they were at the time of the run. An auto
+ * scaling group whose activity was not recorded in the run (e.g. the recorded run stopped at an earlier rule) gets the
+ * latest activity recorded in an earlier run, which is why runs are to be replayed in order; if there is none, its
+ * outcome is unknown.
+ */
+public class ReplayEngine {
+
+    /**
+     * Outcome of an auto scaling group which passes all the rules, an instance would be terminated.
+     */
+    public static final String TERMINATE_OUTCOME = "WOULD_TERMINATE";
+
+    /**
+     * Outcome of an auto scaling group rules could not be evaluated for, followed by the reason.
+     */
+    public static final String UNKNOWN_OUTCOME = "UNKNOWN:";
+
+    /**
+     * Auto scaling groups of a run are split in this many slices per thread, so threads finish at about the same time.
+     */
+    private static final int SLICES_PER_THREAD = 4;
+
+    private final RuleChain ruleChain;
+
+    private final AutoScalingTargets autoScalingTargets;
+
+    private final ScalingActivityIndex scalingActivityIndex;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    /**
+     * Latest recorded activity of each auto scaling group key, across the runs replayed so far.
+     */
+    private final Map<String, List<Activity>> latestScalingActivities = new HashMap<String, List<Activity>>();
+
+    /**
+     * @param scalingActivityIndex - Index the activity rule reads scaling activities from, must be enabled
+     * @param parallelism - Number of threads evaluating auto scaling groups
+     */
+    public ReplayEngine(RuleChain ruleChain, AutoScalingTargets autoScalingTargets,
+                        ScalingActivityIndex scalingActivityIndex, int parallelism) {
+        if (!scalingActivityIndex.isEnabled()) {
+            throw new IllegalArgumentException("Scaling activity index must be enabled to replay scaling activities");
+        }
+        this.ruleChain = ruleChain;
+        this.autoScalingTargets = autoScalingTargets;
+        this.scalingActivityIndex = scalingActivityIndex;
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("Replay-%d").build());
+    }
+
+    public RuleChain getRuleChain() {
+        return ruleChain;
+    }
+
+    /**
+     * Evaluate the rules for every auto scaling group of a recorded run.
+     */
+    public synchronized ReplayedRun replay(Recording recording) throws InterruptedException {
+        latestScalingActivities.putAll(recording.getScalingActivities());
+        final List<AutoScalingGroupSnapshot> autoScalingGroups = recording.getAutoScalingGroups();
+        final String[] keys = new String[autoScalingGroups.size()];
+        long shiftMillis = System.currentTimeMillis() - recording.getStartTimeMillis();
+        for (int index = 0; index < keys.length; index++) {
+            keys[index] = key(autoScalingGroups.get(index));
+            scalingActivityIndex.invalidate(keys[index]);
+            List<Activity> scalingActivities = latestScalingActivities.get(keys[index]);
+            if (scalingActivities != null) {
+                scalingActivityIndex.reconcile(keys[index], shift(scalingActivities, shiftMillis));
+            }
+        }
+
+        final String[] outcomes = new String[keys.length];
+        int sliceSize = Math.max(1, (keys.length + parallelism * SLICES_PER_THREAD - 1) /
+            (parallelism * SLICES_PER_THREAD));
+        List<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+        for (int sliceStart = 0; sliceStart < keys.length; sliceStart += sliceSize) {
+            final int start = sliceStart;
+            final int end = Math.min(sliceStart + sliceSize, keys.length);
+            slices.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int index = start; index < end; index++) {
+                        outcomes[index] = evaluate(autoScalingGroups.get(index));
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> slice : executor.invokeAll(slices)) {
+            try {
+                slice.get();
+            }
+            catch (ExecutionException ee) {
+                throw new IllegalStateException("Run #" + recording.getJobSequenceNumber() + " could not be replayed",
+                    ee.getCause());
+            }
+        }
+
+        Map<String, String> outcomesByKey = new LinkedHashMap<String, String>();
+        for (int index = 0; index < keys.length; index++) {
+            outcomesByKey.put(keys[index], outcomes[index]);
+        }
+        return new ReplayedRun(recording.getJobSequenceNumber(), recording.getStartTimeMillis(), outcomesByKey);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Apply the rules of the chain until one fails.
+     */
+    private String evaluate(AutoScalingGroupSnapshot autoScalingGroup) {
+        try {
+            for (CompiledRule rule : ruleChain.getRules()) {
+                if (!rule.getRule().apply(autoScalingGroup)) {
+                    return RuleHandler.FAILED_OUTCOME + rule.getDescription();
+                }
+            }
+            return TERMINATE_OUTCOME;
+        }
+        catch (RuntimeException ex) {
+            return UNKNOWN_OUTCOME + ex.getMessage();
+        }
+    }
+
+    /**
+     * Key of an auto scaling group, its name if it does not belong to any configured target (its rules then fail as
+     * unknown).
+     */
+    private String key(AutoScalingGroupSnapshot autoScalingGroup) {
+        try {
+            return autoScalingTargets.getTarget(autoScalingGroup.getAutoScalingGroupName(),
+                autoScalingGroup.getAutoScalingGroupARN()).key(autoScalingGroup.getAutoScalingGroupName());
+        }
+        catch (IllegalArgumentException iae) {
+            return autoScalingGroup.getAutoScalingGroupName();
+        }
+    }
+
+    private static List<Activity> shift(List<Activity> scalingActivities, long shiftMillis) {
+        if (scalingActivities.isEmpty()) {
+            return scalingActivities;
+        }
+        Activity activity = scalingActivities.get(0);
+        return Collections.singletonList(new Activity().withActivityId(activity.getActivityId())
+            .withAutoScalingGroupName(activity.getAutoScalingGroupName()).withDescription(activity.getDescription())
+            .withStatusCode(activity.getStatusCode()).withProgress(activity.getProgress())
+            .withStartTime(shift(activity.getStartTime(), shiftMillis))
+            .withEndTime(shift(activity.getEndTime(), shiftMillis)));
+    }
+
+    private static Date shift(Date time, long shiftMillis) {
+        return time != null ? new Date(time.getTime() + shiftMillis) : null;
+    }
+}
@@ -0,0 +1,68 @@
+package com.sample.autoscaling.replay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of the rules for each auto scaling group of a recorded job run, as evaluated by {@link ReplayEngine}.
+ */
+public class ReplayedRun {
+
+    private final long jobSequenceNumber;
+
+    private final long startTimeMillis;
+
+    private final Map<String, String> outcomes;
+
+    public ReplayedRun(long jobSequenceNumber, long startTimeMillis, Map<String, String> outcomes) {
+        this.jobSequenceNumber = jobSequenceNumber;
+        this.startTimeMillis = startTimeMillis;
+        this.outcomes = Collections.unmodifiableMap(outcomes);
+    }
+
+    public long getJobSequenceNumber() {
+        return jobSequenceNumber;
+    }
+
+    /**
+     * @return Start time of the recorded run, in epoch millis.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return Outcome by auto scaling group key, in the order auto scaling groups were dispatched by the recorded run.
+     */
+    public Map<String, String> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * @return Keys of the auto scaling groups which passed all the rules, where an instance would be terminated.
+     */
+    public List<String> getTerminatedGroups() {
+        List<String> terminatedGroups = new ArrayList<String>();
+        for (Map.Entry<String, String> outcome : outcomes.entrySet()) {
+            if (ReplayEngine.TERMINATE_OUTCOME.equals(outcome.getValue())) {
+                terminatedGroups.add(outcome.getKey());
+            }
+        }
+        return terminatedGroups;
+    }
+
+    /**
+     * @return Number of auto scaling groups rules could not be evaluated for from the recordings.
+     */
+    public int getUnknownCount() {
+        int unknownCount = 0;
+        for (String outcome : outcomes.values()) {
+            if (outcome.startsWith(ReplayEngine.UNKNOWN_OUTCOME)) {
+                unknownCount++;
+            }
+        }
+        return unknownCount;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sample.autoscaling.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Records what rules are applied to during a job run, when a recording directory is configured: auto scaling groups
+ * as they are dispatched and the latest scaling activity of each auto scaling group the activity rule is applied to,
+ * whether it was described or already known. Each run is recorded in a {@link Recording} file of its own, which
+ * {@link ReplayEngine} replays offline. Recording never fails the run: recording of a run is given up on the first
+ * write error.
+ */
+@Component
+public class SnapshotRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotRecorder.class);
+
+    /**
+     * Directory recordings are written to, empty to disable recording.
+     */
+    @Value("${replay.recording.dir}")
+    private String recordingDir;
+
+    /**
+     * Recording of the current run, null when no run is being recorded.
+     */
+    private DataOutputStream output;
+
+    private File file;
+
+    /**
+     * Set while a run is being recorded, so nothing is locked when recording is disabled.
+     */
+    private volatile boolean recording;
+
+    public boolean isEnabled() {
+        return StringUtils.hasText(recordingDir);
+    }
+
+    /**
+     * Start recording a run, closing the recording of the previous run if it is still open.
+     */
+    public synchronized void start(long jobSequenceNumber, long startTimeMillis) {
+        if (!isEnabled()) {
+            return;
+        }
+        finish();
+        File directory = new File(recordingDir);
+        file = new File(directory, Recording.getFileName(jobSequenceNumber));
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory " + directory);
+            }
+            output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+            Recording.writeHeader(output, jobSequenceNumber, startTimeMillis);
+            recording = true;
+        }
+        catch (IOException ioe) {
+            abandon(ioe);
+        }
+    }
+
+    public void recordAutoScalingGroup(AutoScalingGroupSnapshot autoScalingGroup) {
+        if (!recording) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                if (output != null) {
+                    Recording.writeAutoScalingGroup(output, autoScalingGroup);
+                }
+            }
+            catch (IOException ioe) {
+                abandon(ioe);
+            }
+        }
+    }
+
+    /**
+     * @param key - Key of auto scaling group, see {@link com.sample.autoscaling.target.AutoScalingTarget#key(String)}
+     * @param scalingActivities - Latest scaling activities, most recent first
+     */
+    public void recordScalingActivities(String key, List<Activity> scalingActivities) {
+        if (!recording) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                if (output != null) {
+                    Recording.writeScalingActivities(output, key, scalingActivities);
+                }
+            }
+            catch (IOException ioe) {
+                abandon(ioe);
+            }
+        }
+    }
+
+    /**
+     * Close the recording of the current run.
+     */
+    @PreDestroy
+    public synchronized void finish() {
+        recording = false;
+        if (output == null) {
+            return;
+        }
+        try {
+            output.close();
+            LOGGER.info("Job run recorded in {}", file);
+        }
+        catch (IOException ioe) {
+            LOGGER.warn("Could not close recording {}. Error Message: {}", file, ioe.getMessage());
+        }
+        output = null;
+    }
+
+    private void abandon(IOException ioe) {
+        LOGGER.warn("Could not record job run in {}, recording of the run is given up. Error Message: {}", file,
+            ioe.getMessage());
+        recording = false;
+        if (output != null) {
+            try {
+                output.close();
+            }
+            catch (IOException closeIoe) {
+                //Recording is already given up.
+            }
+            output = null;
+        }
+    }
+}
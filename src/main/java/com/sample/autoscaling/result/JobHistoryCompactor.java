@@ -0,0 +1,354 @@
+package com.sample.autoscaling.result;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+import com.sample.autoscaling.cluster.ClusterMembership;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the job history of every auto scaling group bounded. Only the last n runs and the runs of last n days are kept
+ * in the hash of an auto scaling group, older runs are removed from the hash and counted per outcome in a roll up hash
+ * (auto scaling group name followed by {@value #ROLLUP_KEY_SUFFIX}).
+ * <p/>
+ * Compaction is incremental, each background tick compacts a small batch of auto scaling groups so it never competes
+ * with the job for long. A pass over all the auto scaling groups starts again once every group has been compacted.
+ * When several terminator nodes share Redis, each node only compacts the auto scaling groups assigned to it.
+ * <p/>
+ * Runs are ordered by their start time in the runs sorted set, never by job sequence number: terminator nodes lease
+ * blocks of sequence numbers, so a recent run of one node may have a lower sequence number than an old run of another.
+ * <p/>
+ * Indexes of job history (see {@link JobHistoryIndex}) are trimmed at the start of each pass: run indexes of runs
+ * which have expired in every auto scaling group are removed and so are their entries in outcome indexes.
+ */
+@Component
+public class JobHistoryCompactor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobHistoryCompactor.class);
+
+    public static final String ROLLUP_KEY_SUFFIX = ":rollup";
+
+    private static final String TERMINATED_OUTCOME_PREFIX = "Terminated Instance";
+
+    /**
+     * Maximum number of runs whose index entries are removed per pass.
+     */
+    private static final int TRIM_BATCH_SIZE = 1000;
+
+    @Resource(name = "redisTemplate")
+    private StringRedisTemplate redisTemplate;
+
+    @Resource(name = "backgroundTaskScheduler")
+    private TaskScheduler backgroundTaskScheduler;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private OutcomeCodec outcomeCodec;
+
+    /**
+     * Number of most recent runs kept per auto scaling group, 0 to disable.
+     */
+    @Value("${retention.keep.runs}")
+    private int keepRuns;
+
+    /**
+     * Number of days for which runs are kept per auto scaling group, 0 to disable.
+     */
+    @Value("${retention.keep.days}")
+    private int keepDays;
+
+    @Value("${retention.compaction.interval.millis}")
+    private long compactionIntervalMillis;
+
+    @Value("${retention.compaction.batch.size}")
+    private int compactionBatchSize;
+
+    @Value("${redis.job.groups.key}")
+    private String jobGroupsKey;
+
+    @Value("${redis.job.runs.key}")
+    private String jobRunsKey;
+
+    @Value("${redis.job.run.index.prefix}")
+    private String runIndexPrefix;
+
+    @Value("${redis.job.outcomes.key}")
+    private String jobOutcomesKey;
+
+    /**
+     * Auto scaling groups remaining to be compacted in current pass. Only accessed by the compaction task.
+     */
+    private final Deque<String> remainingGroups = new ArrayDeque<String>();
+
+    /**
+     * Runs started before this time (in epoch millis) are older than retention days in current pass.
+     */
+    private double cutoffMillis = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Index entries of the runs started up to (and including) this time (in epoch millis) have been removed. Only
+     * accessed by the compaction task.
+     */
+    private double trimmedStartMillis = Double.NEGATIVE_INFINITY;
+
+    @PostConstruct
+    public void scheduleCompaction() {
+        if (keepRuns <= 0 && keepDays <= 0) {
+            LOGGER.info("Job history retention is disabled");
+            return;
+        }
+        backgroundTaskScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compactNextBatch();
+                }
+                catch (DataAccessException dae) {
+                    LOGGER.error("Could not compact job history. Error Message: {}", dae.getMessage());
+                }
+            }
+        }, compactionIntervalMillis);
+    }
+
+    /**
+     * Compact the job history of next batch of auto scaling groups.
+     *
+     * @return Number of runs removed from auto scaling group hashes.
+     */
+    public int compactNextBatch() {
+        if (remainingGroups.isEmpty()) {
+            startPass();
+        }
+        int compactedRuns = 0;
+        for (int count = 0; count < compactionBatchSize && !remainingGroups.isEmpty(); count++) {
+            String autoScalingGroupName = remainingGroups.poll();
+            if (clusterMembership.isOwned(autoScalingGroupName)) {
+                compactedRuns += compact(autoScalingGroupName);
+            }
+        }
+        return compactedRuns;
+    }
+
+    /**
+     * Compact the job history of an auto scaling group.
+     *
+     * @param autoScalingGroupName
+     *
+     * @return Number of runs removed from the hash of auto scaling group.
+     */
+    public int compact(final String autoScalingGroupName) {
+        Map<String, String> history = redisTemplate.<String, String>opsForHash().entries(autoScalingGroupName);
+        final List<String> fields = new ArrayList<String>(history.keySet());
+        List<Object> runStarts = redisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (String field : fields) {
+                    stringRedisConnection.zScore(jobRunsKey, field);
+                }
+                return null;
+            }
+        });
+        final List<String> expiredFields = findExpiredFields(fields, runStarts);
+        if (expiredFields.isEmpty()) {
+            return 0;
+        }
+        final Map<String, Integer> rollupCounts = new HashMap<String, Integer>();
+        for (String field : expiredFields) {
+            String rollupField = rollupField(outcomeCodec.decode(history.get(field)));
+            Integer count = rollupCounts.get(rollupField);
+            rollupCounts.put(rollupField, count == null ? 1 : count + 1);
+        }
+        //Roll up and removal are done in one transaction, so a run is never counted twice or lost.
+        redisTemplate.execute(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                stringRedisConnection.multi();
+                for (Map.Entry<String, Integer> rollupCount : rollupCounts.entrySet()) {
+                    stringRedisConnection.hIncrBy(autoScalingGroupName + ROLLUP_KEY_SUFFIX, rollupCount.getKey(),
+                        rollupCount.getValue());
+                }
+                stringRedisConnection.hDel(autoScalingGroupName,
+                    expiredFields.toArray(new String[expiredFields.size()]));
+                return stringRedisConnection.exec();
+            }
+        });
+        LOGGER.debug("Compacted {} runs of auto scaling group {}", expiredFields.size(), autoScalingGroupName);
+        return expiredFields.size();
+    }
+
+    /**
+     * Outcome under which a run is counted in roll up hash. Terminated instance ids are dropped, failures are counted
+     * per failure message.
+     */
+    public static String rollupField(String outcome) {
+        if (outcome == null) {
+            return "UNKNOWN";
+        }
+        return outcome.startsWith(TERMINATED_OUTCOME_PREFIX) ? TERMINATED_OUTCOME_PREFIX : outcome;
+    }
+
+    /**
+     * Find the job sequence numbers which are beyond the last n runs or are older than retention days, given the start
+     * time of each run (null once the run has left the runs sorted set, such a run is older than any run still in it).
+     */
+    private List<String> findExpiredFields(List<String> fields, List<Object> runStarts) {
+        List<Run> runs = new ArrayList<Run>(fields.size());
+        for (int index = 0; index < fields.size(); index++) {
+            String field = fields.get(index);
+            try {
+                Double startMillis = (Double) runStarts.get(index);
+                runs.add(new Run(Long.valueOf(field), startMillis == null ? Double.NEGATIVE_INFINITY : startMillis));
+            }
+            catch (NumberFormatException nfe) {
+                LOGGER.warn("Ignoring unexpected job history field {}", field);
+            }
+        }
+        //Most recent run first
+        Collections.sort(runs);
+        List<String> expiredFields = new ArrayList<String>();
+        for (int index = 0; index < runs.size(); index++) {
+            Run run = runs.get(index);
+            boolean beyondKeptRuns = keepRuns > 0 && index >= keepRuns;
+            boolean olderThanKeptDays = keepDays > 0 && run.startMillis < cutoffMillis;
+            if (beyondKeptRuns || olderThanKeptDays) {
+                expiredFields.add(String.valueOf(run.jobSequenceNumber));
+            }
+        }
+        return expiredFields;
+    }
+
+    /**
+     * Start a new pass over all the auto scaling groups having job history.
+     */
+    private void startPass() {
+        remainingGroups.addAll(redisTemplate.opsForSet().members(jobGroupsKey));
+        if (keepDays > 0) {
+            cutoffMillis = DateTime.now().minusDays(keepDays).getMillis();
+        }
+        LOGGER.debug("Starting job history compaction of {} auto scaling groups", remainingGroups.size());
+        trimIndexes();
+    }
+
+    /**
+     * Remove the index entries of the runs which have expired in every auto scaling group: runs started before
+     * retention days, and runs started before the last n runs overall (an auto scaling group has at most one result
+     * per run, so these are beyond the last n runs of every auto scaling group). Runs are trimmed in start time order,
+     * at most {@value #TRIM_BATCH_SIZE} per pass. Runs older than retention days (all the trimmed runs without
+     * retention days) are removed from the runs sorted set as well. Outcome indexes left empty are removed from the
+     * outcomes set, an outcome recorded again meanwhile is added back by the next write of that outcome.
+     */
+    private void trimIndexes() {
+        //Start times are in whole millis, so runs started before a time are the runs started up to the milli before.
+        double trimUpToMillis = cutoffMillis - 1;
+        if (keepRuns > 0) {
+            long runCount = redisTemplate.opsForZSet().size(jobRunsKey);
+            if (runCount > keepRuns) {
+                for (TypedTuple<String> oldestKeptRun : redisTemplate.opsForZSet().rangeWithScores(jobRunsKey,
+                    runCount - keepRuns, runCount - keepRuns)) {
+                    trimUpToMillis = Math.max(trimUpToMillis, oldestKeptRun.getScore() - 1);
+                }
+            }
+        }
+        if (trimUpToMillis <= trimmedStartMillis) {
+            return;
+        }
+        Set<TypedTuple<String>> expiredRuns = redisTemplate.opsForZSet().rangeByScoreWithScores(jobRunsKey,
+            trimmedStartMillis, trimUpToMillis, 0, TRIM_BATCH_SIZE);
+        final List<Long> trimmedRuns = new ArrayList<Long>(expiredRuns.size());
+        final List<String> removedRuns = new ArrayList<String>();
+        double lastTrimmedStartMillis = trimmedStartMillis;
+        for (TypedTuple<String> run : expiredRuns) {
+            trimmedRuns.add(Long.valueOf(run.getValue()));
+            lastTrimmedStartMillis = Math.max(lastTrimmedStartMillis, run.getScore());
+            if (keepDays <= 0 || run.getScore() < cutoffMillis) {
+                removedRuns.add(run.getValue());
+            }
+        }
+        final List<String> outcomeIndexKeys = new ArrayList<String>(redisTemplate.opsForSet().members(jobOutcomesKey));
+        redisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (Long jobSequenceNumber : trimmedRuns) {
+                    stringRedisConnection.del(JobHistoryIndex.runIndexKey(runIndexPrefix, jobSequenceNumber));
+                    for (String outcomeIndexKey : outcomeIndexKeys) {
+                        stringRedisConnection.zRemRangeByScore(outcomeIndexKey, jobSequenceNumber, jobSequenceNumber);
+                    }
+                }
+                if (!removedRuns.isEmpty()) {
+                    stringRedisConnection.zRem(jobRunsKey, removedRuns.toArray(new String[removedRuns.size()]));
+                }
+                return null;
+            }
+        });
+        List<Object> sizes = redisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (String outcomeIndexKey : outcomeIndexKeys) {
+                    stringRedisConnection.zCard(outcomeIndexKey);
+                }
+                return null;
+            }
+        });
+        List<String> emptiedKeys = new ArrayList<String>();
+        for (int index = 0; index < outcomeIndexKeys.size(); index++) {
+            if (Long.valueOf(0).equals(sizes.get(index))) {
+                emptiedKeys.add(outcomeIndexKeys.get(index));
+            }
+        }
+        if (!emptiedKeys.isEmpty()) {
+            redisTemplate.opsForSet().remove(jobOutcomesKey, emptiedKeys.toArray());
+        }
+        //A full batch may have left runs started at the same time as its last run, they are trimmed again next pass.
+        trimmedStartMillis = expiredRuns.size() < TRIM_BATCH_SIZE ? trimUpToMillis : lastTrimmedStartMillis;
+        LOGGER.debug("Trimmed job history indexes of {} runs, {} outcome indexes emptied", trimmedRuns.size(),
+            emptiedKeys.size());
+    }
+
+    /**
+     * Job sequence number and start time of a run, ordered most recent first.
+     */
+    private static final class Run implements Comparable<Run> {
+
+        private final long jobSequenceNumber;
+
+        private final double startMillis;
+
+        private Run(long jobSequenceNumber, double startMillis) {
+            this.jobSequenceNumber = jobSequenceNumber;
+            this.startMillis = startMillis;
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            int byStart = Double.compare(other.startMillis, startMillis);
+            return byStart != 0 ? byStart : Long.compare(other.jobSequenceNumber, jobSequenceNumber);
+        }
+    }
+}
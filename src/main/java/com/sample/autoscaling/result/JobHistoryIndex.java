@@ -0,0 +1,48 @@
+package com.sample.autoscaling.result;
+
+/**
+ * Naming of the secondary indexes of job history, written by {@link JobResultWriter} along with the results, trimmed
+ * by {@link JobHistoryCompactor} and read by {@link JobHistoryQuery}:
+ * <ul>
+ * <li>Run index: one sorted set per run, with the names of the auto scaling groups having a result in the run as
+ * members, all scored 0 so they are ordered by name.</li>
+ * <li>Outcome index: one sorted set per outcome (as stored, see {@link OutcomeCodec#normalize(String)}, and counted in
+ * roll up, see {@link JobHistoryCompactor#rollupField(String)}), with job sequence number and auto scaling group name
+ * as members, scored by job sequence number. Outcome indexes are members of the outcomes set until trimming empties
+ * them.</li>
+ * </ul>
+ * Outcomes themselves are only stored in the hash of the auto scaling group.
+ */
+public final class JobHistoryIndex {
+
+    private static final char MEMBER_SEPARATOR = ':';
+
+    private JobHistoryIndex() {
+    }
+
+    public static String runIndexKey(String runIndexPrefix, long jobSequenceNumber) {
+        return runIndexPrefix + jobSequenceNumber;
+    }
+
+    public static String outcomeIndexKey(String outcomeIndexPrefix, String outcome) {
+        return outcomeIndexPrefix + JobHistoryCompactor.rollupField(OutcomeCodec.normalize(outcome));
+    }
+
+    /**
+     * Member of outcome index for a result.
+     */
+    public static String outcomeIndexMember(long jobSequenceNumber, String autoScalingGroupName) {
+        return jobSequenceNumber + String.valueOf(MEMBER_SEPARATOR) + autoScalingGroupName;
+    }
+
+    /**
+     * Job sequence number and auto scaling group name of an outcome index member. Auto scaling group name may contain
+     * the separator, job sequence number never does.
+     *
+     * @return Result without outcome.
+     */
+    public static JobResult parseOutcomeIndexMember(String member) {
+        int separator = member.indexOf(MEMBER_SEPARATOR);
+        return new JobResult(member.substring(separator + 1), Long.valueOf(member.substring(0, separator)), null);
+    }
+}
@@ -0,0 +1,268 @@
+package com.sample.autoscaling.result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.Resource;
+
+import com.google.common.collect.AbstractIterator;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read side of job history, for dashboards and tools which need the results of a job run or the results having an
+ * outcome. Queries are answered from the indexes written along with the results (see {@link JobHistoryIndex}): one
+ * page costs one read of an index and one pipelined round trip to fetch the outcomes, whatever the number of auto
+ * scaling groups, and never requires KEYS or HGETALL over every auto scaling group.
+ * <p/>
+ * Pages are addressed by offset. Streaming methods return lazy iterables which fetch one page at a time, so a whole
+ * run or outcome can be read without holding it in memory. Results compacted while being read are skipped.
+ */
+@Component
+public class JobHistoryQuery {
+
+    @Resource(name = "redisTemplate")
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private OutcomeCodec outcomeCodec;
+
+    @Value("${redis.job.runs.key}")
+    private String jobRunsKey;
+
+    @Value("${redis.job.run.index.prefix}")
+    private String runIndexPrefix;
+
+    @Value("${redis.job.outcome.index.prefix}")
+    private String outcomeIndexPrefix;
+
+    @Value("${redis.job.outcomes.key}")
+    private String jobOutcomesKey;
+
+    @Value("${history.query.page.size}")
+    private int pageSize;
+
+    /**
+     * Get a page of the results of a job run, ordered by auto scaling group name.
+     *
+     * @param jobSequenceNumber - Job Sequence Number of the run
+     * @param offset - Number of results to skip
+     * @param limit - Maximum number of results in page
+     */
+    public JobResultPage getRunResults(long jobSequenceNumber, int offset, int limit) {
+        Set<String> autoScalingGroupNames = redisTemplate.opsForZSet().range(
+            JobHistoryIndex.runIndexKey(runIndexPrefix, jobSequenceNumber), offset, offset + limit);
+        List<JobResult> results = new ArrayList<JobResult>(autoScalingGroupNames.size());
+        for (String autoScalingGroupName : autoScalingGroupNames) {
+            results.add(new JobResult(autoScalingGroupName, jobSequenceNumber, null));
+        }
+        return page(results, offset, limit);
+    }
+
+    /**
+     * Stream all the results of a job run, ordered by auto scaling group name.
+     */
+    public Iterable<JobResult> streamRunResults(final long jobSequenceNumber) {
+        return stream(new PageLoader() {
+            @Override
+            public JobResultPage load(int offset, int limit) {
+                return getRunResults(jobSequenceNumber, offset, limit);
+            }
+        });
+    }
+
+    /**
+     * Get a page of the results having an outcome in a range of job runs, ordered by job sequence number. Outcomes of
+     * instance termination match whatever the terminated instance, failures match up to their first ": ", other
+     * outcomes must match exactly.
+     *
+     * @param outcome - Outcome, as recorded or as counted in roll up (see {@link JobHistoryCompactor#rollupField})
+     * @param fromJobSequenceNumber - First job run of the range
+     * @param toJobSequenceNumber - Last job run of the range
+     * @param offset - Number of results to skip
+     * @param limit - Maximum number of results in page
+     */
+    public JobResultPage getResultsByOutcome(String outcome, long fromJobSequenceNumber, long toJobSequenceNumber,
+        int offset, int limit) {
+        return page(readOutcomeIndex(outcome, fromJobSequenceNumber, toJobSequenceNumber, offset, limit + 1), offset,
+            limit);
+    }
+
+    /**
+     * Same as {@link #getResultsByOutcome(String, long, long, int, int)} for the job runs started in a time range.
+     * Terminator nodes lease blocks of job sequence numbers, so the runs of another node started out of the time range
+     * may be numbered in between: the outcome index is read over the numbers of the runs in range and filtered.
+     */
+    public JobResultPage getResultsByOutcome(String outcome, DateTime from, DateTime to, int offset, int limit) {
+        List<Long> jobSequenceNumbers = getJobSequenceNumbers(from, to);
+        if (jobSequenceNumbers.isEmpty()) {
+            return new JobResultPage(Collections.<JobResult>emptyList(), offset, null);
+        }
+        Set<Long> runs = new HashSet<Long>(jobSequenceNumbers);
+        List<JobResult> results = new ArrayList<JobResult>();
+        int skipped = 0;
+        int read = 0;
+        List<JobResult> members;
+        do {
+            members = readOutcomeIndex(outcome, jobSequenceNumbers.get(0),
+                jobSequenceNumbers.get(jobSequenceNumbers.size() - 1), read, pageSize);
+            read += members.size();
+            for (JobResult member : members) {
+                if (!runs.contains(member.getJobSequenceNumber())) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                }
+                else if (results.size() <= limit) {
+                    results.add(member);
+                }
+            }
+        } while (members.size() == pageSize && results.size() <= limit);
+        return page(results, offset, limit);
+    }
+
+    /**
+     * Stream all the results having an outcome in a range of job runs, ordered by job sequence number.
+     */
+    public Iterable<JobResult> streamResultsByOutcome(final String outcome, final long fromJobSequenceNumber,
+        final long toJobSequenceNumber) {
+        return stream(new PageLoader() {
+            @Override
+            public JobResultPage load(int offset, int limit) {
+                return getResultsByOutcome(outcome, fromJobSequenceNumber, toJobSequenceNumber, offset, limit);
+            }
+        });
+    }
+
+    /**
+     * Get the job runs started in a time range. Runs older than retention days are not known anymore.
+     *
+     * @return Job sequence numbers in ascending order.
+     */
+    public List<Long> getJobSequenceNumbers(DateTime from, DateTime to) {
+        List<Long> jobSequenceNumbers = new ArrayList<Long>();
+        for (String run : redisTemplate.opsForZSet().rangeByScore(jobRunsKey, from.getMillis(), to.getMillis())) {
+            jobSequenceNumbers.add(Long.valueOf(run));
+        }
+        Collections.sort(jobSequenceNumbers);
+        return jobSequenceNumbers;
+    }
+
+    /**
+     * Get the outcomes having an index, as counted in roll up.
+     */
+    public Set<String> getOutcomes() {
+        Set<String> outcomes = new TreeSet<String>();
+        for (String outcomeIndexKey : redisTemplate.opsForSet().members(jobOutcomesKey)) {
+            outcomes.add(outcomeIndexKey.substring(outcomeIndexPrefix.length()));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Read the members of an outcome index in a range of job runs, ordered by job sequence number, without their
+     * outcome.
+     */
+    private List<JobResult> readOutcomeIndex(final String outcome, final long fromJobSequenceNumber,
+        final long toJobSequenceNumber, final int offset, final int count) {
+        Set<String> members = redisTemplate.execute(new RedisCallback<Set<String>>() {
+            @Override
+            public Set<String> doInRedis(RedisConnection connection) throws DataAccessException {
+                return ((StringRedisConnection) connection).zRangeByScore(
+                    JobHistoryIndex.outcomeIndexKey(outcomeIndexPrefix, outcome), fromJobSequenceNumber,
+                    toJobSequenceNumber, offset, count);
+            }
+        });
+        List<JobResult> results = new ArrayList<JobResult>(members.size());
+        for (String member : members) {
+            results.add(JobHistoryIndex.parseOutcomeIndexMember(member));
+        }
+        return results;
+    }
+
+    /**
+     * Build a page from one more result than the limit, read to find out if there is a next page, and fetch the
+     * outcomes of the page in one round trip.
+     */
+    private JobResultPage page(List<JobResult> results, int offset, int limit) {
+        Integer nextOffset = null;
+        if (results.size() > limit) {
+            results = results.subList(0, limit);
+            nextOffset = offset + limit;
+        }
+        return new JobResultPage(fetchOutcomes(results), offset, nextOffset);
+    }
+
+    private List<JobResult> fetchOutcomes(final List<JobResult> results) {
+        if (results.isEmpty()) {
+            return results;
+        }
+        List<Object> outcomes = redisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (JobResult result : results) {
+                    stringRedisConnection.hGet(result.getAutoScalingGroupName(),
+                        String.valueOf(result.getJobSequenceNumber()));
+                }
+                //Pipelined callbacks must return null, replies are collected by the template.
+                return null;
+            }
+        });
+        List<JobResult> fetched = new ArrayList<JobResult>(results.size());
+        for (int index = 0; index < results.size(); index++) {
+            String outcome = (String) outcomes.get(index);
+            if (outcome != null) {
+                JobResult result = results.get(index);
+                fetched.add(outcomeCodec.decodeResult(result.getAutoScalingGroupName(), result.getJobSequenceNumber(),
+                    outcome));
+            }
+        }
+        return fetched;
+    }
+
+    private Iterable<JobResult> stream(final PageLoader pageLoader) {
+        return new Iterable<JobResult>() {
+            @Override
+            public Iterator<JobResult> iterator() {
+                return new AbstractIterator<JobResult>() {
+
+                    private Iterator<JobResult> current = Collections.<JobResult>emptyList().iterator();
+
+                    private Integer nextOffset = 0;
+
+                    @Override
+                    protected JobResult computeNext() {
+                        while (!current.hasNext()) {
+                            if (nextOffset == null) {
+                                return endOfData();
+                            }
+                            JobResultPage page = pageLoader.load(nextOffset, pageSize);
+                            current = page.getResults().iterator();
+                            nextOffset = page.getNextOffset();
+                        }
+                        return current.next();
+                    }
+                };
+            }
+        };
+    }
+
+    private interface PageLoader {
+
+        JobResultPage load(int offset, int limit);
+    }
+}
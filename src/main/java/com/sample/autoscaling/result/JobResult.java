@@ -0,0 +1,50 @@
+package com.sample.autoscaling.result;
+
+/**
+ * Outcome of a job run for an auto scaling group.
+ */
+public class JobResult {
+
+    private final String autoScalingGroupName;
+
+    private final Long jobSequenceNumber;
+
+    private final String outcome;
+
+    private final Long recordedAtMillis;
+
+    public JobResult(String autoScalingGroupName, Long jobSequenceNumber, String outcome) {
+        this(autoScalingGroupName, jobSequenceNumber, outcome, null);
+    }
+
+    public JobResult(String autoScalingGroupName, Long jobSequenceNumber, String outcome, Long recordedAtMillis) {
+        this.autoScalingGroupName = autoScalingGroupName;
+        this.jobSequenceNumber = jobSequenceNumber;
+        this.outcome = outcome;
+        this.recordedAtMillis = recordedAtMillis;
+    }
+
+    public String getAutoScalingGroupName() {
+        return autoScalingGroupName;
+    }
+
+    public Long getJobSequenceNumber() {
+        return jobSequenceNumber;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return Time the outcome was recorded in epoch millis (to the second once stored), or null if unknown.
+     */
+    public Long getRecordedAtMillis() {
+        return recordedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return autoScalingGroupName + "#" + jobSequenceNumber + "=" + outcome;
+    }
+}
@@ -0,0 +1,45 @@
+package com.sample.autoscaling.result;
+
+import java.util.List;
+
+/**
+ * Page of job results returned by {@link JobHistoryQuery}.
+ */
+public class JobResultPage {
+
+    private final List<JobResult> results;
+
+    private final int offset;
+
+    private final Integer nextOffset;
+
+    public JobResultPage(List<JobResult> results, int offset, Integer nextOffset) {
+        this.results = results;
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+    }
+
+    public List<JobResult> getResults() {
+        return results;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Offset of the next page, or null if this is the last page.
+     */
+    public Integer getNextOffset() {
+        return nextOffset;
+    }
+
+    public boolean hasNext() {
+        return nextOffset != null;
+    }
+
+    @Override
+    public String toString() {
+        return "JobResultPage{offset=" + offset + ", results=" + results.size() + ", nextOffset=" + nextOffset + "}";
+    }
+}
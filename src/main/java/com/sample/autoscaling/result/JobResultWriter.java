@@ -0,0 +1,369 @@
+package com.sample.autoscaling.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Buffers job results and writes them to Redis in batches. Results are stored in one hash per auto scaling group, with
+ * job sequence number as field and outcome, encoded by {@link OutcomeCodec}, as value. Hash of an auto scaling group is
+ * named after the group, prefixed by the Redis namespace of its target. A batch is flushed in background when it
+ * reaches the configured size or when the flush interval elapses, whichever happens first. Each flush sends one HMSET
+ * per auto scaling group, all of them pipelined in a single round trip. Threads recording results never wait for Redis.
+ * <p/>
+ * Along with the results, names of the auto scaling groups having results are added to a set and start time of each
+ * job run is added to a sorted set, so {@link JobHistoryCompactor} can find the results to be compacted. Each result
+ * is also added to the run index of its job run and to the outcome index of its outcome (see {@link JobHistoryIndex}),
+ * in the same round trip, so {@link JobHistoryQuery} can answer without reading every hash.
+ * <p/>
+ * When a journal file is configured, results are appended to a local {@link ResultJournal} instead of being buffered in
+ * memory, and each flush replays the journal into Redis, acknowledging batches as they are written. Writes are
+ * idempotent, so a batch written again after a crash or a failed acknowledgement leaves Redis unchanged. Results not
+ * yet in Redis when the terminator stops are replayed after restart, and a Redis outage only makes the journal grow.
+ * Journal is forced to disk on each flush, so a crash of the host loses at most the results of one flush interval.
+ * Results are buffered in memory if the journal is full.
+ * <p/>
+ * Results buffered in memory are capped, so a long Redis outage can not exhaust the heap: once the buffer is full,
+ * new results are dropped and counted until a flush drains it.
+ */
+@Component
+public class JobResultWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobResultWriter.class);
+
+    @Resource(name = "redisTemplate")
+    private StringRedisTemplate redisTemplate;
+
+    @Resource(name = "backgroundTaskScheduler")
+    private TaskScheduler backgroundTaskScheduler;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private OutcomeCodec outcomeCodec;
+
+    @Value("${result.flush.batch.size}")
+    private int flushBatchSize;
+
+    @Value("${result.flush.interval.millis}")
+    private long flushIntervalMillis;
+
+    /**
+     * Journal file, empty to buffer results in memory only.
+     */
+    @Value("${result.journal.path}")
+    private String journalPath;
+
+    @Value("${result.journal.size.mb}")
+    private int journalSizeMb;
+
+    /**
+     * Maximum number of results buffered in memory, results recorded beyond are dropped.
+     */
+    @Value("${result.buffer.max.size}")
+    private int bufferMaxSize;
+
+    @Value("${redis.job.groups.key}")
+    private String jobGroupsKey;
+
+    @Value("${redis.job.runs.key}")
+    private String jobRunsKey;
+
+    @Value("${redis.job.run.index.prefix}")
+    private String runIndexPrefix;
+
+    @Value("${redis.job.outcome.index.prefix}")
+    private String outcomeIndexPrefix;
+
+    @Value("${redis.job.outcomes.key}")
+    private String jobOutcomesKey;
+
+    private final Queue<JobResult> pendingResults = new ConcurrentLinkedQueue<JobResult>();
+
+    /**
+     * Start time (epoch millis) of job runs keyed by job sequence number, waiting to be written to Redis.
+     */
+    private final ConcurrentMap<Long, Long> pendingRunStarts = new ConcurrentHashMap<Long, Long>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * Number of results buffered in memory, as opposed to the journaled ones also counted by pendingCount.
+     */
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private ResultJournal journal;
+
+    /**
+     * Set once journal is found full, until it has been drained.
+     */
+    private final AtomicBoolean journalFull = new AtomicBoolean();
+
+    /**
+     * Set once buffer is found full, until it has been drained.
+     */
+    private final AtomicBoolean bufferFull = new AtomicBoolean();
+
+    /**
+     * Set while a size triggered flush is waiting to be executed, so only one is submitted at a time.
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushRequested.set(false);
+            flush();
+        }
+    };
+
+    @PostConstruct
+    public void scheduleFlush() throws IOException {
+        if (StringUtils.hasText(journalPath)) {
+            journal = new ResultJournal(new File(journalPath), journalSizeMb * 1024 * 1024);
+            pendingCount.addAndGet(journal.getPendingResultCount());
+            LOGGER.info("Job results are journaled in {}, {} results to be replayed", journalPath,
+                journal.getPendingResultCount());
+        }
+        backgroundTaskScheduler.scheduleWithFixedDelay(flushTask, flushIntervalMillis);
+    }
+
+    /**
+     * Buffer the outcome of a job run for an auto scaling group. This method never blocks on Redis. Result is dropped
+     * if it has to be buffered in memory and the buffer is full.
+     *
+     * @param autoScalingGroupName - Auto scaling group name, prefixed by the Redis namespace of its target
+     * @param jobSequenceNumber - Job Sequence Number of the run
+     * @param outcome - Outcome of the run
+     */
+    public void record(String autoScalingGroupName, Long jobSequenceNumber, String outcome) {
+        JobResult result = new JobResult(autoScalingGroupName, jobSequenceNumber, outcome, System.currentTimeMillis());
+        if (journal == null || !journal.append(result)) {
+            warnIfJournalFull();
+            if (bufferedCount.incrementAndGet() > bufferMaxSize) {
+                bufferedCount.decrementAndGet();
+                droppedCount.incrementAndGet();
+                warnIfBufferFull();
+                return;
+            }
+            pendingResults.add(result);
+        }
+        if (pendingCount.incrementAndGet() >= flushBatchSize && flushRequested.compareAndSet(false, true)) {
+            backgroundTaskScheduler.schedule(flushTask, new Date());
+        }
+    }
+
+    /**
+     * Buffer the start time of a job run. This method never blocks on Redis.
+     *
+     * @param jobSequenceNumber - Job Sequence Number of the run
+     * @param startTimeMillis - Start time of the run in epoch millis
+     */
+    public void recordRunStart(Long jobSequenceNumber, long startTimeMillis) {
+        if (journal == null || !journal.appendRunStart(jobSequenceNumber, startTimeMillis)) {
+            warnIfJournalFull();
+            pendingRunStarts.put(jobSequenceNumber, startTimeMillis);
+        }
+    }
+
+    /**
+     * Write all the buffered results to Redis, then force the journal to disk and replay it. Results are put back in
+     * buffer if Redis could not be reached, and journal is left as is, so they are retried on next flush.
+     */
+    public synchronized void flush() {
+        if (journal != null) {
+            journal.force();
+        }
+        if (flushBuffered() && journal != null) {
+            replayJournal();
+        }
+    }
+
+    /**
+     * Write the results buffered in memory.
+     *
+     * @return False if Redis could not be reached.
+     */
+    private boolean flushBuffered() {
+        List<JobResult> batch = new ArrayList<JobResult>();
+        JobResult result;
+        while ((result = pendingResults.poll()) != null) {
+            pendingCount.decrementAndGet();
+            bufferedCount.decrementAndGet();
+            batch.add(result);
+        }
+        Map<Long, Long> runStarts = new HashMap<Long, Long>();
+        for (Iterator<Map.Entry<Long, Long>> iterator = pendingRunStarts.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Long, Long> runStart = iterator.next();
+            runStarts.put(runStart.getKey(), runStart.getValue());
+            iterator.remove();
+        }
+        if (batch.isEmpty() && runStarts.isEmpty()) {
+            return true;
+        }
+        if (!write(batch, runStarts)) {
+            //Results recorded meanwhile may take the buffer slightly over its cap until next flush.
+            pendingResults.addAll(batch);
+            pendingCount.addAndGet(batch.size());
+            bufferedCount.addAndGet(batch.size());
+            pendingRunStarts.putAll(runStarts);
+            return false;
+        }
+        bufferFull.set(false);
+        return true;
+    }
+
+    /**
+     * Write the journaled results, one batch at a time, until the journal is drained or Redis could not be reached.
+     */
+    private void replayJournal() {
+        ResultJournal.Batch batch;
+        while (!(batch = journal.read(flushBatchSize)).isEmpty()) {
+            if (!write(batch.getResults(), batch.getRunStarts())) {
+                return;
+            }
+            journal.acknowledge(batch);
+            pendingCount.addAndGet(-batch.getResults().size());
+        }
+        journalFull.set(false);
+    }
+
+    /**
+     * Get the number of results waiting to be written to Redis.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Get the number of results dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void warnIfJournalFull() {
+        if (journal != null && journalFull.compareAndSet(false, true)) {
+            LOGGER.warn("Job result journal {} is full, results are buffered in memory until it is drained",
+                journalPath);
+        }
+    }
+
+    private void warnIfBufferFull() {
+        if (bufferFull.compareAndSet(false, true)) {
+            LOGGER.warn("Job result buffer is full ({} results), results are dropped until it is drained",
+                bufferMaxSize);
+        }
+    }
+
+    /**
+     * Write a batch of results to Redis.
+     *
+     * @return False if Redis could not be reached.
+     */
+    private boolean write(List<JobResult> batch, Map<Long, Long> runStarts) {
+        LatencyMetrics flushLatency = metricsRegistry.getLatencyMetrics(MetricsRegistry.REDIS, "flush");
+        long startNanos = System.nanoTime();
+        try {
+            writePipelined(batch, runStarts);
+            flushLatency.record(System.nanoTime() - startNanos, false);
+            LOGGER.debug("Flushed {} job results to Redis", batch.size());
+            return true;
+        }
+        catch (DataAccessException dae) {
+            flushLatency.record(System.nanoTime() - startNanos, true);
+            LOGGER.error("Could not flush {} job results to Redis, will retry. Error Message: {}", batch.size(),
+                dae.getMessage());
+            return false;
+        }
+    }
+
+    private void writePipelined(final List<JobResult> batch, final Map<Long, Long> runStarts) {
+        //Group the results by auto scaling group, so there is one HMSET per hash.
+        final Map<String, Map<String, String>> resultsByGroup = new HashMap<String, Map<String, String>>();
+        final Set<String> outcomeIndexKeys = new HashSet<String>();
+        for (JobResult jobResult : batch) {
+            outcomeIndexKeys.add(JobHistoryIndex.outcomeIndexKey(outcomeIndexPrefix, jobResult.getOutcome()));
+            Map<String, String> fields = resultsByGroup.get(jobResult.getAutoScalingGroupName());
+            if (fields == null) {
+                fields = new HashMap<String, String>();
+                resultsByGroup.put(jobResult.getAutoScalingGroupName(), fields);
+            }
+            //Field names are left as decimal numbers, Redis already stores them as integers in small hashes.
+            fields.put(String.valueOf(jobResult.getJobSequenceNumber()),
+                outcomeCodec.encode(jobResult.getOutcome(), jobResult.getRecordedAtMillis()));
+        }
+        redisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (Map.Entry<Long, Long> runStart : runStarts.entrySet()) {
+                    stringRedisConnection.zAdd(jobRunsKey, runStart.getValue(), String.valueOf(runStart.getKey()));
+                }
+                for (Map.Entry<String, Map<String, String>> groupResults : resultsByGroup.entrySet()) {
+                    stringRedisConnection.hMSet(groupResults.getKey(), groupResults.getValue());
+                }
+                if (!resultsByGroup.isEmpty()) {
+                    stringRedisConnection.sAdd(jobGroupsKey,
+                        resultsByGroup.keySet().toArray(new String[resultsByGroup.size()]));
+                    stringRedisConnection.sAdd(jobOutcomesKey,
+                        outcomeIndexKeys.toArray(new String[outcomeIndexKeys.size()]));
+                }
+                for (JobResult jobResult : batch) {
+                    long jobSequenceNumber = jobResult.getJobSequenceNumber();
+                    stringRedisConnection.zAdd(JobHistoryIndex.runIndexKey(runIndexPrefix, jobSequenceNumber), 0,
+                        jobResult.getAutoScalingGroupName());
+                    stringRedisConnection.zAdd(JobHistoryIndex.outcomeIndexKey(outcomeIndexPrefix,
+                        jobResult.getOutcome()), jobSequenceNumber,
+                        JobHistoryIndex.outcomeIndexMember(jobSequenceNumber, jobResult.getAutoScalingGroupName()));
+                }
+                //Pipelined callbacks must return null, replies are collected by the template.
+                return null;
+            }
+        });
+    }
+}
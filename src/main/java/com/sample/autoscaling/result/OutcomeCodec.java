@@ -0,0 +1,272 @@
+package com.sample.autoscaling.result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.sample.autoscaling.job.TerminateInstanceJob;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.RuleDescription;
+import com.sample.autoscaling.rules.RuleHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compact encoding of the outcomes stored in job history. Outcomes are recorded as readable strings, and stored as a
+ * version marker followed by a few packed bytes: outcome type, time the outcome was recorded (epoch seconds), then the
+ * rule id of a failed rule (see {@link RuleDescription#id()}), the hex digits of a terminated instance id, or the
+ * short text of other failures. A rule failure takes 8 characters instead of the rule description.
+ * <p/>
+ * Bytes are packed 7 bits per character, so encoded outcomes are plain ASCII and are stored and read back unchanged
+ * through the string serializer of the Redis template. Values stored before this encoding (plain outcome strings)
+ * are decoded as they are.
+ */
+@Component
+public class OutcomeCodec {
+
+    /**
+     * First character of an encoded outcome. Never the first character of a readable outcome.
+     */
+    static final char VERSION_1 = '\u0001';
+
+    private static final byte TERMINATED = 1;
+
+    private static final byte RULE_FAILED = 2;
+
+    private static final byte FAILED = 3;
+
+    private static final byte TIMED_OUT = 4;
+
+    private static final byte TEXT = 5;
+
+    /**
+     * Failures other than rule failures are stored up to the first ": ", e.g. the exception class, and at most this
+     * many characters. Their full text is logged when they happen.
+     */
+    private static final int MAX_FAILURE_LENGTH = 100;
+
+    private static final int MAX_TEXT_LENGTH = 1000;
+
+    private static final Pattern HEX_INSTANCE_ID = Pattern.compile("i-[0-9a-f]{1,127}");
+
+    private final Map<String, Integer> ruleIds = new HashMap<String, Integer>();
+
+    private final Map<Integer, String> ruleDescriptions = new HashMap<Integer, String>();
+
+    /**
+     * @param instanceSelectionRules - Rules whose failures are stored by id
+     *
+     * @throws IllegalStateException if two rules have the same id, or an id does not fit in a byte
+     */
+    @Autowired
+    public OutcomeCodec(List<AutoScalingGroupInstanceSelectionRule> instanceSelectionRules) {
+        for (AutoScalingGroupInstanceSelectionRule rule : instanceSelectionRules) {
+            RuleDescription ruleDescription = AnnotationUtils.findAnnotation(rule.getClass(), RuleDescription.class);
+            if (ruleDescription == null || ruleDescription.id() == 0) {
+                continue;
+            }
+            int id = ruleDescription.id();
+            if (id < 0 || id > 255 || ruleDescriptions.containsKey(id)) {
+                throw new IllegalStateException("Invalid or duplicate id " + id + " of rule " +
+                    ruleDescription.value());
+            }
+            ruleIds.put(ruleDescription.value(), id);
+            ruleDescriptions.put(id, ruleDescription.value());
+        }
+    }
+
+    /**
+     * Encode an outcome.
+     *
+     * @param outcome - Readable outcome, as recorded
+     * @param recordedAtMillis - Time the outcome was recorded, in epoch millis
+     */
+    public String encode(String outcome, long recordedAtMillis) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            if (outcome.startsWith(RuleHandler.TERMINATED_OUTCOME)) {
+                output.writeByte(TERMINATED);
+                output.writeInt((int) (recordedAtMillis / 1000));
+                writeInstanceId(output, outcome.substring(RuleHandler.TERMINATED_OUTCOME.length()));
+            }
+            else if (outcome.startsWith(RuleHandler.FAILED_OUTCOME)) {
+                String failure = outcome.substring(RuleHandler.FAILED_OUTCOME.length());
+                Integer ruleId = ruleIds.get(failure);
+                output.writeByte(ruleId != null ? RULE_FAILED : FAILED);
+                output.writeInt((int) (recordedAtMillis / 1000));
+                if (ruleId != null) {
+                    output.writeByte(ruleId);
+                }
+                else {
+                    output.writeUTF(shortFailure(failure));
+                }
+            }
+            else if (outcome.equals(TerminateInstanceJob.TIMED_OUT_OUTCOME)) {
+                output.writeByte(TIMED_OUT);
+                output.writeInt((int) (recordedAtMillis / 1000));
+            }
+            else {
+                output.writeByte(TEXT);
+                output.writeInt((int) (recordedAtMillis / 1000));
+                output.writeUTF(outcome.length() > MAX_TEXT_LENGTH ? outcome.substring(0, MAX_TEXT_LENGTH) : outcome);
+            }
+        }
+        catch (IOException ioe) {
+            //Never thrown when writing to memory.
+            throw new IllegalStateException(ioe);
+        }
+        return VERSION_1 + pack(bytes.toByteArray());
+    }
+
+    /**
+     * Decode a stored outcome into a readable outcome, as it was recorded.
+     */
+    public String decode(String stored) {
+        return decodeResult(null, null, stored).getOutcome();
+    }
+
+    /**
+     * Decode a stored outcome into a job result, with the time the outcome was recorded.
+     *
+     * @return Result with readable outcome. Record time is null if outcome was stored before this encoding.
+     */
+    public JobResult decodeResult(String autoScalingGroupName, Long jobSequenceNumber, String stored) {
+        if (stored == null || stored.isEmpty() || stored.charAt(0) != VERSION_1) {
+            return new JobResult(autoScalingGroupName, jobSequenceNumber, stored, null);
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(unpack(stored, 1)));
+        try {
+            byte type = input.readByte();
+            long recordedAtMillis = (input.readInt() & 0xffffffffL) * 1000;
+            String outcome;
+            switch (type) {
+                case TERMINATED:
+                    outcome = RuleHandler.TERMINATED_OUTCOME + readInstanceId(input);
+                    break;
+                case RULE_FAILED:
+                    int ruleId = input.readUnsignedByte();
+                    String description = ruleDescriptions.get(ruleId);
+                    outcome = RuleHandler.FAILED_OUTCOME + (description != null ? description : "rule #" + ruleId);
+                    break;
+                case FAILED:
+                    outcome = RuleHandler.FAILED_OUTCOME + input.readUTF();
+                    break;
+                case TIMED_OUT:
+                    outcome = TerminateInstanceJob.TIMED_OUT_OUTCOME;
+                    break;
+                case TEXT:
+                    outcome = input.readUTF();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown outcome type " + type);
+            }
+            return new JobResult(autoScalingGroupName, jobSequenceNumber, outcome, recordedAtMillis);
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("Truncated outcome", ioe);
+        }
+    }
+
+    /**
+     * Readable outcome as it is stored: failures other than rule failures are cut like {@link #encode} does, other
+     * outcomes are unchanged. Rule descriptions are short and never contain ": ", so they are unchanged too.
+     */
+    public static String normalize(String outcome) {
+        if (outcome == null || !outcome.startsWith(RuleHandler.FAILED_OUTCOME)) {
+            return outcome;
+        }
+        return RuleHandler.FAILED_OUTCOME + shortFailure(outcome.substring(RuleHandler.FAILED_OUTCOME.length()));
+    }
+
+    /**
+     * Instance ids made of hex digits are stored as their digit count followed by the digits packed two per byte,
+     * other instance ids as a 0 followed by the id.
+     */
+    private static void writeInstanceId(DataOutputStream output, String instanceId) throws IOException {
+        if (!HEX_INSTANCE_ID.matcher(instanceId).matches()) {
+            output.writeByte(0);
+            output.writeUTF(instanceId);
+            return;
+        }
+        String digits = instanceId.substring(2);
+        output.writeByte(digits.length());
+        for (int index = 0; index < digits.length(); index += 2) {
+            int high = Character.digit(digits.charAt(index), 16);
+            int low = index + 1 < digits.length() ? Character.digit(digits.charAt(index + 1), 16) : 0;
+            output.writeByte(high << 4 | low);
+        }
+    }
+
+    private static String readInstanceId(DataInputStream input) throws IOException {
+        int digitCount = input.readUnsignedByte();
+        if (digitCount == 0) {
+            return input.readUTF();
+        }
+        StringBuilder instanceId = new StringBuilder(digitCount + 2).append("i-");
+        for (int index = 0; index < digitCount; index += 2) {
+            int packed = input.readUnsignedByte();
+            instanceId.append(Character.forDigit(packed >> 4, 16));
+            if (index + 1 < digitCount) {
+                instanceId.append(Character.forDigit(packed & 0xf, 16));
+            }
+        }
+        return instanceId.toString();
+    }
+
+    private static String shortFailure(String failure) {
+        int separator = failure.indexOf(": ");
+        String shortFailure = separator >= 0 ? failure.substring(0, separator) : failure;
+        return shortFailure.length() > MAX_FAILURE_LENGTH ? shortFailure.substring(0, MAX_FAILURE_LENGTH) :
+            shortFailure;
+    }
+
+    /**
+     * Pack bytes 7 bits per character, most significant bits first. Last character is padded with zero bits.
+     */
+    static String pack(byte[] bytes) {
+        StringBuilder packed = new StringBuilder((bytes.length * 8 + 6) / 7);
+        int bits = 0;
+        int pendingBits = 0;
+        for (byte value : bytes) {
+            bits = bits << 8 | (value & 0xff);
+            pendingBits += 8;
+            while (pendingBits >= 7) {
+                pendingBits -= 7;
+                packed.append((char) (bits >> pendingBits & 0x7f));
+            }
+            bits &= (1 << pendingBits) - 1;
+        }
+        if (pendingBits > 0) {
+            packed.append((char) (bits << (7 - pendingBits) & 0x7f));
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Unpack the bytes packed from given character on. Padding bits are dropped.
+     */
+    static byte[] unpack(String packed, int from) {
+        byte[] bytes = new byte[(packed.length() - from) * 7 / 8];
+        int bits = 0;
+        int pendingBits = 0;
+        int count = 0;
+        for (int index = from; index < packed.length() && count < bytes.length; index++) {
+            bits = bits << 7 | (packed.charAt(index) & 0x7f);
+            pendingBits += 7;
+            if (pendingBits >= 8) {
+                pendingBits -= 8;
+                bytes[count++] = (byte) (bits >> pendingBits);
+                bits &= (1 << pendingBits) - 1;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,262 @@
+package com.sample.autoscaling.result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local write-ahead journal of job results, backed by a memory-mapped file. Results and run starts are appended
+ * without any system call and survive a crash or restart of the terminator, as the operating system writes the mapped
+ * pages back. They only survive a crash of the host once {@link #force()} has written them to disk. Entries are read
+ * back in batches and acknowledged once written to Redis; the journal starts over from its beginning whenever every
+ * entry has been acknowledged.
+ * <p/>
+ * File starts with a header holding the read position (first entry not acknowledged) and the write position (end of
+ * last entry). Each entry is its length, its type and its payload. Write position is only moved once an entry is
+ * complete, so a crash in the middle of an append loses that entry only.
+ */
+public class ResultJournal implements Closeable {
+
+    private static final int MAGIC = 0x4a524e4c;
+
+    private static final int VERSION = 1;
+
+    private static final int READ_POSITION_OFFSET = 8;
+
+    private static final int WRITE_POSITION_OFFSET = 16;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final byte RESULT = 1;
+
+    private static final byte RUN_START = 2;
+
+    /**
+     * Longer outcomes are truncated, so their modified UTF-8 form always fits in an entry.
+     */
+    private static final int MAX_OUTCOME_LENGTH = 4096;
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final MappedByteBuffer buffer;
+
+    private int readPosition;
+
+    private int writePosition;
+
+    private int pendingResultCount;
+
+    /**
+     * Open the journal, creating the file if needed.
+     *
+     * @param file - Journal file
+     * @param capacityBytes - Size of the file, appends fail once entries not acknowledged fill it
+     *
+     * @throws IOException if file could not be mapped, or is not a journal
+     */
+    public ResultJournal(File file, int capacityBytes) throws IOException {
+        this.file = file;
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            boolean created = randomAccessFile.length() == 0;
+            int capacity = (int) Math.max(capacityBytes, randomAccessFile.length());
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            if (created) {
+                buffer.putInt(0, MAGIC).putInt(4, VERSION);
+                setPositions(HEADER_SIZE, HEADER_SIZE);
+            }
+            else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a job result journal");
+            }
+            readPosition = (int) buffer.getLong(READ_POSITION_OFFSET);
+            writePosition = (int) buffer.getLong(WRITE_POSITION_OFFSET);
+            Batch pending = read(readPosition, Integer.MAX_VALUE);
+            pendingResultCount = pending.getResults().size();
+        }
+        catch (IOException ioe) {
+            randomAccessFile.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Append a result.
+     *
+     * @return False if journal is full.
+     */
+    public synchronized boolean append(JobResult result) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeUTF(result.getAutoScalingGroupName());
+            output.writeLong(result.getJobSequenceNumber());
+            String outcome = result.getOutcome();
+            output.writeUTF(outcome.length() > MAX_OUTCOME_LENGTH ? outcome.substring(0, MAX_OUTCOME_LENGTH) : outcome);
+            output.writeLong(result.getRecordedAtMillis() != null ? result.getRecordedAtMillis() : 0);
+        }
+        catch (IOException ioe) {
+            //Never thrown when writing to memory.
+            throw new IllegalStateException(ioe);
+        }
+        if (!append(RESULT, bytes.toByteArray())) {
+            return false;
+        }
+        pendingResultCount++;
+        return true;
+    }
+
+    /**
+     * Append the start time of a job run.
+     *
+     * @return False if journal is full.
+     */
+    public synchronized boolean appendRunStart(long jobSequenceNumber, long startTimeMillis) {
+        byte[] payload = new byte[16];
+        ByteBuffer.wrap(payload).putLong(jobSequenceNumber).putLong(startTimeMillis);
+        return append(RUN_START, payload);
+    }
+
+    /**
+     * Read the oldest entries not acknowledged yet. Reading again before acknowledging returns the same entries.
+     *
+     * @param maxResults - Maximum number of results in batch
+     */
+    public synchronized Batch read(int maxResults) {
+        return read(readPosition, maxResults);
+    }
+
+    /**
+     * Acknowledge the entries of a batch once they are written to Redis, they will not be read again.
+     */
+    public synchronized void acknowledge(Batch batch) {
+        readPosition = batch.endPosition;
+        pendingResultCount -= batch.getResults().size();
+        if (readPosition == writePosition) {
+            //Every entry is acknowledged, journal starts over.
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+        }
+        setPositions(readPosition, writePosition);
+    }
+
+    /**
+     * Get the number of results not acknowledged yet.
+     */
+    public synchronized int getPendingResultCount() {
+        return pendingResultCount;
+    }
+
+    /**
+     * Write the entries appended so far to disk, so they survive a crash of the host. Blocks until the disk is done.
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        randomAccessFile.close();
+    }
+
+    private boolean append(byte type, byte[] payload) {
+        int entrySize = 5 + payload.length;
+        if (writePosition + entrySize > buffer.capacity()) {
+            return false;
+        }
+        ByteBuffer entry = buffer.duplicate();
+        entry.position(writePosition);
+        entry.putInt(payload.length).put(type).put(payload);
+        writePosition += entrySize;
+        buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+        return true;
+    }
+
+    private Batch read(int position, int maxResults) {
+        List<JobResult> results = new ArrayList<JobResult>();
+        Map<Long, Long> runStarts = new HashMap<Long, Long>();
+        while (position < writePosition && results.size() < maxResults) {
+            ByteBuffer entry = buffer.duplicate();
+            entry.position(position);
+            int length = entry.getInt();
+            byte type = entry.get();
+            byte[] payload = new byte[length];
+            entry.get(payload);
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            try {
+                if (type == RESULT) {
+                    String autoScalingGroupName = input.readUTF();
+                    long jobSequenceNumber = input.readLong();
+                    String outcome = input.readUTF();
+                    long recordedAtMillis = input.readLong();
+                    results.add(new JobResult(autoScalingGroupName, jobSequenceNumber, outcome,
+                        recordedAtMillis != 0 ? recordedAtMillis : null));
+                }
+                else if (type == RUN_START) {
+                    runStarts.put(input.readLong(), input.readLong());
+                }
+            }
+            catch (IOException ioe) {
+                throw new IllegalStateException("Corrupted entry at " + position + " of " + file, ioe);
+            }
+            position += 5 + length;
+        }
+        return new Batch(results, runStarts, position);
+    }
+
+    private void setPositions(int readPosition, int writePosition) {
+        buffer.putLong(READ_POSITION_OFFSET, readPosition);
+        buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    /**
+     * Entries read from the journal.
+     */
+    public static final class Batch {
+
+        private final List<JobResult> results;
+
+        private final Map<Long, Long> runStarts;
+
+        private final int endPosition;
+
+        private Batch(List<JobResult> results, Map<Long, Long> runStarts, int endPosition) {
+            this.results = results;
+            this.runStarts = runStarts;
+            this.endPosition = endPosition;
+        }
+
+        public List<JobResult> getResults() {
+            return results;
+        }
+
+        /**
+         * @return Start time (epoch millis) of job runs keyed by job sequence number.
+         */
+        public Map<Long, Long> getRunStarts() {
+            return runStarts;
+        }
+
+        public boolean isEmpty() {
+            return results.isEmpty() && runStarts.isEmpty();
+        }
+    }
+}
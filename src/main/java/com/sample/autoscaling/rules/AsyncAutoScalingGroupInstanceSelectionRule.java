@@ -0,0 +1,23 @@
+package com.sample.autoscaling.rules;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Interface representing "rule" which depends on remote calls and can be applied without blocking the calling thread.
+ * Rule Handler will prefer applyAsync() over apply() for the rules implementing this interface, so executor threads
+ * are not parked while waiting for network I/O.
+ */
+public interface AsyncAutoScalingGroupInstanceSelectionRule extends AutoScalingGroupInstanceSelectionRule {
+
+    /**
+     * Rule Handler will call this method instead of apply() and will continue with the next rule once returned future
+     * is completed.
+     *
+     * @param autoScalingGroup - Snapshot of the auto scaling group taken when it was retrieved
+     *
+     * @return Future which will be completed with false if rule fails, otherwise true. Future will fail if rule could
+     * not be evaluated.
+     */
+    ListenableFuture<Boolean> applyAsync(AutoScalingGroupSnapshot autoScalingGroup);
+
+}
@@ -2,11 +2,16 @@ package com.sample.autoscaling.rules;
 
 import java.util.List;
 
-import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.services.autoscaling.model.Activity;
-import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
 import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesRequest;
 import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesResult;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sample.autoscaling.replay.SnapshotRecorder;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
 import org.joda.time.DateTime;
 import org.joda.time.Minutes;
 import org.slf4j.Logger;
@@ -19,24 +24,88 @@ import org.springframework.stereotype.Component;
 /**
  * Rule to make sure that there is no scale up activity in progress or in last n minutes (n is configurable). If there
  * is any scale up activity in last n minutes or is in progress, auto scaling group will be by-passed in this run.
+ * <p/>
+ * Latest scaling activity is read from {@link ScalingActivityIndex} when activities are tracked from notifications,
+ * from {@link ScalingActivityCache} otherwise. DescribeScalingActivities is only called when neither has it.
  */
 @Order(2)
-@RuleDescription("Recent Scale up activity check in auto scaling group")
+@RuleDescription(value = "Recent Scale up activity check in auto scaling group", id = 2, remote = true)
 @Component
-public class AutoScalingGroupActivityRule implements AutoScalingGroupInstanceSelectionRule {
+public class AutoScalingGroupActivityRule implements AsyncAutoScalingGroupInstanceSelectionRule {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AutoScalingGroupActivityRule.class);
 
     @Value("${auto.termination.minimum.scaling.activity.threshold}")
     private int minThresholdForLastScalingActivity;
 
+    /**
+     * Scaling activities are described with the client of the target the auto scaling group belongs to.
+     */
+    @Autowired
+    private AutoScalingTargets autoScalingTargets;
+
+    @Autowired
+    private ScalingActivityCache scalingActivityCache;
+
+    @Autowired
+    private ScalingActivityIndex scalingActivityIndex;
+
+    /**
+     * Scaling activities the rule decides on are recorded for replay, whether they were described or already known.
+     */
     @Autowired
-    private AmazonAutoScalingAsync autoScalingClient;
+    private SnapshotRecorder snapshotRecorder;
 
     @Override
-    public boolean apply(AutoScalingGroup autoScalingGroup) {
+    public boolean apply(AutoScalingGroupSnapshot autoScalingGroup) {
+        return isTerminationAllowed(getScalingActivities(autoScalingGroup));
+    }
+
+    @Override
+    public ListenableFuture<Boolean> applyAsync(final AutoScalingGroupSnapshot autoScalingGroup) {
+        AutoScalingTarget target = autoScalingTargets.getTarget(autoScalingGroup.getAutoScalingGroupName(),
+            autoScalingGroup.getAutoScalingGroupARN());
+        final String cacheKey = target.key(autoScalingGroup.getAutoScalingGroupName());
+        List<Activity> knownScalingActivities = getKnownScalingActivities(cacheKey);
+        if (knownScalingActivities != null) {
+            snapshotRecorder.recordScalingActivities(cacheKey, knownScalingActivities);
+            return Futures.immediateFuture(isTerminationAllowed(knownScalingActivities));
+        }
+        final SettableFuture<Boolean> status = SettableFuture.create();
+        target.getClient().describeScalingActivitiesAsync(buildScalingActivitiesRequest(autoScalingGroup),
+            new AsyncHandler<DescribeScalingActivitiesRequest, DescribeScalingActivitiesResult>() {
+                @Override
+                public void onSuccess(DescribeScalingActivitiesRequest request,
+                                      DescribeScalingActivitiesResult scalingActivitiesResult) {
+                    List<Activity> scalingActivities = scalingActivitiesResult.getActivities();
+                    LOGGER.debug("Scaling Activities of Auto-Scaling group {} are {}",
+                        autoScalingGroup.getAutoScalingGroupName(), scalingActivities);
+                    try {
+                        //Future is completed even if activities cannot be kept, otherwise the group would hang.
+                        putScalingActivities(cacheKey, scalingActivities);
+                        status.set(isTerminationAllowed(scalingActivities));
+                    }
+                    catch (RuntimeException ex) {
+                        status.setException(ex);
+                    }
+                }
 
-        List<Activity> scalingActivities = getScalingActivities(autoScalingGroup);
+                @Override
+                public void onError(Exception exception) {
+                    status.setException(exception);
+                }
+            });
+        return status;
+    }
+
+    /**
+     * Decide if an instance can be terminated based on the latest scaling activity of auto scaling group.
+     *
+     * @param scalingActivities - Latest scaling activities, most recent first
+     *
+     * @return True if there is no scale up activity in progress or in last n minutes.
+     */
+    private boolean isTerminationAllowed(List<Activity> scalingActivities) {
         //If there is no activity in last six week, instance of this auto scaling group can be terminated.
         boolean status = scalingActivities.size() == 0;
         // If there is scaling activity
@@ -50,27 +119,64 @@ public class AutoScalingGroupActivityRule implements AutoScalingGroupInstanceSel
     }
 
     /**
-     * This method will retrieve the auto scaling activities for an auto scaling group.
+     * This method will retrieve the auto scaling activities for an auto scaling group. Activities are served from
+     * index or cache when known.
      *
      * @param autoScalingGroup
      *
      * @return
      */
-    private List<Activity> getScalingActivities(AutoScalingGroup autoScalingGroup) {
-        //Build a request to describe auto scaling group activities.
-        DescribeScalingActivitiesRequest scalingActivitiesRequest =
-            new DescribeScalingActivitiesRequest().withAutoScalingGroupName(autoScalingGroup.getAutoScalingGroupName())
-                .withMaxRecords(1);//Latest Activity Only
+    private List<Activity> getScalingActivities(AutoScalingGroupSnapshot autoScalingGroup) {
+        AutoScalingTarget target = autoScalingTargets.getTarget(autoScalingGroup.getAutoScalingGroupName(),
+            autoScalingGroup.getAutoScalingGroupARN());
+        String cacheKey = target.key(autoScalingGroup.getAutoScalingGroupName());
+        List<Activity> knownScalingActivities = getKnownScalingActivities(cacheKey);
+        if (knownScalingActivities != null) {
+            snapshotRecorder.recordScalingActivities(cacheKey, knownScalingActivities);
+            return knownScalingActivities;
+        }
         // Get the auto scaling group activities. Only activities from the past six weeks are returned. Activities
         // still in progress appear first on the list.
         DescribeScalingActivitiesResult scalingActivitiesResult =
-            autoScalingClient.describeScalingActivities(scalingActivitiesRequest);
+            target.getClient().describeScalingActivities(buildScalingActivitiesRequest(autoScalingGroup));
         List<Activity> scalingActivities = scalingActivitiesResult.getActivities();
         LOGGER.debug("Scaling Activities of Auto-Scaling group {} are {}", autoScalingGroup.getAutoScalingGroupName(),
             scalingActivities);
+        putScalingActivities(cacheKey, scalingActivities);
         return scalingActivities;
     }
 
+    /**
+     * @return Scaling activities from index when activities are tracked from notifications, from cache otherwise, or
+     * null if they need to be described.
+     */
+    private List<Activity> getKnownScalingActivities(String cacheKey) {
+        return scalingActivityIndex.isEnabled() ? scalingActivityIndex.get(cacheKey) :
+            scalingActivityCache.getIfPresent(cacheKey);
+    }
+
+    /**
+     * Record and keep described scaling activities, reconciling the index when activities are tracked from
+     * notifications.
+     */
+    private void putScalingActivities(String cacheKey, List<Activity> scalingActivities) {
+        snapshotRecorder.recordScalingActivities(cacheKey, scalingActivities);
+        if (scalingActivityIndex.isEnabled()) {
+            scalingActivityIndex.reconcile(cacheKey, scalingActivities);
+        }
+        else {
+            scalingActivityCache.put(cacheKey, scalingActivities);
+        }
+    }
+
+    /**
+     * Build a request to describe auto scaling group activities.
+     */
+    private DescribeScalingActivitiesRequest buildScalingActivitiesRequest(AutoScalingGroupSnapshot autoScalingGroup) {
+        return new DescribeScalingActivitiesRequest().withAutoScalingGroupName(
+            autoScalingGroup.getAutoScalingGroupName()).withMaxRecords(1);//Latest Activity Only
+    }
+
     /**
      * Check if the scale up activity is in progress.
      *
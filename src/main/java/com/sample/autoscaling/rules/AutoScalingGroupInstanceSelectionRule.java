@@ -1,6 +1,5 @@
 package com.sample.autoscaling.rules;
 
-import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
 
 /**
  * Interface representing "rule" that needs to be applied by program when selecting an instance in an auto scaling group
@@ -11,10 +10,10 @@ public interface AutoScalingGroupInstanceSelectionRule {
     /**
      * Rule Handler will call this method on all the configured rules. if any rule fails, it will return false.
      *
-     * @param autoScalingGroup
+     * @param autoScalingGroup - Snapshot of the auto scaling group taken when it was retrieved
      *
      * @return false if any rule fails, otherwise true.
      */
-    boolean apply(AutoScalingGroup autoScalingGroup);
+    boolean apply(AutoScalingGroupSnapshot autoScalingGroup);
 
 }
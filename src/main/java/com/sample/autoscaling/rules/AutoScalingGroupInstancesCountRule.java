@@ -1,6 +1,5 @@
 package com.sample.autoscaling.rules;
 
-import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,7 +11,7 @@ import org.springframework.stereotype.Component;
  * only instance in an auto scaling group.
  */
 @Order(1)
-@RuleDescription("Minimum Instances check in auto scaling group")
+@RuleDescription(value = "Minimum Instances check in auto scaling group", id = 1)
 @Component
 public class AutoScalingGroupInstancesCountRule implements AutoScalingGroupInstanceSelectionRule {
 
@@ -22,10 +21,10 @@ public class AutoScalingGroupInstancesCountRule implements AutoScalingGroupInsta
     private int minThresholdForInstanceTermination;
 
     @Override
-    public boolean apply(AutoScalingGroup autoScalingGroup) {
+    public boolean apply(AutoScalingGroupSnapshot autoScalingGroup) {
         LOGGER.debug("Number of instances in auto-scaling group {} are: {}", autoScalingGroup.getAutoScalingGroupName(),
-            autoScalingGroup.getInstances().size());
-        return autoScalingGroup.getInstances().size() > minThresholdForInstanceTermination;
+            autoScalingGroup.getInstanceCount());
+        return autoScalingGroup.getInstanceCount() > minThresholdForInstanceTermination;
     }
 
 }
@@ -0,0 +1,217 @@
+package com.sample.autoscaling.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Immutable snapshot of the state of an auto scaling group that rules and terminations depend on, taken when the auto
+ * scaling group is retrieved. A run keeps a snapshot of every auto scaling group it dispatches until the group is
+ * processed, so the snapshot only holds what is needed, in a compact form: sizes as primitives, instance ids packed
+ * into two longs each and values repeated across auto scaling groups (lifecycle states, Availability Zones, launch
+ * configuration names) interned. Tags, suspended processes, load balancers and other fields of the auto scaling group
+ * are dropped.
+ * <p/>
+ * Instances are referred to by their index in the snapshot, in the order they were returned by AutoScaling.
+ */
+public final class AutoScalingGroupSnapshot {
+
+    /**
+     * Size returned when AutoScaling did not return it.
+     */
+    public static final int UNKNOWN_SIZE = -1;
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    /**
+     * Instance ids are "i-" followed by 8 or 17 hex digits. Up to this many digits are packed, other ids are kept as
+     * they are.
+     */
+    private static final int MAX_PACKED_DIGITS = 30;
+
+    private static final int LOW_DIGITS = 16;
+
+    private final String autoScalingGroupName;
+
+    private final String autoScalingGroupARN;
+
+    private final String launchConfigurationName;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final int desiredCapacity;
+
+    /**
+     * Two longs per instance. First long holds the number of hex digits in its top byte and the digits beyond the
+     * last 16 below, second long the last 16 digits. Ids which cannot be packed have 0 digits, second long is then
+     * their index in otherInstanceIds.
+     */
+    private final long[] instanceIds;
+
+    private final String[] otherInstanceIds;
+
+    private final String[] lifecycleStates;
+
+    private final String[] availabilityZones;
+
+    private final String[] launchConfigurationNames;
+
+    private AutoScalingGroupSnapshot(AutoScalingGroup autoScalingGroup) {
+        autoScalingGroupName = autoScalingGroup.getAutoScalingGroupName();
+        autoScalingGroupARN = autoScalingGroup.getAutoScalingGroupARN();
+        launchConfigurationName = intern(autoScalingGroup.getLaunchConfigurationName());
+        minSize = size(autoScalingGroup.getMinSize());
+        maxSize = size(autoScalingGroup.getMaxSize());
+        desiredCapacity = size(autoScalingGroup.getDesiredCapacity());
+        List<Instance> instances = autoScalingGroup.getInstances();
+        int instanceCount = instances != null ? instances.size() : 0;
+        instanceIds = new long[instanceCount * 2];
+        lifecycleStates = new String[instanceCount];
+        availabilityZones = new String[instanceCount];
+        launchConfigurationNames = new String[instanceCount];
+        List<String> unpackedInstanceIds = new ArrayList<String>(0);
+        for (int index = 0; index < instanceCount; index++) {
+            Instance instance = instances.get(index);
+            if (!pack(instance.getInstanceId(), index)) {
+                instanceIds[index * 2 + 1] = unpackedInstanceIds.size();
+                unpackedInstanceIds.add(instance.getInstanceId());
+            }
+            lifecycleStates[index] = intern(instance.getLifecycleState());
+            availabilityZones[index] = intern(instance.getAvailabilityZone());
+            launchConfigurationNames[index] = intern(instance.getLaunchConfigurationName());
+        }
+        otherInstanceIds = unpackedInstanceIds.isEmpty() ? null :
+            unpackedInstanceIds.toArray(new String[unpackedInstanceIds.size()]);
+    }
+
+    /**
+     * Take a snapshot of an auto scaling group as returned by AutoScaling.
+     */
+    public static AutoScalingGroupSnapshot of(AutoScalingGroup autoScalingGroup) {
+        return new AutoScalingGroupSnapshot(autoScalingGroup);
+    }
+
+    public String getAutoScalingGroupName() {
+        return autoScalingGroupName;
+    }
+
+    public String getAutoScalingGroupARN() {
+        return autoScalingGroupARN;
+    }
+
+    public String getLaunchConfigurationName() {
+        return launchConfigurationName;
+    }
+
+    /**
+     * @return Minimum size, or {@link #UNKNOWN_SIZE}.
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @return Maximum size, or {@link #UNKNOWN_SIZE}.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Desired capacity, or {@link #UNKNOWN_SIZE}.
+     */
+    public int getDesiredCapacity() {
+        return desiredCapacity;
+    }
+
+    public int getInstanceCount() {
+        return lifecycleStates.length;
+    }
+
+    /**
+     * @param index - Index of the instance, from 0 to instance count (excluded)
+     */
+    public String getInstanceId(int index) {
+        long high = instanceIds[index * 2];
+        long low = instanceIds[index * 2 + 1];
+        int digitCount = (int) (high >>> 56);
+        if (digitCount == 0) {
+            return otherInstanceIds[(int) low];
+        }
+        char[] instanceId = new char[digitCount + 2];
+        instanceId[0] = 'i';
+        instanceId[1] = '-';
+        for (int digit = 0; digit < digitCount; digit++) {
+            int position = digitCount - 1 - digit;
+            long nibble = position < LOW_DIGITS ? low >>> (4 * position) : high >>> (4 * (position - LOW_DIGITS));
+            instanceId[digit + 2] = Character.forDigit((int) (nibble & 0xf), 16);
+        }
+        return new String(instanceId);
+    }
+
+    public String getLifecycleState(int index) {
+        return lifecycleStates[index];
+    }
+
+    public String getAvailabilityZone(int index) {
+        return availabilityZones[index];
+    }
+
+    /**
+     * @return Launch configuration the instance was launched from.
+     */
+    public String getLaunchConfigurationName(int index) {
+        return launchConfigurationNames[index];
+    }
+
+    @Override
+    public String toString() {
+        return autoScalingGroupName;
+    }
+
+    /**
+     * Pack an instance id made of up to 30 lower case hex digits.
+     *
+     * @return False if instance id cannot be packed.
+     */
+    private boolean pack(String instanceId, int index) {
+        if (instanceId == null || !instanceId.startsWith("i-") || instanceId.length() < 3 ||
+            instanceId.length() > MAX_PACKED_DIGITS + 2) {
+            return false;
+        }
+        int digitCount = instanceId.length() - 2;
+        long high = (long) digitCount << 56;
+        long low = 0;
+        for (int digit = 0; digit < digitCount; digit++) {
+            char character = instanceId.charAt(digit + 2);
+            int value = Character.digit(character, 16);
+            if (value < 0 || Character.isUpperCase(character)) {
+                return false;
+            }
+            int position = digitCount - 1 - digit;
+            if (position < LOW_DIGITS) {
+                low |= (long) value << (4 * position);
+            }
+            else {
+                high |= (long) value << (4 * (position - LOW_DIGITS));
+            }
+        }
+        instanceIds[index * 2] = high;
+        instanceIds[index * 2 + 1] = low;
+        return true;
+    }
+
+    private static String intern(String value) {
+        return value != null ? INTERNER.intern(value) : null;
+    }
+
+    private static int size(Integer size) {
+        return size != null ? size : UNKNOWN_SIZE;
+    }
+}
@@ -0,0 +1,123 @@
+package com.sample.autoscaling.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.core.annotation.AnnotationUtils;
+
+/**
+ * Immutable, ordered chain of rules. Chain is compiled once from the rule beans, in declared order with local rules
+ * ahead of remote rules, and can then be reordered from observed cost and rejection rate of its rules, so cheap and
+ * selective rules reject auto scaling groups before expensive ones run. Reordering returns a new chain, evaluations in
+ * progress keep the chain they started with.
+ * <p/>
+ * Reordering respects the constraints declared with {@link RuleDescription}: a local rule is never moved after a
+ * remote rule, and rules which are not reorderable keep their position, no other rule is moved across them.
+ */
+public final class RuleChain {
+
+    private static final Comparator<CompiledRule> BY_RANK = new Comparator<CompiledRule>() {
+        @Override
+        public int compare(CompiledRule rule, CompiledRule otherRule) {
+            return Double.compare(rule.getRank(), otherRule.getRank());
+        }
+    };
+
+    private static final Comparator<CompiledRule> LOCAL_FIRST = new Comparator<CompiledRule>() {
+        @Override
+        public int compare(CompiledRule rule, CompiledRule otherRule) {
+            return Boolean.valueOf(rule.isRemote()).compareTo(otherRule.isRemote());
+        }
+    };
+
+    private final ImmutableList<CompiledRule> rules;
+
+    /**
+     * @param rules - Compiled rules, applied in the given order
+     */
+    public RuleChain(List<CompiledRule> rules) {
+        this.rules = ImmutableList.copyOf(rules);
+    }
+
+    /**
+     * Compile the rules: sort them by order annotation, local rules first, and resolve their description and
+     * constraints. Latency metrics of each rule are published under its description.
+     */
+    public static RuleChain compile(List<AutoScalingGroupInstanceSelectionRule> instanceSelectionRules,
+                                    MetricsRegistry metricsRegistry) {
+        List<AutoScalingGroupInstanceSelectionRule> sortedRules =
+            new ArrayList<AutoScalingGroupInstanceSelectionRule>(instanceSelectionRules);
+        AnnotationAwareOrderComparator.sort(sortedRules);
+        List<CompiledRule> compiledRules = new ArrayList<CompiledRule>(sortedRules.size());
+        for (AutoScalingGroupInstanceSelectionRule rule : sortedRules) {
+            RuleDescription ruleDescription = AnnotationUtils.findAnnotation(rule.getClass(), RuleDescription.class);
+            String description = ruleDescription != null ? ruleDescription.value() : "";
+            compiledRules.add(new CompiledRule(rule, description, ruleDescription != null && ruleDescription.remote(),
+                ruleDescription == null || ruleDescription.reorderable(), metricsRegistry.getLatencyMetrics(
+                    MetricsRegistry.RULE, ruleDescription != null ? description : rule.getClass().getSimpleName())));
+        }
+        //Stable sort, declared order is kept among local rules and among remote rules.
+        Collections.sort(compiledRules, LOCAL_FIRST);
+        return new RuleChain(compiledRules);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public CompiledRule get(int index) {
+        return rules.get(index);
+    }
+
+    public List<CompiledRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Reorder the rules by increasing rank within the declared constraints. Runs of reorderable rules with the same
+     * locality are sorted separately, rules which are not reorderable stay in place.
+     *
+     * @param minSamples - Number of applications needed for each rule of a run before the run is reordered
+     *
+     * @return Reordered chain, or this chain if order is unchanged.
+     */
+    public RuleChain reorder(long minSamples) {
+        List<CompiledRule> reordered = new ArrayList<CompiledRule>(rules.size());
+        List<CompiledRule> run = new ArrayList<CompiledRule>();
+        for (CompiledRule rule : rules) {
+            if (!run.isEmpty() && (!rule.isReorderable() || rule.isRemote() != run.get(0).isRemote())) {
+                reordered.addAll(sortRun(run, minSamples));
+                run.clear();
+            }
+            if (rule.isReorderable()) {
+                run.add(rule);
+            }
+            else {
+                reordered.add(rule);
+            }
+        }
+        reordered.addAll(sortRun(run, minSamples));
+        return reordered.equals(rules) ? this : new RuleChain(reordered);
+    }
+
+    private List<CompiledRule> sortRun(List<CompiledRule> run, long minSamples) {
+        for (CompiledRule rule : run) {
+            if (rule.getLatency().getCount() < minSamples) {
+                return run;
+            }
+        }
+        List<CompiledRule> sortedRun = new ArrayList<CompiledRule>(run);
+        Collections.sort(sortedRun, BY_RANK);
+        return sortedRun;
+    }
+
+    @Override
+    public String toString() {
+        return rules.toString();
+    }
+}
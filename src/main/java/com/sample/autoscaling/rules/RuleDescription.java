@@ -15,4 +15,22 @@ public @interface RuleDescription {
 
     String value() default "";
 
+    /**
+     * Stable id under which failures of the rule are stored in job history, see
+     * {@link com.sample.autoscaling.result.OutcomeCodec}. Ids must be unique and between 1 and 255, 0 stores the
+     * description instead. Never reuse the id of a removed rule.
+     */
+    int id() default 0;
+
+    /**
+     * True if the rule calls a remote service. Remote rules always run after local rules, whatever their observed cost
+     * and rejection rate.
+     */
+    boolean remote() default false;
+
+    /**
+     * False if the rule must keep its declared order. Other rules are never moved across it.
+     */
+    boolean reorderable() default true;
+
 }
@@ -1,19 +1,26 @@
 package com.sample.autoscaling.rules;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
-import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.sample.autoscaling.job.JobRun;
+import com.sample.autoscaling.job.JobWork;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.termination.TerminationEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.annotation.AnnotationAwareOrderComparator;
-import org.springframework.core.annotation.AnnotationUtils;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -21,75 +28,280 @@ public class RuleHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RuleHandler.class);
 
+    /**
+     * Outcome recorded when an instance has been terminated, followed by the instance Id.
+     */
+    public static final String TERMINATED_OUTCOME = "Terminated Instance:";
+
+    /**
+     * Outcome recorded when a rule or the termination failed, followed by the rule description or the failure.
+     */
+    public static final String FAILED_OUTCOME = "FAILED:";
+
     @Autowired
     private List<AutoScalingGroupInstanceSelectionRule> instanceSelectionRules;
 
     /**
-     * @Resource is required because of Property Editors magic, see ListOperationsEditor
+     * Results are buffered and written to Redis in batches, so executor threads never wait for Redis.
+     */
+    @Autowired
+    private JobResultWriter jobResultWriter;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private TerminationEngine terminationEngine;
+
+    /**
+     * Rule failures are remembered, so unchanged auto scaling groups are not evaluated again in later runs.
+     */
+    @Autowired
+    private RuleOutcomeCache ruleOutcomeCache;
+
+    /**
+     * Cached scaling activities of an auto scaling group predate the activity started by a termination, they are
+     * dropped so the next run describes them again.
+     */
+    @Autowired
+    private ScalingActivityCache scalingActivityCache;
+
+    /**
+     * Same for the activity indexed from notifications. Only dropped when termination is submitted: notifications of
+     * the termination activities index them afterwards.
+     */
+    @Autowired
+    private ScalingActivityIndex scalingActivityIndex;
+
+    /**
+     * Number of auto scaling groups evaluated between two reorderings of the rule chain, 0 to keep declared order.
+     */
+    @Value("${rule.chain.reorder.interval}")
+    private long reorderInterval;
+
+    /**
+     * Number of applications of each rule needed before rules are reordered from their observed cost and rejection
+     * rate.
+     */
+    @Value("${rule.chain.reorder.min.samples}")
+    private long reorderMinSamples;
+
+    /**
+     * Rules compiled at startup, replaced by a reordered chain as rule statistics build up.
+     */
+    private volatile RuleChain ruleChain;
+
+    private final AtomicLong evaluationCount = new AtomicLong();
+
+    /**
+     * Thread pool applying the rules, taking queued auto scaling groups in priority order.
+     */
+    @Resource(name = "ruleExecutor")
+    private TaskExecutor ruleExecutor;
+
+    /**
+     * Maximum number of auto scaling groups whose last evaluation time is remembered to prioritize them.
+     */
+    @Value("${executor.evaluation.history.max.size}")
+    private long evaluationHistoryMaxSize;
+
+    /**
+     * Time rules were last applied, keyed by auto scaling group (see
+     * {@link com.sample.autoscaling.target.AutoScalingTarget#key(String)}).
      */
-    @Resource(name = "redisTemplate")
-    private HashOperations<String, Long, String> hashOps;
+    private Cache<String, Long> lastEvaluatedMillis;
 
     /**
-     * This method will apply all the rules on auto scaling group. All the rules are ordered. If any of the rules fails,
+     * Queue the auto scaling group to have its rules applied by the rule executor. Queued auto scaling groups are taken
+     * in the configured {@link com.sample.autoscaling.job.WorkPriority} order. While the queue is full, the calling
+     * thread waits for room in it until the deadline of the run. If there is still no room by then, auto scaling group
+     * is left pending and recorded as timed out when the run expires.
+     *
+     * @param jobRun - Job run the auto scaling group has been registered with
+     * @param autoScalingGroup - Auto Scaling group on which rules are running
+     */
+    public void submit(final JobRun jobRun, final AutoScalingGroupSnapshot autoScalingGroup) {
+        final String key = jobRun.getTarget().key(autoScalingGroup.getAutoScalingGroupName());
+        Long evaluatedMillis = lastEvaluatedMillis.getIfPresent(key);
+        try {
+            ruleExecutor.execute(new JobWork(evaluatedMillis != null ? evaluatedMillis : 0,
+                autoScalingGroup.getInstanceCount(), jobRun.getDeadlineMillis()) {
+                @Override
+                public void run() {
+                    lastEvaluatedMillis.put(key, System.currentTimeMillis());
+                    applyRules(jobRun, autoScalingGroup);
+                }
+            });
+        }
+        catch (RejectedExecutionException ree) {
+            LOGGER.warn("Rules could not be queued for auto scaling group {}. Error Message: {}",
+                autoScalingGroup.getAutoScalingGroupName(), ree.getMessage());
+        }
+    }
+
+    /**
+     * This method will apply all the rules on auto scaling group. All the rules are ordered, cheap and selective rules
+     * first within the constraints declared by the rules, see {@link RuleChain}. If any of the rules fails,
      * further processing of rules will be skipped and none of the instances will be terminated in the auto scaling
-     * group during current job run.
+     * group during current job run. Rules implementing {@link AsyncAutoScalingGroupInstanceSelectionRule} are applied
+     * without blocking, remaining rules are then applied in the thread completing the asynchronous rule. Processing
+     * stops as soon as auto scaling group is cancelled because job run exceeded its time budget.
      *
-     * @param jobSequenceNumber - Job Sequence Number of this run
+     * @param jobRun - Job run the auto scaling group has been registered with
      * @param autoScalingGroup - Auto Scaling group on which rules are running
-     * @param countDownLatch - Count Down latch that needs to be counted down when auto scaling group is procesed.
      */
-    @Async
-    public void applyRules(Long jobSequenceNumber, AutoScalingGroup autoScalingGroup, CountDownLatch countDownLatch) {
-        boolean ruleExecutionStatus = false;
+    public void applyRules(JobRun jobRun, AutoScalingGroupSnapshot autoScalingGroup) {
+        applyRules(jobRun, autoScalingGroup, ruleChain, 0);
+        if (reorderInterval > 0 && evaluationCount.incrementAndGet() % reorderInterval == 0) {
+            reorderRules();
+        }
+    }
+
+    /**
+     * Reorder the rule chain from the cost and rejection rate observed so far.
+     */
+    private void reorderRules() {
+        RuleChain currentChain = ruleChain;
+        RuleChain reorderedChain = currentChain.reorder(reorderMinSamples);
+        if (reorderedChain != currentChain) {
+            LOGGER.info("Rules reordered from {} to {}", currentChain, reorderedChain);
+            ruleChain = reorderedChain;
+        }
+    }
+
+    public RuleChain getRuleChain() {
+        return ruleChain;
+    }
+
+    /**
+     * Apply the rules of the chain starting from given rule index. Auto scaling group is completed exactly once, either
+     * here or in the callback of an asynchronous rule. The whole evaluation uses the same chain, even if rules are
+     * reordered meanwhile.
+     */
+    private void applyRules(final JobRun jobRun, final AutoScalingGroupSnapshot autoScalingGroup, final RuleChain chain,
+                            int ruleIndex) {
         try {
-            for (AutoScalingGroupInstanceSelectionRule rule : instanceSelectionRules) {
-                ruleExecutionStatus = rule.apply(autoScalingGroup);
+            for (int index = ruleIndex; index < chain.size(); index++) {
+                if (!jobRun.isPending(autoScalingGroup.getAutoScalingGroupName())) {
+                    //Job run has expired, auto scaling group has already been recorded as timed out.
+                    return;
+                }
+                final CompiledRule rule = chain.get(index);
+                final long startNanos = System.nanoTime();
+                if (rule.isAsync()) {
+                    final int nextRuleIndex = index + 1;
+                    Futures.addCallback(((AsyncAutoScalingGroupInstanceSelectionRule) rule.getRule()).applyAsync(
+                        autoScalingGroup), new FutureCallback<Boolean>() {
+                        @Override
+                        public void onSuccess(Boolean ruleExecutionStatus) {
+                            rule.record(System.nanoTime() - startNanos, !ruleExecutionStatus);
+                            if (ruleExecutionStatus) {
+                                applyRules(jobRun, autoScalingGroup, chain, nextRuleIndex);
+                            }
+                            else {
+                                completeWithFailure(jobRun, autoScalingGroup, rule);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable throwable) {
+                            rule.record(System.nanoTime() - startNanos, true);
+                            LOGGER.warn("Rule - {} {} could not be applied", rule.getDescription(),
+                                autoScalingGroup.getAutoScalingGroupName(), throwable);
+                            complete(jobRun, autoScalingGroup, FAILED_OUTCOME + throwable);
+                        }
+                    });
+                    //Remaining rules will be applied once asynchronous rule completes.
+                    return;
+                }
+                boolean ruleExecutionStatus = false;
+                try {
+                    ruleExecutionStatus = rule.getRule().apply(autoScalingGroup);
+                }
+                finally {
+                    rule.record(System.nanoTime() - startNanos, !ruleExecutionStatus);
+                }
                 if (!ruleExecutionStatus) {
-                    RuleDescription ruleDescription =
-                        AnnotationUtils.findAnnotation(rule.getClass(), RuleDescription.class);
-                    LOGGER.info("Rule - {} {} failed", ruleDescription != null ? ruleDescription.value() : "",
-                        autoScalingGroup.getAutoScalingGroupName());
-                    hashOps.put(autoScalingGroup.getAutoScalingGroupName(), jobSequenceNumber,
-                        "FAILED:" + ruleDescription.value());
                     //If one rule fails, there is no need to process further.
-                    break;
+                    completeWithFailure(jobRun, autoScalingGroup, rule);
+                    return;
                 }
             }
-            //if all the rules passed terminate a random instance in auto scaling group
-            if (ruleExecutionStatus) {
-                terminateInstance(jobSequenceNumber, autoScalingGroup);
-            }
+            //if all the rules passed terminate an instance in auto scaling group
+            terminateInstance(jobRun, autoScalingGroup);
         }
         catch (Exception ex) {
-            hashOps.put(autoScalingGroup.getAutoScalingGroupName(), jobSequenceNumber, "FAILED:" + ex.getCause());
+            LOGGER.warn("Rules could not be applied to auto scaling group {}",
+                autoScalingGroup.getAutoScalingGroupName(), ex);
+            complete(jobRun, autoScalingGroup, FAILED_OUTCOME + ex);
         }
-        finally {
-            countDownLatch.countDown();
+    }
+
+    /**
+     * Record failed rule for auto scaling group.
+     */
+    private void completeWithFailure(JobRun jobRun, AutoScalingGroupSnapshot autoScalingGroup, CompiledRule rule) {
+        String description = rule.getDescription();
+        LOGGER.info("Rule - {} {} failed", description, autoScalingGroup.getAutoScalingGroupName());
+        ruleOutcomeCache.put(jobRun.getTarget(), autoScalingGroup, FAILED_OUTCOME + description);
+        complete(jobRun, autoScalingGroup, FAILED_OUTCOME + description);
+    }
+
+    /**
+     * Mark auto scaling group as processed and record its outcome, unless it has already been recorded as timed out.
+     */
+    private void complete(JobRun jobRun, AutoScalingGroupSnapshot autoScalingGroup, String outcome) {
+        if (jobRun.claim(autoScalingGroup.getAutoScalingGroupName())) {
+            try {
+                jobResultWriter.record(jobRun.getTarget().key(autoScalingGroup.getAutoScalingGroupName()),
+                    jobRun.getJobSequenceNumber(), outcome);
+            }
+            finally {
+                //Run is only done once the outcome is recorded, so it is part of the flush at the end of the run.
+                jobRun.complete(autoScalingGroup.getAutoScalingGroupName());
+            }
         }
     }
 
     /**
-     * This method will terminate the instance in auto scaling group. It will not try to apply any rules to pick the
-     * instance. It will completely depend on rules applied by auto scaling termination process. This method will also
-     * be executed in callback thread, not the scheduler thread.
+     * Hand auto scaling group over to the termination stage and record the instance terminated once termination
+     * completes. Returns immediately, so this thread can move on to the rules of other auto scaling groups. Cached
+     * scaling activities of the auto scaling group are dropped when termination is submitted and again once it
+     * succeeds, as activities described meanwhile may not show the replacement instance being launched yet. Indexed
+     * ones are dropped when termination is submitted.
      *
-     * @param jobSequenceNumber
-     * @param autoScalingGroup
+     * @param jobRun - Job run the auto scaling group has been registered with
+     * @param autoScalingGroup - Auto scaling group which passed all the rules
      */
-    private void terminateInstance(Long jobSequenceNumber, AutoScalingGroup autoScalingGroup) {
-        //Just Logging it, not killing any instance by purpose.
+    private void terminateInstance(final JobRun jobRun, final AutoScalingGroupSnapshot autoScalingGroup) {
         LOGGER.info("All rules passed for auto scaling group {}, terminating an instance in the group",
             autoScalingGroup.getAutoScalingGroupName());
-        hashOps.put(autoScalingGroup.getAutoScalingGroupName(), jobSequenceNumber, "Terminated Instance:X");
+        final String key = jobRun.getTarget().key(autoScalingGroup.getAutoScalingGroupName());
+        ruleOutcomeCache.invalidate(key);
+        scalingActivityCache.invalidate(key);
+        scalingActivityIndex.invalidate(key);
+        Futures.addCallback(terminationEngine.submit(jobRun, autoScalingGroup), new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String instanceId) {
+                scalingActivityCache.invalidate(key);
+                complete(jobRun, autoScalingGroup, TERMINATED_OUTCOME + instanceId);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                complete(jobRun, autoScalingGroup, FAILED_OUTCOME + throwable.getMessage());
+            }
+        });
     }
 
     /**
-     * Sort the rules before processing so that rules are executed in defined order. Each rule is annotated with order
-     * annotation.
+     * Compile the rules before processing so that rules are executed in defined order. Each rule is annotated with
+     * order annotation, local rules run before remote rules.
      */
     @PostConstruct
     public void afterPropertiesSet() {
-        AnnotationAwareOrderComparator.sort(instanceSelectionRules);
+        ruleChain = RuleChain.compile(instanceSelectionRules, metricsRegistry);
+        lastEvaluatedMillis = CacheBuilder.newBuilder().maximumSize(evaluationHistoryMaxSize).build();
+        LOGGER.info("Rules are applied in order {}", ruleChain);
     }
 }
@@ -0,0 +1,180 @@
+package com.sample.autoscaling.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.google.common.base.Charsets;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Outcomes of failed rules keyed by auto scaling group (see {@link AutoScalingTarget#key(String)}), along with a
+ * fingerprint of the auto scaling group state the rules were applied to: its instances, desired capacity and latest
+ * scaling activity. While the fingerprint of an auto scaling group is unchanged, rules would fail the same way again,
+ * so the outcome is reused without applying the rules or calling AWS, and the cost of a run follows the churn in the
+ * fleet rather than its size.
+ * <p/>
+ * Latest scaling activity is taken from {@link ScalingActivityIndex} or {@link ScalingActivityCache}, whichever the
+ * activity rule reads, when known. Otherwise the one seen when rules were applied is assumed unchanged (scaling
+ * activities change the instances of the auto scaling group). Outcomes are evicted after the maximum staleness, which
+ * forces a full re-check, e.g. once a recent scale up activity gets old enough for an instance to be terminated. Only
+ * rule failures are cached: terminations change the fingerprint anyway and errors are always retried.
+ */
+@Component
+public class RuleOutcomeCache {
+
+    private final Cache<String, CachedOutcome> cache;
+
+    private final boolean enabled;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Autowired
+    private ScalingActivityCache scalingActivityCache;
+
+    @Autowired
+    private ScalingActivityIndex scalingActivityIndex;
+
+    @Autowired
+    public RuleOutcomeCache(
+        @Value("${rule.outcome.cache.max.size}")
+        long maximumSize,
+        @Value("${rule.outcome.cache.max.staleness.seconds}")
+        long maxStalenessSeconds) {
+        this(maximumSize, maxStalenessSeconds, Ticker.systemTicker());
+    }
+
+    /**
+     * @param maxStalenessSeconds - Time after which rules are applied again even if auto scaling group is unchanged, 0
+     * to disable caching
+     */
+    public RuleOutcomeCache(long maximumSize, long maxStalenessSeconds, Ticker ticker) {
+        this.enabled = maxStalenessSeconds > 0;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+            .expireAfterWrite(maxStalenessSeconds, TimeUnit.SECONDS).ticker(ticker).build();
+    }
+
+    /**
+     * Get the outcome of the rules last applied to auto scaling group, if its state has not changed since.
+     *
+     * @param target - Target the auto scaling group belongs to
+     *
+     * @return Outcome to reuse, or null if rules must be applied.
+     */
+    public String getReusableOutcome(AutoScalingTarget target, AutoScalingGroupSnapshot autoScalingGroup) {
+        String key = target.key(autoScalingGroup.getAutoScalingGroupName());
+        CachedOutcome cachedOutcome = enabled ? cache.getIfPresent(key) : null;
+        if (cachedOutcome == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        List<Activity> latestActivities = peekLatestActivities(key);
+        String latestActivityKey = latestActivities != null ? activityKey(latestActivities) :
+            cachedOutcome.latestActivityKey;
+        if (cachedOutcome.fingerprint != fingerprint(autoScalingGroup, latestActivityKey)) {
+            cache.invalidate(key);
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return cachedOutcome.outcome;
+    }
+
+    /**
+     * Cache the outcome of a failed rule for the auto scaling group state the rules were applied to.
+     *
+     * @param target - Target the auto scaling group belongs to
+     */
+    public void put(AutoScalingTarget target, AutoScalingGroupSnapshot autoScalingGroup, String outcome) {
+        if (!enabled) {
+            return;
+        }
+        String key = target.key(autoScalingGroup.getAutoScalingGroupName());
+        List<Activity> latestActivities = peekLatestActivities(key);
+        String latestActivityKey = latestActivities != null ? activityKey(latestActivities) : null;
+        cache.put(key, new CachedOutcome(outcome, latestActivityKey,
+            fingerprint(autoScalingGroup, latestActivityKey)));
+    }
+
+    /**
+     * @param key - Key of auto scaling group, see {@link AutoScalingTarget#key(String)}
+     */
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private List<Activity> peekLatestActivities(String key) {
+        return scalingActivityIndex.isEnabled() ? scalingActivityIndex.peek(key) : scalingActivityCache.peek(key);
+    }
+
+    /**
+     * Fingerprint of the state rules depend on: instances (with their lifecycle state, in a stable order), desired
+     * capacity and latest scaling activity.
+     */
+    static long fingerprint(AutoScalingGroupSnapshot autoScalingGroup, String latestActivityKey) {
+        List<String> instances = new ArrayList<String>(autoScalingGroup.getInstanceCount());
+        for (int index = 0; index < autoScalingGroup.getInstanceCount(); index++) {
+            instances.add(autoScalingGroup.getInstanceId(index) + ":" + autoScalingGroup.getLifecycleState(index));
+        }
+        Collections.sort(instances);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String instance : instances) {
+            hasher.putString(instance, Charsets.UTF_8).putChar(',');
+        }
+        hasher.putInt(autoScalingGroup.getDesiredCapacity());
+        hasher.putString(String.valueOf(latestActivityKey), Charsets.UTF_8);
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Id, status and progress of the latest scaling activity.
+     */
+    private static String activityKey(List<Activity> activities) {
+        if (activities.isEmpty()) {
+            return "";
+        }
+        Activity latestActivity = activities.get(0);
+        return latestActivity.getActivityId() + ":" + latestActivity.getStatusCode() + ":" +
+            latestActivity.getProgress();
+    }
+
+    private static final class CachedOutcome {
+
+        private final String outcome;
+
+        private final String latestActivityKey;
+
+        private final long fingerprint;
+
+        private CachedOutcome(String outcome, String latestActivityKey, long fingerprint) {
+            this.outcome = outcome;
+            this.latestActivityKey = latestActivityKey;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.sample.autoscaling.rules;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of latest scaling activities keyed by auto scaling group name, prefixed by the Redis namespace of its
+ * target (see {@link com.sample.autoscaling.target.AutoScalingTarget#key(String)}). Cache is shared across job runs, so
+ * DescribeScalingActivities is called at most once per time to live for an auto scaling group. Activities still in
+ * progress are likely to change soon, those are expired after a shorter time to live. Terminating an instance starts a
+ * new activity the cached ones do not show, so {@link RuleHandler} invalidates the auto scaling group it terminates an
+ * instance in.
+ */
+@Component
+public class ScalingActivityCache {
+
+    private final Cache<String, CachedActivities> cache;
+
+    private final long timeToLiveNanos;
+
+    private final long inProgressTimeToLiveNanos;
+
+    private final Ticker ticker;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Autowired
+    public ScalingActivityCache(
+        @Value("${scaling.activity.cache.max.size}")
+        long maximumSize,
+        @Value("${scaling.activity.cache.ttl.seconds}")
+        long timeToLiveSeconds,
+        @Value("${scaling.activity.cache.in.progress.ttl.seconds}")
+        long inProgressTimeToLiveSeconds) {
+        this(maximumSize, timeToLiveSeconds, inProgressTimeToLiveSeconds, Ticker.systemTicker());
+    }
+
+    public ScalingActivityCache(long maximumSize, long timeToLiveSeconds, long inProgressTimeToLiveSeconds,
+                                Ticker ticker) {
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+        this.inProgressTimeToLiveNanos = TimeUnit.SECONDS.toNanos(Math.min(inProgressTimeToLiveSeconds,
+            timeToLiveSeconds));
+        this.ticker = ticker;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+            .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS).ticker(ticker).build();
+    }
+
+    /**
+     * Get the cached scaling activities of an auto scaling group.
+     *
+     * @param autoScalingGroupName
+     *
+     * @return Cached activities, most recent first, or null if activities are not cached or have expired.
+     */
+    public List<Activity> getIfPresent(String autoScalingGroupName) {
+        List<Activity> activities = peek(autoScalingGroupName);
+        if (activities == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return activities;
+    }
+
+    /**
+     * Same as {@link #getIfPresent(String)}, but not counted as a cache hit or miss. Used to inspect the cache without
+     * looking up activities.
+     */
+    public List<Activity> peek(String autoScalingGroupName) {
+        CachedActivities cachedActivities = cache.getIfPresent(autoScalingGroupName);
+        if (cachedActivities != null && cachedActivities.expiresAt - ticker.read() <= 0) {
+            //Activity in progress outlived its shorter time to live.
+            cache.invalidate(autoScalingGroupName);
+            cachedActivities = null;
+        }
+        return cachedActivities == null ? null : cachedActivities.activities;
+    }
+
+    /**
+     * Cache the scaling activities of an auto scaling group.
+     *
+     * @param autoScalingGroupName
+     * @param activities - Latest activities as returned by DescribeScalingActivities, most recent first
+     */
+    public void put(String autoScalingGroupName, List<Activity> activities) {
+        long timeToLive = isInProgress(activities) ? inProgressTimeToLiveNanos : timeToLiveNanos;
+        cache.put(autoScalingGroupName, new CachedActivities(activities, ticker.read() + timeToLive));
+    }
+
+    public void invalidate(String autoScalingGroupName) {
+        cache.invalidate(autoScalingGroupName);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private boolean isInProgress(List<Activity> activities) {
+        if (activities.isEmpty()) {
+            return false;
+        }
+        Integer progress = activities.get(0).getProgress();
+        return progress != null && progress < 100;
+    }
+
+    /**
+     * Cached activities along with the time (as per ticker) they expire at.
+     */
+    private static final class CachedActivities {
+
+        private final List<Activity> activities;
+
+        private final long expiresAt;
+
+        private CachedActivities(List<Activity> activities, long expiresAt) {
+            this.activities = activities;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.sample.autoscaling.rules;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latest scaling activity of each auto scaling group, kept up to date by AutoScaling notifications (see
+ * {@link com.sample.autoscaling.events.ScalingEventConsumer}) when event-driven activity tracking is enabled. Keyed
+ * like {@link ScalingActivityCache}. Activity rule reads the index instead of calling DescribeScalingActivities, so
+ * in steady state a run makes no AWS call to check scaling activities.
+ * <p/>
+ * Notifications can be lost, duplicated or delivered out of order: an activity only replaces the indexed one when it
+ * is newer, and an auto scaling group whose activity has not been updated for the reconciliation interval drops out
+ * of the index, so the rule polls it once more and reconciles the index with the response.
+ */
+@Component
+public class ScalingActivityIndex {
+
+    private final boolean enabled;
+
+    private final Cache<String, List<Activity>> index;
+
+    private final ConcurrentMap<String, List<Activity>> indexMap;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong updateCount = new AtomicLong();
+
+    @Autowired
+    public ScalingActivityIndex(
+        @Value("${scaling.activity.events.enabled}")
+        boolean enabled,
+        @Value("${scaling.activity.index.max.size}")
+        long maximumSize,
+        @Value("${scaling.activity.reconcile.interval.seconds}")
+        long reconcileIntervalSeconds) {
+        this(enabled, maximumSize, reconcileIntervalSeconds, Ticker.systemTicker());
+    }
+
+    public ScalingActivityIndex(boolean enabled, long maximumSize, long reconcileIntervalSeconds, Ticker ticker) {
+        this.enabled = enabled;
+        this.index = CacheBuilder.newBuilder().maximumSize(maximumSize)
+            .expireAfterWrite(reconcileIntervalSeconds, TimeUnit.SECONDS).ticker(ticker).build();
+        this.indexMap = index.asMap();
+    }
+
+    /**
+     * @return True if scaling activities are tracked from notifications, false if they are polled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the latest scaling activity of an auto scaling group.
+     *
+     * @param key - Key of auto scaling group, see {@link com.sample.autoscaling.target.AutoScalingTarget#key(String)}
+     *
+     * @return Latest activity (empty if auto scaling group has no activity), or null if auto scaling group is not
+     * indexed or is due for reconciliation.
+     */
+    public List<Activity> get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        List<Activity> activities = index.getIfPresent(key);
+        if (activities == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return activities;
+    }
+
+    /**
+     * Same as {@link #get(String)}, but not counted as a hit or miss.
+     */
+    public List<Activity> peek(String key) {
+        return index.getIfPresent(key);
+    }
+
+    /**
+     * Apply an activity received in a notification, unless a newer activity is already indexed.
+     *
+     * @return True if the activity is now the latest activity of the auto scaling group.
+     */
+    public boolean update(String key, Activity activity) {
+        List<Activity> updated = Collections.singletonList(activity);
+        while (true) {
+            List<Activity> current = indexMap.get(key);
+            if (current == null) {
+                if (indexMap.putIfAbsent(key, updated) == null) {
+                    updateCount.incrementAndGet();
+                    return true;
+                }
+            }
+            else if (!current.isEmpty() && !isNewer(activity, current.get(0))) {
+                return false;
+            }
+            else if (indexMap.replace(key, current, updated)) {
+                updateCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reconcile the index with scaling activities polled from AWS. Activity indexed meanwhile is kept if it is newer.
+     * Either way, auto scaling group is not polled again before the next reconciliation interval.
+     *
+     * @param activities - Latest activities as returned by DescribeScalingActivities, most recent first
+     */
+    public void reconcile(String key, List<Activity> activities) {
+        List<Activity> polled = activities.isEmpty() ? Collections.<Activity>emptyList() :
+            Collections.singletonList(activities.get(0));
+        List<Activity> current = indexMap.get(key);
+        if (current != null && !current.isEmpty() && (polled.isEmpty() || isNewer(current.get(0), polled.get(0)))) {
+            polled = current;
+        }
+        index.put(key, polled);
+    }
+
+    /**
+     * Drop an auto scaling group from the index, so its activities are polled on next lookup. Used when an auto scaling
+     * group is about to start an activity that has not been notified yet.
+     */
+    public void invalidate(String key) {
+        index.invalidate(key);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return Number of notified activities that became the latest activity of their auto scaling group.
+     */
+    public long getUpdateCount() {
+        return updateCount.get();
+    }
+
+    public long size() {
+        return index.size();
+    }
+
+    /**
+     * Check if an activity is more recent than another one: a later progress of the same activity, or an activity
+     * started later.
+     */
+    static boolean isNewer(Activity activity, Activity other) {
+        if (activity.getActivityId() != null && activity.getActivityId().equals(other.getActivityId())) {
+            return progress(activity) > progress(other) ||
+                (progress(activity) == progress(other) && activity.getEndTime() != null && other.getEndTime() == null);
+        }
+        if (activity.getStartTime() == null || other.getStartTime() == null) {
+            return other.getStartTime() == null;
+        }
+        return activity.getStartTime().after(other.getStartTime());
+    }
+
+    private static int progress(Activity activity) {
+        return activity.getProgress() == null ? 0 : activity.getProgress();
+    }
+}
@@ -0,0 +1,461 @@
+package com.sample.autoscaling.simulator;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.DefaultTuple;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
+
+/**
+ * In-memory stand-in for the Redis server, supporting the string, hash, set and sorted set commands used by the
+ * application. Commands are executed one at a time, so pipelines and transactions are applied atomically. A latency
+ * can be injected to simulate the network round trip of each command, pipeline or transaction.
+ */
+public class InMemoryRedis {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, Object> keyspace = new HashMap<String, Object>();
+
+    private final AtomicLong commandCount = new AtomicLong();
+
+    private final AtomicLong roundTripCount = new AtomicLong();
+
+    private volatile long latencyMillis;
+
+    /**
+     * Simulate one network round trip to the server.
+     */
+    void roundTrip() {
+        roundTripCount.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RedisSystemException("Interrupted while waiting for in-memory Redis", ie);
+            }
+        }
+    }
+
+    /**
+     * Execute commands as a single atomic unit.
+     *
+     * @param commands - Commands in the order they were issued
+     *
+     * @return Replies of the commands, in the same order.
+     */
+    synchronized List<Object> execute(List<Command> commands) {
+        List<Object> replies = new ArrayList<Object>(commands.size());
+        for (Command command : commands) {
+            replies.add(execute(command.getName(), command.getArgs()));
+        }
+        return replies;
+    }
+
+    /**
+     * Execute a single command, arguments are the ones of the matching RedisConnection method.
+     */
+    synchronized Object execute(String name, Object[] args) {
+        commandCount.incrementAndGet();
+        switch (name) {
+            case "ping":
+                return "PONG";
+            case "dbSize":
+                return (long) keyspace.size();
+            case "flushDb":
+            case "flushAll":
+                keyspace.clear();
+                return null;
+            case "exists":
+                return keyspace.containsKey(key(args));
+            case "del":
+                return del((byte[][]) args[0]);
+            case "get":
+                return bytes(value(key(args)));
+            case "set":
+                keyspace.put(key(args), string(args[1]));
+                return null;
+            case "incr":
+                return incrBy(key(args), 1);
+            case "incrBy":
+                return incrBy(key(args), (Long) args[1]);
+            case "decr":
+                return incrBy(key(args), -1);
+            case "decrBy":
+                return incrBy(key(args), -(Long) args[1]);
+            case "hSet":
+                return hash(key(args), true).put(string(args[1]), string(args[2])) == null;
+            case "hMSet":
+                hMSet(key(args), (Map<?, ?>) args[1]);
+                return null;
+            case "hGet":
+                return hGet(key(args), string(args[1]));
+            case "hMGet":
+                return hMGet(key(args), (byte[][]) args[1]);
+            case "hGetAll":
+                return hGetAll(key(args));
+            case "hKeys":
+                return toBytes(hash(key(args), false).keySet());
+            case "hLen":
+                return (long) hash(key(args), false).size();
+            case "hExists":
+                return hash(key(args), false).containsKey(string(args[1]));
+            case "hDel":
+                return hDel(key(args), (byte[][]) args[1]);
+            case "hIncrBy":
+                return hIncrBy(key(args), string(args[1]), (Long) args[2]);
+            case "sAdd":
+                return sAdd(key(args), (byte[][]) args[1]);
+            case "sRem":
+                return sRem(key(args), (byte[][]) args[1]);
+            case "sMembers":
+                return toBytes(set(key(args), false));
+            case "sCard":
+                return (long) set(key(args), false).size();
+            case "sIsMember":
+                return set(key(args), false).contains(string(args[1]));
+            case "zAdd":
+                return zSet(key(args), true).put(string(args[2]), (Double) args[1]) == null;
+            case "zRem":
+                return zRem(key(args), (byte[][]) args[1]);
+            case "zScore":
+                return zSet(key(args), false).get(string(args[1]));
+            case "zCard":
+                return (long) zSet(key(args), false).size();
+            case "zRange":
+                return members(zRange(key(args), (Long) args[1], (Long) args[2]));
+            case "zRangeWithScores":
+                return tuples(zRange(key(args), (Long) args[1], (Long) args[2]));
+            case "zRangeByScore":
+                return members(zRangeByScore(key(args), args));
+            case "zRangeByScoreWithScores":
+                return tuples(zRangeByScore(key(args), args));
+            case "zRemRangeByScore":
+                return zRemRangeByScore(key(args), (Double) args[1], (Double) args[2]);
+            default:
+                throw new InvalidDataAccessApiUsageException(
+                    "Command " + name + " is not supported by in-memory Redis");
+        }
+    }
+
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    public long getRoundTripCount() {
+        return roundTripCount.get();
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    private long del(byte[][] keys) {
+        long deleted = 0;
+        for (byte[] key : keys) {
+            if (keyspace.remove(string(key)) != null) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private long incrBy(String key, long delta) {
+        String value = value(key);
+        long incremented;
+        try {
+            incremented = (value == null ? 0 : Long.parseLong(value)) + delta;
+        }
+        catch (NumberFormatException nfe) {
+            throw new InvalidDataAccessApiUsageException("ERR value is not an integer or out of range", nfe);
+        }
+        keyspace.put(key, String.valueOf(incremented));
+        return incremented;
+    }
+
+    private void hMSet(String key, Map<?, ?> fields) {
+        Map<String, String> hash = hash(key, true);
+        for (Map.Entry<?, ?> field : fields.entrySet()) {
+            hash.put(string(field.getKey()), string(field.getValue()));
+        }
+    }
+
+    private byte[] hGet(String key, String field) {
+        return bytes(hash(key, false).get(field));
+    }
+
+    private List<byte[]> hMGet(String key, byte[][] fields) {
+        Map<String, String> hash = hash(key, false);
+        List<byte[]> values = new ArrayList<byte[]>(fields.length);
+        for (byte[] field : fields) {
+            values.add(bytes(hash.get(string(field))));
+        }
+        return values;
+    }
+
+    private Map<byte[], byte[]> hGetAll(String key) {
+        Map<byte[], byte[]> entries = new LinkedHashMap<byte[], byte[]>();
+        for (Map.Entry<String, String> field : hash(key, false).entrySet()) {
+            entries.put(bytes(field.getKey()), bytes(field.getValue()));
+        }
+        return entries;
+    }
+
+    private long hDel(String key, byte[][] fields) {
+        Map<String, String> hash = hash(key, false);
+        long deleted = 0;
+        for (byte[] field : fields) {
+            if (hash.remove(string(field)) != null) {
+                deleted++;
+            }
+        }
+        removeIfEmpty(key, hash.isEmpty());
+        return deleted;
+    }
+
+    private long hIncrBy(String key, String field, long delta) {
+        Map<String, String> hash = hash(key, true);
+        String value = hash.get(field);
+        long incremented = (value == null ? 0 : Long.parseLong(value)) + delta;
+        hash.put(field, String.valueOf(incremented));
+        return incremented;
+    }
+
+    private long sAdd(String key, byte[][] members) {
+        Set<String> set = set(key, true);
+        long added = 0;
+        for (byte[] member : members) {
+            if (set.add(string(member))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private long sRem(String key, byte[][] members) {
+        Set<String> set = set(key, false);
+        long removed = 0;
+        for (byte[] member : members) {
+            if (set.remove(string(member))) {
+                removed++;
+            }
+        }
+        removeIfEmpty(key, set.isEmpty());
+        return removed;
+    }
+
+    private long zRem(String key, byte[][] members) {
+        Map<String, Double> zSet = zSet(key, false);
+        long removed = 0;
+        for (byte[] member : members) {
+            if (zSet.remove(string(member)) != null) {
+                removed++;
+            }
+        }
+        removeIfEmpty(key, zSet.isEmpty());
+        return removed;
+    }
+
+    /**
+     * Members of sorted set between two ranks (inclusive, negative ranks count from the end), lowest score first.
+     */
+    private List<Map.Entry<String, Double>> zRange(String key, long start, long end) {
+        List<Map.Entry<String, Double>> sorted = sorted(zSet(key, false));
+        int size = sorted.size();
+        int from = (int) Math.max(0, start < 0 ? size + start : start);
+        int to = (int) Math.min(size - 1, end < 0 ? size + end : end);
+        return from > to ? Collections.<Map.Entry<String, Double>>emptyList() : sorted.subList(from, to + 1);
+    }
+
+    /**
+     * Members of sorted set with a score between min and max (inclusive), optionally limited by offset and count.
+     */
+    private List<Map.Entry<String, Double>> zRangeByScore(String key, Object[] args) {
+        double min = (Double) args[1];
+        double max = (Double) args[2];
+        List<Map.Entry<String, Double>> inRange = new ArrayList<Map.Entry<String, Double>>();
+        for (Map.Entry<String, Double> member : sorted(zSet(key, false))) {
+            if (member.getValue() >= min && member.getValue() <= max) {
+                inRange.add(member);
+            }
+        }
+        if (args.length == 5) {
+            int from = (int) Math.min(inRange.size(), (Long) args[3]);
+            long count = (Long) args[4];
+            int to = count < 0 ? inRange.size() : (int) Math.min(inRange.size(), from + count);
+            return inRange.subList(from, to);
+        }
+        return inRange;
+    }
+
+    private long zRemRangeByScore(String key, double min, double max) {
+        Map<String, Double> zSet = zSet(key, false);
+        long removed = 0;
+        for (Iterator<Double> scores = zSet.values().iterator(); scores.hasNext(); ) {
+            double score = scores.next();
+            if (score >= min && score <= max) {
+                scores.remove();
+                removed++;
+            }
+        }
+        removeIfEmpty(key, zSet.isEmpty());
+        return removed;
+    }
+
+    private List<Map.Entry<String, Double>> sorted(Map<String, Double> zSet) {
+        List<Map.Entry<String, Double>> sorted = new ArrayList<Map.Entry<String, Double>>(zSet.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, Double>>() {
+            @Override
+            public int compare(Map.Entry<String, Double> first, Map.Entry<String, Double> second) {
+                int byScore = Double.compare(first.getValue(), second.getValue());
+                return byScore != 0 ? byScore : first.getKey().compareTo(second.getKey());
+            }
+        });
+        return sorted;
+    }
+
+    private Set<byte[]> members(List<Map.Entry<String, Double>> entries) {
+        Set<byte[]> members = new LinkedHashSet<byte[]>();
+        for (Map.Entry<String, Double> entry : entries) {
+            members.add(bytes(entry.getKey()));
+        }
+        return members;
+    }
+
+    private Set<Tuple> tuples(List<Map.Entry<String, Double>> entries) {
+        Set<Tuple> tuples = new LinkedHashSet<Tuple>();
+        for (Map.Entry<String, Double> entry : entries) {
+            tuples.add(new DefaultTuple(bytes(entry.getKey()), entry.getValue()));
+        }
+        return tuples;
+    }
+
+    private Set<byte[]> toBytes(Set<String> values) {
+        Set<byte[]> bytes = new LinkedHashSet<byte[]>();
+        for (String value : values) {
+            bytes.add(bytes(value));
+        }
+        return bytes;
+    }
+
+    private String value(String key) {
+        return typed(key, String.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key, boolean create) {
+        Map<String, String> hash = typed(key, Map.class);
+        if (hash == null) {
+            hash = new LinkedHashMap<String, String>();
+            if (create) {
+                keyspace.put(key, hash);
+            }
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> set(String key, boolean create) {
+        Set<String> set = typed(key, Set.class);
+        if (set == null) {
+            set = new LinkedHashSet<String>();
+            if (create) {
+                keyspace.put(key, set);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Sorted sets are kept as member to score maps and sorted when read.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Double> zSet(String key, boolean create) {
+        Map<String, Double> zSet = typed(key, ZSet.class);
+        if (zSet == null) {
+            zSet = new ZSet();
+            if (create) {
+                keyspace.put(key, zSet);
+            }
+        }
+        return zSet;
+    }
+
+    private <T> T typed(String key, Class<T> type) {
+        Object value = keyspace.get(key);
+        if (value != null && !(type.isInstance(value) && (type != Map.class || !(value instanceof ZSet)))) {
+            throw new InvalidDataAccessApiUsageException(
+                "WRONGTYPE Operation against a key holding the wrong kind of value: " + key);
+        }
+        return type.cast(value);
+    }
+
+    private void removeIfEmpty(String key, boolean empty) {
+        if (empty) {
+            keyspace.remove(key);
+        }
+    }
+
+    private static String key(Object[] args) {
+        return string(args[0]);
+    }
+
+    private static String string(Object bytes) {
+        return bytes == null ? null : new String((byte[]) bytes, UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    /**
+     * Command issued while pipelining or in a transaction, executed when the pipeline is closed or the transaction is
+     * executed.
+     */
+    static class Command {
+
+        private final String name;
+
+        private final Object[] args;
+
+        Command(String name, Object[] args) {
+            this.name = name;
+            this.args = args;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Object[] getArgs() {
+            return args;
+        }
+    }
+
+    /**
+     * Marker type of sorted sets, so they are not mistaken for hashes.
+     */
+    private static class ZSet extends HashMap<String, Double> {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
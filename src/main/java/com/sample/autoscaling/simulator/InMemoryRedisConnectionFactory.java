@@ -0,0 +1,156 @@
+package com.sample.autoscaling.simulator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sample.autoscaling.simulator.InMemoryRedis.Command;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * Connection factory handing out connections to an {@link InMemoryRedis} instead of a Redis server, so RedisTemplate
+ * and all the operations built on it work unchanged. Pipelined commands are sent to the server in one round trip
+ * when the pipeline is closed, transactions in one round trip when executed.
+ */
+public class InMemoryRedisConnectionFactory implements RedisConnectionFactory {
+
+    private final InMemoryRedis redis;
+
+    public InMemoryRedisConnectionFactory(InMemoryRedis redis) {
+        this.redis = redis;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+            new Class<?>[]{RedisConnection.class}, new InMemoryRedisConnection(redis));
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return false;
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return ex instanceof DataAccessException ? (DataAccessException) ex : null;
+    }
+
+    public InMemoryRedis getRedis() {
+        return redis;
+    }
+
+    /**
+     * Nothing to release, there is no connection to a server.
+     */
+    public void destroy() {
+    }
+
+    /**
+     * Connection state, commands are queued while pipelining or in a transaction.
+     */
+    private static class InMemoryRedisConnection implements InvocationHandler {
+
+        private final InMemoryRedis redis;
+
+        private List<Command> pipeline;
+
+        private List<Command> transaction;
+
+        private boolean closed;
+
+        InMemoryRedisConnection(InMemoryRedis redis) {
+            this.redis = redis;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getNativeConnection":
+                    return redis;
+                case "isPipelined":
+                    return pipeline != null;
+                case "isQueueing":
+                    return transaction != null;
+                case "openPipeline":
+                    if (pipeline == null) {
+                        pipeline = new ArrayList<Command>();
+                    }
+                    return null;
+                case "closePipeline":
+                    return closePipeline();
+                case "multi":
+                    transaction = new ArrayList<Command>();
+                    return null;
+                case "exec":
+                    return exec();
+                case "discard":
+                    transaction = null;
+                    return null;
+                case "watch":
+                case "unwatch":
+                    //Optimistic locking is not simulated, transactions always succeed.
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "InMemoryRedisConnection";
+                default:
+                    return execute(method.getName(), args);
+            }
+        }
+
+        private Object execute(String name, Object[] args) {
+            if (closed) {
+                throw new InvalidDataAccessApiUsageException("Connection is closed");
+            }
+            if (transaction != null) {
+                transaction.add(new Command(name, args));
+                return null;
+            }
+            if (pipeline != null) {
+                pipeline.add(new Command(name, args));
+                return null;
+            }
+            redis.roundTrip();
+            return redis.execute(name, args);
+        }
+
+        private List<Object> closePipeline() {
+            if (pipeline == null) {
+                return Collections.emptyList();
+            }
+            List<Command> commands = pipeline;
+            pipeline = null;
+            redis.roundTrip();
+            return redis.execute(commands);
+        }
+
+        private List<Object> exec() {
+            if (transaction == null) {
+                throw new InvalidDataAccessApiUsageException("ERR EXEC without MULTI");
+            }
+            List<Command> commands = transaction;
+            transaction = null;
+            if (pipeline != null) {
+                pipeline.addAll(commands);
+                return null;
+            }
+            redis.roundTrip();
+            return redis.execute(commands);
+        }
+    }
+}
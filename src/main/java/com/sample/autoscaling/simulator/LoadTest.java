@@ -0,0 +1,58 @@
+package com.sample.autoscaling.simulator;
+
+import com.sample.autoscaling.config.DaemonConfig;
+import com.sample.autoscaling.job.TerminateInstanceJob;
+import com.sample.autoscaling.metrics.JobMetrics;
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Main class to load test the application end to end against the simulators. Boots the whole Spring context with the
+ * simulator profile, runs the Instance Termination job back to back the given number of times (default 3) and logs
+ * throughput of each run. Fleet size, latencies and throttling are configured by simulator.* properties, which can be
+ * overridden with system properties (e.g. -Dsimulator.group.count=50000).
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+    public static void main(String... args) throws InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles(SimulatorConfig.PROFILE);
+        context.register(DaemonConfig.class);
+        context.refresh();
+        try {
+            TerminateInstanceJob terminateInstanceJob = context.getBean(TerminateInstanceJob.class);
+            JobMetrics jobMetrics = context.getBean(JobMetrics.class);
+            for (int run = 1; run <= runs; run++) {
+                terminateInstanceJob.run();
+                LOGGER.info("Load test run {} of {}: {} auto scaling groups in {} ms ({} groups/s)", run, runs,
+                    jobMetrics.getLastRunGroupCount(), jobMetrics.getLastRunDurationMillis(),
+                    String.format("%.1f", jobMetrics.getLastRunGroupsPerSecond()));
+            }
+            SimulatedAutoScalingClient autoScalingSimulator = context.getBean(SimulatedAutoScalingClient.class);
+            InMemoryRedis inMemoryRedis = context.getBean(InMemoryRedis.class);
+            LOGGER.info("AutoScaling calls: {} describeAutoScalingGroups, {} describeScalingActivities, {} " +
+                "terminateInstanceInAutoScalingGroup, {} throttled",
+                autoScalingSimulator.getCallCount("describeAutoScalingGroups"),
+                autoScalingSimulator.getCallCount("describeScalingActivities"),
+                autoScalingSimulator.getCallCount("terminateInstanceInAutoScalingGroup"),
+                autoScalingSimulator.getThrottledCallCount());
+            LOGGER.info("Rule outcomes reused for {} unchanged auto scaling groups, rules applied to {}",
+                jobMetrics.getRuleOutcomeCacheHitCount(), jobMetrics.getRuleOutcomeCacheMissCount());
+            LOGGER.info("Redis: {} commands in {} round trips", inMemoryRedis.getCommandCount(),
+                inMemoryRedis.getRoundTripCount());
+            for (LatencyMetrics latencyMetrics : context.getBean(MetricsRegistry.class).getAllLatencyMetrics()) {
+                LOGGER.info("{}", latencyMetrics);
+            }
+        }
+        finally {
+            context.close();
+        }
+    }
+}
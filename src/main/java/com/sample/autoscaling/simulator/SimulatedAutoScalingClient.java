@@ -0,0 +1,545 @@
+package com.sample.autoscaling.simulator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsResult;
+import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesRequest;
+import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesResult;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupRequest;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupResult;
+import com.sample.autoscaling.events.InMemoryScalingEventQueue;
+import com.sample.autoscaling.events.ScalingEvent;
+import org.joda.time.DateTime;
+
+/**
+ * In-process stand-in for the AutoScaling API serving a synthetic fleet of auto scaling groups, so the job can be load
+ * tested without an AWS account. Supports describing auto scaling groups (with pagination) and scaling activities and
+ * terminating instances; asynchronous calls are executed on the given executor like the SDK client does. Every call
+ * waits for the configured latency and is rejected with a Throttling error at the configured rate.
+ * <p/>
+ * Simulator can serve a fleet per account and region, each through its own client. Call counts and latency settings
+ * are shared by all the fleets.
+ */
+public class SimulatedAutoScalingClient implements InvocationHandler {
+
+    public static final String DEFAULT_ACCOUNT_ID = "000000000000";
+
+    public static final String DEFAULT_REGION = "us-east-1";
+
+    private static final String[] AVAILABILITY_ZONE_SUFFIXES = {"a", "b", "c"};
+
+    private static final String LAUNCH_CONFIGURATION_NAME = "simulated-launch-configuration";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final int DEFAULT_ACTIVITY_PAGE_SIZE = 100;
+
+    private final ExecutorService executorService;
+
+    /**
+     * Fleets by account and region. Guarded by this.
+     */
+    private final Map<String, Fleet> fleets = new HashMap<String, Fleet>();
+
+    private final AtomicLong instanceSequence = new AtomicLong();
+
+    private final ConcurrentMap<String, AtomicLong> callCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final AtomicLong throttledCallCount = new AtomicLong();
+
+    /**
+     * Queue scaling activities are notified to, null to not notify them.
+     */
+    private volatile InMemoryScalingEventQueue scalingEventQueue;
+
+    private volatile long latencyMillis;
+
+    private volatile double throttleRate;
+
+    /**
+     * @param executorService - Executor running asynchronous calls, shut down with the client
+     */
+    public SimulatedAutoScalingClient(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * AutoScaling client backed by the fleet of the default account and region.
+     */
+    public AmazonAutoScalingAsync getClient() {
+        return getClient(DEFAULT_ACCOUNT_ID, DEFAULT_REGION);
+    }
+
+    /**
+     * AutoScaling client backed by the fleet of an account and region.
+     */
+    public AmazonAutoScalingAsync getClient(String accountId, String region) {
+        final Fleet fleet = fleet(accountId, region);
+        return (AmazonAutoScalingAsync) Proxy.newProxyInstance(AmazonAutoScalingAsync.class.getClassLoader(),
+            new Class<?>[]{AmazonAutoScalingAsync.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    return SimulatedAutoScalingClient.this.invoke(fleet, proxy, method, args);
+                }
+            });
+    }
+
+    /**
+     * Add a synthetic fleet of auto scaling groups named group-0 to group-(n-1), with instances spread across
+     * availability zones. Latest scaling activity of each group is scripted: a launch still in progress, a launch
+     * completed a few minutes ago or a launch completed days ago.
+     *
+     * @param groupCount - Number of auto scaling groups
+     * @param instancesPerGroup - Number of instances in each auto scaling group
+     * @param inProgressRate - Fraction of groups with a launch in progress
+     * @param recentRate - Fraction of groups with a launch completed in last few minutes
+     * @param random - Source of randomness, seeded for repeatable fleets
+     */
+    public void addFleet(int groupCount, int instancesPerGroup, double inProgressRate, double recentRate,
+                         Random random) {
+        addFleet(DEFAULT_ACCOUNT_ID, DEFAULT_REGION, groupCount, instancesPerGroup, inProgressRate, recentRate, random);
+    }
+
+    /**
+     * Same as {@link #addFleet(int, int, double, double, Random)}, in the given account and region.
+     */
+    public synchronized void addFleet(String accountId, String region, int groupCount, int instancesPerGroup,
+                                      double inProgressRate, double recentRate, Random random) {
+        Fleet fleet = fleet(accountId, region);
+        String[] availabilityZones = new String[AVAILABILITY_ZONE_SUFFIXES.length];
+        for (int index = 0; index < availabilityZones.length; index++) {
+            availabilityZones[index] = region + AVAILABILITY_ZONE_SUFFIXES[index];
+        }
+        int firstGroup = fleet.autoScalingGroups.size();
+        for (int index = firstGroup; index < firstGroup + groupCount; index++) {
+            String groupName = "group-" + index;
+            List<Instance> instances = new ArrayList<Instance>(instancesPerGroup);
+            for (int instance = 0; instance < instancesPerGroup; instance++) {
+                instances.add(newInstance(availabilityZones[instance % availabilityZones.length]));
+            }
+            double script = random.nextDouble();
+            Activity latestActivity;
+            if (script < inProgressRate) {
+                latestActivity = launchActivity(groupName, instances.get(0), DateTime.now().minusMinutes(1), null);
+            }
+            else if (script < inProgressRate + recentRate) {
+                latestActivity = launchActivity(groupName, instances.get(0), DateTime.now().minusMinutes(6),
+                    DateTime.now().minusMinutes(5));
+            }
+            else {
+                latestActivity = launchActivity(groupName, instances.get(0), DateTime.now().minusDays(3),
+                    DateTime.now().minusDays(3));
+            }
+            addAutoScalingGroup(fleet, new AutoScalingGroup().withAutoScalingGroupName(groupName)
+                .withAvailabilityZones(availabilityZones).withMinSize(0).withMaxSize(instancesPerGroup * 2)
+                .withDesiredCapacity(instancesPerGroup).withCreatedTime(DateTime.now().minusDays(30).toDate())
+                .withLaunchConfigurationName(LAUNCH_CONFIGURATION_NAME)
+                .withInstances(instances), Collections.singletonList(latestActivity));
+        }
+    }
+
+    /**
+     * Add an auto scaling group with scripted scaling activities in the default account and region.
+     *
+     * @param autoScalingGroup - Auto scaling group, including its instances
+     * @param activities - Scaling activities, most recent first
+     */
+    public synchronized void addAutoScalingGroup(AutoScalingGroup autoScalingGroup, List<Activity> activities) {
+        addAutoScalingGroup(fleet(DEFAULT_ACCOUNT_ID, DEFAULT_REGION), autoScalingGroup, activities);
+    }
+
+    /**
+     * Replace the scaling activities of an auto scaling group of the default account and region, e.g. to script a
+     * scale up during a test.
+     *
+     * @param activities - Scaling activities, most recent first
+     */
+    public synchronized void setScalingActivities(String autoScalingGroupName, List<Activity> activities) {
+        Fleet fleet = fleet(DEFAULT_ACCOUNT_ID, DEFAULT_REGION);
+        fleet.scalingActivities.put(autoScalingGroupName, new LinkedList<Activity>(activities));
+        if (!activities.isEmpty()) {
+            publishActivity(fleet.autoScalingGroups.get(autoScalingGroupName), activities.get(0));
+        }
+    }
+
+    /**
+     * Notify scaling activities to a queue from now on, the way AutoScaling notifications are delivered to SQS.
+     */
+    public void setScalingEventQueue(InMemoryScalingEventQueue scalingEventQueue) {
+        this.scalingEventQueue = scalingEventQueue;
+    }
+
+    /**
+     * Number of auto scaling groups across all the fleets.
+     */
+    public synchronized int getAutoScalingGroupCount() {
+        int autoScalingGroupCount = 0;
+        for (Fleet fleet : fleets.values()) {
+            autoScalingGroupCount += fleet.autoScalingGroups.size();
+        }
+        return autoScalingGroupCount;
+    }
+
+    /**
+     * Number of calls made to an operation (e.g. describeScalingActivities), including throttled calls.
+     */
+    public long getCallCount(String operation) {
+        AtomicLong callCount = callCounts.get(operation);
+        return callCount == null ? 0 : callCount.get();
+    }
+
+    public long getThrottledCallCount() {
+        return throttledCallCount.get();
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public double getThrottleRate() {
+        return throttleRate;
+    }
+
+    /**
+     * @param throttleRate - Fraction of calls rejected with a Throttling error, between 0 and 1
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        return invoke(fleet(DEFAULT_ACCOUNT_ID, DEFAULT_REGION), proxy, method, args);
+    }
+
+    private Object invoke(Fleet fleet, Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        if ("shutdown".equals(name)) {
+            shutdown();
+            return null;
+        }
+        if ("setEndpoint".equals(name) || "setRegion".equals(name) || "getCachedResponseMetadata".equals(name)) {
+            return null;
+        }
+        if (name.endsWith("Async")) {
+            return callAsync(fleet, name.substring(0, name.length() - "Async".length()), args);
+        }
+        return call(fleet, name, (AmazonWebServiceRequest) args[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object callAsync(final Fleet fleet, final String operation, final Object[] args) {
+        final AmazonWebServiceRequest request = (AmazonWebServiceRequest) args[0];
+        final AsyncHandler<AmazonWebServiceRequest, Object> asyncHandler =
+            args.length > 1 ? (AsyncHandler<AmazonWebServiceRequest, Object>) args[1] : null;
+        return executorService.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Object result;
+                try {
+                    result = SimulatedAutoScalingClient.this.call(fleet, operation, request);
+                }
+                catch (Exception ex) {
+                    if (asyncHandler != null) {
+                        asyncHandler.onError(ex);
+                    }
+                    throw ex;
+                }
+                if (asyncHandler != null) {
+                    asyncHandler.onSuccess(request, result);
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Execute an AutoScaling operation after the simulated latency, or reject it as throttled.
+     */
+    private Object call(Fleet fleet, String operation, AmazonWebServiceRequest request) {
+        AtomicLong callCount = callCounts.get(operation);
+        if (callCount == null) {
+            callCounts.putIfAbsent(operation, new AtomicLong());
+            callCount = callCounts.get(operation);
+        }
+        callCount.incrementAndGet();
+        waitForLatency();
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throttledCallCount.incrementAndGet();
+            throw serviceException("Rate exceeded", "Throttling");
+        }
+        switch (operation) {
+            case "describeAutoScalingGroups":
+                return describeAutoScalingGroups(fleet, (DescribeAutoScalingGroupsRequest) request);
+            case "describeScalingActivities":
+                return describeScalingActivities(fleet, (DescribeScalingActivitiesRequest) request);
+            case "terminateInstanceInAutoScalingGroup":
+                return terminateInstanceInAutoScalingGroup(fleet,
+                    (TerminateInstanceInAutoScalingGroupRequest) request);
+            default:
+                throw new AmazonClientException("Operation " + operation + " is not simulated");
+        }
+    }
+
+    private synchronized DescribeAutoScalingGroupsResult describeAutoScalingGroups(Fleet fleet,
+        DescribeAutoScalingGroupsRequest request) {
+        List<AutoScalingGroup> matchingGroups = new ArrayList<AutoScalingGroup>();
+        if (request.getAutoScalingGroupNames().isEmpty()) {
+            matchingGroups.addAll(fleet.autoScalingGroups.values());
+        }
+        else {
+            for (String groupName : request.getAutoScalingGroupNames()) {
+                if (fleet.autoScalingGroups.containsKey(groupName)) {
+                    matchingGroups.add(fleet.autoScalingGroups.get(groupName));
+                }
+            }
+        }
+        int from = 0;
+        if (request.getNextToken() != null) {
+            try {
+                from = Integer.parseInt(request.getNextToken());
+            }
+            catch (NumberFormatException nfe) {
+                throw serviceException("The token '" + request.getNextToken() + "' is invalid.", "InvalidNextToken");
+            }
+        }
+        int pageSize = request.getMaxRecords() != null ? request.getMaxRecords() : DEFAULT_PAGE_SIZE;
+        int to = Math.min(matchingGroups.size(), from + pageSize);
+        List<AutoScalingGroup> page = new ArrayList<AutoScalingGroup>(Math.max(0, to - from));
+        for (AutoScalingGroup autoScalingGroup : matchingGroups.subList(Math.min(from, to), to)) {
+            page.add(copy(autoScalingGroup));
+        }
+        return new DescribeAutoScalingGroupsResult().withAutoScalingGroups(page)
+            .withNextToken(to < matchingGroups.size() ? String.valueOf(to) : null);
+    }
+
+    private synchronized DescribeScalingActivitiesResult describeScalingActivities(Fleet fleet,
+        DescribeScalingActivitiesRequest request) {
+        List<Activity> activities = fleet.scalingActivities.get(request.getAutoScalingGroupName());
+        if (activities == null) {
+            return new DescribeScalingActivitiesResult().withActivities(Collections.<Activity>emptyList());
+        }
+        int maxRecords = request.getMaxRecords() != null ? request.getMaxRecords() : DEFAULT_ACTIVITY_PAGE_SIZE;
+        return new DescribeScalingActivitiesResult().withActivities(
+            new ArrayList<Activity>(activities.subList(0, Math.min(maxRecords, activities.size()))));
+    }
+
+    /**
+     * Terminate an instance. Unless desired capacity is decremented, a replacement instance is launched right away in
+     * the same availability zone, the way auto scaling group keeps its capacity.
+     */
+    private synchronized TerminateInstanceInAutoScalingGroupResult terminateInstanceInAutoScalingGroup(Fleet fleet,
+        TerminateInstanceInAutoScalingGroupRequest request) {
+        String groupName = fleet.instanceGroups.remove(request.getInstanceId());
+        if (groupName == null) {
+            throw serviceException("Instance Id not found - No managed instance found for instance ID " +
+                request.getInstanceId(), "ValidationError");
+        }
+        AutoScalingGroup autoScalingGroup = fleet.autoScalingGroups.get(groupName);
+        List<Instance> instances = new ArrayList<Instance>(autoScalingGroup.getInstances());
+        Instance terminatedInstance = null;
+        for (Instance instance : instances) {
+            if (instance.getInstanceId().equals(request.getInstanceId())) {
+                terminatedInstance = instance;
+            }
+        }
+        instances.remove(terminatedInstance);
+        DateTime now = DateTime.now();
+        Activity terminateActivity = new Activity().withActivityId(UUID.randomUUID().toString())
+            .withAutoScalingGroupName(groupName).withCause("instance was taken out of service in response to a " +
+                "user request").withDescription("Terminating EC2 instance: " + request.getInstanceId())
+            .withStartTime(now.toDate()).withEndTime(now.toDate()).withProgress(100).withStatusCode("Successful");
+        LinkedList<Activity> activities = fleet.scalingActivities.get(groupName);
+        activities.addFirst(terminateActivity);
+        publishActivity(autoScalingGroup, terminateActivity);
+        if (Boolean.TRUE.equals(request.getShouldDecrementDesiredCapacity())) {
+            autoScalingGroup.setDesiredCapacity(autoScalingGroup.getDesiredCapacity() - 1);
+        }
+        else {
+            Instance replacement = newInstance(terminatedInstance.getAvailabilityZone());
+            instances.add(replacement);
+            fleet.instanceGroups.put(replacement.getInstanceId(), groupName);
+            //Replacement is launched once the instance is terminated.
+            Activity launchActivity = launchActivity(groupName, replacement, now.plusMillis(1), now.plusMillis(1));
+            activities.addFirst(launchActivity);
+            publishActivity(autoScalingGroup, launchActivity);
+        }
+        autoScalingGroup.setInstances(instances);
+        return new TerminateInstanceInAutoScalingGroupResult().withActivity(terminateActivity);
+    }
+
+    /**
+     * Fleet of an account and region, created when first used.
+     */
+    private synchronized Fleet fleet(String accountId, String region) {
+        String key = accountId + ":" + region;
+        Fleet fleet = fleets.get(key);
+        if (fleet == null) {
+            fleet = new Fleet(accountId, region);
+            fleets.put(key, fleet);
+        }
+        return fleet;
+    }
+
+    /**
+     * Add an auto scaling group to a fleet, with the ARN it has in the account and region of the fleet.
+     */
+    private void addAutoScalingGroup(Fleet fleet, AutoScalingGroup autoScalingGroup, List<Activity> activities) {
+        String groupName = autoScalingGroup.getAutoScalingGroupName();
+        if (autoScalingGroup.getAutoScalingGroupARN() == null) {
+            autoScalingGroup.setAutoScalingGroupARN("arn:aws:autoscaling:" + fleet.region + ":" + fleet.accountId +
+                ":autoScalingGroup:" + UUID.randomUUID() + ":autoScalingGroupName/" + groupName);
+        }
+        fleet.autoScalingGroups.put(groupName, autoScalingGroup);
+        fleet.scalingActivities.put(groupName, new LinkedList<Activity>(activities));
+        for (Instance instance : autoScalingGroup.getInstances()) {
+            fleet.instanceGroups.put(instance.getInstanceId(), groupName);
+        }
+    }
+
+    private void publishActivity(AutoScalingGroup autoScalingGroup, Activity activity) {
+        if (scalingEventQueue != null && autoScalingGroup != null) {
+            scalingEventQueue.publish(new ScalingEvent(autoScalingGroup.getAutoScalingGroupName(),
+                autoScalingGroup.getAutoScalingGroupARN(), activity));
+        }
+    }
+
+    private Instance newInstance(String availabilityZone) {
+        return new Instance().withInstanceId(String.format("i-%08x", instanceSequence.incrementAndGet()))
+            .withAvailabilityZone(availabilityZone).withLifecycleState("InService").withHealthStatus("Healthy")
+            .withLaunchConfigurationName(LAUNCH_CONFIGURATION_NAME);
+    }
+
+    private Activity launchActivity(String groupName, Instance instance, DateTime startTime, DateTime endTime) {
+        return new Activity().withActivityId(UUID.randomUUID().toString()).withAutoScalingGroupName(groupName)
+            .withCause("an instance was started in response to a difference between desired and actual capacity")
+            .withDescription("Launching a new EC2 instance: " + instance.getInstanceId())
+            .withStartTime(startTime.toDate()).withEndTime(endTime == null ? null : endTime.toDate())
+            .withProgress(endTime == null ? 30 : 100).withStatusCode(endTime == null ? "InProgress" : "Successful");
+    }
+
+    /**
+     * Copy of an auto scaling group, so callers never see later changes of the fleet.
+     */
+    private AutoScalingGroup copy(AutoScalingGroup autoScalingGroup) {
+        return new AutoScalingGroup().withAutoScalingGroupName(autoScalingGroup.getAutoScalingGroupName())
+            .withAutoScalingGroupARN(autoScalingGroup.getAutoScalingGroupARN())
+            .withAvailabilityZones(autoScalingGroup.getAvailabilityZones())
+            .withMinSize(autoScalingGroup.getMinSize()).withMaxSize(autoScalingGroup.getMaxSize())
+            .withDesiredCapacity(autoScalingGroup.getDesiredCapacity())
+            .withCreatedTime(new Date(autoScalingGroup.getCreatedTime().getTime()))
+            .withLaunchConfigurationName(autoScalingGroup.getLaunchConfigurationName())
+            .withTags(autoScalingGroup.getTags()).withInstances(autoScalingGroup.getInstances());
+    }
+
+    private void waitForLatency() {
+        if (latencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted while waiting for simulated AutoScaling", ie);
+            }
+        }
+    }
+
+    private AmazonServiceException serviceException(String message, String errorCode) {
+        AmazonServiceException ase = new AmazonServiceException(message);
+        ase.setErrorCode(errorCode);
+        ase.setErrorType(AmazonServiceException.ErrorType.Client);
+        ase.setStatusCode(400);
+        ase.setServiceName("AmazonAutoScaling");
+        ase.setRequestId(UUID.randomUUID().toString());
+        return ase;
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "SimulatedAutoScalingClient";
+            default:
+                try {
+                    return method.invoke(this, args);
+                }
+                catch (InvocationTargetException ite) {
+                    throw ite.getCause();
+                }
+        }
+    }
+
+    /**
+     * Auto scaling groups of an account and region. Guarded by the simulator.
+     */
+    private static final class Fleet {
+
+        private final String accountId;
+
+        private final String region;
+
+        /**
+         * Auto scaling groups by name, in creation order.
+         */
+        private final Map<String, AutoScalingGroup> autoScalingGroups = new LinkedHashMap<String, AutoScalingGroup>();
+
+        /**
+         * Scaling activities by auto scaling group name, most recent first.
+         */
+        private final Map<String, LinkedList<Activity>> scalingActivities =
+            new HashMap<String, LinkedList<Activity>>();
+
+        /**
+         * Name of auto scaling group of each instance.
+         */
+        private final Map<String, String> instanceGroups = new HashMap<String, String>();
+
+        private Fleet(String accountId, String region) {
+            this.accountId = accountId;
+            this.region = region;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.sample.autoscaling.simulator;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.sample.autoscaling.events.InMemoryScalingEventQueue;
+import com.sample.autoscaling.events.ScalingEventQueue;
+import com.sample.autoscaling.target.AutoScalingClientFactory;
+import com.sample.autoscaling.target.TargetDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * Spring Context Configuration of the in-process AutoScaling and Redis simulators, active with the "simulator" profile
+ * (-Dspring.profiles.active=simulator). When active, it defines the AutoScaling client factory, scaling event queue and
+ * Redis connection factory beans against the simulators, in place of the AWS and Redis ones of AwsConfig.
+ */
+@Configuration
+@Profile(SimulatorConfig.PROFILE)
+public class SimulatorConfig {
+
+    public static final String PROFILE = "simulator";
+
+    @Value("${simulator.group.count}")
+    private int groupCount;
+
+    @Value("${simulator.instances.per.group}")
+    private int instancesPerGroup;
+
+    @Value("${simulator.activity.in.progress.rate}")
+    private double inProgressRate;
+
+    @Value("${simulator.activity.recent.rate}")
+    private double recentRate;
+
+    @Value("${simulator.seed}")
+    private long seed;
+
+    @Value("${simulator.aws.latency.millis}")
+    private long awsLatencyMillis;
+
+    @Value("${simulator.aws.throttle.rate}")
+    private double awsThrottleRate;
+
+    @Value("${simulator.aws.thread.pool.size}")
+    private int awsPoolSize;
+
+    @Value("${simulator.redis.latency.millis}")
+    private long redisLatencyMillis;
+
+    @Value("${auto.scaling.targets}")
+    private String autoScalingTargets;
+
+    /**
+     * Synthetic fleet served in place of the AutoScaling API, one per target when targets are configured.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public SimulatedAutoScalingClient autoScalingSimulator() {
+        SimulatedAutoScalingClient autoScalingSimulator =
+            new SimulatedAutoScalingClient(Executors.newFixedThreadPool(awsPoolSize));
+        Random random = new Random(seed);
+        List<TargetDefinition> definitions = TargetDefinition.parse(autoScalingTargets);
+        if (definitions.isEmpty()) {
+            autoScalingSimulator.addFleet(groupCount, instancesPerGroup, inProgressRate, recentRate, random);
+        }
+        for (TargetDefinition definition : definitions) {
+            autoScalingSimulator.addFleet(definition.getAccountId(), definition.getRegion(), groupCount,
+                instancesPerGroup, inProgressRate, recentRate, random);
+        }
+        autoScalingSimulator.setLatencyMillis(awsLatencyMillis);
+        autoScalingSimulator.setThrottleRate(awsThrottleRate);
+        return autoScalingSimulator;
+    }
+
+    /**
+     * AutoScaling clients of the targets, served by the AutoScaling simulator. The simulator has its own thread pool.
+     */
+    @Bean
+    public AutoScalingClientFactory autoScalingClientFactory() {
+        return new AutoScalingClientFactory() {
+            @Override
+            public AmazonAutoScalingAsync create(TargetDefinition definition, ExecutorService executor) {
+                return definition == null ? autoScalingSimulator().getClient() :
+                    autoScalingSimulator().getClient(definition.getAccountId(), definition.getRegion());
+            }
+        };
+    }
+
+    /**
+     * In-memory queue the AutoScaling simulator publishes its scaling activities to.
+     */
+    @Bean
+    public ScalingEventQueue scalingEventQueue() {
+        InMemoryScalingEventQueue scalingEventQueue = new InMemoryScalingEventQueue();
+        autoScalingSimulator().setScalingEventQueue(scalingEventQueue);
+        return scalingEventQueue;
+    }
+
+    /**
+     * In-memory data store used in place of Redis server.
+     */
+    @Bean
+    public InMemoryRedis inMemoryRedis() {
+        InMemoryRedis inMemoryRedis = new InMemoryRedis();
+        inMemoryRedis.setLatencyMillis(redisLatencyMillis);
+        return inMemoryRedis;
+    }
+
+    @Bean(destroyMethod = "destroy")
+    public RedisConnectionFactory redisConnectionFactory() {
+        return new InMemoryRedisConnectionFactory(inMemoryRedis());
+    }
+}
@@ -0,0 +1,17 @@
+package com.sample.autoscaling.target;
+
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+
+/**
+ * Creates the AutoScaling client of each target, before it is wrapped into the rate limiting layer.
+ */
+public interface AutoScalingClientFactory {
+
+    /**
+     * @param definition - Account and region of the target, null for the default target
+     * @param executor - Executor asynchronous calls of the client may run on
+     */
+    AmazonAutoScalingAsync create(TargetDefinition definition, ExecutorService executor);
+}
@@ -0,0 +1,106 @@
+package com.sample.autoscaling.target;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.sample.autoscaling.aws.RateLimitedAutoScalingClient;
+
+/**
+ * An account and region whose auto scaling groups are processed by the job. Each target has its own AutoScaling
+ * client, so its own throttle budget, and its own Redis namespace: keys of its auto scaling groups are prefixed by the
+ * namespace, so groups with the same name in several targets never share results or cached state. The default target
+ * (account and region of the terminator credentials) has an empty namespace.
+ */
+public class AutoScalingTarget {
+
+    public static final String DEFAULT_NAME = "default";
+
+    private final String name;
+
+    private final String accountId;
+
+    private final String region;
+
+    private final String redisNamespace;
+
+    private final AmazonAutoScalingAsync client;
+
+    private final RateLimitedAutoScalingClient rateLimitedClient;
+
+    /**
+     * @param definition - Account and region of the target, null for the default target
+     * @param rateLimitedClient - Rate limited AutoScaling client of the account and region
+     */
+    public AutoScalingTarget(TargetDefinition definition, RateLimitedAutoScalingClient rateLimitedClient) {
+        this(definition, rateLimitedClient.getClient(), rateLimitedClient);
+    }
+
+    private AutoScalingTarget(TargetDefinition definition, AmazonAutoScalingAsync client,
+                              RateLimitedAutoScalingClient rateLimitedClient) {
+        this.name = definition == null ? DEFAULT_NAME : definition.toString();
+        this.accountId = definition == null ? null : definition.getAccountId();
+        this.region = definition == null ? null : definition.getRegion();
+        this.redisNamespace = definition == null ? "" : definition.getAccountId() + ":" + definition.getRegion() + ":";
+        this.client = client;
+        this.rateLimitedClient = rateLimitedClient;
+    }
+
+    /**
+     * Default target calling AutoScaling through the given client, without rate limiting of its own.
+     */
+    public static AutoScalingTarget defaultTarget(AmazonAutoScalingAsync client) {
+        return of(null, client);
+    }
+
+    /**
+     * Target calling AutoScaling through the given client, without rate limiting of its own.
+     *
+     * @param definition - Account and region of the target, null for the default target
+     */
+    public static AutoScalingTarget of(TargetDefinition definition, AmazonAutoScalingAsync client) {
+        return new AutoScalingTarget(definition, client, null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Account Id, null for the default target.
+     */
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return Region, null for the default target.
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    public String getRedisNamespace() {
+        return redisNamespace;
+    }
+
+    public AmazonAutoScalingAsync getClient() {
+        return client;
+    }
+
+    /**
+     * @return Rate limiting layer of the client, null if client is not rate limited.
+     */
+    public RateLimitedAutoScalingClient getRateLimitedClient() {
+        return rateLimitedClient;
+    }
+
+    /**
+     * Key of an auto scaling group of this target, used for its Redis hash and in caches shared by all the targets.
+     */
+    public String key(String autoScalingGroupName) {
+        return redisNamespace + autoScalingGroupName;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,119 @@
+package com.sample.autoscaling.target;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Accounts and regions processed by the job. Rules only get the auto scaling group, its target is found from the
+ * account and region of its ARN (arn:aws:autoscaling:region:account:autoScalingGroup:...). When there is a single
+ * target, every auto scaling group belongs to it.
+ */
+public class AutoScalingTargets {
+
+    private static final int ARN_REGION = 3;
+
+    private static final int ARN_ACCOUNT = 4;
+
+    private final List<AutoScalingTarget> targets;
+
+    /**
+     * Targets by account:region.
+     */
+    private final Map<String, AutoScalingTarget> targetsByArn = new HashMap<String, AutoScalingTarget>();
+
+    public AutoScalingTargets(List<AutoScalingTarget> targets) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("At least one target is needed");
+        }
+        this.targets = ImmutableList.copyOf(targets);
+        for (AutoScalingTarget target : targets) {
+            targetsByArn.put(target.getAccountId() + ":" + target.getRegion(), target);
+        }
+    }
+
+    /**
+     * Targets of the job, e.g. a single default target in tests.
+     */
+    public static AutoScalingTargets of(AutoScalingTarget... targets) {
+        return new AutoScalingTargets(ImmutableList.copyOf(targets));
+    }
+
+    public List<AutoScalingTarget> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Find the target an auto scaling group belongs to.
+     *
+     * @throws IllegalArgumentException if auto scaling group ARN does not match any target.
+     */
+    public AutoScalingTarget getTarget(AutoScalingGroup autoScalingGroup) {
+        return getTarget(autoScalingGroup.getAutoScalingGroupName(), autoScalingGroup.getAutoScalingGroupARN());
+    }
+
+    /**
+     * Find the target an auto scaling group belongs to, e.g. when only its name and ARN are known from a notification.
+     *
+     * @throws IllegalArgumentException if auto scaling group ARN does not match any target.
+     */
+    public AutoScalingTarget getTarget(String autoScalingGroupName, String autoScalingGroupARN) {
+        if (targets.size() == 1) {
+            return targets.get(0);
+        }
+        String[] arnParts = autoScalingGroupARN == null ? new String[0] :
+            autoScalingGroupARN.split(":", ARN_ACCOUNT + 2);
+        AutoScalingTarget target = arnParts.length > ARN_ACCOUNT ?
+            targetsByArn.get(arnParts[ARN_ACCOUNT] + ":" + arnParts[ARN_REGION]) : null;
+        if (target == null) {
+            throw new IllegalArgumentException("No target for auto scaling group " + autoScalingGroupName + " (" +
+                autoScalingGroupARN + ")");
+        }
+        return target;
+    }
+
+    /**
+     * Key of an auto scaling group, unique across targets.
+     */
+    public String key(AutoScalingGroup autoScalingGroup) {
+        return getTarget(autoScalingGroup).key(autoScalingGroup.getAutoScalingGroupName());
+    }
+
+    /**
+     * Number of AWS calls throttled, across targets.
+     */
+    public long getThrottledCallCount() {
+        long throttledCallCount = 0;
+        for (AutoScalingTarget target : targets) {
+            if (target.getRateLimitedClient() != null) {
+                throttledCallCount += target.getRateLimitedClient().getThrottledCallCount();
+            }
+        }
+        return throttledCallCount;
+    }
+
+    /**
+     * Current limit of concurrent AWS calls, across targets.
+     */
+    public int getConcurrencyLimit() {
+        int concurrencyLimit = 0;
+        for (AutoScalingTarget target : targets) {
+            if (target.getRateLimitedClient() != null) {
+                concurrencyLimit += target.getRateLimitedClient().getConcurrencyLimiter().getLimit();
+            }
+        }
+        return concurrencyLimit;
+    }
+
+    /**
+     * Shut down the clients of all the targets.
+     */
+    public void shutdown() {
+        for (AutoScalingTarget target : targets) {
+            target.getClient().shutdown();
+        }
+    }
+}
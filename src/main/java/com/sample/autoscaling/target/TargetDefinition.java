@@ -0,0 +1,63 @@
+package com.sample.autoscaling.target;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Account and region of a target as configured: account:region, optionally followed by :role-arn when the role to be
+ * assumed in the account is not the one of the terminator credentials.
+ */
+public final class TargetDefinition {
+
+    private final String accountId;
+
+    private final String region;
+
+    private final String roleArn;
+
+    public TargetDefinition(String accountId, String region, String roleArn) {
+        this.accountId = accountId;
+        this.region = region;
+        this.roleArn = roleArn;
+    }
+
+    /**
+     * Parse target definitions separated by commas, e.g. 123456789012:us-east-1,210987654321:eu-west-1:arn:aws:iam::
+     * 210987654321:role/terminator.
+     *
+     * @return Target definitions, empty if none is configured.
+     */
+    public static List<TargetDefinition> parse(String targets) {
+        List<TargetDefinition> definitions = new ArrayList<TargetDefinition>();
+        for (String target : Splitter.on(',').omitEmptyStrings().trimResults().split(targets)) {
+            List<String> parts = Splitter.on(':').limit(3).trimResults().splitToList(target);
+            if (parts.size() < 2 || parts.get(0).isEmpty() || parts.get(1).isEmpty()) {
+                throw new IllegalArgumentException("Invalid target " + target + ", expected account:region[:role-arn]");
+            }
+            definitions.add(new TargetDefinition(parts.get(0), parts.get(1), parts.size() > 2 ? parts.get(2) : null));
+        }
+        return definitions;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return Role assumed in the account, null to use terminator credentials.
+     */
+    public String getRoleArn() {
+        return roleArn;
+    }
+
+    @Override
+    public String toString() {
+        return accountId + "/" + region;
+    }
+}
@@ -0,0 +1,42 @@
+package com.sample.autoscaling.termination;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pick an instance in the Availability Zone having most instances of the auto scaling group, so auto scaling group
+ * stays balanced across Availability Zones while its instances are replaced.
+ */
+@Component
+public class AvailabilityZoneBalancedInstanceSelector implements InstanceSelector {
+
+    @Override
+    public String getName() {
+        return "az-balanced";
+    }
+
+    @Override
+    public int select(AutoScalingGroupSnapshot autoScalingGroup, int[] candidates) {
+        Map<String, Integer> instancesPerZone = new HashMap<String, Integer>();
+        for (int index = 0; index < autoScalingGroup.getInstanceCount(); index++) {
+            Integer instances = instancesPerZone.get(autoScalingGroup.getAvailabilityZone(index));
+            instancesPerZone.put(autoScalingGroup.getAvailabilityZone(index), instances == null ? 1 : instances + 1);
+        }
+        int selected = candidates[0];
+        for (int candidate : candidates) {
+            if (count(instancesPerZone, autoScalingGroup, candidate) >
+                count(instancesPerZone, autoScalingGroup, selected)) {
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+
+    private int count(Map<String, Integer> instancesPerZone, AutoScalingGroupSnapshot autoScalingGroup, int index) {
+        Integer instances = instancesPerZone.get(autoScalingGroup.getAvailabilityZone(index));
+        return instances == null ? 0 : instances;
+    }
+}
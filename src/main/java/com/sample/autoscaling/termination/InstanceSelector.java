@@ -0,0 +1,26 @@
+package com.sample.autoscaling.termination;
+
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+
+/**
+ * Strategy picking the instance to terminate in an auto scaling group. Strategy used is chosen by its name with
+ * property termination.instance.selector.
+ */
+public interface InstanceSelector {
+
+    /**
+     * Name the strategy is configured by.
+     */
+    String getName();
+
+    /**
+     * Pick the instance to terminate.
+     *
+     * @param autoScalingGroup - Auto scaling group, with all its instances
+     * @param candidates - Indexes (in auto scaling group) of the in service instances in Availability Zones where an
+     * instance can be terminated now, never empty
+     *
+     * @return Index of one of the candidates.
+     */
+    int select(AutoScalingGroupSnapshot autoScalingGroup, int[] candidates);
+}
@@ -0,0 +1,31 @@
+package com.sample.autoscaling.termination;
+
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pick the oldest instance. AutoScaling API does not return launch time of instances, so instances launched from a
+ * launch configuration other than the current one of the auto scaling group are considered older than the others (same
+ * as OldestLaunchConfiguration termination policy of AutoScaling). Otherwise, instances are listed in the order they
+ * joined the auto scaling group and the first one is picked.
+ */
+@Component
+public class OldestInstanceSelector implements InstanceSelector {
+
+    @Override
+    public String getName() {
+        return "oldest";
+    }
+
+    @Override
+    public int select(AutoScalingGroupSnapshot autoScalingGroup, int[] candidates) {
+        String currentLaunchConfiguration = autoScalingGroup.getLaunchConfigurationName();
+        for (int candidate : candidates) {
+            if (currentLaunchConfiguration != null &&
+                !currentLaunchConfiguration.equals(autoScalingGroup.getLaunchConfigurationName(candidate))) {
+                return candidate;
+            }
+        }
+        return candidates[0];
+    }
+}
@@ -0,0 +1,23 @@
+package com.sample.autoscaling.termination;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pick any of the candidate instances at random.
+ */
+@Component
+public class RandomInstanceSelector implements InstanceSelector {
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public int select(AutoScalingGroupSnapshot autoScalingGroup, int[] candidates) {
+        return candidates[ThreadLocalRandom.current().nextInt(candidates.length)];
+    }
+}
@@ -0,0 +1,393 @@
+package com.sample.autoscaling.termination;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupRequest;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupResult;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sample.autoscaling.job.JobRun;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Termination stage of the job. Auto scaling groups which passed all the rules are queued here and an instance is
+ * terminated in each of them without blocking, so slow AutoScaling responses never hold up rule evaluation of other
+ * auto scaling groups. Number of terminations in flight is capped for each account and for each Availability Zone of an
+ * account; when a termination completes, next queued auto scaling groups are started. Instances are terminated with
+ * the client of the target the auto scaling group belongs to.
+ * <p/>
+ * An auto scaling group is terminated at most once per scaling activity threshold: it is skipped while a termination
+ * is queued or in flight for it, and for the threshold after an instance has been terminated, even if the scaling
+ * activities the rules looked at do not show the termination yet.
+ */
+@Component
+public class TerminationEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TerminationEngine.class);
+
+    private static final String IN_SERVICE = "InService";
+
+    /**
+     * Number of queued auto scaling groups looked at to find one that can be started when the first ones are waiting
+     * for Availability Zones at capacity. Bounds the cost of starting terminations when the queue is long.
+     */
+    private static final int LOOK_AHEAD = 100;
+
+    @Autowired
+    private List<InstanceSelector> instanceSelectors;
+
+    @Value("${termination.instance.selector}")
+    private String instanceSelectorName;
+
+    @Value("${termination.max.in.flight.per.account}")
+    private int maxInFlight;
+
+    @Value("${termination.max.in.flight.per.availability.zone}")
+    private int maxInFlightPerAvailabilityZone;
+
+    /**
+     * Minimum time (in minutes) between two terminations in an auto scaling group.
+     */
+    @Value("${auto.termination.minimum.scaling.activity.threshold}")
+    private int minThresholdForLastScalingActivity;
+
+    private InstanceSelector instanceSelector;
+
+    /**
+     * Terminations waiting for capacity, in submission order. Guarded by this.
+     */
+    private final LinkedList<Termination> queue = new LinkedList<Termination>();
+
+    /**
+     * Number of terminations in flight. Guarded by this.
+     */
+    private int inFlight;
+
+    /**
+     * Number of terminations in flight per account. Guarded by this.
+     */
+    private final Map<String, Integer> inFlightPerAccount = new HashMap<String, Integer>();
+
+    /**
+     * Number of terminations in flight per Availability Zone of an account. Guarded by this.
+     */
+    private final Map<String, Integer> inFlightPerAvailabilityZone = new HashMap<String, Integer>();
+
+    /**
+     * Termination queued or in flight per auto scaling group, see {@link AutoScalingTarget#key(String)}. Guarded by
+     * this.
+     */
+    private final Map<String, Termination> terminating = new HashMap<String, Termination>();
+
+    /**
+     * Auto scaling groups an instance has been terminated in within the scaling activity threshold, with the time of
+     * the termination.
+     */
+    private Cache<String, Long> lastTerminatedMillis;
+
+    private final AtomicLong terminatedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Resolve the configured instance selection strategy.
+     */
+    @PostConstruct
+    public void initialize() {
+        List<String> names = new ArrayList<String>();
+        for (InstanceSelector candidate : instanceSelectors) {
+            if (candidate.getName().equals(instanceSelectorName)) {
+                instanceSelector = candidate;
+            }
+            names.add(candidate.getName());
+        }
+        if (instanceSelector == null) {
+            throw new IllegalStateException("Unknown instance selector " + instanceSelectorName + ", use one of " +
+                names);
+        }
+        LOGGER.info("Instances are selected for termination by {} selector", instanceSelectorName);
+        lastTerminatedMillis = CacheBuilder.newBuilder()
+            .expireAfterWrite(minThresholdForLastScalingActivity, TimeUnit.MINUTES).build();
+    }
+
+    /**
+     * Queue termination of an instance in auto scaling group. Returns immediately.
+     *
+     * @param jobRun - Job run the auto scaling group belongs to, termination is dropped if run expires first
+     * @param autoScalingGroup - Auto scaling group which passed all the rules
+     *
+     * @return Future of the Id of the terminated instance, failed if auto scaling group already has a termination in
+     * progress or had an instance terminated within the scaling activity threshold. A termination still queued for an
+     * expired run is not in progress, it is cancelled and replaced.
+     */
+    public ListenableFuture<String> submit(JobRun jobRun, AutoScalingGroupSnapshot autoScalingGroup) {
+        Termination termination = new Termination(jobRun, autoScalingGroup);
+        Termination replaced = null;
+        String skipped = null;
+        synchronized (this) {
+            Termination existing = terminating.get(termination.key);
+            if (existing != null && existing.isExpired() && queue.remove(existing)) {
+                terminating.remove(termination.key);
+                replaced = existing;
+                existing = null;
+            }
+            if (existing != null) {
+                skipped = "Termination already in progress";
+            }
+            else if (lastTerminatedMillis.getIfPresent(termination.key) != null) {
+                skipped = "Instance terminated less than " + minThresholdForLastScalingActivity + " minutes ago";
+            }
+            else {
+                terminating.put(termination.key, termination);
+                queue.add(termination);
+            }
+        }
+        if (replaced != null) {
+            replaced.result.cancel(false);
+        }
+        if (skipped != null) {
+            termination.result.setException(new IllegalStateException(skipped));
+            return termination.result;
+        }
+        startTerminations();
+        return termination.result;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    public long getTerminatedCount() {
+        return terminatedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Start queued terminations while there is capacity left. Auto scaling groups of accounts at capacity, or whose
+     * candidate instances are all in Availability Zones at capacity, stay queued, later ones can be started meanwhile.
+     * AWS calls and futures are completed outside the lock.
+     */
+    private void startTerminations() {
+        List<Termination> started = new ArrayList<Termination>();
+        List<Termination> expired = new ArrayList<Termination>();
+        List<Termination> withoutInstance = new ArrayList<Termination>();
+        synchronized (this) {
+            Iterator<Termination> queued = queue.iterator();
+            for (int index = 0; index < LOOK_AHEAD && queued.hasNext(); index++) {
+                Termination termination = queued.next();
+                if (termination.isExpired()) {
+                    //Job run has expired, auto scaling group has already been recorded as timed out.
+                    queued.remove();
+                    terminating.remove(termination.key);
+                    expired.add(termination);
+                    continue;
+                }
+                AutoScalingGroupSnapshot autoScalingGroup = termination.autoScalingGroup;
+                int[] inService = inServiceInstances(autoScalingGroup);
+                if (inService.length == 0) {
+                    queued.remove();
+                    terminating.remove(termination.key);
+                    withoutInstance.add(termination);
+                    continue;
+                }
+                String account = account(termination.jobRun.getTarget());
+                if (inFlight(inFlightPerAccount, account) >= maxInFlight) {
+                    continue;
+                }
+                int[] candidates = new int[inService.length];
+                int candidateCount = 0;
+                for (int instance : inService) {
+                    if (inFlight(inFlightPerAvailabilityZone, availabilityZone(account, autoScalingGroup, instance)) <
+                        maxInFlightPerAvailabilityZone) {
+                        candidates[candidateCount++] = instance;
+                    }
+                }
+                if (candidateCount == 0) {
+                    continue;
+                }
+                queued.remove();
+                termination.instance = instanceSelector.select(autoScalingGroup,
+                    Arrays.copyOf(candidates, candidateCount));
+                termination.instanceId = autoScalingGroup.getInstanceId(termination.instance);
+                inFlight++;
+                increment(inFlightPerAccount, account, 1);
+                increment(inFlightPerAvailabilityZone, availabilityZone(account, termination), 1);
+                started.add(termination);
+            }
+        }
+        for (Termination termination : expired) {
+            termination.result.cancel(false);
+        }
+        for (Termination termination : withoutInstance) {
+            termination.result.setException(new IllegalStateException("No instance in service"));
+        }
+        for (Termination termination : started) {
+            terminate(termination);
+        }
+    }
+
+    /**
+     * Terminate selected instance, auto scaling group will launch a replacement instance.
+     */
+    private void terminate(final Termination termination) {
+        LOGGER.info("Terminating instance {} in auto scaling group {}", termination.instanceId,
+            termination.autoScalingGroup.getAutoScalingGroupName());
+        try {
+            AmazonAutoScalingAsync autoScalingClient = termination.jobRun.getTarget().getClient();
+            autoScalingClient.terminateInstanceInAutoScalingGroupAsync(new TerminateInstanceInAutoScalingGroupRequest()
+                .withInstanceId(termination.instanceId).withShouldDecrementDesiredCapacity(false),
+                new AsyncHandler<TerminateInstanceInAutoScalingGroupRequest,
+                    TerminateInstanceInAutoScalingGroupResult>() {
+                    @Override
+                    public void onSuccess(TerminateInstanceInAutoScalingGroupRequest request,
+                                          TerminateInstanceInAutoScalingGroupResult result) {
+                        finished(termination, null);
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        finished(termination, exception);
+                    }
+                });
+        }
+        catch (RuntimeException ex) {
+            finished(termination, ex);
+        }
+    }
+
+    /**
+     * Release capacity held by a termination, complete its future and start next queued terminations.
+     */
+    private void finished(Termination termination, Exception exception) {
+        synchronized (this) {
+            inFlight--;
+            String account = account(termination.jobRun.getTarget());
+            increment(inFlightPerAccount, account, -1);
+            increment(inFlightPerAvailabilityZone, availabilityZone(account, termination), -1);
+            if (exception == null) {
+                lastTerminatedMillis.put(termination.key, System.currentTimeMillis());
+            }
+            terminating.remove(termination.key);
+        }
+        if (exception == null) {
+            terminatedCount.incrementAndGet();
+            termination.result.set(termination.instanceId);
+        }
+        else {
+            failedCount.incrementAndGet();
+            LOGGER.error("Could not terminate instance {} in auto scaling group {}. Error Message: {}",
+                termination.instanceId, termination.autoScalingGroup.getAutoScalingGroupName(),
+                exception.getMessage());
+            termination.result.setException(exception);
+        }
+        startTerminations();
+    }
+
+    private static int inFlight(Map<String, Integer> inFlightPerKey, String key) {
+        Integer keyInFlight = inFlightPerKey.get(key);
+        return keyInFlight == null ? 0 : keyInFlight;
+    }
+
+    private static void increment(Map<String, Integer> inFlightPerKey, String key, int delta) {
+        int keyInFlight = inFlight(inFlightPerKey, key) + delta;
+        if (keyInFlight > 0) {
+            inFlightPerKey.put(key, keyInFlight);
+        }
+        else {
+            inFlightPerKey.remove(key);
+        }
+    }
+
+    /**
+     * Account whose cap applies to a target: its account Id, or the default target name.
+     */
+    private static String account(AutoScalingTarget target) {
+        return target.getAccountId() != null ? target.getAccountId() : target.getName();
+    }
+
+    /**
+     * Availability Zone of an instance qualified by account, zone names are mapped to different zones per account.
+     */
+    private static String availabilityZone(String account, AutoScalingGroupSnapshot autoScalingGroup, int instance) {
+        return account + "/" + autoScalingGroup.getAvailabilityZone(instance);
+    }
+
+    private static String availabilityZone(String account, Termination termination) {
+        return availabilityZone(account, termination.autoScalingGroup, termination.instance);
+    }
+
+    /**
+     * @return Indexes of the in service instances of auto scaling group.
+     */
+    private static int[] inServiceInstances(AutoScalingGroupSnapshot autoScalingGroup) {
+        int[] inService = new int[autoScalingGroup.getInstanceCount()];
+        int inServiceCount = 0;
+        for (int index = 0; index < autoScalingGroup.getInstanceCount(); index++) {
+            if (IN_SERVICE.equals(autoScalingGroup.getLifecycleState(index))) {
+                inService[inServiceCount++] = index;
+            }
+        }
+        return Arrays.copyOf(inService, inServiceCount);
+    }
+
+    /**
+     * Termination of an instance in an auto scaling group, from submission to completion.
+     */
+    private static class Termination {
+
+        private final JobRun jobRun;
+
+        private final AutoScalingGroupSnapshot autoScalingGroup;
+
+        private final String key;
+
+        private final SettableFuture<String> result = SettableFuture.create();
+
+        /**
+         * Index of the instance selected when termination is started, and its Id.
+         */
+        private int instance;
+
+        private String instanceId;
+
+        Termination(JobRun jobRun, AutoScalingGroupSnapshot autoScalingGroup) {
+            this.jobRun = jobRun;
+            this.autoScalingGroup = autoScalingGroup;
+            this.key = jobRun.getTarget().key(autoScalingGroup.getAutoScalingGroupName());
+        }
+
+        /**
+         * @return true if the job run has expired, auto scaling group has then been recorded as timed out.
+         */
+        boolean isExpired() {
+            return !jobRun.isPending(autoScalingGroup.getAutoScalingGroupName());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsResult;
+import com.sample.autoscaling.job.AutoScalingGroupPageIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+
+public class AutoScalingGroupPageIteratorTest {
+
+    private AmazonAutoScalingAsync autoScalingClient;
+
+    private AutoScalingGroupPageIterator pages;
+
+    @Captor
+    private ArgumentCaptor<DescribeAutoScalingGroupsRequest> requests;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        autoScalingClient = mock(AmazonAutoScalingAsync.class);
+        pages = new AutoScalingGroupPageIterator(autoScalingClient, 2);
+    }
+
+    @Test
+    public void testPagesFollowNextToken() {
+        when(autoScalingClient.describeAutoScalingGroups(any(DescribeAutoScalingGroupsRequest.class)))
+            .thenReturn(page("token-1", "group-1", "group-2")).thenReturn(page(null, "group-3"));
+
+        assertTrue(pages.hasNext());
+        assertEquals(2, pages.next().size());
+        assertTrue(pages.hasNext());
+        assertEquals("group-3", pages.next().get(0).getAutoScalingGroupName());
+        assertFalse(pages.hasNext());
+        assertFalse(pages.isFailed());
+
+        verify(autoScalingClient, times(2)).describeAutoScalingGroups(requests.capture());
+        assertNull(requests.getAllValues().get(0).getNextToken());
+        assertEquals("token-1", requests.getAllValues().get(1).getNextToken());
+        assertEquals(Integer.valueOf(2), requests.getAllValues().get(1).getMaxRecords());
+    }
+
+    @Test
+    public void testFailedPageStopsIterationAndIsReported() {
+        AmazonServiceException serviceUnavailable = new AmazonServiceException("Service unavailable");
+        serviceUnavailable.setStatusCode(503);
+        when(autoScalingClient.describeAutoScalingGroups(any(DescribeAutoScalingGroupsRequest.class)))
+            .thenReturn(page("token-1", "group-1", "group-2")).thenThrow(serviceUnavailable);
+
+        assertEquals(2, pages.next().size());
+        assertTrue(pages.next().isEmpty());
+
+        assertFalse(pages.hasNext());
+        assertTrue(pages.isFailed());
+        assertSame(serviceUnavailable, pages.getFailure());
+    }
+
+    private static DescribeAutoScalingGroupsResult page(String nextToken, String... autoScalingGroupNames) {
+        DescribeAutoScalingGroupsResult result = new DescribeAutoScalingGroupsResult().withNextToken(nextToken);
+        for (String autoScalingGroupName : autoScalingGroupNames) {
+            result.withAutoScalingGroups(new AutoScalingGroup().withAutoScalingGroupName(autoScalingGroupName));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,55 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.TagDescription;
+import com.sample.autoscaling.job.AutoScalingGroupSelector;
+import org.junit.Test;
+
+public class AutoScalingGroupSelectorTest {
+
+    @Test
+    public void testEveryGroupIsSelectedWhenNothingIsConfigured() {
+        AutoScalingGroupSelector selector = new AutoScalingGroupSelector("", "", "", "", "");
+        assertTrue(selector.isSelected(group("web-1")));
+        assertTrue(selector.isSelected(group("web-1", "terminator-opt-out", "true")));
+    }
+
+    @Test
+    public void testGroupsAreFilteredByNamePattern() {
+        AutoScalingGroupSelector selector = new AutoScalingGroupSelector("web-*, api-?", "*-canary", "", "", "");
+        assertTrue(selector.isSelected(group("web-1")));
+        assertTrue(selector.isSelected(group("api-2")));
+        assertFalse(selector.isSelected(group("api-22")));
+        assertFalse(selector.isSelected(group("web-1-canary")));
+        assertFalse(selector.isSelected(group("web.1")));
+        assertFalse(selector.isSelected(group("batch-1")));
+        assertEquals(4, selector.getNameFilteredCount());
+    }
+
+    @Test
+    public void testGroupsAreFilteredByTagAndOptOutTag() {
+        AutoScalingGroupSelector selector = new AutoScalingGroupSelector("", "", "env=prod,env=staging,team",
+            "critical=true", "terminator-opt-out");
+        assertTrue(selector.isSelected(group("web-1", "env", "prod")));
+        assertTrue(selector.isSelected(group("web-2", "team", "payments")));
+        assertTrue(selector.isSelected(group("web-3", "env", "staging", "terminator-opt-out", "false")));
+        assertFalse(selector.isSelected(group("web-4", "env", "dev")));
+        assertFalse(selector.isSelected(group("web-5")));
+        assertFalse(selector.isSelected(group("web-6", "env", "prod", "critical", "true")));
+        assertFalse(selector.isSelected(group("web-7", "env", "prod", "terminator-opt-out", "")));
+        assertEquals(3, selector.getTagFilteredCount());
+        assertEquals(1, selector.getOptedOutCount());
+    }
+
+    private static AutoScalingGroup group(String autoScalingGroupName, String... tags) {
+        AutoScalingGroup autoScalingGroup = new AutoScalingGroup().withAutoScalingGroupName(autoScalingGroupName);
+        for (int index = 0; index < tags.length; index += 2) {
+            autoScalingGroup.withTags(new TagDescription().withKey(tags[index]).withValue(tags[index + 1]));
+        }
+        return autoScalingGroup;
+    }
+}
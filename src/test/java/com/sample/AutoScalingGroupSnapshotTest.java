@@ -0,0 +1,44 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import org.junit.Test;
+
+public class AutoScalingGroupSnapshotTest {
+
+    @Test
+    public void testInstanceIdsAreReadBackAsRetrieved() {
+        String[] instanceIds = {"i-0123abcd", "i-0123456789abcdef0", "i-00000000", "i-ABCDEF12", "unknown",
+            "i-0123456789abcdef0123456789abcdef"};
+        AutoScalingGroup autoScalingGroup = new AutoScalingGroup().withAutoScalingGroupName("group");
+        for (String instanceId : instanceIds) {
+            autoScalingGroup.withInstances(new Instance().withInstanceId(instanceId));
+        }
+        AutoScalingGroupSnapshot snapshot = AutoScalingGroupSnapshot.of(autoScalingGroup);
+        assertEquals(instanceIds.length, snapshot.getInstanceCount());
+        for (int index = 0; index < instanceIds.length; index++) {
+            assertEquals(instanceIds[index], snapshot.getInstanceId(index));
+        }
+    }
+
+    @Test
+    public void testRepeatedValuesAreSharedAndMissingSizesAreUnknown() {
+        AutoScalingGroupSnapshot first = AutoScalingGroupSnapshot.of(group("group-1").withDesiredCapacity(2));
+        AutoScalingGroupSnapshot second = AutoScalingGroupSnapshot.of(group("group-2"));
+        assertSame(first.getAvailabilityZone(0), second.getAvailabilityZone(0));
+        assertSame(first.getLifecycleState(0), second.getLifecycleState(0));
+        assertEquals(2, first.getDesiredCapacity());
+        assertEquals(AutoScalingGroupSnapshot.UNKNOWN_SIZE, second.getDesiredCapacity());
+    }
+
+    private static AutoScalingGroup group(String autoScalingGroupName) {
+        //New strings, as if read from separate responses.
+        return new AutoScalingGroup().withAutoScalingGroupName(autoScalingGroupName).withInstances(new Instance()
+            .withInstanceId("i-1").withAvailabilityZone(new String("us-east-1a"))
+            .withLifecycleState(new String("InService")));
+    }
+}
@@ -0,0 +1,67 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.sample.autoscaling.aws.RateLimitedAutoScalingClient;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import com.sample.autoscaling.target.TargetDefinition;
+import org.junit.Test;
+
+public class AutoScalingTargetsTest {
+
+    @Test
+    public void testTargetDefinitionsAreParsed() {
+        List<TargetDefinition> definitions = TargetDefinition.parse(
+            "111111111111:us-east-1, 222222222222:eu-west-1:arn:aws:iam::222222222222:role/terminator");
+        assertEquals(2, definitions.size());
+        assertEquals("111111111111", definitions.get(0).getAccountId());
+        assertEquals("us-east-1", definitions.get(0).getRegion());
+        assertNull(definitions.get(0).getRoleArn());
+        assertEquals("arn:aws:iam::222222222222:role/terminator", definitions.get(1).getRoleArn());
+        assertEquals(0, TargetDefinition.parse("").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTargetDefinitionWithoutRegionIsRejected() {
+        TargetDefinition.parse("111111111111");
+    }
+
+    @Test
+    public void testAutoScalingGroupIsResolvedToTargetOfItsArn() {
+        AutoScalingTarget east = target("111111111111:us-east-1");
+        AutoScalingTarget west = target("222222222222:eu-west-1");
+        AutoScalingTargets targets = AutoScalingTargets.of(east, west);
+
+        assertEquals(west, targets.getTarget(group("222222222222", "eu-west-1")));
+        assertEquals(east, targets.getTarget(group("111111111111", "us-east-1")));
+        assertEquals("222222222222:eu-west-1:group", targets.key(group("222222222222", "eu-west-1")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAutoScalingGroupOfUnknownTargetIsRejected() {
+        AutoScalingTargets.of(target("111111111111:us-east-1"), target("222222222222:eu-west-1"))
+            .getTarget(group("333333333333", "us-east-1"));
+    }
+
+    @Test
+    public void testDefaultTargetKeepsGroupNameAsKey() {
+        AutoScalingTargets targets = AutoScalingTargets.of(AutoScalingTarget.defaultTarget(null));
+        assertEquals("group", targets.key(new AutoScalingGroup().withAutoScalingGroupName("group")));
+    }
+
+    private AutoScalingTarget target(String definition) {
+        return new AutoScalingTarget(TargetDefinition.parse(definition).get(0),
+            mock(RateLimitedAutoScalingClient.class));
+    }
+
+    private AutoScalingGroup group(String accountId, String region) {
+        return new AutoScalingGroup().withAutoScalingGroupName("group").withAutoScalingGroupARN(
+            "arn:aws:autoscaling:" + region + ":" + accountId + ":autoScalingGroup:uuid:autoScalingGroupName/group");
+    }
+}
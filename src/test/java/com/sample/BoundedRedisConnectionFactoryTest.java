@@ -0,0 +1,38 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+import com.sample.autoscaling.redis.BoundedRedisConnectionFactory;
+import com.sample.autoscaling.simulator.InMemoryRedis;
+import com.sample.autoscaling.simulator.InMemoryRedisConnectionFactory;
+import org.junit.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+public class BoundedRedisConnectionFactoryTest {
+
+    @Test
+    public void testConnectionsBeyondBoundWaitThenFail() {
+        BoundedRedisConnectionFactory connectionFactory = new BoundedRedisConnectionFactory(
+            new InMemoryRedisConnectionFactory(new InMemoryRedis()), 1, 50);
+        RedisConnection connection = connectionFactory.getConnection();
+        assertEquals(1, connectionFactory.getInFlightCount());
+        try {
+            connectionFactory.getConnection();
+            fail("Connection should not be available");
+        }
+        catch (RedisConnectionFailureException rcfe) {
+            assertEquals(1, connectionFactory.getRejectedCount());
+        }
+
+        connection.close();
+        connection.close();
+        assertEquals(0, connectionFactory.getInFlightCount());
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.opsForValue().set("key", "value");
+        assertEquals("value", redisTemplate.opsForValue().get("key"));
+        assertEquals(0, connectionFactory.getInFlightCount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import com.sample.autoscaling.cluster.ConsistentHashRing;
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+    private static final int GROUP_COUNT = 10000;
+
+    @Test
+    public void testSingleNodeOwnsEverything() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node-1"), 100);
+        assertEquals("node-1", ring.getNode("group-1"));
+    }
+
+    @Test
+    public void testGroupsAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3", "node-4"), 100);
+        int ownedByFirstNode = 0;
+        for (int index = 0; index < GROUP_COUNT; index++) {
+            if ("node-1".equals(ring.getNode("group-" + index))) {
+                ownedByFirstNode++;
+            }
+        }
+        assertTrue(ownedByFirstNode > GROUP_COUNT / 4 * 0.8 && ownedByFirstNode < GROUP_COUNT / 4 * 1.2);
+    }
+
+    @Test
+    public void testRemovingNodeOnlyMovesItsGroups() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3"), 100);
+        ConsistentHashRing shrunkRing = new ConsistentHashRing(Arrays.asList("node-1", "node-2"), 100);
+        for (int index = 0; index < GROUP_COUNT; index++) {
+            String owner = ring.getNode("group-" + index);
+            if (!"node-3".equals(owner)) {
+                assertEquals(owner, shrunkRing.getNode("group-" + index));
+            }
+        }
+    }
+}
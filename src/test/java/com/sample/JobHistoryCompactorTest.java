@@ -0,0 +1,109 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sample.autoscaling.result.JobHistoryCompactor;
+import com.sample.autoscaling.result.OutcomeCodec;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobHistoryCompactorTest {
+
+    private JobHistoryCompactor jobHistoryCompactor;
+
+    private StringRedisTemplate redisTemplate;
+
+    private HashOperations<String, Object, Object> hashOps;
+
+    @Captor
+    private ArgumentCaptor<RedisCallback<Object>> callback;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        redisTemplate = mock(StringRedisTemplate.class);
+        hashOps = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOps);
+        jobHistoryCompactor = new JobHistoryCompactor();
+        ReflectionTestUtils.setField(jobHistoryCompactor, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(jobHistoryCompactor, "keepRuns", 2);
+        ReflectionTestUtils.setField(jobHistoryCompactor, "outcomeCodec",
+            new OutcomeCodec(Collections.<AutoScalingGroupInstanceSelectionRule>emptyList()));
+    }
+
+    @Test
+    public void testOldestRunsAreRolledUp() {
+        Map<Object, Object> history = new LinkedHashMap<Object, Object>();
+        history.put("1", "Terminated Instance:i-1");
+        history.put("2", "Terminated Instance:i-2");
+        history.put("3", "FAILED:rule");
+        history.put("4", "FAILED:rule");
+        when(hashOps.entries("group")).thenReturn(history);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenReturn(Arrays.<Object>asList(1000d, 2000d, 3000d, 4000d));
+
+        assertEquals(2, jobHistoryCompactor.compact("group"));
+
+        verify(redisTemplate).execute(callback.capture());
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        callback.getValue().doInRedis(connection);
+        verify(connection).multi();
+        verify(connection).hIncrBy("group" + JobHistoryCompactor.ROLLUP_KEY_SUFFIX, "Terminated Instance", 2L);
+        verify(connection).hDel("group", "2", "1");
+        verify(connection).exec();
+    }
+
+    @Test
+    public void testRecentRunsAreKept() {
+        Map<Object, Object> history = new LinkedHashMap<Object, Object>();
+        history.put("7", "FAILED:rule");
+        when(hashOps.entries("group")).thenReturn(history);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.<Object>asList(7000d));
+
+        assertEquals(0, jobHistoryCompactor.compact("group"));
+    }
+
+    @Test
+    public void testRunsAreOrderedByStartTime() {
+        //Sequence numbers leased in blocks by two nodes, #1001 ran before #1 and #2.
+        Map<Object, Object> history = new LinkedHashMap<Object, Object>();
+        history.put("1", "FAILED:rule");
+        history.put("2", "FAILED:rule");
+        history.put("1001", "Terminated Instance:i-1001");
+        when(hashOps.entries("group")).thenReturn(history);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenReturn(Arrays.<Object>asList(2000d, 3000d, 1000d));
+
+        assertEquals(1, jobHistoryCompactor.compact("group"));
+
+        verify(redisTemplate).execute(callback.capture());
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        callback.getValue().doInRedis(connection);
+        verify(connection).hDel("group", "1001");
+    }
+
+    @Test
+    public void testRollupField() {
+        assertEquals("Terminated Instance", JobHistoryCompactor.rollupField("Terminated Instance:i-123"));
+        assertEquals("FAILED:rule", JobHistoryCompactor.rollupField("FAILED:rule"));
+    }
+}
@@ -0,0 +1,179 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.sample.autoscaling.cluster.ClusterMembership;
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.result.JobHistoryCompactor;
+import com.sample.autoscaling.result.JobHistoryQuery;
+import com.sample.autoscaling.result.JobResult;
+import com.sample.autoscaling.result.JobResultPage;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.result.OutcomeCodec;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.simulator.InMemoryRedis;
+import com.sample.autoscaling.simulator.InMemoryRedisConnectionFactory;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobHistoryQueryTest {
+
+    private static final DateTime NOW = DateTime.now();
+
+    private StringRedisTemplate redisTemplate;
+
+    private JobResultWriter jobResultWriter;
+
+    private JobHistoryQuery jobHistoryQuery;
+
+    @Before
+    public void setUp() {
+        redisTemplate = new StringRedisTemplate(new InMemoryRedisConnectionFactory(new InMemoryRedis()));
+        jobResultWriter = new JobResultWriter();
+        ReflectionTestUtils.setField(jobResultWriter, "backgroundTaskScheduler", mock(TaskScheduler.class));
+        ReflectionTestUtils.setField(jobResultWriter, "flushBatchSize", 100);
+        ReflectionTestUtils.setField(jobResultWriter, "bufferMaxSize", 1000);
+        MetricsRegistry metricsRegistry = mock(MetricsRegistry.class);
+        when(metricsRegistry.getLatencyMetrics(any(String.class), any(String.class)))
+            .thenReturn(new LatencyMetrics("flush"));
+        ReflectionTestUtils.setField(jobResultWriter, "metricsRegistry", metricsRegistry);
+        jobHistoryQuery = new JobHistoryQuery();
+        ReflectionTestUtils.setField(jobHistoryQuery, "pageSize", 2);
+        for (Object component : Arrays.asList(jobResultWriter, jobHistoryQuery)) {
+            setKeys(component);
+        }
+
+        for (long jobSequenceNumber = 1; jobSequenceNumber <= 3; jobSequenceNumber++) {
+            jobResultWriter.recordRunStart(jobSequenceNumber, NOW.minusDays(3).plusDays((int) jobSequenceNumber)
+                .getMillis());
+            jobResultWriter.record("group-c", jobSequenceNumber, "FAILED:rule");
+            jobResultWriter.record("group-a", jobSequenceNumber, "Terminated Instance:i-" + jobSequenceNumber);
+            jobResultWriter.record("group-b", jobSequenceNumber, "FAILED:rule");
+        }
+        jobResultWriter.flush();
+    }
+
+    @Test
+    public void testRunResultsArePagedByGroupName() {
+        JobResultPage page = jobHistoryQuery.getRunResults(2, 0, 2);
+        assertEquals("[group-a#2=Terminated Instance:i-2, group-b#2=FAILED:rule]", page.getResults().toString());
+        assertEquals(Integer.valueOf(2), page.getNextOffset());
+
+        page = jobHistoryQuery.getRunResults(2, page.getNextOffset(), 2);
+        assertEquals("[group-c#2=FAILED:rule]", page.getResults().toString());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void testResultsAreStreamedByOutcome() {
+        List<String> results = new ArrayList<String>();
+        for (JobResult result : jobHistoryQuery.streamResultsByOutcome("FAILED:rule", 2, 3)) {
+            results.add(result.toString());
+        }
+        assertEquals("[group-b#2=FAILED:rule, group-c#2=FAILED:rule, group-b#3=FAILED:rule, group-c#3=FAILED:rule]",
+            results.toString());
+
+        JobResultPage page = jobHistoryQuery.getResultsByOutcome("Terminated Instance:", NOW.minusHours(1),
+            NOW.plusHours(1), 0, 10);
+        assertEquals("[group-a#3=Terminated Instance:i-3]", page.getResults().toString());
+        assertNull(page.getNextOffset());
+        assertEquals("[FAILED:rule, Terminated Instance]", jobHistoryQuery.getOutcomes().toString());
+    }
+
+    @Test
+    public void testFailuresAreIndexedUpToTheirMessage() {
+        jobResultWriter.record("group-d", 3L, "FAILED:java.lang.IllegalStateException: No instance in service");
+        jobResultWriter.flush();
+
+        assertEquals("[group-d#3=FAILED:java.lang.IllegalStateException]", jobHistoryQuery.getResultsByOutcome(
+            "FAILED:java.lang.IllegalStateException: Other message", 0, 3, 0, 10).getResults().toString());
+        assertTrue(jobHistoryQuery.getOutcomes().contains("FAILED:java.lang.IllegalStateException"));
+    }
+
+    @Test
+    public void testCompactionTrimsIndexes() {
+        jobResultWriter.record("group-d", 1L, "FAILED:java.lang.IllegalStateException: No instance in service");
+        jobResultWriter.flush();
+        JobHistoryCompactor jobHistoryCompactor = newJobHistoryCompactor(2, 0);
+
+        assertEquals(3, jobHistoryCompactor.compactNextBatch());
+
+        assertTrue(jobHistoryQuery.getRunResults(1, 0, 10).getResults().isEmpty());
+        assertEquals(3, jobHistoryQuery.getRunResults(2, 0, 10).getResults().size());
+        assertEquals(4, jobHistoryQuery.getResultsByOutcome("FAILED:rule", 0, 3, 0, 10).getResults().size());
+        assertFalse(redisTemplate.hasKey("terminate_instance_job_run:1"));
+        assertEquals("[FAILED:rule, Terminated Instance]", jobHistoryQuery.getOutcomes().toString());
+    }
+
+    @Test
+    public void testCompactionOrdersRunsOfTwoNodesByStartTime() {
+        //Another node leased the block of sequence numbers from #1001 and ran before the runs #1 to #3.
+        for (long jobSequenceNumber = 1001; jobSequenceNumber <= 1002; jobSequenceNumber++) {
+            jobResultWriter.recordRunStart(jobSequenceNumber, NOW.minusDays(1010 - (int) jobSequenceNumber)
+                .getMillis());
+            jobResultWriter.record("group-a", jobSequenceNumber, "FAILED:rule");
+            jobResultWriter.record("group-b", jobSequenceNumber, "FAILED:rule");
+        }
+        jobResultWriter.flush();
+        JobResultPage page = jobHistoryQuery.getResultsByOutcome("FAILED:rule", NOW.minusDays(9).minusHours(1),
+            NOW.minusDays(2).plusHours(1), 0, 3);
+        assertEquals("[group-b#1=FAILED:rule, group-c#1=FAILED:rule, group-a#1001=FAILED:rule]",
+            page.getResults().toString());
+        assertEquals(Integer.valueOf(3), page.getNextOffset());
+        JobHistoryCompactor jobHistoryCompactor = newJobHistoryCompactor(4, 7);
+
+        assertEquals(4, jobHistoryCompactor.compactNextBatch());
+
+        for (long jobSequenceNumber = 1; jobSequenceNumber <= 3; jobSequenceNumber++) {
+            assertEquals(3, jobHistoryQuery.getRunResults(jobSequenceNumber, 0, 10).getResults().size());
+        }
+        assertFalse(redisTemplate.hasKey("terminate_instance_job_run:1001"));
+        assertFalse(redisTemplate.hasKey("terminate_instance_job_run:1002"));
+        assertEquals(6, jobHistoryQuery.getResultsByOutcome("FAILED:rule", 0, 1002, 0, 10).getResults().size());
+        assertEquals("[1, 2, 3]", redisTemplate.opsForZSet().range("terminate_instance_job_runs", 0, -1).toString());
+        assertEquals(0, jobHistoryCompactor.compactNextBatch());
+    }
+
+    private JobHistoryCompactor newJobHistoryCompactor(int keepRuns, int keepDays) {
+        JobHistoryCompactor jobHistoryCompactor = new JobHistoryCompactor();
+        setKeys(jobHistoryCompactor);
+        ClusterMembership clusterMembership = mock(ClusterMembership.class);
+        when(clusterMembership.isOwned(any(String.class))).thenReturn(true);
+        ReflectionTestUtils.setField(jobHistoryCompactor, "clusterMembership", clusterMembership);
+        ReflectionTestUtils.setField(jobHistoryCompactor, "keepRuns", keepRuns);
+        ReflectionTestUtils.setField(jobHistoryCompactor, "keepDays", keepDays);
+        ReflectionTestUtils.setField(jobHistoryCompactor, "compactionBatchSize", 10);
+        return jobHistoryCompactor;
+    }
+
+    private void setKeys(Object component) {
+        ReflectionTestUtils.setField(component, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(component, "outcomeCodec",
+            new OutcomeCodec(Collections.<AutoScalingGroupInstanceSelectionRule>emptyList()));
+        ReflectionTestUtils.setField(component, "jobRunsKey", "terminate_instance_job_runs");
+        ReflectionTestUtils.setField(component, "runIndexPrefix", "terminate_instance_job_run:");
+        ReflectionTestUtils.setField(component, "jobOutcomesKey", "terminate_instance_job_outcomes");
+        if (!(component instanceof JobHistoryCompactor)) {
+            ReflectionTestUtils.setField(component, "outcomeIndexPrefix", "terminate_instance_job_outcome:");
+        }
+        if (component instanceof JobResultWriter || component instanceof JobHistoryCompactor) {
+            ReflectionTestUtils.setField(component, "jobGroupsKey", "terminate_instance_job_groups");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.result.OutcomeCodec;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobResultWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JobResultWriter jobResultWriter;
+
+    private StringRedisTemplate redisTemplate;
+
+    @Captor
+    private ArgumentCaptor<RedisCallback<Object>> callback;
+
+    @Captor
+    private ArgumentCaptor<Map<String, String>> group1Fields;
+
+    @Captor
+    private ArgumentCaptor<Map<String, String>> group2Fields;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        redisTemplate = mock(StringRedisTemplate.class);
+        jobResultWriter = new JobResultWriter();
+        ReflectionTestUtils.setField(jobResultWriter, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(jobResultWriter, "backgroundTaskScheduler", mock(TaskScheduler.class));
+        ReflectionTestUtils.setField(jobResultWriter, "flushBatchSize", 100);
+        ReflectionTestUtils.setField(jobResultWriter, "bufferMaxSize", 1000);
+        MetricsRegistry metricsRegistry = mock(MetricsRegistry.class);
+        when(metricsRegistry.getLatencyMetrics(any(String.class), any(String.class)))
+            .thenReturn(new LatencyMetrics("flush"));
+        ReflectionTestUtils.setField(jobResultWriter, "metricsRegistry", metricsRegistry);
+        ReflectionTestUtils.setField(jobResultWriter, "outcomeCodec",
+            new OutcomeCodec(Collections.<AutoScalingGroupInstanceSelectionRule>emptyList()));
+        ReflectionTestUtils.setField(jobResultWriter, "runIndexPrefix", "run:");
+        ReflectionTestUtils.setField(jobResultWriter, "outcomeIndexPrefix", "outcome:");
+    }
+
+    @Test
+    public void testFlushWritesOneHashPerGroup() {
+        jobResultWriter.record("group-1", 1L, "Terminated Instance:X");
+        jobResultWriter.record("group-1", 2L, "FAILED:rule");
+        jobResultWriter.record("group-2", 2L, "FAILED:rule");
+
+        jobResultWriter.flush();
+
+        verify(redisTemplate).executePipelined(callback.capture());
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        callback.getValue().doInRedis(connection);
+
+        verify(connection).hMSet(eq("group-1"), group1Fields.capture());
+        assertEquals(2, group1Fields.getValue().size());
+        assertEquals("Terminated Instance:X", decode(group1Fields.getValue().get("1")));
+        assertEquals("FAILED:rule", decode(group1Fields.getValue().get("2")));
+        verify(connection).hMSet(eq("group-2"), group2Fields.capture());
+        assertEquals("FAILED:rule", decode(group2Fields.getValue().get("2")));
+        verify(connection).zAdd("run:2", 0, "group-2");
+        verify(connection).zAdd("outcome:Terminated Instance", 1, "1:group-1");
+        verify(connection).zAdd("outcome:FAILED:rule", 2, "2:group-2");
+        assertEquals(0, jobResultWriter.getPendingCount());
+    }
+
+    @Test
+    public void testFailedFlushKeepsResults() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenThrow(new RedisConnectionFailureException("down"));
+        jobResultWriter.record("group-1", 1L, "Terminated Instance:X");
+
+        jobResultWriter.flush();
+
+        assertEquals(1, jobResultWriter.getPendingCount());
+    }
+
+    @Test
+    public void testResultsBeyondBufferCapacityAreDropped() {
+        ReflectionTestUtils.setField(jobResultWriter, "bufferMaxSize", 2);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenThrow(new RedisConnectionFailureException("down")).thenReturn(null);
+        jobResultWriter.record("group-1", 1L, "Terminated Instance:X");
+        jobResultWriter.record("group-2", 1L, "FAILED:rule");
+        jobResultWriter.record("group-3", 1L, "FAILED:rule");
+
+        jobResultWriter.flush();
+        assertEquals(2, jobResultWriter.getPendingCount());
+        assertEquals(1, jobResultWriter.getDroppedCount());
+
+        jobResultWriter.flush();
+        jobResultWriter.record("group-3", 2L, "FAILED:rule");
+        assertEquals(1, jobResultWriter.getPendingCount());
+        assertEquals(1, jobResultWriter.getDroppedCount());
+    }
+
+    @Test
+    public void testJournaledResultsAreReplayedOnceRedisIsBack() throws IOException {
+        ReflectionTestUtils.setField(jobResultWriter, "journalPath", folder.newFile("journal").getPath());
+        ReflectionTestUtils.setField(jobResultWriter, "journalSizeMb", 1);
+        jobResultWriter.scheduleFlush();
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenThrow(new RedisConnectionFailureException("down")).thenReturn(null);
+        jobResultWriter.recordRunStart(1L, 1000);
+        jobResultWriter.record("group-1", 1L, "Terminated Instance:X");
+
+        jobResultWriter.flush();
+        assertEquals(1, jobResultWriter.getPendingCount());
+
+        jobResultWriter.flush();
+        assertEquals(0, jobResultWriter.getPendingCount());
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        jobResultWriter.destroy();
+    }
+
+    @Test
+    public void testEmptyFlushSkipsRedis() {
+        jobResultWriter.flush();
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    private String decode(Object stored) {
+        return ((OutcomeCodec) ReflectionTestUtils.getField(jobResultWriter, "outcomeCodec")).decode((String) stored);
+    }
+}
@@ -0,0 +1,78 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import com.sample.autoscaling.job.JobSequenceAllocator;
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobSequenceAllocatorTest {
+
+    private JobSequenceAllocator jobSequenceAllocator;
+
+    private BoundValueOperations<String, Long> jobSequenceValueOps;
+
+    private TaskScheduler backgroundTaskScheduler;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        jobSequenceValueOps = mock(BoundValueOperations.class);
+        backgroundTaskScheduler = mock(TaskScheduler.class);
+        MetricsRegistry metricsRegistry = mock(MetricsRegistry.class);
+        when(metricsRegistry.getLatencyMetrics(any(String.class), any(String.class)))
+            .thenReturn(new LatencyMetrics("jobSequence"));
+        jobSequenceAllocator = new JobSequenceAllocator();
+        ReflectionTestUtils.setField(jobSequenceAllocator, "jobSequenceValueOps", jobSequenceValueOps);
+        ReflectionTestUtils.setField(jobSequenceAllocator, "metricsRegistry", metricsRegistry);
+        ReflectionTestUtils.setField(jobSequenceAllocator, "backgroundTaskScheduler", backgroundTaskScheduler);
+        ReflectionTestUtils.setField(jobSequenceAllocator, "blockSize", 4);
+    }
+
+    @Test
+    public void testNumbersAreHandedOutFromLeasedBlocks() {
+        when(jobSequenceValueOps.increment(4)).thenReturn(4L, 12L);
+
+        assertEquals(1, jobSequenceAllocator.next());
+        assertEquals(2, jobSequenceAllocator.next());
+        assertEquals(3, jobSequenceAllocator.next());
+        ArgumentCaptor<Runnable> leaseTask = ArgumentCaptor.forClass(Runnable.class);
+        verify(backgroundTaskScheduler).schedule(leaseTask.capture(), any(Date.class));
+        leaseTask.getValue().run();
+        assertEquals(4, jobSequenceAllocator.next());
+        //Block leased by another node meanwhile is skipped.
+        assertEquals(9, jobSequenceAllocator.next());
+        verify(jobSequenceValueOps, times(2)).increment(4);
+    }
+
+    @Test
+    public void testFailedLeaseAheadIsRetried() {
+        when(jobSequenceValueOps.increment(4)).thenReturn(4L).thenThrow(new RedisConnectionFailureException("down"))
+            .thenReturn(8L);
+
+        jobSequenceAllocator.next();
+        jobSequenceAllocator.next();
+        jobSequenceAllocator.next();
+        ArgumentCaptor<Runnable> leaseTask = ArgumentCaptor.forClass(Runnable.class);
+        verify(backgroundTaskScheduler).schedule(leaseTask.capture(), any(Date.class));
+        leaseTask.getValue().run();
+
+        assertEquals(4, jobSequenceAllocator.next());
+        verify(backgroundTaskScheduler, times(2)).schedule(any(Runnable.class), any(Date.class));
+        assertEquals(5, jobSequenceAllocator.next());
+    }
+}
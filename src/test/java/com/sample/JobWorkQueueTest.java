@@ -0,0 +1,189 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.sample.autoscaling.job.JobWork;
+import com.sample.autoscaling.job.JobWorkExecutor;
+import com.sample.autoscaling.job.JobWorkQueue;
+import com.sample.autoscaling.job.WorkPriority;
+import org.junit.Test;
+
+public class JobWorkQueueTest {
+
+    @Test
+    public void testLongestSinceEvaluatedFirst() throws InterruptedException {
+        JobWorkQueue queue = new JobWorkQueue(10, WorkPriority.LONGEST_SINCE_EVALUATED);
+        JobWork recent = newWork(2000, 1);
+        JobWork old = newWork(1000, 1);
+        JobWork never = newWork(0, 1);
+        Runnable other = newTask();
+        queue.put(other);
+        queue.put(recent);
+        queue.put(old);
+        queue.put(never);
+        assertSame(never, queue.take());
+        assertSame(old, queue.take());
+        assertSame(recent, queue.take());
+        assertSame(other, queue.take());
+    }
+
+    @Test
+    public void testMostInstancesFirstThenQueuedOrder() throws InterruptedException {
+        JobWorkQueue queue = new JobWorkQueue(10, WorkPriority.MOST_INSTANCES);
+        JobWork small = newWork(0, 1);
+        JobWork large = newWork(0, 10);
+        JobWork otherLarge = newWork(0, 10);
+        queue.put(small);
+        queue.put(large);
+        queue.put(otherLarge);
+        assertSame(large, queue.take());
+        assertSame(otherLarge, queue.take());
+        assertSame(small, queue.take());
+    }
+
+    @Test
+    public void testFullQueueRejectsOfferAndBlocksPut() throws InterruptedException {
+        final JobWorkQueue queue = new JobWorkQueue(1, WorkPriority.FIFO);
+        assertTrue(queue.offer(newWork(0, 1)));
+        assertFalse(queue.offer(newWork(0, 1)));
+        assertFalse(queue.offer(newWork(0, 1), 10, TimeUnit.MILLISECONDS));
+
+        final JobWork blocked = newWork(0, 1);
+        final CountDownLatch put = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.put(blocked);
+                    put.countDown();
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+        assertFalse(put.await(100, TimeUnit.MILLISECONDS));
+        queue.take();
+        assertTrue(put.await(5, TimeUnit.SECONDS));
+        assertSame(blocked, queue.poll());
+        producer.join();
+    }
+
+    @Test
+    public void testExecutorWaitsForRoomInsteadOfRunningWorkInCaller() throws InterruptedException {
+        JobWorkExecutor executor = new JobWorkExecutor(WorkPriority.FIFO);
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final Thread caller = Thread.currentThread();
+        final boolean[] ranInCaller = new boolean[1];
+        try {
+            for (int index = 0; index < 3; index++) {
+                executor.execute(new JobWork(0, 1) {
+                    @Override
+                    public void run() {
+                        ranInCaller[0] |= Thread.currentThread() == caller;
+                        try {
+                            release.await();
+                        }
+                        catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                        done.countDown();
+                    }
+                });
+                if (index == 1) {
+                    //Thread is busy and queue is full from now on, releasing the work after a while.
+                    new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                Thread.sleep(100);
+                            }
+                            catch (InterruptedException ie) {
+                                Thread.currentThread().interrupt();
+                            }
+                            release.countDown();
+                        }
+                    }).start();
+                }
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertFalse(ranInCaller[0]);
+            assertEquals(1, executor.getBackpressureCount());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutorRejectsWorkStillWaitingForRoomAtItsDeadline() throws InterruptedException {
+        JobWorkExecutor executor = new JobWorkExecutor(WorkPriority.FIFO);
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int index = 0; index < 2; index++) {
+                executor.execute(new JobWork(0, 1) {
+                    @Override
+                    public void run() {
+                        try {
+                            release.await();
+                        }
+                        catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            long startMillis = System.currentTimeMillis();
+            try {
+                executor.execute(new JobWork(0, 1, startMillis + 100) {
+                    @Override
+                    public void run() {
+                    }
+                });
+                fail("Work should be rejected");
+            }
+            catch (RejectedExecutionException ree) {
+                assertTrue(System.currentTimeMillis() - startMillis >= 100);
+            }
+            assertEquals(1, executor.getQueueSize());
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static JobWork newWork(long lastEvaluatedMillis, int instanceCount) {
+        return new JobWork(lastEvaluatedMillis, instanceCount) {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private static Runnable newTask() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.sample.autoscaling.config.DaemonConfig;
+import com.sample.autoscaling.config.OneShotContext;
+import com.sample.autoscaling.simulator.SimulatorConfig;
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.env.StandardEnvironment;
+
+public class OneShotContextTest {
+
+    @Test
+    public void testComponentsAreTheOnesFoundByScanning() throws ClassNotFoundException {
+        Set<String> scannedComponents = scan();
+        scannedComponents.addAll(scan(SimulatorConfig.PROFILE));
+        scannedComponents.remove(DaemonConfig.class.getName());
+
+        Set<String> components = new HashSet<String>();
+        for (Class<?> component : OneShotContext.getComponents()) {
+            components.add(component.getName());
+        }
+        assertEquals(scannedComponents, components);
+    }
+
+    private static Set<String> scan(String... activeProfiles) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.setActiveProfiles(activeProfiles);
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(true);
+        scanner.setEnvironment(environment);
+
+        Set<String> scannedComponents = new HashSet<String>();
+        for (BeanDefinition component : scanner.findCandidateComponents("com.sample.autoscaling")) {
+            scannedComponents.add(component.getBeanClassName());
+        }
+        return scannedComponents;
+    }
+}
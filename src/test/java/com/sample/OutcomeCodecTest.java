@@ -0,0 +1,69 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.sample.autoscaling.result.JobResult;
+import com.sample.autoscaling.result.OutcomeCodec;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.RuleDescription;
+import org.junit.Test;
+
+public class OutcomeCodecTest {
+
+    private static final long RECORDED_AT_MILLIS = 1388570400000L;
+
+    private final OutcomeCodec outcomeCodec = new OutcomeCodec(
+        Arrays.<AutoScalingGroupInstanceSelectionRule>asList(new MinimumSizeRule()));
+
+    @Test
+    public void testOutcomesAreDecodedAsRecorded() {
+        for (String outcome : Arrays.asList("Terminated Instance:i-0123456789abcdef0", "Terminated Instance:i-abc",
+            "Terminated Instance:unknown", "FAILED:Minimum size rule", "FAILED:null", "TIMED_OUT", "SKIPPED")) {
+            JobResult result = outcomeCodec.decodeResult("group", 1L,
+                outcomeCodec.encode(outcome, RECORDED_AT_MILLIS + 999));
+            assertEquals(outcome, result.getOutcome());
+            assertEquals(Long.valueOf(RECORDED_AT_MILLIS), result.getRecordedAtMillis());
+        }
+    }
+
+    @Test
+    public void testEncodedOutcomesAreShortAscii() {
+        String ruleFailure = outcomeCodec.encode("FAILED:Minimum size rule", RECORDED_AT_MILLIS);
+        String termination = outcomeCodec.encode("Terminated Instance:i-0123456789abcdef0", RECORDED_AT_MILLIS);
+        assertEquals(8, ruleFailure.length());
+        assertEquals(19, termination.length());
+        for (char character : (ruleFailure + termination).toCharArray()) {
+            assertTrue(character < 0x80);
+        }
+    }
+
+    @Test
+    public void testFailureTextIsShortenedAndUnknownRuleIsNamedById() {
+        assertEquals("FAILED:com.amazonaws.AmazonServiceException", outcomeCodec.decode(outcomeCodec.encode(
+            "FAILED:com.amazonaws.AmazonServiceException: Rate exceeded (Service: AmazonAutoScaling)", 0)));
+        OutcomeCodec withoutRules = new OutcomeCodec(Collections.<AutoScalingGroupInstanceSelectionRule>emptyList());
+        assertEquals("FAILED:rule #7", withoutRules.decode(outcomeCodec.encode("FAILED:Minimum size rule", 0)));
+    }
+
+    @Test
+    public void testOutcomesStoredBeforeEncodingAreKept() {
+        JobResult result = outcomeCodec.decodeResult("group", 1L, "FAILED:Minimum size rule");
+        assertEquals("FAILED:Minimum size rule", result.getOutcome());
+        assertNull(result.getRecordedAtMillis());
+    }
+
+    @RuleDescription(value = "Minimum size rule", id = 7)
+    private static class MinimumSizeRule implements AutoScalingGroupInstanceSelectionRule {
+
+        @Override
+        public boolean apply(AutoScalingGroupSnapshot autoScalingGroup) {
+            return true;
+        }
+    }
+}
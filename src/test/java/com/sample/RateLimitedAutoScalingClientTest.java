@@ -0,0 +1,128 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesRequest;
+import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesResult;
+import com.sample.autoscaling.aws.AdaptiveConcurrencyLimiter;
+import com.sample.autoscaling.aws.RateLimitedAutoScalingClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimitedAutoScalingClientTest {
+
+    private AmazonAutoScalingAsync delegate;
+
+    private ExecutorService executorService;
+
+    private RateLimitedAutoScalingClient rateLimitedClient;
+
+    @Before
+    public void setUp() {
+        delegate = mock(AmazonAutoScalingAsync.class);
+        executorService = Executors.newSingleThreadExecutor();
+        rateLimitedClient = new RateLimitedAutoScalingClient(delegate, executorService,
+            new AdaptiveConcurrencyLimiter(8, 1, 16));
+        rateLimitedClient.setDefaultRequestsPerSecond(1000);
+        rateLimitedClient.setBaseBackoffMillis(1);
+        rateLimitedClient.setMaxRetries(2);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testThrottledCallIsRetried() throws Exception {
+        DescribeScalingActivitiesRequest request = new DescribeScalingActivitiesRequest();
+        DescribeScalingActivitiesResult result = new DescribeScalingActivitiesResult();
+        when(delegate.describeScalingActivities(request)).thenThrow(throttling()).thenReturn(result);
+
+        assertSame(result, rateLimitedClient.getClient().describeScalingActivitiesAsync(request).get());
+        assertEquals(1, rateLimitedClient.getThrottledCallCount());
+        //Concurrency limit is halved on throttling
+        assertEquals(4, rateLimitedClient.getConcurrencyLimiter().getLimit());
+    }
+
+    @Test(expected = AmazonServiceException.class)
+    public void testRetriesAreBounded() {
+        DescribeScalingActivitiesRequest request = new DescribeScalingActivitiesRequest();
+        when(delegate.describeScalingActivities(request)).thenThrow(throttling());
+        try {
+            rateLimitedClient.getClient().describeScalingActivities(request);
+        }
+        finally {
+            verify(delegate, times(3)).describeScalingActivities(request);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testServerErrorIsRetriedAsynchronously() throws Exception {
+        DescribeScalingActivitiesRequest request = new DescribeScalingActivitiesRequest();
+        DescribeScalingActivitiesResult result = new DescribeScalingActivitiesResult();
+        AmazonServiceException serverError = new AmazonServiceException("Internal failure");
+        serverError.setStatusCode(500);
+        when(delegate.describeScalingActivities(request)).thenThrow(serverError).thenThrow(serverError)
+            .thenReturn(result);
+        AsyncHandler<DescribeScalingActivitiesRequest, DescribeScalingActivitiesResult> asyncHandler =
+            mock(AsyncHandler.class);
+
+        assertSame(result, rateLimitedClient.getClient().describeScalingActivitiesAsync(request, asyncHandler).get());
+        verify(asyncHandler).onSuccess(request, result);
+        assertEquals(2, rateLimitedClient.getRetriedCallCount());
+        assertEquals(0, rateLimitedClient.getThrottledCallCount());
+    }
+
+    @Test
+    public void testClientErrorIsNotRetried() throws Exception {
+        DescribeScalingActivitiesRequest request = new DescribeScalingActivitiesRequest();
+        AmazonServiceException clientError = new AmazonServiceException("Invalid request");
+        clientError.setStatusCode(400);
+        when(delegate.describeScalingActivities(request)).thenThrow(clientError);
+        try {
+            rateLimitedClient.getClient().describeScalingActivitiesAsync(request).get();
+            fail("Client error must not be retried until it succeeds");
+        }
+        catch (ExecutionException ee) {
+            assertSame(clientError, ee.getCause());
+        }
+        verify(delegate).describeScalingActivities(request);
+    }
+
+    @Test
+    public void testConcurrencyLimitGrowsOnSuccess() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 16);
+        for (int call = 0; call < 10; call++) {
+            try {
+                limiter.acquire();
+            }
+            catch (InterruptedException ie) {
+                throw new IllegalStateException(ie);
+            }
+            limiter.onSuccess();
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    private AmazonServiceException throttling() {
+        AmazonServiceException throttling = new AmazonServiceException("Rate exceeded");
+        throttling.setErrorCode("Throttling");
+        return throttling;
+    }
+}
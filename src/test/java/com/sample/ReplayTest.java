@@ -0,0 +1,112 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.sample.autoscaling.replay.Recording;
+import com.sample.autoscaling.replay.ReplayConfig;
+import com.sample.autoscaling.replay.ReplayEngine;
+import com.sample.autoscaling.replay.ReplayedRun;
+import com.sample.autoscaling.replay.SnapshotRecorder;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.RuleHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final long runStartMillis = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+
+    @Before
+    public void setUp() {
+        //Run of two hours ago, scale up of "recent" group completed 5 minutes before the run.
+        SnapshotRecorder snapshotRecorder = new SnapshotRecorder();
+        ReflectionTestUtils.setField(snapshotRecorder, "recordingDir", folder.getRoot().getPath());
+        snapshotRecorder.start(7, runStartMillis);
+        snapshotRecorder.recordAutoScalingGroup(group("idle", 3));
+        snapshotRecorder.recordAutoScalingGroup(group("single", 1));
+        snapshotRecorder.recordAutoScalingGroup(group("recent", 3));
+        snapshotRecorder.recordAutoScalingGroup(group("unrecorded", 3));
+        snapshotRecorder.recordScalingActivities("idle", Collections.<Activity>emptyList());
+        snapshotRecorder.recordScalingActivities("recent", Collections.singletonList(new Activity()
+            .withDescription("Launching a new EC2 instance").withProgress(100)
+            .withEndTime(new Date(runStartMillis - TimeUnit.MINUTES.toMillis(5)))));
+        snapshotRecorder.finish();
+    }
+
+    @Test
+    public void testRecordedRunIsReadBack() throws Exception {
+        List<File> files = Recording.list(folder.getRoot());
+        assertEquals(1, files.size());
+        Recording recording = Recording.read(files.get(0));
+        assertEquals(7, recording.getJobSequenceNumber());
+        assertEquals(runStartMillis, recording.getStartTimeMillis());
+        assertEquals(4, recording.getAutoScalingGroups().size());
+        AutoScalingGroupSnapshot autoScalingGroup = recording.getAutoScalingGroups().get(0);
+        assertEquals("idle", autoScalingGroup.getAutoScalingGroupName());
+        assertEquals(3, autoScalingGroup.getInstanceCount());
+        assertEquals("i-idle2", autoScalingGroup.getInstanceId(2));
+        assertEquals("us-east-1a", autoScalingGroup.getAvailabilityZone(0));
+        assertEquals(AutoScalingGroupSnapshot.UNKNOWN_SIZE, autoScalingGroup.getMinSize());
+        assertEquals(0, recording.getScalingActivities().get("idle").size());
+        assertEquals(runStartMillis - TimeUnit.MINUTES.toMillis(5),
+            recording.getScalingActivities().get("recent").get(0).getEndTime().getTime());
+    }
+
+    @Test
+    public void testReplayEvaluatesRulesAsOfRecordedRunWithOverrides() throws Exception {
+        Recording recording = Recording.read(Recording.list(folder.getRoot()).get(0));
+
+        ReplayedRun replayedRun = replay(recording, new HashMap<String, Object>());
+        assertEquals(Arrays.asList("idle"), replayedRun.getTerminatedGroups());
+        assertEquals(RuleHandler.FAILED_OUTCOME + "Minimum Instances check in auto scaling group",
+            replayedRun.getOutcomes().get("single"));
+        assertEquals(RuleHandler.FAILED_OUTCOME + "Recent Scale up activity check in auto scaling group",
+            replayedRun.getOutcomes().get("recent"));
+        assertEquals(1, replayedRun.getUnknownCount());
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("auto.termination.minimum.instance.threshold", "3");
+        replayedRun = replay(recording, properties);
+        assertEquals(Collections.<String>emptyList(), replayedRun.getTerminatedGroups());
+        assertEquals(0, replayedRun.getUnknownCount());
+    }
+
+    private static ReplayedRun replay(Recording recording, Map<String, Object> properties)
+        throws InterruptedException {
+        AnnotationConfigApplicationContext context = ReplayConfig.create(properties);
+        try {
+            return context.getBean(ReplayEngine.class).replay(recording);
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    private static AutoScalingGroupSnapshot group(String autoScalingGroupName, int instanceCount) {
+        AutoScalingGroup autoScalingGroup = new AutoScalingGroup().withAutoScalingGroupName(autoScalingGroupName);
+        for (int instance = 0; instance < instanceCount; instance++) {
+            autoScalingGroup.withInstances(new Instance().withInstanceId("i-" + autoScalingGroupName + instance)
+                .withAvailabilityZone("us-east-1a").withLifecycleState("InService"));
+        }
+        return AutoScalingGroupSnapshot.of(autoScalingGroup);
+    }
+}
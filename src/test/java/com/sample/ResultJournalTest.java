@@ -0,0 +1,68 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.sample.autoscaling.result.JobResult;
+import com.sample.autoscaling.result.ResultJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResultJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEntriesAreReadUntilAcknowledged() throws IOException {
+        ResultJournal journal = new ResultJournal(new File(folder.getRoot(), "journal"), 4096);
+        journal.appendRunStart(7, 1000);
+        journal.append(new JobResult("group-1", 7L, "TIMED_OUT", 2000L));
+        journal.append(new JobResult("group-2", 7L, "FAILED:rule", null));
+
+        ResultJournal.Batch batch = journal.read(1);
+        assertEquals("[group-1#7=TIMED_OUT]", batch.getResults().toString());
+        assertEquals(Long.valueOf(1000), batch.getRunStarts().get(7L));
+        assertEquals(batch.getResults().toString(), journal.read(1).getResults().toString());
+
+        journal.acknowledge(batch);
+        assertEquals(1, journal.getPendingResultCount());
+        journal.acknowledge(journal.read(10));
+        assertTrue(journal.read(10).isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testEntriesNotAcknowledgedAreReplayedAfterRestart() throws IOException {
+        File file = new File(folder.getRoot(), "journal");
+        ResultJournal journal = new ResultJournal(file, 4096);
+        journal.append(new JobResult("group-1", 7L, "TIMED_OUT", 2000L));
+        journal.acknowledge(journal.read(10));
+        journal.append(new JobResult("group-2", 8L, "Terminated Instance:i-1", 3000L));
+        journal.close();
+
+        journal = new ResultJournal(file, 4096);
+        assertEquals(1, journal.getPendingResultCount());
+        JobResult result = journal.read(10).getResults().get(0);
+        assertEquals("group-2#8=Terminated Instance:i-1", result.toString());
+        assertEquals(Long.valueOf(3000), result.getRecordedAtMillis());
+        journal.close();
+    }
+
+    @Test
+    public void testAppendFailsWhenFullAndJournalStartsOverOnceDrained() throws IOException {
+        ResultJournal journal = new ResultJournal(new File(folder.getRoot(), "journal"), 128);
+        assertTrue(journal.append(new JobResult("group-1", 1L, "FAILED:rule", 1000L)));
+        assertTrue(journal.append(new JobResult("group-1", 2L, "FAILED:rule", 1000L)));
+        assertFalse(journal.append(new JobResult("group-1", 3L, "FAILED:rule", 1000L)));
+
+        journal.acknowledge(journal.read(10));
+        assertTrue(journal.append(new JobResult("group-1", 3L, "FAILED:rule", 1000L)));
+        journal.close();
+    }
+}
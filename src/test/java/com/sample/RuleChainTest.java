@@ -0,0 +1,115 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.CompiledRule;
+import com.sample.autoscaling.rules.RuleChain;
+import com.sample.autoscaling.rules.RuleDescription;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.core.annotation.Order;
+
+public class RuleChainTest {
+
+    private MetricsRegistry metricsRegistry;
+
+    @Before
+    public void setUp() {
+        metricsRegistry = mock(MetricsRegistry.class);
+        when(metricsRegistry.getLatencyMetrics(any(String.class), any(String.class))).thenAnswer(
+            new Answer<LatencyMetrics>() {
+                @Override
+                public LatencyMetrics answer(InvocationOnMock invocation) {
+                    return new LatencyMetrics((String) invocation.getArguments()[1]);
+                }
+            });
+    }
+
+    @Test
+    public void testLocalRulesRunBeforeRemoteRules() {
+        RuleChain ruleChain = compile(new RemoteRule(), new SlowRule(), new FastRule());
+        assertEquals("[slow, fast, remote]", ruleChain.toString());
+        assertEquals("slow", ruleChain.get(0).getDescription());
+    }
+
+    @Test
+    public void testCheapSelectiveRulesMoveFirst() {
+        RuleChain ruleChain = compile(new RemoteRule(), new SlowRule(), new FastRule());
+        record(ruleChain.get(0), 100, 10, 0.1);
+        record(ruleChain.get(1), 100, 1, 0.5);
+        //Remote rule is far cheaper and more selective, but stays after local rules.
+        record(ruleChain.get(2), 100, 0, 1.0);
+
+        RuleChain reorderedChain = ruleChain.reorder(100);
+        assertEquals("[fast, slow, remote]", reorderedChain.toString());
+        assertSame(reorderedChain, reorderedChain.reorder(100));
+    }
+
+    @Test
+    public void testRulesNeedEnoughSamplesToBeReordered() {
+        RuleChain ruleChain = compile(new SlowRule(), new FastRule());
+        record(ruleChain.get(0), 100, 10, 0.1);
+        record(ruleChain.get(1), 50, 1, 0.5);
+        assertSame(ruleChain, ruleChain.reorder(100));
+    }
+
+    @Test
+    public void testRulesAreNotMovedAcrossPinnedRule() {
+        RuleChain ruleChain = compile(new SlowRule(), new PinnedRule(), new FastRule());
+        assertEquals("[slow, pinned, fast]", ruleChain.toString());
+        record(ruleChain.get(0), 100, 10, 0.1);
+        record(ruleChain.get(1), 100, 20, 0.1);
+        record(ruleChain.get(2), 100, 1, 0.5);
+        assertEquals("[slow, pinned, fast]", ruleChain.reorder(100).toString());
+    }
+
+    private RuleChain compile(AutoScalingGroupInstanceSelectionRule... rules) {
+        return RuleChain.compile(Arrays.asList(rules), metricsRegistry);
+    }
+
+    private void record(CompiledRule rule, int count, long durationMillis, double rejectionRate) {
+        for (int index = 0; index < count; index++) {
+            rule.record(durationMillis * 1000000, index < count * rejectionRate);
+        }
+    }
+
+    private abstract static class TestRule implements AutoScalingGroupInstanceSelectionRule {
+
+        @Override
+        public boolean apply(AutoScalingGroupSnapshot autoScalingGroup) {
+            return true;
+        }
+    }
+
+    @Order(1)
+    @RuleDescription("slow")
+    private static class SlowRule extends TestRule {
+    }
+
+    @Order(2)
+    @RuleDescription(value = "pinned", reorderable = false)
+    private static class PinnedRule extends TestRule {
+    }
+
+    @Order(3)
+    @RuleDescription("fast")
+    private static class FastRule extends TestRule {
+    }
+
+    @Order(0)
+    @RuleDescription(value = "remote", remote = true)
+    private static class RemoteRule extends TestRule {
+    }
+}
@@ -0,0 +1,178 @@
+package com.sample;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sample.autoscaling.job.JobRun;
+import com.sample.autoscaling.metrics.LatencyMetrics;
+import com.sample.autoscaling.metrics.MetricsRegistry;
+import com.sample.autoscaling.result.JobResultWriter;
+import com.sample.autoscaling.rules.AsyncAutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.RuleHandler;
+import com.sample.autoscaling.rules.RuleOutcomeCache;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.termination.TerminationEngine;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class RuleHandlerTest {
+
+    private static final String AUTO_SCALING_GROUP_NAME = "test-group";
+
+    private RuleHandler ruleHandler;
+
+    private AutoScalingGroupInstanceSelectionRule syncRule;
+
+    private AsyncAutoScalingGroupInstanceSelectionRule asyncRule;
+
+    private JobResultWriter jobResultWriter;
+
+    private TerminationEngine terminationEngine;
+
+    private AutoScalingGroupSnapshot autoScalingGroup;
+
+    private ScalingActivityCache scalingActivityCache;
+
+    private ScalingActivityIndex scalingActivityIndex;
+
+    @Before
+    public void setUp() {
+        syncRule = mock(AutoScalingGroupInstanceSelectionRule.class);
+        asyncRule = mock(AsyncAutoScalingGroupInstanceSelectionRule.class);
+        jobResultWriter = mock(JobResultWriter.class);
+        terminationEngine = mock(TerminationEngine.class);
+        autoScalingGroup = AutoScalingGroupSnapshot.of(new AutoScalingGroup().withAutoScalingGroupName(
+            AUTO_SCALING_GROUP_NAME));
+
+        ruleHandler = new RuleHandler();
+        ReflectionTestUtils.setField(ruleHandler, "instanceSelectionRules",
+            new ArrayList<AutoScalingGroupInstanceSelectionRule>(Arrays.asList(syncRule, asyncRule)));
+        ReflectionTestUtils.setField(ruleHandler, "jobResultWriter", jobResultWriter);
+        ReflectionTestUtils.setField(ruleHandler, "terminationEngine", terminationEngine);
+        ReflectionTestUtils.setField(ruleHandler, "ruleOutcomeCache", mock(RuleOutcomeCache.class));
+        scalingActivityCache = mock(ScalingActivityCache.class);
+        ReflectionTestUtils.setField(ruleHandler, "scalingActivityCache", scalingActivityCache);
+        scalingActivityIndex = mock(ScalingActivityIndex.class);
+        ReflectionTestUtils.setField(ruleHandler, "scalingActivityIndex", scalingActivityIndex);
+        MetricsRegistry metricsRegistry = mock(MetricsRegistry.class);
+        when(metricsRegistry.getLatencyMetrics(any(String.class), any(String.class)))
+            .thenReturn(new LatencyMetrics("rule"));
+        ReflectionTestUtils.setField(ruleHandler, "metricsRegistry", metricsRegistry);
+        ruleHandler.afterPropertiesSet();
+    }
+
+    @Test
+    public void testAllRulesPassed() {
+        when(syncRule.apply(autoScalingGroup)).thenReturn(true);
+        when(asyncRule.applyAsync(autoScalingGroup)).thenReturn(Futures.immediateFuture(true));
+        JobRun jobRun = newJobRun();
+        when(terminationEngine.submit(jobRun, autoScalingGroup)).thenReturn(Futures.immediateFuture("i-1"));
+
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+
+        assertFalse(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+        verify(jobResultWriter).record(AUTO_SCALING_GROUP_NAME, 1L, "Terminated Instance:i-1");
+        //Dropped when termination is submitted and once it succeeded.
+        verify(scalingActivityCache, times(2)).invalidate(AUTO_SCALING_GROUP_NAME);
+        verify(scalingActivityIndex).invalidate(AUTO_SCALING_GROUP_NAME);
+    }
+
+    @Test
+    public void testTerminationCompletesLater() {
+        SettableFuture<String> terminatedInstance = SettableFuture.create();
+        when(syncRule.apply(autoScalingGroup)).thenReturn(true);
+        when(asyncRule.applyAsync(autoScalingGroup)).thenReturn(Futures.immediateFuture(true));
+        JobRun jobRun = newJobRun();
+        when(terminationEngine.submit(jobRun, autoScalingGroup)).thenReturn(terminatedInstance);
+
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+        //Calling thread is released before termination completes
+        assertTrue(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+
+        terminatedInstance.setException(new IllegalStateException("No instance in service"));
+        assertFalse(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+        verify(jobResultWriter).record(AUTO_SCALING_GROUP_NAME, 1L, "FAILED:No instance in service");
+    }
+
+    @Test
+    public void testSyncRuleFailureSkipsAsyncRule() {
+        when(syncRule.apply(autoScalingGroup)).thenReturn(false);
+        JobRun jobRun = newJobRun();
+
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+
+        assertFalse(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+        verify(asyncRule, never()).applyAsync(any(AutoScalingGroupSnapshot.class));
+    }
+
+    @Test
+    public void testAsyncRuleCompletesLater() {
+        SettableFuture<Boolean> asyncStatus = SettableFuture.create();
+        when(syncRule.apply(autoScalingGroup)).thenReturn(true);
+        when(asyncRule.applyAsync(autoScalingGroup)).thenReturn(asyncStatus);
+        JobRun jobRun = newJobRun();
+
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+        //Calling thread is released before asynchronous rule completes
+        assertTrue(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+
+        asyncStatus.set(false);
+        assertFalse(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+        verify(terminationEngine, never()).submit(jobRun, autoScalingGroup);
+    }
+
+    @Test
+    public void testAsyncRuleErrorIsRecorded() {
+        when(syncRule.apply(autoScalingGroup)).thenReturn(true);
+        when(asyncRule.applyAsync(autoScalingGroup)).thenReturn(Futures.<Boolean>immediateFailedFuture(
+            new IllegalStateException("Rate exceeded")));
+        JobRun jobRun = newJobRun();
+
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+
+        assertFalse(jobRun.isPending(AUTO_SCALING_GROUP_NAME));
+        verify(jobResultWriter).record(AUTO_SCALING_GROUP_NAME, 1L,
+            "FAILED:java.lang.IllegalStateException: Rate exceeded");
+    }
+
+    @Test
+    public void testExpiredRunDiscardsLateResult() {
+        SettableFuture<Boolean> asyncStatus = SettableFuture.create();
+        when(syncRule.apply(autoScalingGroup)).thenReturn(true);
+        when(asyncRule.applyAsync(autoScalingGroup)).thenReturn(asyncStatus);
+        JobRun jobRun = newJobRun();
+
+        ruleHandler.applyRules(jobRun, autoScalingGroup);
+        assertTrue(jobRun.expire().contains(AUTO_SCALING_GROUP_NAME));
+
+        asyncStatus.set(true);
+        verify(jobResultWriter, never()).record(any(String.class), any(Long.class), any(String.class));
+        //Auto scaling groups dispatched late are not taken in anymore.
+        assertFalse(jobRun.register("late-group"));
+        assertFalse(jobRun.isPending("late-group"));
+    }
+
+    private JobRun newJobRun() {
+        JobRun jobRun = new JobRun(AutoScalingTarget.defaultTarget(null), 1L, System.currentTimeMillis() + 60000);
+        jobRun.register(AUTO_SCALING_GROUP_NAME);
+        jobRun.dispatchFinished();
+        return jobRun;
+    }
+}
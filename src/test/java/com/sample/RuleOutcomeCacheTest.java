@@ -0,0 +1,121 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.google.common.base.Ticker;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.rules.RuleOutcomeCache;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class RuleOutcomeCacheTest {
+
+    private static final AutoScalingTarget TARGET = AutoScalingTarget.defaultTarget(null);
+
+    private static final String OUTCOME = "FAILED:Recent scaling activity";
+
+    private MutableTicker ticker;
+
+    private ScalingActivityCache scalingActivityCache;
+
+    private RuleOutcomeCache ruleOutcomeCache;
+
+    @Before
+    public void setUp() {
+        ticker = new MutableTicker();
+        scalingActivityCache = new ScalingActivityCache(100, 600, 600, ticker);
+        ruleOutcomeCache = new RuleOutcomeCache(100, 300, ticker);
+        ReflectionTestUtils.setField(ruleOutcomeCache, "scalingActivityCache", scalingActivityCache);
+        ReflectionTestUtils.setField(ruleOutcomeCache, "scalingActivityIndex",
+            new ScalingActivityIndex(false, 100, 900, ticker));
+    }
+
+    @Test
+    public void testUnchangedGroupReusesOutcome() {
+        scalingActivityCache.put("group", Collections.singletonList(activity("a-1", "Successful")));
+        ruleOutcomeCache.put(TARGET, group("i-1", "i-2"), OUTCOME);
+
+        //Instances listed in another order are the same state.
+        assertEquals(OUTCOME, ruleOutcomeCache.getReusableOutcome(TARGET, group("i-2", "i-1")));
+        assertEquals(1, ruleOutcomeCache.getHitCount());
+        assertEquals(0, scalingActivityCache.getHitCount());
+    }
+
+    @Test
+    public void testChangedGroupIsEvaluatedAgain() {
+        ruleOutcomeCache.put(TARGET, group("i-1", "i-2"), OUTCOME);
+        assertNull(ruleOutcomeCache.getReusableOutcome(TARGET, group("i-1", "i-3")));
+        //Outcome of a changed group is dropped.
+        assertNull(ruleOutcomeCache.getReusableOutcome(TARGET, group("i-1", "i-2")));
+
+        ruleOutcomeCache.put(TARGET, group("i-1", "i-2"), OUTCOME);
+        assertNull(ruleOutcomeCache.getReusableOutcome(TARGET,
+            AutoScalingGroupSnapshot.of(autoScalingGroup("i-1", "i-2").withDesiredCapacity(3))));
+
+        ruleOutcomeCache.put(TARGET, group("i-1", "i-2"), OUTCOME);
+        AutoScalingGroup terminating = autoScalingGroup("i-1", "i-2");
+        terminating.getInstances().get(0).setLifecycleState("Terminating");
+        assertNull(ruleOutcomeCache.getReusableOutcome(TARGET, AutoScalingGroupSnapshot.of(terminating)));
+        assertEquals(4, ruleOutcomeCache.getMissCount());
+    }
+
+    @Test
+    public void testNewScalingActivityIsEvaluatedAgain() {
+        scalingActivityCache.put("group", Collections.singletonList(activity("a-1", "InProgress")));
+        ruleOutcomeCache.put(TARGET, group("i-1", "i-2"), OUTCOME);
+
+        scalingActivityCache.put("group", Collections.singletonList(activity("a-1", "Successful")));
+        assertNull(ruleOutcomeCache.getReusableOutcome(TARGET, group("i-1", "i-2")));
+    }
+
+    @Test
+    public void testOutcomeExpiresAfterMaxStaleness() {
+        ruleOutcomeCache.put(TARGET, group("i-1", "i-2"), OUTCOME);
+        ticker.advance(299);
+        assertEquals(OUTCOME, ruleOutcomeCache.getReusableOutcome(TARGET, group("i-1", "i-2")));
+        ticker.advance(2);
+        assertNull(ruleOutcomeCache.getReusableOutcome(TARGET, group("i-1", "i-2")));
+    }
+
+    private AutoScalingGroupSnapshot group(String... instanceIds) {
+        return AutoScalingGroupSnapshot.of(autoScalingGroup(instanceIds));
+    }
+
+    private AutoScalingGroup autoScalingGroup(String... instanceIds) {
+        AutoScalingGroup autoScalingGroup = new AutoScalingGroup().withAutoScalingGroupName("group")
+            .withDesiredCapacity(instanceIds.length);
+        for (String instanceId : instanceIds) {
+            autoScalingGroup.withInstances(new Instance().withInstanceId(instanceId).withLifecycleState("InService"));
+        }
+        return autoScalingGroup;
+    }
+
+    private Activity activity(String activityId, String statusCode) {
+        return new Activity().withActivityId(activityId).withStatusCode(statusCode).withProgress(100);
+    }
+
+    private static class MutableTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long seconds) {
+            nanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+    }
+}
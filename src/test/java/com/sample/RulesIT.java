@@ -1,15 +1,12 @@
 package com.sample;
 
 import static junit.framework.Assert.assertTrue;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
-
-import java.util.List;
 
 import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
 import com.amazonaws.services.autoscaling.model.Instance;
-import com.sample.autoscaling.config.Config;
+import com.sample.autoscaling.config.DaemonConfig;
 import com.sample.autoscaling.rules.AutoScalingGroupInstanceSelectionRule;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +16,8 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
 
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(loader = AnnotationConfigContextLoader.class, classes = {Config.class, TestConfig.class})
+@ContextConfiguration(loader = AnnotationConfigContextLoader.class,
+    classes = {DaemonConfig.class, TestConfig.class})
 public class RulesIT {
 
     @Value("${test.auto.scaling.group}")
@@ -33,23 +31,17 @@ public class RulesIT {
 
     @Test
     public void testCountRuleSuccess() throws InterruptedException {
-        //Mock AutoScaling Group
-        AutoScalingGroup autoScalingGroup = mock(AutoScalingGroup.class);
-        when(autoScalingGroup.getAutoScalingGroupName()).thenReturn(testAutoScalingGroupName);
-        //Mock instances in auto scale group
-        Instance instance = mock(Instance.class);
-        List<Instance> instanceList = mock(List.class);
-        instanceList.add(instance);
-        when(autoScalingGroup.getInstances()).thenReturn(instanceList);
-        when(autoScalingGroup.getInstances().size()).thenReturn(2);
+        //AutoScaling Group with two instances
+        AutoScalingGroupSnapshot autoScalingGroup = AutoScalingGroupSnapshot.of(new AutoScalingGroup()
+            .withAutoScalingGroupName(testAutoScalingGroupName)
+            .withInstances(new Instance().withInstanceId("i-1"), new Instance().withInstanceId("i-2")));
         assertTrue(autoScalingGroupInstancesCountRule.apply(autoScalingGroup));
     }
 
     @Test
     public void testActivityRuleSuccess() throws InterruptedException {
-        //Mock AutoScaling Group
-        AutoScalingGroup autoScalingGroup = mock(AutoScalingGroup.class);
-        when(autoScalingGroup.getAutoScalingGroupName()).thenReturn(testAutoScalingGroupName);
+        AutoScalingGroupSnapshot autoScalingGroup = AutoScalingGroupSnapshot.of(new AutoScalingGroup()
+            .withAutoScalingGroupName(testAutoScalingGroupName));
         assertTrue(autoScalingGroupActivityRule.apply(autoScalingGroup));
     }
 
@@ -0,0 +1,76 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.google.common.base.Ticker;
+import com.sample.autoscaling.rules.ScalingActivityCache;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScalingActivityCacheTest {
+
+    private MutableTicker ticker;
+
+    private ScalingActivityCache scalingActivityCache;
+
+    @Before
+    public void setUp() {
+        ticker = new MutableTicker();
+        scalingActivityCache = new ScalingActivityCache(100, 60, 5, ticker);
+    }
+
+    @Test
+    public void testCompletedActivityExpiresAfterTimeToLive() {
+        scalingActivityCache.put("group", activities(100));
+
+        ticker.advance(59);
+        assertNotNull(scalingActivityCache.getIfPresent("group"));
+        ticker.advance(2);
+        assertNull(scalingActivityCache.getIfPresent("group"));
+
+        assertEquals(1, scalingActivityCache.getHitCount());
+        assertEquals(1, scalingActivityCache.getMissCount());
+    }
+
+    @Test
+    public void testInProgressActivityExpiresSooner() {
+        scalingActivityCache.put("group", activities(30));
+
+        ticker.advance(4);
+        assertNotNull(scalingActivityCache.getIfPresent("group"));
+        ticker.advance(2);
+        assertNull(scalingActivityCache.getIfPresent("group"));
+    }
+
+    @Test
+    public void testNoActivityIsCached() {
+        scalingActivityCache.put("group", Collections.<Activity>emptyList());
+        assertEquals(0, scalingActivityCache.getIfPresent("group").size());
+        assertNull(scalingActivityCache.getIfPresent("other-group"));
+    }
+
+    private List<Activity> activities(int progress) {
+        return Collections.singletonList(new Activity().withProgress(progress).withDescription("Launching"));
+    }
+
+    private static class MutableTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long seconds) {
+            nanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.google.common.base.Ticker;
+import com.sample.autoscaling.events.InMemoryScalingEventQueue;
+import com.sample.autoscaling.events.ScalingEvent;
+import com.sample.autoscaling.events.ScalingEventConsumer;
+import com.sample.autoscaling.rules.ScalingActivityIndex;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.target.AutoScalingTargets;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ScalingActivityIndexTest {
+
+    private static final DateTime NOW = DateTime.now();
+
+    private MutableTicker ticker;
+
+    private ScalingActivityIndex scalingActivityIndex;
+
+    @Before
+    public void setUp() {
+        ticker = new MutableTicker();
+        scalingActivityIndex = new ScalingActivityIndex(true, 100, 900, ticker);
+    }
+
+    @Test
+    public void testOnlyNewerActivityReplacesIndexedOne() {
+        assertTrue(scalingActivityIndex.update("group", activity("a-2", NOW, 30)));
+        assertFalse(scalingActivityIndex.update("group", activity("a-1", NOW.minusMinutes(5), 100)));
+        assertFalse(scalingActivityIndex.update("group", activity("a-2", NOW, 30)));
+        assertTrue(scalingActivityIndex.update("group", activity("a-2", NOW, 100)));
+        assertEquals(Integer.valueOf(100), scalingActivityIndex.get("group").get(0).getProgress());
+        assertTrue(scalingActivityIndex.update("group", activity("a-3", NOW.plusMinutes(1), 0)));
+        assertEquals("a-3", scalingActivityIndex.get("group").get(0).getActivityId());
+        assertEquals(3, scalingActivityIndex.getUpdateCount());
+    }
+
+    @Test
+    public void testGroupIsPolledAgainAfterReconcileInterval() {
+        assertNull(scalingActivityIndex.get("group"));
+        scalingActivityIndex.reconcile("group", Collections.<Activity>emptyList());
+        assertEquals(0, scalingActivityIndex.get("group").size());
+
+        ticker.advance(899);
+        scalingActivityIndex.update("group", activity("a-1", NOW, 100));
+        ticker.advance(899);
+        assertEquals("a-1", scalingActivityIndex.get("group").get(0).getActivityId());
+        ticker.advance(2);
+        assertNull(scalingActivityIndex.get("group"));
+
+        assertEquals(2, scalingActivityIndex.getHitCount());
+        assertEquals(2, scalingActivityIndex.getMissCount());
+    }
+
+    @Test
+    public void testReconcileKeepsNewerNotifiedActivity() {
+        scalingActivityIndex.update("group", activity("a-2", NOW, 30));
+        scalingActivityIndex.reconcile("group", Collections.singletonList(activity("a-1", NOW.minusMinutes(5), 100)));
+        assertEquals("a-2", scalingActivityIndex.get("group").get(0).getActivityId());
+
+        scalingActivityIndex.reconcile("group", Collections.singletonList(activity("a-2", NOW, 100)));
+        assertEquals(Integer.valueOf(100), scalingActivityIndex.get("group").get(0).getProgress());
+    }
+
+    @Test
+    public void testConsumerAppliesNotificationsOfKnownTargets() throws InterruptedException {
+        InMemoryScalingEventQueue scalingEventQueue = new InMemoryScalingEventQueue();
+        ScalingEventConsumer scalingEventConsumer = new ScalingEventConsumer();
+        ReflectionTestUtils.setField(scalingEventConsumer, "scalingEventQueue", scalingEventQueue);
+        ReflectionTestUtils.setField(scalingEventConsumer, "scalingActivityIndex", scalingActivityIndex);
+        ReflectionTestUtils.setField(scalingEventConsumer, "autoScalingTargets",
+            AutoScalingTargets.of(AutoScalingTarget.defaultTarget(null)));
+        ReflectionTestUtils.setField(scalingEventConsumer, "batchSize", 10);
+        ReflectionTestUtils.setField(scalingEventConsumer, "waitMillis", 0L);
+
+        scalingActivityIndex.reconcile("group-2", Collections.<Activity>emptyList());
+        scalingEventQueue.publish(new ScalingEvent("group-1", null, activity("a-1", NOW, 30)));
+        scalingEventQueue.publish(new ScalingEvent("group-1", null, activity("a-1", NOW, 30)));
+        scalingEventQueue.publish(new ScalingEvent("group-2", null, null));
+        scalingEventConsumer.consume();
+
+        assertEquals("a-1", scalingActivityIndex.get("group-1").get(0).getActivityId());
+        assertNull(scalingActivityIndex.get("group-2"));
+        assertEquals(3, scalingEventConsumer.getEventCount());
+        assertEquals(1, scalingEventConsumer.getIgnoredEventCount());
+    }
+
+    private Activity activity(String activityId, DateTime startTime, int progress) {
+        return new Activity().withActivityId(activityId).withStartTime(startTime.toDate()).withProgress(progress)
+            .withEndTime(progress == 100 ? startTime.plusMinutes(1).toDate() : null)
+            .withDescription("Launching a new EC2 instance");
+    }
+
+    private static class MutableTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long seconds) {
+            nanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+    }
+}
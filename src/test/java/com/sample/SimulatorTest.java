@@ -0,0 +1,249 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.Activity;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsResult;
+import com.amazonaws.services.autoscaling.model.DescribeScalingActivitiesRequest;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupRequest;
+import com.sample.autoscaling.config.DaemonConfig;
+import com.sample.autoscaling.config.OneShotContext;
+import com.sample.autoscaling.events.ScalingEventConsumer;
+import com.sample.autoscaling.job.JobRunSummary;
+import com.sample.autoscaling.job.JobWorkExecutor;
+import com.sample.autoscaling.job.TerminateInstanceJob;
+import com.sample.autoscaling.simulator.InMemoryRedis;
+import com.sample.autoscaling.simulator.InMemoryRedisConnectionFactory;
+import com.sample.autoscaling.simulator.SimulatedAutoScalingClient;
+import com.sample.autoscaling.simulator.SimulatorConfig;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+public class SimulatorTest {
+
+    @Test
+    public void testInMemoryRedisPipelineAndTransaction() {
+        InMemoryRedis inMemoryRedis = new InMemoryRedis();
+        StringRedisTemplate redisTemplate =
+            new StringRedisTemplate(new InMemoryRedisConnectionFactory(inMemoryRedis));
+
+        redisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                stringRedisConnection.zAdd("runs", 100, "1");
+                stringRedisConnection.hMSet("group-1", Collections.singletonMap("1", "FAILED:rule"));
+                stringRedisConnection.sAdd("groups", "group-1");
+                return null;
+            }
+        });
+        assertEquals(1, inMemoryRedis.getRoundTripCount());
+        assertEquals(Collections.singletonMap("1", "FAILED:rule"),
+            redisTemplate.<String, String>opsForHash().entries("group-1"));
+        assertEquals(Collections.singleton("group-1"), redisTemplate.opsForSet().members("groups"));
+        assertEquals(Collections.singleton("1"), redisTemplate.opsForZSet().rangeByScore("runs", 0, 200));
+
+        redisTemplate.execute(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                stringRedisConnection.multi();
+                stringRedisConnection.hIncrBy("group-1:rollup", "FAILED:rule", 1);
+                stringRedisConnection.hDel("group-1", "1");
+                return stringRedisConnection.exec();
+            }
+        });
+        assertTrue(redisTemplate.<String, String>opsForHash().entries("group-1").isEmpty());
+        assertEquals("1", redisTemplate.<String, String>opsForHash().get("group-1:rollup", "FAILED:rule"));
+
+        assertEquals(Long.valueOf(1), redisTemplate.boundValueOps("sequence").increment(1));
+        assertEquals(Long.valueOf(2), redisTemplate.boundValueOps("sequence").increment(1));
+    }
+
+    @Test
+    public void testSimulatedClientPagesAndTerminates() {
+        SimulatedAutoScalingClient autoScalingSimulator =
+            new SimulatedAutoScalingClient(Executors.newSingleThreadExecutor());
+        autoScalingSimulator.addFleet(120, 2, 0, 0, new Random(1));
+        AmazonAutoScalingAsync autoScalingClient = autoScalingSimulator.getClient();
+
+        DescribeAutoScalingGroupsResult page = autoScalingClient.describeAutoScalingGroups(
+            new DescribeAutoScalingGroupsRequest().withMaxRecords(50));
+        int groupCount = page.getAutoScalingGroups().size();
+        int pageCount = 1;
+        while (page.getNextToken() != null) {
+            page = autoScalingClient.describeAutoScalingGroups(
+                new DescribeAutoScalingGroupsRequest().withMaxRecords(50).withNextToken(page.getNextToken()));
+            groupCount += page.getAutoScalingGroups().size();
+            pageCount++;
+        }
+        assertEquals(120, groupCount);
+        assertEquals(3, pageCount);
+
+        AutoScalingGroup group = page.getAutoScalingGroups().get(0);
+        String instanceId = group.getInstances().get(0).getInstanceId();
+        autoScalingClient.terminateInstanceInAutoScalingGroup(
+            new TerminateInstanceInAutoScalingGroupRequest().withInstanceId(instanceId)
+                .withShouldDecrementDesiredCapacity(false));
+
+        AutoScalingGroup terminatedGroup = autoScalingClient.describeAutoScalingGroups(
+            new DescribeAutoScalingGroupsRequest().withAutoScalingGroupNames(group.getAutoScalingGroupName()))
+            .getAutoScalingGroups().get(0);
+        assertEquals(2, terminatedGroup.getInstances().size());
+        assertFalse(instanceId.equals(terminatedGroup.getInstances().get(0).getInstanceId()));
+        List<Activity> activities = autoScalingClient.describeScalingActivities(new DescribeScalingActivitiesRequest()
+            .withAutoScalingGroupName(group.getAutoScalingGroupName()).withMaxRecords(1)).getActivities();
+        assertTrue(activities.get(0).getDescription().startsWith("Launching"));
+
+        autoScalingSimulator.setThrottleRate(1);
+        try {
+            autoScalingClient.describeAutoScalingGroups(new DescribeAutoScalingGroupsRequest());
+            fail("Call should be throttled");
+        }
+        catch (AmazonServiceException ase) {
+            assertEquals("Throttling", ase.getErrorCode());
+        }
+        assertEquals(1, autoScalingSimulator.getThrottledCallCount());
+        autoScalingSimulator.shutdown();
+    }
+
+    @Test
+    public void testJobRunsAgainstSimulators() throws InterruptedException {
+        AnnotationConfigApplicationContext context = startSimulation(new HashMap<String, Object>());
+        try {
+            context.getBean(TerminateInstanceJob.class).run();
+
+            StringRedisTemplate redisTemplate = context.getBean("redisTemplate", StringRedisTemplate.class);
+            assertEquals(300, redisTemplate.opsForSet().members("terminate_instance_job_groups").size());
+            assertEquals(1, redisTemplate.<String, String>opsForHash().entries("group-0").size());
+            assertNull(redisTemplate.opsForValue().get("group-0:rollup"));
+            SimulatedAutoScalingClient autoScalingSimulator = context.getBean(SimulatedAutoScalingClient.class);
+            assertTrue(autoScalingSimulator.getCallCount("terminateInstanceInAutoScalingGroup") > 0);
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testJobRunsWithThreadPerGroupExecutor() throws InterruptedException {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("executor.mode", "THREAD_PER_GROUP");
+        properties.put("executor.max.in.flight", "100");
+        AnnotationConfigApplicationContext context = startSimulation(properties);
+        try {
+            context.getBean(TerminateInstanceJob.class).run();
+
+            StringRedisTemplate redisTemplate = context.getBean("redisTemplate", StringRedisTemplate.class);
+            assertEquals(300, redisTemplate.opsForSet().members("terminate_instance_job_groups").size());
+            assertEquals(100, context.getBean(JobWorkExecutor.class).getCorePoolSize());
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testSecondRunTerminatesNothing() throws InterruptedException {
+        AnnotationConfigApplicationContext context = startSimulation(new HashMap<String, Object>());
+        try {
+            SimulatedAutoScalingClient autoScalingSimulator = context.getBean(SimulatedAutoScalingClient.class);
+            TerminateInstanceJob terminateInstanceJob = context.getBean(TerminateInstanceJob.class);
+            terminateInstanceJob.run();
+            long terminatedCount = autoScalingSimulator.getCallCount("terminateInstanceInAutoScalingGroup");
+            assertTrue(terminatedCount > 0);
+
+            terminateInstanceJob.run();
+            assertEquals(terminatedCount, autoScalingSimulator.getCallCount("terminateInstanceInAutoScalingGroup"));
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testScalingActivitiesAreTrackedFromNotifications() throws InterruptedException {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("scaling.activity.events.enabled", "true");
+        properties.put("scaling.activity.events.wait.millis", "100");
+        properties.put("rule.outcome.cache.max.staleness.seconds", "0");
+        AnnotationConfigApplicationContext context = startSimulation(properties);
+        try {
+            SimulatedAutoScalingClient autoScalingSimulator = context.getBean(SimulatedAutoScalingClient.class);
+            TerminateInstanceJob terminateInstanceJob = context.getBean(TerminateInstanceJob.class);
+            terminateInstanceJob.run();
+            long polledCount = autoScalingSimulator.getCallCount("describeScalingActivities");
+            assertEquals(300, polledCount);
+
+            terminateInstanceJob.run();
+            assertEquals(polledCount, autoScalingSimulator.getCallCount("describeScalingActivities"));
+            assertTrue(context.getBean(ScalingEventConsumer.class).getEventCount() > 0);
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testOneShotContextOnlyCreatesBeansOfTheRun() throws InterruptedException {
+        AnnotationConfigApplicationContext context = OneShotContext.create(SimulatorConfig.PROFILE);
+        startSimulation(context, new HashMap<String, Object>());
+        try {
+            assertFalse(context.getBeanFactory().containsSingleton("terminateInstanceJob"));
+            JobRunSummary summary = context.getBean(TerminateInstanceJob.class).runOnce();
+
+            assertEquals(300, summary.getAutoScalingGroupCount());
+            assertTrue(summary.isComplete());
+            assertTrue(summary.getTerminatedInstanceCount() > 0);
+            assertFalse(context.getBeanFactory().containsSingleton("jobHistoryCompactor"));
+            assertFalse(context.getBeanFactory().containsSingleton("scalingEventQueue"));
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Start the application against the simulators, with a fleet of 300 auto scaling groups.
+     *
+     * @param properties - Properties overriding the configured ones
+     */
+    private AnnotationConfigApplicationContext startSimulation(Map<String, Object> properties) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles(SimulatorConfig.PROFILE);
+        context.register(DaemonConfig.class);
+        startSimulation(context, properties);
+        return context;
+    }
+
+    private static void startSimulation(AnnotationConfigApplicationContext context, Map<String, Object> properties) {
+        properties.put("simulator.group.count", "300");
+        properties.put("simulator.aws.latency.millis", "0");
+        properties.put("simulator.redis.latency.millis", "0");
+        properties.put("aws.rate.limit.requests.per.second", "10000");
+        properties.put("aws.rate.limit.operations", "");
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        context.refresh();
+    }
+}
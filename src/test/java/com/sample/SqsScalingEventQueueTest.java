@@ -0,0 +1,58 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+import com.sample.autoscaling.events.ScalingEvent;
+import com.sample.autoscaling.events.SqsScalingEventQueue;
+import org.junit.Test;
+
+public class SqsScalingEventQueueTest {
+
+    private static final String ARN = "arn:aws:autoscaling:us-east-1:111111111111:autoScalingGroup:uuid:" +
+        "autoScalingGroupName/group";
+
+    @Test
+    public void testSnsNotificationIsParsed() {
+        String notification = "{\\\"Event\\\":\\\"autoscaling:EC2_INSTANCE_LAUNCH\\\",\\\"AutoScalingGroupName\\\":" +
+            "\\\"group\\\",\\\"AutoScalingGroupARN\\\":\\\"" + ARN + "\\\",\\\"ActivityId\\\":\\\"a-1\\\"," +
+            "\\\"Description\\\":\\\"Launching a new EC2 instance: i-1\\\",\\\"StatusCode\\\":\\\"InProgress\\\"," +
+            "\\\"Progress\\\":50,\\\"StartTime\\\":\\\"2014-01-01T10:00:00.000Z\\\",\\\"EndTime\\\":\\\"\\\"}";
+        ScalingEvent event = SqsScalingEventQueue.parse("{\"Type\":\"Notification\",\"Message\":\"" + notification +
+            "\"}");
+
+        assertEquals("group", event.getAutoScalingGroupName());
+        assertEquals(ARN, event.getAutoScalingGroupARN());
+        assertEquals("a-1", event.getActivity().getActivityId());
+        assertEquals(Integer.valueOf(50), event.getActivity().getProgress());
+        assertEquals(1388570400000L, event.getActivity().getStartTime().getTime());
+        assertNull(event.getActivity().getEndTime());
+    }
+
+    @Test
+    public void testEventBridgeEventIsParsed() {
+        ScalingEvent event = SqsScalingEventQueue.parse("{\"detail-type\":\"EC2 Instance Launch Successful\"," +
+            "\"resources\":[\"" + ARN + "\"],\"detail\":{\"AutoScalingGroupName\":\"group\",\"ActivityId\":\"a-1\"," +
+            "\"Description\":\"Launching a new EC2 instance: i-1\",\"StatusCode\":\"Successful\"," +
+            "\"StartTime\":\"2014-01-01T10:00:00.000Z\",\"EndTime\":\"2014-01-01T10:01:00.000Z\"}}");
+
+        assertEquals(ARN, event.getAutoScalingGroupARN());
+        assertEquals(Integer.valueOf(100), event.getActivity().getProgress());
+    }
+
+    @Test
+    public void testLifecycleNotificationHasNoActivity() {
+        ScalingEvent event = SqsScalingEventQueue.parse("{\"AutoScalingGroupName\":\"group\"," +
+            "\"LifecycleTransition\":\"autoscaling:EC2_INSTANCE_LAUNCHING\",\"EC2InstanceId\":\"i-1\"}");
+
+        assertEquals("group", event.getAutoScalingGroupName());
+        assertNull(event.getActivity());
+    }
+
+    @Test
+    public void testTestNotificationAndGarbageAreSkipped() {
+        assertNull(SqsScalingEventQueue.parse("{\"Event\":\"autoscaling:TEST_NOTIFICATION\"," +
+            "\"AutoScalingGroupName\":\"group\"}"));
+        assertNull(SqsScalingEventQueue.parse("not json"));
+    }
+}
@@ -5,7 +5,7 @@ import static junit.framework.Assert.assertNotNull;
 import java.util.List;
 
 import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
-import com.sample.autoscaling.config.Config;
+import com.sample.autoscaling.config.DaemonConfig;
 import com.sample.autoscaling.job.TerminateInstanceJob;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -15,7 +15,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
 
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(loader = AnnotationConfigContextLoader.class, classes = Config.class)
+@ContextConfiguration(loader = AnnotationConfigContextLoader.class, classes = DaemonConfig.class)
 public class TerminateInstanceJobIT {
 
     @Autowired
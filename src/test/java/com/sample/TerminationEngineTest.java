@@ -0,0 +1,176 @@
+package com.sample;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingAsync;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupRequest;
+import com.amazonaws.services.autoscaling.model.TerminateInstanceInAutoScalingGroupResult;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.sample.autoscaling.job.JobRun;
+import com.sample.autoscaling.rules.AutoScalingGroupSnapshot;
+import com.sample.autoscaling.target.AutoScalingTarget;
+import com.sample.autoscaling.termination.AvailabilityZoneBalancedInstanceSelector;
+import com.sample.autoscaling.termination.InstanceSelector;
+import com.sample.autoscaling.termination.OldestInstanceSelector;
+import com.sample.autoscaling.termination.RandomInstanceSelector;
+import com.sample.autoscaling.termination.TerminationEngine;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TerminationEngineTest {
+
+    private TerminationEngine terminationEngine;
+
+    private AmazonAutoScalingAsync autoScalingClient;
+
+    private JobRun jobRun;
+
+    @Captor
+    private ArgumentCaptor<AsyncHandler<TerminateInstanceInAutoScalingGroupRequest,
+        TerminateInstanceInAutoScalingGroupResult>> handlers;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        autoScalingClient = mock(AmazonAutoScalingAsync.class);
+        terminationEngine = new TerminationEngine();
+        ReflectionTestUtils.setField(terminationEngine, "instanceSelectors", Arrays.<InstanceSelector>asList(
+            new RandomInstanceSelector(), new OldestInstanceSelector(),
+            new AvailabilityZoneBalancedInstanceSelector()));
+        ReflectionTestUtils.setField(terminationEngine, "instanceSelectorName", "az-balanced");
+        ReflectionTestUtils.setField(terminationEngine, "maxInFlight", 3);
+        ReflectionTestUtils.setField(terminationEngine, "maxInFlightPerAvailabilityZone", 1);
+        terminationEngine.initialize();
+        jobRun = new JobRun(AutoScalingTarget.defaultTarget(autoScalingClient), 1L, System.currentTimeMillis() + 60000);
+    }
+
+    @Test
+    public void testInFlightTerminationsAreCappedPerAvailabilityZone() {
+        ListenableFuture<String> first = submit(group("group-1", instance("i-1", "a")));
+        ListenableFuture<String> second = submit(group("group-2", instance("i-2", "a")));
+        ListenableFuture<String> third = submit(group("group-3", instance("i-3", "b")));
+
+        //Second auto scaling group waits for zone a, third one is started meanwhile
+        verify(autoScalingClient, times(2)).terminateInstanceInAutoScalingGroupAsync(
+            any(TerminateInstanceInAutoScalingGroupRequest.class), handlers.capture());
+        assertEquals(2, terminationEngine.getInFlightCount());
+        assertEquals(1, terminationEngine.getQueuedCount());
+
+        handlers.getAllValues().get(0).onSuccess(null, new TerminateInstanceInAutoScalingGroupResult());
+        assertEquals("i-1", Futures.getUnchecked(first));
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+        verify(autoScalingClient, times(3)).terminateInstanceInAutoScalingGroupAsync(
+            any(TerminateInstanceInAutoScalingGroupRequest.class), handlers.capture());
+        assertEquals(0, terminationEngine.getQueuedCount());
+    }
+
+    @Test
+    public void testExpiredRunDropsQueuedTerminations() {
+        ReflectionTestUtils.setField(terminationEngine, "maxInFlight", 1);
+        submit(group("group-1", instance("i-1", "a")));
+        ListenableFuture<String> queued = submit(group("group-2", instance("i-2", "b")));
+        jobRun.expire();
+
+        verify(autoScalingClient).terminateInstanceInAutoScalingGroupAsync(
+            any(TerminateInstanceInAutoScalingGroupRequest.class), handlers.capture());
+        handlers.getValue().onError(new IllegalStateException("Slow termination"));
+
+        assertTrue(queued.isCancelled());
+        assertEquals(0, terminationEngine.getQueuedCount());
+        assertEquals(1, terminationEngine.getFailedCount());
+    }
+
+    @Test
+    public void testNextRunReplacesTerminationQueuedForExpiredRun() {
+        ReflectionTestUtils.setField(terminationEngine, "maxInFlight", 1);
+        submit(group("group-1", instance("i-1", "a")));
+        ListenableFuture<String> queued = submit(group("group-2", instance("i-2", "b")));
+        jobRun.expire();
+        jobRun = new JobRun(AutoScalingTarget.defaultTarget(autoScalingClient), 2L, System.currentTimeMillis() + 60000);
+
+        ListenableFuture<String> next = submit(group("group-2", instance("i-2", "b")));
+
+        assertTrue(queued.isCancelled());
+        assertFalse(next.isDone());
+        assertEquals(1, terminationEngine.getQueuedCount());
+    }
+
+    @Test
+    public void testAutoScalingGroupIsTerminatedOncePerThreshold() {
+        ReflectionTestUtils.setField(terminationEngine, "minThresholdForLastScalingActivity", 30);
+        terminationEngine.initialize();
+        AutoScalingGroup autoScalingGroup = group("group-1", instance("i-1", "a"), instance("i-2", "b"));
+        ListenableFuture<String> first = submit(autoScalingGroup);
+        ListenableFuture<String> inProgress = submit(autoScalingGroup);
+
+        verify(autoScalingClient).terminateInstanceInAutoScalingGroupAsync(
+            any(TerminateInstanceInAutoScalingGroupRequest.class), handlers.capture());
+        assertFailed("Termination already in progress", inProgress);
+        handlers.getValue().onSuccess(null, new TerminateInstanceInAutoScalingGroupResult());
+        assertTrue(first.isDone());
+
+        assertFailed("Instance terminated less than 30 minutes ago", submit(autoScalingGroup));
+        verify(autoScalingClient).terminateInstanceInAutoScalingGroupAsync(
+            any(TerminateInstanceInAutoScalingGroupRequest.class), handlers.capture());
+    }
+
+    @Test
+    public void testAvailabilityZoneBalancedSelectsFromLargestZone() {
+        AutoScalingGroupSnapshot autoScalingGroup = AutoScalingGroupSnapshot.of(group("group", instance("i-1", "a"),
+            instance("i-2", "b"), instance("i-3", "b")));
+        int selected = new AvailabilityZoneBalancedInstanceSelector().select(autoScalingGroup, new int[]{0, 1, 2});
+        assertEquals("b", autoScalingGroup.getAvailabilityZone(selected));
+    }
+
+    @Test
+    public void testOldestSelectsInstanceOfOldLaunchConfiguration() {
+        AutoScalingGroupSnapshot autoScalingGroup = AutoScalingGroupSnapshot.of(group("group", instance("i-1", "a")
+            .withLaunchConfigurationName("current"), instance("i-2", "a").withLaunchConfigurationName("old"))
+            .withLaunchConfigurationName("current"));
+        int selected = new OldestInstanceSelector().select(autoScalingGroup, new int[]{0, 1});
+        assertEquals("i-2", autoScalingGroup.getInstanceId(selected));
+    }
+
+    private static void assertFailed(String message, ListenableFuture<String> future) {
+        try {
+            Futures.getUnchecked(future);
+            fail("Termination should have failed");
+        }
+        catch (UncheckedExecutionException uee) {
+            assertEquals(message, uee.getCause().getMessage());
+        }
+    }
+
+    private ListenableFuture<String> submit(AutoScalingGroup autoScalingGroup) {
+        jobRun.register(autoScalingGroup.getAutoScalingGroupName());
+        return terminationEngine.submit(jobRun, AutoScalingGroupSnapshot.of(autoScalingGroup));
+    }
+
+    private static AutoScalingGroup group(String name, Instance... instances) {
+        return new AutoScalingGroup().withAutoScalingGroupName(name).withInstances(instances);
+    }
+
+    private static Instance instance(String instanceId, String availabilityZone) {
+        return new Instance().withInstanceId(instanceId).withAvailabilityZone(availabilityZone)
+            .withLifecycleState("InService");
+    }
+}